@@ -3,13 +3,12 @@ package org.example.nbauthservice.controller;
 import lombok.RequiredArgsConstructor;
 import org.example.nbauthservice.dto.JwtRequest;
 import org.example.nbauthservice.dto.JwtResponse;
+import org.example.nbauthservice.dto.OnboardingDTO;
 import org.example.nbauthservice.dto.RegisterRequest;
 import org.example.nbauthservice.entity.User;
-import org.example.nbauthservice.entity.UserOnboarding;
-import org.example.nbauthservice.repository.UserOnboardingRepository;
-import org.example.nbauthservice.repository.UserRepository;
 import org.example.nbauthservice.service.AuthService;
 import org.example.nbauthservice.service.EmailVerificationService;
+import org.example.nbauthservice.service.OnboardingService;
 import org.example.nbauthservice.service.UserService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -25,8 +24,7 @@ import java.util.Map;
 public class AuthController {
     private final AuthService authService;
     private final UserService userService;
-    private final UserRepository userRepository;
-    private final UserOnboardingRepository onboardingRepository;
+    private final OnboardingService onboardingService;
     private final EmailVerificationService emailVerificationService;
 
     /**
@@ -55,23 +53,16 @@ public class AuthController {
 
             // ✅ НОВОЕ: Проверить есть ли данные онбординга
             if (request.hasOnboardingData()) {
-                // Сохранить онбординг
-                UserOnboarding onboarding = UserOnboarding.builder()
-                        .user(user)
-                        .sex(request.getSex())
-                        .heightCm(request.getHeightCm())
-                        .weightKg(request.getWeightKg())
-                        .birthDate(request.getBirthDate())
-                        .characterId(request.getCharacterId())
-                        .dataConsent(request.getDataConsent())
-                        .isCompleted(true)
-                        .build();
-
-                onboardingRepository.save(onboarding);
-
-                // Обновить флаг onboarded
-                user.setOnboarded(true);
-                userRepository.save(user);
+                // Через OnboardingService: флаг onboarded + user.onboarding-updated после коммита
+                OnboardingDTO onboarding = new OnboardingDTO();
+                onboarding.setSex(request.getSex());
+                onboarding.setHeightCm(request.getHeightCm());
+                onboarding.setWeightKg(request.getWeightKg());
+                onboarding.setBirthDate(request.getBirthDate());
+                onboarding.setCharacterId(request.getCharacterId());
+                onboarding.setDataConsent(request.getDataConsent());
+
+                onboardingService.createOrUpdate(user.getId(), onboarding);
 
                 response.put("isOnboarded", true);
                 response.put("onboardingCompleted", true);
@@ -4,16 +4,22 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.example.nbauthservice.dto.OnboardingBulkRequest;
 import org.example.nbauthservice.dto.OnboardingDTO;
 import org.example.nbauthservice.dto.validation.OnCreate;
 import org.example.nbauthservice.security.JwtEntity;
 import org.example.nbauthservice.service.OnboardingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -25,6 +31,9 @@ public class OnboardingController {
 
     private final OnboardingService onboardingService;
 
+    @Value("${internal.api.key:}")
+    private String internalApiKey;
+
     /**
      * Получить userId из JWT токена
      */
@@ -138,4 +147,27 @@ public class OnboardingController {
             return ResponseEntity.notFound().build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Онбординг пачки пользователей (service-to-service, без JWT пользователя).
+     * Доступ — заголовок X-Internal-Key == internal.api.key; если ключ не задан, эндпойнт отключён.
+     */
+    @PostMapping("/internal/bulk")
+    @Operation(summary = "Bulk onboarding lookup (internal)",
+            description = "Returns onboarding data for up to 500 user IDs. Requires X-Internal-Key header.")
+    public ResponseEntity<List<OnboardingDTO>> getBulk(
+            @RequestHeader(value = "X-Internal-Key", required = false) String key,
+            @Validated @RequestBody OnboardingBulkRequest request) {
+        if (!isInternalCaller(key)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(onboardingService.getByUserIds(request.getUserIds()));
+    }
+
+    private boolean isInternalCaller(String key) {
+        if (internalApiKey == null || internalApiKey.isBlank() || key == null) return false;
+        return MessageDigest.isEqual(
+                internalApiKey.getBytes(StandardCharsets.UTF_8),
+                key.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -6,6 +6,8 @@ import org.example.nbauthservice.entity.User;
 import org.example.nbauthservice.repository.UserRepository;
 import org.example.nbauthservice.service.SmsVerificationService;
 import org.example.nbauthservice.service.UserService;
+import org.example.nbauthservice.verification.VerificationResult;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -35,11 +37,13 @@ public class SmsAuthController {
 
     @PostMapping("/verify-phone")
     public ResponseEntity<String> verifyPhone(@RequestParam String phone, @RequestParam String code) {
-        boolean verified = smsVerificationService.verifyCode(phone, code);
-        if (verified) {
-            return ResponseEntity.ok("Phone verified successfully");
-        } else {
-            return ResponseEntity.badRequest().body("Invalid verification code");
-        }
+        VerificationResult result = smsVerificationService.verify(phone, code);
+        return switch (result) {
+            case VERIFIED -> ResponseEntity.ok("Phone verified successfully");
+            case INVALID_CODE -> ResponseEntity.badRequest().body("Invalid verification code");
+            case EXPIRED -> ResponseEntity.badRequest().body("Verification code expired. Request a new one.");
+            case TOO_MANY_ATTEMPTS -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("Too many attempts. Request a new verification code.");
+        };
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package org.example.nbauthservice.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Service-to-service bulk onboarding lookup")
+public class OnboardingBulkRequest {
+
+    @Schema(description = "User IDs to look up", example = "[1, 2, 3]")
+    @NotEmpty(message = "userIds cannot be empty")
+    @Size(max = 500, message = "At most 500 userIds per request")
+    private List<Long> userIds;
+}
@@ -0,0 +1,6 @@
+package org.example.nbauthservice.entity;
+
+public enum NotificationChannel {
+    EMAIL,
+    SMS
+}
@@ -0,0 +1,13 @@
+package org.example.nbauthservice.entity;
+
+/**
+ * PENDING → SENDING → SENT
+ *              ↓
+ *   PENDING (retry с backoff) → … → FAILED (attempts исчерпаны)
+ */
+public enum NotificationStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,41 @@
+package org.example.nbauthservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Одноразовый код подтверждения (PostgresVerificationCodeStore).
+ * code_key — назначение + адресат, например "sms:+77001234567".
+ * Храним только SHA-256 кода; индекс по expires_at — для batched purge.
+ */
+@Entity
+@Table(name = "verification_codes", indexes = {
+        @Index(name = "idx_verification_codes_expires_at", columnList = "expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VerificationCode {
+
+    @Id
+    @Column(name = "code_key", length = 128)
+    private String key;
+
+    @Column(name = "code_hash", nullable = false, length = 64)
+    private String codeHash;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
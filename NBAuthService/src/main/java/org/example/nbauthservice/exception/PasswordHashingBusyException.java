@@ -0,0 +1,19 @@
+package org.example.nbauthservice.exception;
+
+/**
+ * Пул хеширования паролей перегружен.
+ * queueFull = true  → очередь заполнена, запрос отклонён сразу (429)
+ * queueFull = false → задача не успела выполниться за таймаут (503)
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+    private final boolean queueFull;
+
+    public PasswordHashingBusyException(String message, boolean queueFull) {
+        super(message);
+        this.queueFull = queueFull;
+    }
+
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.nbauthservice.kafka;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.entity.UserOnboarding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Публикация user.onboarding-updated только после коммита транзакции —
+ * consumer никогда не увидит изменения, которое откатилось.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OnboardingEventPublisher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Value("${kafka.topics.user-onboarding-updated:user.onboarding-updated}")
+    private String topic;
+
+    public void publishUpdated(UserOnboarding onboarding, Long userId) {
+        publishAfterCommit(new UserOnboardingUpdatedEvent(
+                userId,
+                onboarding.getSex(),
+                onboarding.getBirthDate() != null ? onboarding.getBirthDate().toString() : null,
+                onboarding.getHeightCm(),
+                onboarding.getWeightKg(),
+                onboarding.getCharacterId(),
+                onboarding.isCompleted(),
+                false,
+                System.currentTimeMillis()
+        ));
+    }
+
+    public void publishDeleted(Long userId) {
+        UserOnboardingUpdatedEvent event = new UserOnboardingUpdatedEvent();
+        event.setUserId(userId);
+        event.setDeleted(true);
+        event.setVersion(System.currentTimeMillis());
+        publishAfterCommit(event);
+    }
+
+    private void publishAfterCommit(UserOnboardingUpdatedEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    private void send(UserOnboardingUpdatedEvent event) {
+        kafkaTemplate.send(topic, String.valueOf(event.getUserId()), event)
+                .whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        log.error("Failed to publish {} for user {}: {}", topic, event.getUserId(), ex.getMessage());
+                    } else {
+                        log.debug("Published {} for user {} (deleted={})", topic, event.getUserId(), event.isDeleted());
+                    }
+                });
+    }
+}
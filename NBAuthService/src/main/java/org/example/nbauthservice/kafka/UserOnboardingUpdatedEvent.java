@@ -0,0 +1,33 @@
+package org.example.nbauthservice.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kafka event: user.onboarding-updated
+ *
+ * Публикуется после коммита createOrUpdate / updatePartial / delete онбординга.
+ * NBCheckinService держит по нему локальную реплику профиля (user_profile_replica),
+ * чтобы ML-расчёт не ходил в auth-сервис синхронно.
+ *
+ * Ключ сообщения — userId: все изменения одного пользователя в одной партиции, по порядку.
+ * version (epoch millis) — consumer игнорирует события старее уже применённого.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserOnboardingUpdatedEvent {
+
+    private Long userId;
+    private String sex;
+    /** ISO yyyy-MM-dd */
+    private String birthDate;
+    private Integer heightCm;
+    private Integer weightKg;
+    private Integer characterId;
+    private boolean completed;
+    /** true — онбординг удалён, реплику нужно удалить */
+    private boolean deleted;
+    private long version;
+}
@@ -0,0 +1,35 @@
+package org.example.nbauthservice.notification;
+
+/**
+ * Token bucket на канал: permitsPerSecond с burst = 1 секунда.
+ * acquire(n) может уйти «в долг» больше burst — тогда ждёт ровно столько,
+ * сколько нужно на восполнение, так что пачка крупнее burst не зависает.
+ */
+class ChannelRateLimiter {
+
+    private final double permitsPerNano;
+    private final double maxTokens;
+    private double tokens;
+    private long lastRefill;
+
+    ChannelRateLimiter(double permitsPerSecond) {
+        this.permitsPerNano = permitsPerSecond / 1_000_000_000d;
+        this.maxTokens = Math.max(1d, permitsPerSecond);
+        this.tokens = maxTokens;
+        this.lastRefill = System.nanoTime();
+    }
+
+    void acquire(int permits) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(maxTokens, tokens + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+            tokens -= permits;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens / permitsPerNano);
+        }
+        if (waitNanos > 0) {
+            Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.nbauthservice.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Локальная заглушка вместо SMTP / Twilio (notification.transport=local):
+ * ничего не отправляет наружу, пишет в лог и хранит доставленное в памяти.
+ * Для локального запуска и тестов без почтового сервера и Twilio-аккаунта.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "notification.transport", havingValue = "local")
+public class LocalNotificationTransport implements NotificationTransport {
+
+    private final List<Delivered> delivered = new CopyOnWriteArrayList<>();
+
+    @Override
+    public Set<NotificationChannel> channels() {
+        return EnumSet.allOf(NotificationChannel.class);
+    }
+
+    @Override
+    public Map<Long, Exception> sendBatch(NotificationChannel channel, List<NotificationOutbox> batch,
+                                         Throttle throttle) {
+        Map<Long, Exception> failures = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            NotificationOutbox n = batch.get(i);
+            try {
+                throttle.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.subList(i, batch.size()).forEach(rest -> failures.put(rest.getId(), e));
+                break;
+            }
+            delivered.add(new Delivered(n.getChannel(), n.getRecipient(), n.getSubject(), n.getBody()));
+            log.info("[local-{}] to={} subject={}\n{}", channel, n.getRecipient(), n.getSubject(), n.getBody());
+        }
+        return failures;
+    }
+
+    public List<Delivered> getDelivered() {
+        return List.copyOf(delivered);
+    }
+
+    public void clear() {
+        delivered.clear();
+    }
+
+    public record Delivered(NotificationChannel channel, String recipient, String subject, String body) {
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.nbauthservice.notification;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.example.nbauthservice.entity.NotificationStatus;
+import org.example.nbauthservice.repository.NotificationOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Диспетчер notification_outbox.
+ *
+ * На каждый канал — не более одного «слива» одновременно на инстанс:
+ *   1. в короткой транзакции берём пачку (FOR UPDATE SKIP LOCKED), помечаем SENDING + lease;
+ *   2. отправляем пачку транспортом вне транзакции, перед каждым сообщением
+ *      ожидая permit rate limit'а канала (не всю пачку вперёд — иначе пачка
+ *      ждала бы целиком, а потом уходила всплеском);
+ *   3. во второй транзакции фиксируем SENT / PENDING с backoff / FAILED.
+ * Повторяем, пока приходят полные пачки.
+ *
+ * Будится после коммита новой строки (wakeUp) и страхуется периодическим poll.
+ *
+ * В body лежат одноразовые секреты (SMS-код, ссылка с токеном верификации), а SENT
+ * строки хранятся sent-retention — поэтому body затирается, как только строка
+ * выходит из цикла повторов (SENT или FAILED).
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    static final String REDACTED_BODY = "[redacted]";
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<NotificationChannel, NotificationTransport> transports = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, ChannelRateLimiter> rateLimiters = new EnumMap<>(NotificationChannel.class);
+    private final Map<NotificationChannel, AtomicBoolean> draining = new EnumMap<>(NotificationChannel.class);
+    private final ExecutorService workers;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final Duration sentRetention;
+
+    public NotificationDispatcher(NotificationOutboxRepository outboxRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  List<NotificationTransport> transportBeans,
+                                  @Value("${notification.dispatcher.batch-size:50}") int batchSize,
+                                  @Value("${notification.dispatcher.max-attempts:6}") int maxAttempts,
+                                  @Value("${notification.dispatcher.base-backoff:5s}") Duration baseBackoff,
+                                  @Value("${notification.dispatcher.max-backoff:10m}") Duration maxBackoff,
+                                  @Value("${notification.dispatcher.lease:2m}") Duration lease,
+                                  @Value("${notification.outbox.sent-retention:7d}") Duration sentRetention,
+                                  @Value("${notification.rate.email-per-second:10}") double emailPerSecond,
+                                  @Value("${notification.rate.sms-per-second:1}") double smsPerSecond) {
+        this.outboxRepository = outboxRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+        this.sentRetention = sentRetention;
+
+        for (NotificationTransport transport : transportBeans) {
+            transport.channels().forEach(channel -> transports.put(channel, transport));
+        }
+        rateLimiters.put(NotificationChannel.EMAIL, new ChannelRateLimiter(emailPerSecond));
+        rateLimiters.put(NotificationChannel.SMS, new ChannelRateLimiter(smsPerSecond));
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            draining.put(channel, new AtomicBoolean(false));
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, transports.size()), r -> {
+            Thread t = new Thread(r, "notification-dispatch-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        log.info("Notification dispatcher started: transports={}", transports);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.dispatcher.poll-interval:5s}")
+    public void poll() {
+        transports.keySet().forEach(this::wakeUp);
+    }
+
+    /**
+     * Запустить слив канала, если он ещё не идёт на этом инстансе.
+     */
+    public void wakeUp(NotificationChannel channel) {
+        NotificationTransport transport = transports.get(channel);
+        if (transport == null) {
+            return;
+        }
+        AtomicBoolean flag = draining.get(channel);
+        if (!flag.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            workers.submit(() -> {
+                try {
+                    drain(channel, transport);
+                } catch (Exception e) {
+                    log.error("Notification drain for {} failed: {}", channel, e.getMessage(), e);
+                } finally {
+                    flag.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flag.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Слив канала
+    // ═══════════════════════════════════════════════════════════════
+
+    private void drain(NotificationChannel channel, NotificationTransport transport) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<NotificationOutbox> batch = claimBatch(channel);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            ChannelRateLimiter limiter = rateLimiters.get(channel);
+
+            Map<Long, Exception> failures;
+            try {
+                failures = transport.sendBatch(channel, batch, () -> limiter.acquire(1));
+            } catch (RuntimeException e) {
+                failures = new HashMap<>();
+                for (NotificationOutbox n : batch) failures.put(n.getId(), e);
+            }
+            complete(channel, batch, failures);
+
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private List<NotificationOutbox> claimBatch(NotificationChannel channel) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<NotificationOutbox> batch = outboxRepository.lockDueBatch(channel.name(), now, batchSize);
+            for (NotificationOutbox n : batch) {
+                n.setStatus(NotificationStatus.SENDING);
+                n.setAttempts(n.getAttempts() + 1);
+                n.setLockedUntil(now.plus(lease));
+            }
+            return outboxRepository.saveAll(batch);
+        });
+    }
+
+    private void complete(NotificationChannel channel, List<NotificationOutbox> batch, Map<Long, Exception> failures) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            for (NotificationOutbox n : batch) {
+                Exception error = failures.get(n.getId());
+                n.setLockedUntil(null);
+                if (error == null) {
+                    n.setStatus(NotificationStatus.SENT);
+                    n.setSentAt(now);
+                    n.setLastError(null);
+                    n.setBody(REDACTED_BODY);
+                    meterRegistry.counter("notification.dispatch", "channel", channel.name(), "result", "sent").increment();
+                } else if (n.getAttempts() >= maxAttempts) {
+                    n.setStatus(NotificationStatus.FAILED);
+                    n.setLastError(truncate(error.getMessage()));
+                    n.setBody(REDACTED_BODY);
+                    meterRegistry.counter("notification.dispatch", "channel", channel.name(), "result", "failed").increment();
+                    log.error("Notification {} to {} failed permanently after {} attempts: {}",
+                            n.getId(), n.getRecipient(), n.getAttempts(), error.getMessage());
+                } else {
+                    n.setStatus(NotificationStatus.PENDING);
+                    n.setNextAttemptAt(now.plus(backoff(n.getAttempts())));
+                    n.setLastError(truncate(error.getMessage()));
+                    meterRegistry.counter("notification.dispatch", "channel", channel.name(), "result", "retry").increment();
+                    log.warn("Notification {} attempt {} failed, retry at {}: {}",
+                            n.getId(), n.getAttempts(), n.getNextAttemptAt(), error.getMessage());
+                }
+            }
+            outboxRepository.saveAll(batch);
+        });
+    }
+
+    /**
+     * base * 2^(attempt-1), не больше maxBackoff.
+     */
+    private Duration backoff(int attempt) {
+        long multiplier = 1L << Math.min(attempt - 1, 20);
+        Duration delay = baseBackoff.multipliedBy(multiplier);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // Очистка
+    // ═══════════════════════════════════════════════════════════════
+
+    @Scheduled(cron = "${notification.outbox.cleanup-cron:0 30 3 * * *}")
+    public void purgeSent() {
+        Integer removed = transactionTemplate.execute(status ->
+                outboxRepository.deleteSentBefore(LocalDateTime.now().minus(sentRetention)));
+        log.info("Purged {} sent notifications older than {}", removed, sentRetention);
+    }
+}
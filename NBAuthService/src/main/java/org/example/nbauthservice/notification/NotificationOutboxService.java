@@ -0,0 +1,58 @@
+package org.example.nbauthservice.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.example.nbauthservice.entity.NotificationStatus;
+import org.example.nbauthservice.repository.NotificationOutboxRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Постановка уведомлений в outbox. Вызывается внутри бизнес-транзакции
+ * (регистрация, токен верификации) — строка коммитится вместе с ней,
+ * после коммита диспетчер будится сразу, не дожидаясь следующего poll.
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationOutboxService {
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationDispatcher dispatcher;
+
+    @Transactional
+    public NotificationOutbox enqueue(NotificationChannel channel, String recipient, String subject, String body) {
+        LocalDateTime now = LocalDateTime.now();
+        NotificationOutbox saved = outboxRepository.save(NotificationOutbox.builder()
+                .channel(channel)
+                .recipient(recipient)
+                .subject(subject)
+                .body(body)
+                .status(NotificationStatus.PENDING)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp(channel);
+                }
+            });
+        }
+        return saved;
+    }
+
+    public void enqueueEmail(String email, String subject, String body) {
+        enqueue(NotificationChannel.EMAIL, email, subject, body);
+    }
+
+    public void enqueueSms(String phone, String body) {
+        enqueue(NotificationChannel.SMS, phone, null, body);
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.nbauthservice.notification;
+
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Транспорт доставки уведомлений. Отправляет пачку за один вызов
+ * (для SMTP — за одно соединение) и возвращает ошибки по id строки outbox.
+ * Пустая map = вся пачка доставлена.
+ *
+ * Перед каждым сообщением транспорт вызывает throttle.acquire() — rate limit
+ * канала расходуется по одному сообщению, а не всей пачкой вперёд. Если поток
+ * прерван на ожидании, неотправленный хвост пачки возвращается как ошибки,
+ * а флаг прерывания восстанавливается.
+ */
+public interface NotificationTransport {
+
+    Set<NotificationChannel> channels();
+
+    Map<Long, Exception> sendBatch(NotificationChannel channel, List<NotificationOutbox> batch, Throttle throttle);
+
+    @FunctionalInterface
+    interface Throttle {
+        /** Блокирует до получения permit'а на одно сообщение. */
+        void acquire() throws InterruptedException;
+    }
+}
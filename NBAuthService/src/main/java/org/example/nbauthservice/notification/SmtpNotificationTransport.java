@@ -0,0 +1,125 @@
+package org.example.nbauthservice.notification;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.mail.MailException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Email через JavaMailSender. Для JavaMailSenderImpl пачка идёт через одно
+ * SMTP-соединение (как в его send(SimpleMailMessage...)), но письма отправляются
+ * по одному, с permit'ом rate limit'а перед каждым. Другие реализации
+ * JavaMailSender получают письма по одному через send(SimpleMailMessage).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "notification.transport", havingValue = "live", matchIfMissing = true)
+public class SmtpNotificationTransport implements NotificationTransport {
+
+    private final JavaMailSender mailSender;
+
+    @Override
+    public Set<NotificationChannel> channels() {
+        return Set.of(NotificationChannel.EMAIL);
+    }
+
+    @Override
+    public Map<Long, Exception> sendBatch(NotificationChannel channel, List<NotificationOutbox> batch,
+                                         Throttle throttle) {
+        if (mailSender instanceof JavaMailSenderImpl impl) {
+            return sendOverOneConnection(impl, batch, throttle);
+        }
+
+        Map<Long, Exception> failures = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            NotificationOutbox n = batch.get(i);
+            try {
+                throttle.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.subList(i, batch.size()).forEach(rest -> failures.put(rest.getId(), e));
+                break;
+            }
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(n.getRecipient());
+            message.setSubject(n.getSubject());
+            message.setText(n.getBody());
+            try {
+                mailSender.send(message);
+            } catch (MailException e) {
+                failures.put(n.getId(), e);
+            }
+        }
+        return failures;
+    }
+
+    private Map<Long, Exception> sendOverOneConnection(JavaMailSenderImpl impl, List<NotificationOutbox> batch,
+                                                       Throttle throttle) {
+        Map<Long, Exception> failures = new HashMap<>();
+        String protocol = impl.getProtocol() != null ? impl.getProtocol() : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+        Transport transport;
+        try {
+            transport = impl.getSession().getTransport(protocol);
+            transport.connect(impl.getHost(), impl.getPort(), emptyToNull(impl.getUsername()),
+                    emptyToNull(impl.getPassword()));
+        } catch (MessagingException e) {
+            // Auth / соединение — не ушло ничего
+            log.warn("SMTP batch of {} failed: {}", batch.size(), e.getMessage());
+            batch.forEach(n -> failures.put(n.getId(), e));
+            return failures;
+        }
+
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                NotificationOutbox n = batch.get(i);
+                try {
+                    throttle.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    batch.subList(i, batch.size()).forEach(rest -> failures.put(rest.getId(), e));
+                    break;
+                }
+                try {
+                    MimeMessage message = impl.createMimeMessage();
+                    MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+                    helper.setTo(n.getRecipient());
+                    helper.setSubject(n.getSubject());
+                    helper.setText(n.getBody());
+                    message.setSentDate(new Date());
+                    message.saveChanges();
+                    transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException e) {
+                    failures.put(n.getId(), e);
+                }
+            }
+        } finally {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("SMTP close failed: {}", e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.nbauthservice.notification;
+
+import lombok.RequiredArgsConstructor;
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.example.nbauthservice.service.SmsSender;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SMS через Twilio. У Twilio нет batch API — пачка уходит последовательно
+ * через один HTTP-клиент, ошибки собираются по каждой строке.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "notification.transport", havingValue = "live", matchIfMissing = true)
+public class TwilioSmsTransport implements NotificationTransport {
+
+    private final SmsSender smsSender;
+
+    @Override
+    public Set<NotificationChannel> channels() {
+        return Set.of(NotificationChannel.SMS);
+    }
+
+    @Override
+    public Map<Long, Exception> sendBatch(NotificationChannel channel, List<NotificationOutbox> batch,
+                                         Throttle throttle) {
+        Map<Long, Exception> failures = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            NotificationOutbox n = batch.get(i);
+            try {
+                throttle.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.subList(i, batch.size()).forEach(rest -> failures.put(rest.getId(), e));
+                break;
+            }
+            try {
+                smsSender.sendSms(n.getRecipient(), n.getBody());
+            } catch (RuntimeException e) {
+                failures.put(n.getId(), e);
+            }
+        }
+        return failures;
+    }
+}
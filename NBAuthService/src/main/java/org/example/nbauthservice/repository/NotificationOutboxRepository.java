@@ -0,0 +1,35 @@
+package org.example.nbauthservice.repository;
+
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    /**
+     * Готовые к отправке строки канала: PENDING с наступившим next_attempt_at
+     * или SENDING с истёкшей блокировкой (инстанс упал посреди отправки).
+     * SKIP LOCKED — реплики разбирают разные строки без ожидания друг друга.
+     */
+    @Query(value = """
+            SELECT * FROM notification_outbox
+            WHERE channel = :channel
+              AND ((status = 'PENDING' AND next_attempt_at <= :now)
+                OR (status = 'SENDING' AND locked_until < :now))
+            ORDER BY next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<NotificationOutbox> lockDueBatch(@Param("channel") String channel,
+                                          @Param("now") LocalDateTime now,
+                                          @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM NotificationOutbox n WHERE n.status = org.example.nbauthservice.entity.NotificationStatus.SENT AND n.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -2,8 +2,12 @@ package org.example.nbauthservice.repository;
 
 import org.example.nbauthservice.entity.UserOnboarding;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,6 +18,12 @@ public interface UserOnboardingRepository extends JpaRepository<UserOnboarding,
      */
     Optional<UserOnboarding> findByUserId(Long userId);
 
+    /**
+     * Онбординг пачки пользователей одним запросом (bulk internal API)
+     */
+    @Query("SELECT o FROM UserOnboarding o WHERE o.user.id IN :userIds")
+    List<UserOnboarding> findAllByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
     /**
      * Проверить существует ли онбординг для пользователя
      */
@@ -26,6 +26,48 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findTop20ByUsernameContainingIgnoreCase(String usernamePart);
 
+    /**
+     * Подстрока в username / name — GIN trigram индексы (db/search/V1__users_search_indexes.sql).
+     * q — нормализованный запрос; pattern / prefix — экранированные '%q%' / 'q%' (ESCAPE '!').
+     */
+    @Query(value = """
+            SELECT * FROM users u
+            WHERE lower(u.username) LIKE :pattern ESCAPE '!'
+               OR lower(u.name) LIKE :pattern ESCAPE '!'
+            ORDER BY CASE
+                       WHEN lower(u.username) = :q THEN 0
+                       WHEN lower(u.username) LIKE :prefix ESCAPE '!' THEN 1
+                       WHEN lower(u.name) LIKE :prefix ESCAPE '!' THEN 2
+                       ELSE 3
+                     END,
+                     length(u.username), u.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<User> searchBySubstring(@Param("q") String q,
+                                 @Param("pattern") String pattern,
+                                 @Param("prefix") String prefix,
+                                 @Param("limit") int limit);
+
+    /**
+     * Префикс username / name для коротких запросов (< 3 символов, триграммы не работают) —
+     * btree text_pattern_ops индексы.
+     */
+    @Query(value = """
+            SELECT * FROM users u
+            WHERE lower(u.username) LIKE :prefix ESCAPE '!'
+               OR lower(u.name) LIKE :prefix ESCAPE '!'
+            ORDER BY CASE
+                       WHEN lower(u.username) = :q THEN 0
+                       WHEN lower(u.username) LIKE :prefix ESCAPE '!' THEN 1
+                       ELSE 2
+                     END,
+                     length(u.username), u.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<User> searchByPrefix(@Param("q") String q,
+                              @Param("prefix") String prefix,
+                              @Param("limit") int limit);
+
 
     void deleteById(Long id);
 
@@ -0,0 +1,35 @@
+package org.example.nbauthservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.example.nbauthservice.entity.VerificationCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface VerificationCodeRepository extends JpaRepository<VerificationCode, String> {
+
+    /**
+     * Блокировка строки на время проверки — параллельные попытки с разных реплик
+     * не обходят счётчик attempts.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM VerificationCode v WHERE v.key = :key")
+    Optional<VerificationCode> findForUpdate(@Param("key") String key);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM verification_codes
+            WHERE code_key IN (
+                SELECT code_key FROM verification_codes
+                WHERE expires_at < :now
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            )
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("batchSize") int batchSize);
+}
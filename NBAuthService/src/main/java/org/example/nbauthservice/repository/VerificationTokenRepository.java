@@ -14,7 +14,19 @@ public interface VerificationTokenRepository extends JpaRepository<VerificationT
 
     Optional<VerificationToken> findByUserId(Long userId);
 
+    /**
+     * Пачка истёкших токенов за раз — короткие транзакции вместо одного
+     * большого DELETE по всей таблице (см. VerificationPurgeJob).
+     */
     @Modifying
-    @Query("DELETE FROM VerificationToken v WHERE v.expiryDate < :now")
-    int deleteExpiredTokens(@Param("now") LocalDateTime now);
+    @Query(value = """
+            DELETE FROM verification_token
+            WHERE id IN (
+                SELECT id FROM verification_token
+                WHERE expiry_date < :now
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            )
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") LocalDateTime now, @Param("batchSize") int batchSize);
 }
@@ -0,0 +1,228 @@
+package org.example.nbauthservice.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Сжатое префиксное дерево (radix trie): ключ → набор id.
+ * Рёбра хранят строки, а не символы, — цепочки без ветвлений схлопнуты в один узел,
+ * поэтому 1M имён пользователей занимают ~2 узла на ключ.
+ * Каждый узел помнит длину кратчайшего ключа в своём поддереве (minSuffix) —
+ * findByPrefix идёт best-first и не обходит всё поддерево частого префикса.
+ *
+ * Не потокобезопасно — синхронизирует UserPrefixIndex.
+ * Пара (key, id) не вставляется повторно — UserPrefixIndex удаляет старые ключи перед вставкой.
+ */
+final class RadixTrie {
+
+    private static final long[] NO_IDS = new long[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+    private int keyCount;
+
+    void insert(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        int i = 0;
+        while (true) {
+            path.add(node);
+            if (i == key.length()) {
+                node.addId(id);
+                if (node.idCount == 1) keyCount++;
+                break;
+            }
+            int idx = node.childIndex(key.charAt(i));
+            if (idx < 0) {
+                Node leaf = new Node(key.substring(i));
+                leaf.addId(id);
+                leaf.minSuffix = 0;
+                node.insertChild(-idx - 1, leaf);
+                keyCount++;
+                break;
+            }
+            Node child = node.children[idx];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // Разрезаем ребро: node → mid(label[0..common)) → child(label[common..])
+                Node mid = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                mid.children = new Node[]{child};
+                mid.recomputeMinSuffix();
+                node.children[idx] = mid;
+                child = mid;
+            }
+            node = child;
+            i += common;
+        }
+        for (int k = path.size() - 1; k >= 0; k--) {
+            path.get(k).recomputeMinSuffix();
+        }
+    }
+
+    void remove(String key, long id) {
+        if (remove(root, key, 0, id)) keyCount--;
+    }
+
+    /**
+     * До limit совпадений по префиксу, в порядке возрастания длины ключа
+     * (точное совпадение первым, затем самые короткие продолжения).
+     */
+    List<Match> findByPrefix(String prefix, int limit) {
+        List<Match> result = new ArrayList<>();
+        if (limit <= 0) return result;
+
+        Node node = root;
+        int i = 0;
+        StringBuilder path = new StringBuilder();
+        while (i < prefix.length()) {
+            int idx = node.childIndex(prefix.charAt(i));
+            if (idx < 0) return result;
+            Node child = node.children[idx];
+            int common = commonPrefix(child.label, prefix, i);
+            if (common < child.label.length() && i + common < prefix.length()) {
+                return result;  // расхождение внутри ребра
+            }
+            path.append(child.label);
+            node = child;
+            i += common;
+        }
+
+        // Best-first по длине кратчайшего ключа поддерева: короткие ключи (ближе к запросу) — первыми
+        PriorityQueue<Frontier> queue = new PriorityQueue<>(Comparator.comparingInt(Frontier::bound));
+        queue.add(new Frontier(node, path.toString()));
+        while (!queue.isEmpty() && result.size() < limit) {
+            Frontier f = queue.poll();
+            for (int k = 0; k < f.node.idCount && result.size() < limit; k++) {
+                result.add(new Match(f.key, f.node.ids[k]));
+            }
+            for (Node child : f.node.children) {
+                if (child.minSuffix != Integer.MAX_VALUE) {
+                    queue.add(new Frontier(child, f.key + child.label));
+                }
+            }
+        }
+        return result;
+    }
+
+    int keyCount() {
+        return keyCount;
+    }
+
+    // ─── internals ───────────────────────────────────────────────
+
+    /** @return true, если у ключа не осталось id */
+    private static boolean remove(Node node, String key, int i, long id) {
+        if (i == key.length()) {
+            boolean emptied = node.removeId(id) && node.idCount == 0;
+            node.recomputeMinSuffix();
+            return emptied;
+        }
+        int idx = node.childIndex(key.charAt(i));
+        if (idx < 0) return false;
+        Node child = node.children[idx];
+        if (!key.startsWith(child.label, i)) return false;
+
+        boolean emptied = remove(child, key, i + child.label.length(), id);
+        if (emptied || child.idCount == 0) {
+            if (child.idCount == 0 && child.children.length == 0) {
+                node.removeChild(idx);
+            } else if (child.idCount == 0 && child.children.length == 1) {
+                // Схлопываем промежуточный узел без значений обратно в одно ребро
+                Node only = child.children[0];
+                only.label = child.label + only.label;
+                node.children[idx] = only;
+            }
+        }
+        node.recomputeMinSuffix();
+        return emptied;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(offset + n)) n++;
+        return n;
+    }
+
+    record Match(String key, long id) {
+    }
+
+    private record Frontier(Node node, String key) {
+        int bound() {
+            return key.length() + node.minSuffix;
+        }
+    }
+
+    private static final class Node {
+        String label;
+        Node[] children = NO_CHILDREN;
+        long[] ids = NO_IDS;
+        int idCount;
+        /** Длина кратчайшего ключа поддерева за вычетом пути до узла; MAX_VALUE — пустое поддерево */
+        int minSuffix = Integer.MAX_VALUE;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        /** Бинарный поиск по первому символу ребра; отрицательный — точка вставки (-(pos)-1) */
+        int childIndex(char c) {
+            int lo = 0, hi = children.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char m = children[mid].label.charAt(0);
+                if (m < c) lo = mid + 1;
+                else if (m > c) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
+        }
+
+        void insertChild(int pos, Node child) {
+            Node[] next = new Node[children.length + 1];
+            System.arraycopy(children, 0, next, 0, pos);
+            next[pos] = child;
+            System.arraycopy(children, pos, next, pos + 1, children.length - pos);
+            children = next;
+        }
+
+        void removeChild(int pos) {
+            Node[] next = new Node[children.length - 1];
+            System.arraycopy(children, 0, next, 0, pos);
+            System.arraycopy(children, pos + 1, next, pos, children.length - pos - 1);
+            children = next;
+        }
+
+        void recomputeMinSuffix() {
+            int min = idCount > 0 ? 0 : Integer.MAX_VALUE;
+            for (Node child : children) {
+                if (child.minSuffix != Integer.MAX_VALUE) {
+                    min = Math.min(min, child.label.length() + child.minSuffix);
+                }
+            }
+            minSuffix = min;
+        }
+
+        void addId(long id) {
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(1, idCount * 2));
+            }
+            ids[idCount++] = id;
+        }
+
+        boolean removeId(long id) {
+            for (int k = 0; k < idCount; k++) {
+                if (ids[k] == id) {
+                    ids[k] = ids[--idCount];
+                    if (idCount == 0) ids = NO_IDS;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.nbauthservice.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Создаёт pg_trgm и индексы поиска пользователей (db/search/V1__users_search_indexes.sql).
+ * В сервисе нет Flyway, схема ведётся ddl-auto=update — индексы на выражения
+ * Hibernate не создаёт, поэтому они накатываются здесь; каждый statement идемпотентен.
+ * Ошибки (например, нет прав на CREATE EXTENSION) не мешают старту — поиск просто медленнее.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchIndexInitializer implements ApplicationRunner {
+
+    private final DataSource dataSource;
+
+    @Value("${search.db-indexes.init-on-startup:true}")
+    private boolean initOnStartup;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!initOnStartup) return;
+
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("db/search/V1__users_search_indexes.sql"));
+        populator.setContinueOnError(true);
+        try {
+            populator.execute(dataSource);
+            log.info("User search indexes ensured (pg_trgm + prefix)");
+        } catch (RuntimeException e) {
+            log.warn("Could not create user search indexes: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.nbauthservice.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Нормализация для поиска: NFD без диакритики, lower-case (Locale.ROOT), trim.
+ * "Élodie " → "elodie", "Алёна" → "алена".
+ *
+ * normalize — только для UserPrefixIndex (ключи trie проходят ту же нормализацию).
+ * В SQL колонки сравниваются как lower(col), поэтому запрос в БД — lowerCase:
+ * без снятия диакритики, иначе "Андрей" → "андреи" не совпадёт с lower(name).
+ */
+final class SearchNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATORS = Pattern.compile("[\\s\\p{Punct}]+");
+
+    private SearchNormalizer() {
+    }
+
+    static String normalize(String raw) {
+        if (raw == null) return "";
+        String decomposed = Normalizer.normalize(raw.trim(), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /** Для SQL-пути: NFC + lower-case (Locale.ROOT) + trim — как lower(col) в PostgreSQL */
+    static String lowerCase(String raw) {
+        if (raw == null) return "";
+        return Normalizer.normalize(raw.trim(), Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+    }
+
+    /** Слова имени: "Anna-Maria Smith" → [anna, maria, smith] */
+    static List<String> nameTokens(String name) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATORS.split(normalize(name))) {
+            if (!token.isEmpty() && !tokens.contains(token)) tokens.add(token);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.nbauthservice.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.dto.UserShortDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Опциональный in-memory индекс для typeahead (search.prefix-index.enabled=true).
+ *
+ * Два radix trie — по нормализованным username и по словам name
+ * (раздельно, чтобы частые имена не вытесняли совпадения по username):
+ *  - строится на старте в фоне (стримингом из users), пока не готов — поиск идёт в БД;
+ *  - обновляется по UserSearchChangedEvent после коммита create / update / delete;
+ *  - события, пришедшие во время перестройки, буферизуются и применяются после swap.
+ *
+ * Ранжирование: точный username → префикс username → префикс слова имени;
+ * внутри группы — более короткий username, затем id.
+ */
+@Slf4j
+@Component
+public class UserPrefixIndex {
+
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private RadixTrie usernameTrie = new RadixTrie();
+    private RadixTrie nameTrie = new RadixTrie();
+    private final ConcurrentHashMap<Long, IndexedUser> users = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+    private boolean rebuilding;
+    private final List<UserSearchChangedEvent> pendingDuringRebuild = new ArrayList<>();
+
+    public UserPrefixIndex(DataSource dataSource,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${search.prefix-index.enabled:false}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!enabled) return;
+        Thread t = new Thread(this::rebuild, "user-prefix-index-rebuild");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Полная перестройка: новый trie строится без блокировки, затем подменяется.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+            pendingDuringRebuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RadixTrie freshUsernames = new RadixTrie();
+        RadixTrie freshNames = new RadixTrie();
+        ConcurrentHashMap<Long, IndexedUser> snapshot = new ConcurrentHashMap<>();
+        try {
+            // Курсор PostgreSQL (fetch size) работает только внутри транзакции
+            JdbcTemplate streaming = new JdbcTemplate(dataSource);
+            streaming.setFetchSize(10_000);
+            transactionTemplate.executeWithoutResult(status ->
+                    streaming.query("SELECT id, username, name FROM users", rs -> {
+                        IndexedUser user = IndexedUser.of(rs.getLong("id"), rs.getString("username"), rs.getString("name"));
+                        snapshot.put(user.id(), user);
+                        addKeys(freshUsernames, freshNames, user);
+                    }));
+        } catch (RuntimeException e) {
+            log.error("User prefix index rebuild failed: {}", e.getMessage(), e);
+            lock.writeLock().lock();
+            try {
+                rebuilding = false;
+                pendingDuringRebuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            usernameTrie = freshUsernames;
+            nameTrie = freshNames;
+            users.clear();
+            users.putAll(snapshot);
+            pendingDuringRebuild.forEach(this::applyLocked);
+            pendingDuringRebuild.clear();
+            rebuilding = false;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("User prefix index built: {} users, {} keys in {} ms",
+                users.size(), freshUsernames.keyCount() + freshNames.keyCount(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserSearchChangedEvent event) {
+        if (!enabled) return;
+        lock.writeLock().lock();
+        try {
+            if (rebuilding) {
+                pendingDuringRebuild.add(event);
+            }
+            applyLocked(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Поиск по префиксу username или слова имени.
+     */
+    public List<UserShortDto> search(String query, int limit) {
+        String q = SearchNormalizer.normalize(query);
+        if (q.isEmpty() || limit <= 0) return List.of();
+
+        // Сначала username (ранг 0–1), затем имена с запасом: один пользователь
+        // может совпасть и по username, и по нескольким словам имени
+        Set<Long> candidates = new LinkedHashSet<>();
+        lock.readLock().lock();
+        try {
+            for (RadixTrie.Match match : usernameTrie.findByPrefix(q, limit)) {
+                candidates.add(match.id());
+            }
+            if (candidates.size() < limit) {
+                for (RadixTrie.Match match : nameTrie.findByPrefix(q, limit * 3)) {
+                    candidates.add(match.id());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return candidates.stream()
+                .map(users::get)
+                .filter(u -> u != null)
+                .sorted(Comparator.<IndexedUser>comparingInt(u -> u.rank(q))
+                        .thenComparingInt(u -> u.normalizedUsername().length())
+                        .thenComparingLong(IndexedUser::id))
+                .limit(limit)
+                .map(IndexedUser::toDto)
+                .toList();
+    }
+
+    int size() {
+        return users.size();
+    }
+
+    // ─── internals ───────────────────────────────────────────────
+
+    private void applyLocked(UserSearchChangedEvent event) {
+        IndexedUser previous = users.remove(event.userId());
+        if (previous != null) {
+            removeKeys(usernameTrie, nameTrie, previous);
+        }
+        if (!event.deleted()) {
+            IndexedUser user = IndexedUser.of(event.userId(), event.username(), event.name());
+            users.put(user.id(), user);
+            addKeys(usernameTrie, nameTrie, user);
+        }
+    }
+
+    private static void addKeys(RadixTrie usernames, RadixTrie names, IndexedUser user) {
+        if (!user.normalizedUsername().isEmpty()) usernames.insert(user.normalizedUsername(), user.id());
+        for (String token : user.nameTokens()) names.insert(token, user.id());
+    }
+
+    private static void removeKeys(RadixTrie usernames, RadixTrie names, IndexedUser user) {
+        if (!user.normalizedUsername().isEmpty()) usernames.remove(user.normalizedUsername(), user.id());
+        for (String token : user.nameTokens()) names.remove(token, user.id());
+    }
+
+    private record IndexedUser(long id, String username, String name, String normalizedUsername, List<String> nameTokens) {
+
+        static IndexedUser of(long id, String username, String name) {
+            return new IndexedUser(id, username, name,
+                    SearchNormalizer.normalize(username), SearchNormalizer.nameTokens(name));
+        }
+
+        int rank(String q) {
+            if (normalizedUsername.equals(q)) return 0;
+            if (normalizedUsername.startsWith(q)) return 1;
+            return 2;
+        }
+
+        UserShortDto toDto() {
+            UserShortDto dto = new UserShortDto();
+            dto.setId(id);
+            dto.setUsername(username);
+            dto.setName(name);
+            return dto;
+        }
+    }
+}
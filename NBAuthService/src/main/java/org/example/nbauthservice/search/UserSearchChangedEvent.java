@@ -0,0 +1,16 @@
+package org.example.nbauthservice.search;
+
+/**
+ * Spring application event: пользователь создан / изменён / удалён.
+ * UserPrefixIndex применяет его после коммита транзакции.
+ */
+public record UserSearchChangedEvent(Long userId, String username, String name, boolean deleted) {
+
+    public static UserSearchChangedEvent upserted(Long userId, String username, String name) {
+        return new UserSearchChangedEvent(userId, username, name, false);
+    }
+
+    public static UserSearchChangedEvent deleted(Long userId) {
+        return new UserSearchChangedEvent(userId, null, null, true);
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.nbauthservice.search;
+
+import lombok.RequiredArgsConstructor;
+import org.example.nbauthservice.dto.UserShortDto;
+import org.example.nbauthservice.entity.User;
+import org.example.nbauthservice.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typeahead-поиск пользователей по username и имени.
+ *
+ *  1. UserPrefixIndex (если включён и построен) — префиксные совпадения из памяти;
+ *  2. добор из БД, если результатов меньше limit:
+ *     q >= 3 символов — подстрока, lower(col) LIKE '%q%' по GIN trigram индексам;
+ *     q  < 3 символов — префикс, lower(col) LIKE 'q%' по btree text_pattern_ops.
+ * Ранжирование в обоих путях: точный username → префикс username → префикс имени → подстрока.
+ *
+ * Индекс сравнивает без диакритики ("elodie" найдёт "Élodie"), БД — по lower(col)
+ * с диакритикой: запрос в БД нормализуется так же, как колонки (SearchNormalizer.lowerCase).
+ */
+@Service
+@RequiredArgsConstructor
+public class UserSearchService {
+
+    static final int DEFAULT_LIMIT = 20;
+    private static final int TRIGRAM_MIN_LENGTH = 3;
+
+    private final UserRepository userRepository;
+    private final UserPrefixIndex prefixIndex;
+
+    @Transactional(readOnly = true)
+    public List<UserShortDto> search(String query, int limit) {
+        String q = SearchNormalizer.normalize(query);
+        if (q.isEmpty()) return List.of();
+        int max = limit > 0 ? Math.min(limit, 50) : DEFAULT_LIMIT;
+
+        Map<Long, UserShortDto> results = new LinkedHashMap<>();
+        if (prefixIndex.isReady()) {
+            prefixIndex.search(q, max).forEach(dto -> results.put(dto.getId(), dto));
+            // Префиксных совпадений хватило, а подстрока для коротких запросов не нужна
+            if (results.size() >= max || q.length() < TRIGRAM_MIN_LENGTH) {
+                return new ArrayList<>(results.values());
+            }
+        }
+
+        String dbQuery = SearchNormalizer.lowerCase(query);
+        String escaped = escapeLike(dbQuery);
+        List<User> fromDb = dbQuery.length() >= TRIGRAM_MIN_LENGTH
+                ? userRepository.searchBySubstring(dbQuery, "%" + escaped + "%", escaped + "%", max)
+                : userRepository.searchByPrefix(dbQuery, escaped + "%", max);
+        for (User u : fromDb) {
+            if (results.size() >= max) break;
+            results.putIfAbsent(u.getId(), toDto(u));
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    private static UserShortDto toDto(User u) {
+        UserShortDto dto = new UserShortDto();
+        dto.setId(u.getId());
+        dto.setUsername(u.getUsername());
+        dto.setName(u.getName());
+        return dto;
+    }
+
+    /** Экранирование % и _ для LIKE ... ESCAPE '!' */
+    private static String escapeLike(String q) {
+        return q.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
@@ -3,23 +3,24 @@ package org.example.nbauthservice.security;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.ServletRequest;
-import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.web.filter.GenericFilterBean;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
 
+/**
+ * Stateless-аутентификация: один verify токена (JwtVerifier, с кэшем),
+ * principal собирается из claims — без обращения к БД на каждый запрос.
+ */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class JwtTokenFilter extends OncePerRequestFilter {
     private final JwtTokenProvider jwtTokenProvider;
 
@@ -28,39 +29,25 @@ public class JwtTokenFilter extends OncePerRequestFilter {
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
-        String path = request.getRequestURI();
-        System.out.println("FILTER START: " + path);
-        System.out.println("Method: " + request.getMethod());
-
         String header = request.getHeader("Authorization");
-        System.out.println("Authorization header: " + (header != null ? "EXISTS" : "NULL"));
 
         if (header != null && header.startsWith("Bearer ")) {
             String token = header.substring(7);
-            System.out.println("Token extracted: " + token.substring(0, Math.min(20, token.length())) + "...");
             try {
-                boolean isValid = jwtTokenProvider.validateToken(token);
-                System.out.println("Token valid: " + isValid);
-
-                if (isValid) {
+                if (jwtTokenProvider.validateToken(token)) {
                     Authentication auth = jwtTokenProvider.getAuthentication(token);
-                    SecurityContextHolder.getContext().setAuthentication(auth);
-                    System.out.println("Authentication set: " + auth.getName());
+                    if (auth != null) {
+                        SecurityContextHolder.getContext().setAuthentication(auth);
+                        log.debug("Authenticated {} {} as {}", request.getMethod(), request.getRequestURI(), auth.getName());
+                    }
                 } else {
-                    System.out.println("Token validation FAILED");
+                    log.debug("Invalid JWT for {} {}", request.getMethod(), request.getRequestURI());
                 }
             } catch (Exception e) {
-                System.err.println("JWT validation ERROR: " + e.getMessage());
-                e.printStackTrace();
+                log.warn("JWT authentication error for {}: {}", request.getRequestURI(), e.getMessage());
             }
-        } else {
-            System.out.println("No Bearer token in request");
         }
 
-        Authentication currentAuth = SecurityContextHolder.getContext().getAuthentication();
-        System.out.println(" Current authentication: " + (currentAuth != null ? currentAuth.getName() : "NULL"));
-
-
         filterChain.doFilter(request, response);
     }
 }
@@ -2,7 +2,6 @@
 package org.example.nbauthservice.security;
 
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import lombok.NonNull;
@@ -14,11 +13,10 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -28,12 +26,15 @@ import java.util.stream.Collectors;
 @Component
 public class JwtTokenProvider {
     private final SecretKey secretKey;
-    private final UserDetailsService userDetailsService;
+    private final JwtVerifier jwtVerifier;
+    private final PrincipalCache principalCache;
     private UserService userService;
 
-    public JwtTokenProvider(@Value("${security.jwt.secret}") String jwtSecret, UserDetailsService userDetailsService, UserService userService){
-        this.secretKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
-        this.userDetailsService = userDetailsService;
+    public JwtTokenProvider(@Value("${security.jwt.secret}") String jwtSecret, JwtVerifier jwtVerifier,
+                            PrincipalCache principalCache, UserService userService){
+        this.secretKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtVerifier = jwtVerifier;
+        this.principalCache = principalCache;
         this.userService = userService;
     }
 
@@ -66,22 +67,9 @@ public class JwtTokenProvider {
                 .compact();
     }
 
+    /** Подпись + exp проверяются JwtVerifier (один parse, дальше — кэш). */
     public boolean validateToken(String token) {
-        try {
-            System.out.println(">>> Validating token...");
-            Jws<Claims> claims = Jwts.parser()
-                    .setSigningKey(secretKey)
-                    .build()
-                    .parseClaimsJws(token);
-            Claims body = claims.getBody();
-            boolean result = body.getExpiration().after(new Date());
-            System.out.println(">>> Token expiration: " + body.getExpiration());
-            System.out.println(">>> Token is valid: " + result);
-            return result;
-        } catch (Exception e) {
-            System.err.println(">>> Token validation exception: " + e.getClass().getName() + " - " + e.getMessage());
-            return false;
-        }
+        return jwtVerifier.verify(token).isPresent();
     }
 
     public JwtResponse refresh(String refreshToken){
@@ -103,30 +91,54 @@ public class JwtTokenProvider {
     }
 
     public String getId(String token) {
-        return Jwts.parser()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("id")
-                .toString();
+        return verifiedClaims(token).get("id").toString();
     }
 
     public String getUsername(String token) {
-        return Jwts
-                .parser()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject()
-                .toString();
+        return verifiedClaims(token).getSubject();
+    }
+
+    private Claims verifiedClaims(String token) {
+        return jwtVerifier.verify(token)
+                .orElseThrow(() -> new AccessDeniedException("Invalid or expired token"));
     }
 
+    /**
+     * Principal строится из проверенных claims (id, sub, roles) — без запроса в БД.
+     * Если включён PrincipalCache, роли берутся из него (short-TTL, с инвалидацией).
+     *
+     * @return null, если пользователь удалён (только при включённом PrincipalCache)
+     */
     public Authentication getAuthentication(String token) {
-        String username = getUsername(token);
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        Claims claims = verifiedClaims(token);
+        Long id = Long.valueOf(claims.get("id").toString());
+
+        Set<Role> roles;
+        if (principalCache.isEnabled()) {
+            Optional<Set<Role>> current = principalCache.getRoles(id);
+            if (current.isEmpty()) return null;
+            roles = current.get();
+        } else {
+            roles = rolesFromClaims(claims);
+        }
+
+        JwtEntity principal = new JwtEntity(id, null, claims.getSubject(), null, roles);
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+
+    private Set<Role> rolesFromClaims(Claims claims) {
+        Object raw = claims.get("roles");
+        if (!(raw instanceof Collection<?> names)) return Set.of();
+
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        for (Object name : names) {
+            try {
+                roles.add(Role.valueOf(name.toString()));
+            } catch (IllegalArgumentException ignored) {
+                // неизвестная роль в токене — пропускаем
+            }
+        }
+        return roles;
     }
 }
 //package org.example.nbauthservice.security;
@@ -1,16 +1,19 @@
 package org.example.nbauthservice.security;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.example.nbauthservice.entity.User;
 import org.example.nbauthservice.service.UserService;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class JwtUserDetailsService implements UserDetailsService {
+public class JwtUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
     private final UserService userService;
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -18,5 +21,16 @@ public class JwtUserDetailsService implements UserDetailsService {
         return JwtEntityFactory.generateUserDetails(user);
 
     }
-}
 
+    /**
+     * Вызывается DaoAuthenticationProvider после успешного логина,
+     * если passwordEncoder.upgradeEncoding(hash) == true — пароль уже перехеширован
+     * с текущей стоимостью, остаётся только сохранить.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userService.updatePasswordHash(userDetails.getUsername(), newPassword);
+        log.info("Rehashed password for user {} with current encoder settings", user.getId());
+        return JwtEntityFactory.generateUserDetails(user);
+    }
+}
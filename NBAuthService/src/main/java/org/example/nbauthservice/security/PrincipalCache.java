@@ -0,0 +1,102 @@
+package org.example.nbauthservice.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.entity.Role;
+import org.example.nbauthservice.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Опциональный short-TTL кэш «актуального» состояния пользователя для аутентификации.
+ *
+ * По умолчанию выключен: principal строится только из проверенных claims
+ * (id, sub, roles) — ноль запросов в БД на запрос.
+ *
+ * Если включён (security.auth.principal-cache.enabled=true), роли берутся из БД,
+ * но не чаще раза в TTL на пользователя — так отзыв роли / удаление пользователя
+ * вступает в силу до истечения 12-часового access token.
+ * UserService / EmailVerificationService вызывают invalidate() при изменении
+ * ролей или статуса верификации — следующий запрос перечитает БД сразу.
+ */
+@Component
+@Slf4j
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final int maxSize;
+
+    private final ConcurrentHashMap<Long, Entry> cache = new ConcurrentHashMap<>();
+
+    public PrincipalCache(UserRepository userRepository,
+                          @Value("${security.auth.principal-cache.enabled:false}") boolean enabled,
+                          @Value("${security.auth.principal-cache.ttl:60s}") Duration ttl,
+                          @Value("${security.auth.principal-cache.max-size:10000}") int maxSize) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.ttlMillis = ttl.toMillis();
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Актуальные роли пользователя (из кэша или БД).
+     *
+     * @return Optional.empty(), если пользователь удалён
+     */
+    public Optional<Set<Role>> getRoles(Long userId) {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(userId);
+        if (entry != null && entry.expiresAtMillis() > now) {
+            return Optional.ofNullable(entry.roles());
+        }
+
+        Set<Role> roles = userRepository.findById(userId)
+                .map(u -> Set.copyOf(u.getRoles()))
+                .orElse(null);
+
+        if (cache.size() >= maxSize) {
+            cache.entrySet().removeIf(e -> e.getValue().expiresAtMillis() <= now);
+            if (cache.size() >= maxSize) cache.clear();
+        }
+        cache.put(userId, new Entry(roles, now + ttlMillis));
+        return Optional.ofNullable(roles);
+    }
+
+    /**
+     * Вызывать при изменении ролей, верификации или удалении пользователя.
+     * Внутри транзакции запись сбрасывается ещё раз после commit — чтобы параллельный
+     * запрос не успел закэшировать старое состояние до фиксации изменений.
+     */
+    public void invalidate(Long userId) {
+        if (userId == null) return;
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    private void evict(Long userId) {
+        if (cache.remove(userId) != null) {
+            log.debug("Principal cache invalidated for user {}", userId);
+        }
+    }
+
+    private record Entry(Set<Role> roles, long expiresAtMillis) {}
+}
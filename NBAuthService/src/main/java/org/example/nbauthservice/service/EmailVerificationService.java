@@ -5,11 +5,11 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.example.nbauthservice.entity.User;
 import org.example.nbauthservice.entity.VerificationToken;
+import org.example.nbauthservice.notification.NotificationOutboxService;
 import org.example.nbauthservice.repository.UserRepository;
+import org.example.nbauthservice.security.PrincipalCache;
 import org.example.nbauthservice.repository.VerificationTokenRepository;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -19,13 +19,15 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class EmailVerificationService {
 
-    private final JavaMailSender mailSender;
+    private final NotificationOutboxService notificationOutbox;
     private final VerificationTokenRepository tokenRepository;
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
 
     @Value("${app.auth.base-url:http://localhost:8081}")
     private String authBaseUrl;
 
+    @Transactional
     public void sendVerificationEmail(User user) {
         String token = UUID.randomUUID().toString();
 
@@ -49,15 +51,13 @@ public class EmailVerificationService {
 
         String verificationUrl = authBaseUrl + "/api/v1/auth/verify-email?token=" + token;
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(user.getEmail());
-        message.setSubject("Verify your MessageMe account");
-        message.setText("Hello %s,\n\nPlease click the link to verify:\n%s\n\nExpires in 1 hour."
-                .formatted(user.getName(), verificationUrl));
-
-        mailSender.send(message);
-
-        // consequence: если SMTP-конфиг неверный, упадёт exception и юзер не получит письмо
+        // Письмо уходит через outbox: строка коммитится вместе с токеном,
+        // отправляет NotificationDispatcher — запрос не ждёт SMTP
+        notificationOutbox.enqueueEmail(
+                user.getEmail(),
+                "Verify your MessageMe account",
+                "Hello %s,\n\nPlease click the link to verify:\n%s\n\nExpires in 1 hour."
+                        .formatted(user.getName(), verificationUrl));
     }
 
     @Transactional
@@ -73,6 +73,7 @@ public class EmailVerificationService {
         User user = verificationToken.getUser();
         user.setEmailVerified(true);
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
 
         tokenRepository.delete(verificationToken);
         return "Email verified successfully for " + user.getEmail();
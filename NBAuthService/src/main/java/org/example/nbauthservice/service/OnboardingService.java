@@ -5,12 +5,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.nbauthservice.dto.OnboardingDTO;
 import org.example.nbauthservice.entity.User;
 import org.example.nbauthservice.entity.UserOnboarding;
+import org.example.nbauthservice.kafka.OnboardingEventPublisher;
 import org.example.nbauthservice.mapper.OnboardingMapper;
 import org.example.nbauthservice.repository.UserOnboardingRepository;
 import org.example.nbauthservice.repository.UserRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -19,6 +22,7 @@ public class OnboardingService {
     private final UserOnboardingRepository onboardingRepository;
     private final UserRepository userRepository;
     private final OnboardingMapper onboardingMapper;
+    private final OnboardingEventPublisher eventPublisher;
 
     /**
      * Создать или обновить онбординг для пользователя
@@ -55,6 +59,8 @@ public class OnboardingService {
         user.setOnboarded(true);
         userRepository.save(user);
 
+        eventPublisher.publishUpdated(onboarding, userId);
+
         log.info("Onboarding completed for user {}", userId);
         return onboardingMapper.toDto(onboarding);
     }
@@ -72,6 +78,17 @@ public class OnboardingService {
         return onboardingMapper.toDto(onboarding);
     }
 
+    /**
+     * Онбординг пачки пользователей одним запросом (service-to-service).
+     * Пользователи без онбординга в ответ не попадают.
+     */
+    @Transactional(readOnly = true)
+    public List<OnboardingDTO> getByUserIds(List<Long> userIds) {
+        return onboardingRepository.findAllByUserIdIn(userIds).stream()
+                .map(onboardingMapper::toDto)
+                .toList();
+    }
+
     /**
      * Проверить завершен ли онбординг
      */
@@ -99,6 +116,8 @@ public class OnboardingService {
         user.setOnboarded(false);
         userRepository.save(user);
 
+        eventPublisher.publishDeleted(userId);
+
         log.info("Onboarding deleted for user {}", userId);
     }
 
@@ -122,6 +141,8 @@ public class OnboardingService {
 
         onboarding = onboardingRepository.save(onboarding);
 
+        eventPublisher.publishUpdated(onboarding, userId);
+
         log.info("Onboarding partially updated for user {}", userId);
         return onboardingMapper.toDto(onboarding);
     }
@@ -2,33 +2,42 @@ package org.example.nbauthservice.service;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.example.nbauthservice.entity.User;
-import org.example.nbauthservice.exception.EntityNotFoundException;
+import org.example.nbauthservice.notification.NotificationOutboxService;
 import org.example.nbauthservice.repository.UserRepository;
+import org.example.nbauthservice.verification.VerificationCodeStore;
+import org.example.nbauthservice.verification.VerificationResult;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.security.SecureRandom;
+import java.time.Duration;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SmsVerificationService {
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     private final UserRepository userRepository;
-    private final SmsSender smsSender;
+    private final NotificationOutboxService notificationOutbox;
+    private final VerificationCodeStore codeStore;
 
-    private final Map<String, String> phoneCodeCache = new ConcurrentHashMap<>();
+    @Value("${verification.sms.code-ttl:10m}")
+    private Duration codeTtl;
 
 
+    @Transactional
     public void sendVerificationCode(User user) {
-        String code = String.format("%06d", new Random().nextInt(999999)); // шестизначный код
-        phoneCodeCache.put(user.getPhone(), code);
+        String code = String.format("%06d", RANDOM.nextInt(1_000_000)); // шестизначный код
+        codeStore.put(codeKey(user.getPhone()), code, codeTtl);
 
         String message = "Your MessageMe verification code: " + code;
-        smsSender.sendSms(user.getPhone(), message);
+        notificationOutbox.enqueueSms(user.getPhone(), message);
 
-        System.out.println("Verification code for " + user.getPhone() + ": " + code);
+        log.debug("Verification code queued for {}", user.getPhone());
     }
 
     /**
@@ -36,16 +45,23 @@ public class SmsVerificationService {
      */
     @Transactional
     public boolean verifyCode(String phone, String code) {
-        String cachedCode = phoneCodeCache.get(phone);
+        return verify(phone, code) == VerificationResult.VERIFIED;
+    }
 
-        if (cachedCode != null && cachedCode.equals(code)) {
+    @Transactional
+    public VerificationResult verify(String phone, String code) {
+        VerificationResult result = codeStore.verify(codeKey(phone), code);
+
+        if (result == VerificationResult.VERIFIED) {
             User user = userRepository.findByPhone(phone)
                     .orElseThrow(() -> new IllegalArgumentException("User not found with phone " + phone));
             user.setPhoneVerified(true);
             userRepository.save(user);
-            phoneCodeCache.remove(phone);
-            return true;
         }
-        return false;
+        return result;
+    }
+
+    private static String codeKey(String phone) {
+        return "sms:" + phone;
     }
-}
\ No newline at end of file
+}
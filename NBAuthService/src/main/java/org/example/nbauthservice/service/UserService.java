@@ -139,6 +139,11 @@ import org.example.nbauthservice.entity.Role;
 import org.example.nbauthservice.entity.User;
 import org.example.nbauthservice.exception.EntityNotFoundException;
 import org.example.nbauthservice.repository.UserRepository;
+import org.example.nbauthservice.search.UserSearchChangedEvent;
+import org.example.nbauthservice.search.UserSearchService;
+import org.example.nbauthservice.security.PrincipalCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -153,8 +158,16 @@ import java.util.Set;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    // ✅ ИСПРАВЛЕНО: Email service теперь НЕ ОБЯЗАТЕЛЕН
-    // private final EmailVerificationService emailVerificationService;
+    private final PrincipalCache principalCache;
+    // Email verification опциональна: письмо ставится в notification outbox
+    // в той же транзакции, регистрация не ждёт SMTP
+    private final EmailVerificationService emailVerificationService;
+    private final UserSearchService userSearchService;
+    // UserSearchChangedEvent → UserPrefixIndex (после коммита)
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.auth.email-verification.enabled:false}")
+    private boolean emailVerificationEnabled;
 
     @Transactional(readOnly = true)
     public User getById(Long id) {
@@ -175,6 +188,20 @@ public class UserService {
     @Transactional
     public User update(User user){
         user.setPassword(passwordEncoder.encode(user.getPassword()));
+        User saved = userRepository.save(user);
+        principalCache.invalidate(saved.getId());
+        eventPublisher.publishEvent(UserSearchChangedEvent.upserted(saved.getId(), saved.getUsername(), saved.getName()));
+        return saved;
+    }
+
+    /**
+     * Сохраняет уже захешированный пароль (перехеширование при логине:
+     * устаревшая стоимость bcrypt или хеш без префикса {id}).
+     */
+    @Transactional
+    public User updatePasswordHash(String username, String encodedPassword) {
+        User user = getByUsername(username);
+        user.setPassword(encodedPassword);
         return userRepository.save(user);
     }
 
@@ -195,8 +222,9 @@ public class UserService {
         if (existing.isPresent()) {
             User found = existing.get();
             if (!found.isEmailVerified()) {
-                // emailVerificationService.sendVerificationEmail(found);
-                System.out.println(">>> User exists but not verified. Email sending disabled.");
+                if (emailVerificationEnabled) {
+                    emailVerificationService.sendVerificationEmail(found);
+                }
                 return found;
             }
             throw new IllegalArgumentException("User already registered and verified.");
@@ -207,13 +235,15 @@ public class UserService {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         user.setRoles(Set.of(Role.USER));
 
-        user.setEmailVerified(true);  // Пропускаем email verification
+        user.setEmailVerified(!emailVerificationEnabled);  // выключено → пропускаем email verification
         user.setPhoneVerified(false);
 
         User saved = userRepository.save(user);
+        eventPublisher.publishEvent(UserSearchChangedEvent.upserted(saved.getId(), saved.getUsername(), saved.getName()));
 
-        // emailVerificationService.sendVerificationEmail(saved);
-        System.out.println(">>> User created successfully. Email verification disabled.");
+        if (emailVerificationEnabled) {
+            emailVerificationService.sendVerificationEmail(saved);
+        }
 
         return saved;
     }
@@ -226,6 +256,8 @@ public class UserService {
     @Transactional
     public void delete(Long userId) {
         userRepository.deleteById(userId);
+        principalCache.invalidate(userId);
+        eventPublisher.publishEvent(UserSearchChangedEvent.deleted(userId));
     }
 
     @Transactional
@@ -236,22 +268,13 @@ public class UserService {
         user.setEmailVerified(true);
         user.setPhoneVerified(true);
         userRepository.save(user);
+        principalCache.invalidate(user.getId());
 
         System.out.println(">>> User " + username + " manually verified");
     }
 
-    @Transactional(readOnly = true)
+    /** Typeahead: prefix-индекс в памяти + trigram/prefix индексы в БД (см. UserSearchService) */
     public List<UserShortDto> searchUsers(String query) {
-        return userRepository
-                .findTop20ByUsernameContainingIgnoreCase(query)
-                .stream()
-                .map(u -> {
-                    UserShortDto dto = new UserShortDto();
-                    dto.setId(u.getId());
-                    dto.setUsername(u.getUsername());
-                    dto.setName(u.getName());
-                    return dto;
-                })
-                .toList();
+        return userSearchService.search(query, 20);
     }
 }
\ No newline at end of file
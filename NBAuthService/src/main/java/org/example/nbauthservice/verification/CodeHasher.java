@@ -0,0 +1,31 @@
+package org.example.nbauthservice.verification;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Коды не хранятся в открытом виде: SHA-256(key:code), сравнение за константное время.
+ */
+final class CodeHasher {
+
+    private CodeHasher() {
+    }
+
+    static String hash(String key, String code) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest((key + ":" + code).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static boolean matches(String key, String code, String expectedHash) {
+        return MessageDigest.isEqual(
+                hash(key, code).getBytes(StandardCharsets.US_ASCII),
+                expectedHash.getBytes(StandardCharsets.US_ASCII));
+    }
+}
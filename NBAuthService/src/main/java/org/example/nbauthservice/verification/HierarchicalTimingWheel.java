@@ -0,0 +1,113 @@
+package org.example.nbauthservice.verification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Иерархическое колесо таймеров (Varghese &amp; Lauck): LEVELS уровней по 64 слота.
+ * Уровень i покрывает 64^(i+1) тиков; schedule — O(1), продвижение на тик — O(1)
+ * амортизированно (таймер каскадирует вниз не более LEVELS раз).
+ *
+ * Не потокобезопасно — вызывающий держит блокировку.
+ * Удаление ленивое: колесо лишь сообщает ключи, чей срок наступил,
+ * владелец сам сверяет актуальный expiry записи.
+ */
+final class HierarchicalTimingWheel<K> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final long MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<Timer<K>>[][] wheels;
+    private List<K> due = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.wheels = new List[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheels[level][slot] = new ArrayList<>();
+            }
+        }
+    }
+
+    void schedule(K key, long expiresAtMillis) {
+        long expiryTick = (expiresAtMillis + tickMillis - 1) / tickMillis;
+        place(new Timer<>(key, expiryTick));
+        size++;
+    }
+
+    /**
+     * Продвинуть колесо до nowMillis.
+     *
+     * @return ключи, чей срок наступил (возможны устаревшие — см. ленивое удаление)
+     */
+    List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<K> expired = due;
+        due = new ArrayList<>();
+
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            // Начало блока уровня → каскадируем его слот на уровни ниже
+            for (int level = 1; level < LEVELS; level++) {
+                long levelMask = (1L << (SLOT_BITS * level)) - 1;
+                if ((currentTick & levelMask) != 0) break;
+                int slot = (int) ((currentTick >> (SLOT_BITS * level)) & MASK);
+                List<Timer<K>> bucket = wheels[level][slot];
+                wheels[level][slot] = new ArrayList<>();
+                bucket.forEach(this::place);
+            }
+
+            int slot = (int) (currentTick & MASK);
+            List<Timer<K>> bucket = wheels[0][slot];
+            if (bucket.isEmpty()) continue;
+            wheels[0][slot] = new ArrayList<>();
+            for (Timer<K> timer : bucket) {
+                if (timer.expiryTick() <= currentTick) {
+                    expired.add(timer.key());
+                } else {
+                    place(timer);
+                }
+            }
+        }
+
+        expired.addAll(due);
+        due = new ArrayList<>();
+        size -= expired.size();
+        return expired;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(Timer<K> timer) {
+        long delta = timer.expiryTick() - currentTick;
+        if (delta <= 0) {
+            due.add(timer.key());
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            long span = 1L << (SLOT_BITS * (level + 1));
+            boolean top = level == LEVELS - 1;
+            if (delta < span || top) {
+                // Дальше горизонта верхнего уровня — паркуем на его краю, при каскаде разместится заново
+                long placeTick = delta < span ? timer.expiryTick() : currentTick + span - 1;
+                int slot = (int) ((placeTick >> (SLOT_BITS * level)) & MASK);
+                wheels[level][slot].add(timer);
+                return;
+            }
+        }
+    }
+
+    private record Timer<K>(K key, long expiryTick) {
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.nbauthservice.verification;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Коды в памяти одного инстанса (verification.code-store=memory) — для локального
+ * запуска и single-replica деплоя.
+ *
+ * Expiry — через HierarchicalTimingWheel: purgeExpired снимает с колеса только
+ * наступившие таймеры (O(1) на код), без сканирования всей map.
+ * verify сам проверяет expiresAt, так что корректность не зависит от частоты purge.
+ */
+@Component
+@ConditionalOnProperty(name = "verification.code-store", havingValue = "memory")
+public class InMemoryVerificationCodeStore implements VerificationCodeStore {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final HierarchicalTimingWheel<String> wheel;
+    private final int maxAttempts;
+
+    public InMemoryVerificationCodeStore(@Value("${verification.max-attempts:5}") int maxAttempts,
+                                         @Value("${verification.memory.wheel-tick:1s}") Duration wheelTick) {
+        this.maxAttempts = maxAttempts;
+        this.wheel = new HierarchicalTimingWheel<>(wheelTick.toMillis(), System.currentTimeMillis());
+    }
+
+    @Override
+    public void put(String key, String code, Duration ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        entries.put(key, new Entry(CodeHasher.hash(key, code), expiresAt, 0));
+        synchronized (wheel) {
+            wheel.schedule(key, expiresAt);
+        }
+    }
+
+    @Override
+    public VerificationResult verify(String key, String code) {
+        VerificationResult[] result = {VerificationResult.EXPIRED};
+        long now = System.currentTimeMillis();
+
+        entries.computeIfPresent(key, (k, entry) -> {
+            if (entry.expiresAt() <= now) {
+                result[0] = VerificationResult.EXPIRED;
+                return null;
+            }
+            if (CodeHasher.matches(k, code, entry.codeHash())) {
+                result[0] = VerificationResult.VERIFIED;
+                return null;
+            }
+            int attempts = entry.attempts() + 1;
+            if (attempts >= maxAttempts) {
+                result[0] = VerificationResult.TOO_MANY_ATTEMPTS;
+                return null;
+            }
+            result[0] = VerificationResult.INVALID_CODE;
+            return new Entry(entry.codeHash(), entry.expiresAt(), attempts);
+        });
+        return result[0];
+    }
+
+    @Override
+    public int purgeExpired(Instant now, int batchSize) {
+        // Колесо отдаёт всё наступившее за один advance — batchSize здесь не нужен
+        long nowMillis = now.toEpochMilli();
+        List<String> due;
+        synchronized (wheel) {
+            due = wheel.advance(nowMillis);
+        }
+
+        // Ленивое удаление: ключ мог быть перезаписан новым кодом с более поздним expiry
+        int removed = 0;
+        for (String key : due) {
+            Entry before = entries.get(key);
+            if (before != null && before.expiresAt() <= nowMillis && entries.remove(key, before)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private record Entry(String codeHash, long expiresAt, int attempts) {
+    }
+}
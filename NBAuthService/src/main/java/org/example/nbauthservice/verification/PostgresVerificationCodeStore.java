@@ -0,0 +1,75 @@
+package org.example.nbauthservice.verification;
+
+import lombok.RequiredArgsConstructor;
+import org.example.nbauthservice.entity.VerificationCode;
+import org.example.nbauthservice.repository.VerificationCodeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Коды в таблице verification_codes — общие для всех реплик NBAuthService.
+ * Проверка идёт под SELECT ... FOR UPDATE, так что счётчик попыток
+ * не обходится параллельными запросами.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "verification.code-store", havingValue = "postgres", matchIfMissing = true)
+public class PostgresVerificationCodeStore implements VerificationCodeStore {
+
+    private final VerificationCodeRepository repository;
+
+    @Value("${verification.max-attempts:5}")
+    private int maxAttempts;
+
+    @Override
+    @Transactional
+    public void put(String key, String code, Duration ttl) {
+        Instant now = Instant.now();
+        repository.save(VerificationCode.builder()
+                .key(key)
+                .codeHash(CodeHasher.hash(key, code))
+                .expiresAt(now.plus(ttl))
+                .attempts(0)
+                .createdAt(now)
+                .build());
+    }
+
+    @Override
+    @Transactional
+    public VerificationResult verify(String key, String code) {
+        Optional<VerificationCode> found = repository.findForUpdate(key);
+        if (found.isEmpty()) {
+            return VerificationResult.EXPIRED;
+        }
+
+        VerificationCode stored = found.get();
+        if (!stored.getExpiresAt().isAfter(Instant.now())) {
+            repository.delete(stored);
+            return VerificationResult.EXPIRED;
+        }
+        if (CodeHasher.matches(key, code, stored.getCodeHash())) {
+            repository.delete(stored);
+            return VerificationResult.VERIFIED;
+        }
+
+        stored.setAttempts(stored.getAttempts() + 1);
+        if (stored.getAttempts() >= maxAttempts) {
+            repository.delete(stored);
+            return VerificationResult.TOO_MANY_ATTEMPTS;
+        }
+        repository.save(stored);
+        return VerificationResult.INVALID_CODE;
+    }
+
+    @Override
+    @Transactional
+    public int purgeExpired(Instant now, int batchSize) {
+        return repository.deleteExpiredBatch(now, batchSize);
+    }
+}
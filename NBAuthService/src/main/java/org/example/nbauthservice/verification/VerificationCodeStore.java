@@ -0,0 +1,32 @@
+package org.example.nbauthservice.verification;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Хранилище одноразовых кодов подтверждения (SMS и т.п.) с TTL и счётчиком попыток.
+ *
+ * Реализации:
+ *  - PostgresVerificationCodeStore — общая таблица, работает при нескольких репликах (по умолчанию);
+ *  - InMemoryVerificationCodeStore — один инстанс, expiry через hierarchical timing wheel.
+ * Выбор: verification.code-store=postgres|memory.
+ */
+public interface VerificationCodeStore {
+
+    /**
+     * Сохранить (или перезаписать) код для ключа — предыдущий код и счётчик попыток сбрасываются.
+     */
+    void put(String key, String code, Duration ttl);
+
+    /**
+     * Проверить код. Успех и исчерпание попыток удаляют код.
+     */
+    VerificationResult verify(String key, String code);
+
+    /**
+     * Удалить до batchSize истёкших кодов.
+     *
+     * @return сколько удалено; меньше batchSize — истёкших больше нет
+     */
+    int purgeExpired(Instant now, int batchSize);
+}
@@ -0,0 +1,62 @@
+package org.example.nbauthservice.verification;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbauthservice.repository.VerificationTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Периодическая очистка истёкших email-токенов и SMS-кодов.
+ * Удаляем пачками по batch-size, каждая пачка — своя короткая транзакция,
+ * чтобы не держать долгие блокировки на verification_token / verification_codes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VerificationPurgeJob {
+
+    private final VerificationTokenRepository tokenRepository;
+    private final VerificationCodeStore codeStore;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${verification.purge.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${verification.purge.interval:5m}",
+            initialDelayString = "${verification.purge.initial-delay:1m}")
+    public void purge() {
+        int tokens = purgeEmailTokens();
+        int codes = purgeCodes();
+        if (tokens + codes > 0) {
+            log.info("Purged {} expired email tokens and {} expired verification codes", tokens, codes);
+        }
+    }
+
+    private int purgeEmailTokens() {
+        int total = 0;
+        int removed;
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            Integer batch = transactionTemplate.execute(status -> tokenRepository.deleteExpiredBatch(now, batchSize));
+            removed = batch == null ? 0 : batch;
+            total += removed;
+        } while (removed >= batchSize);
+        return total;
+    }
+
+    private int purgeCodes() {
+        int total = 0;
+        int removed;
+        do {
+            removed = codeStore.purgeExpired(Instant.now(), batchSize);
+            total += removed;
+        } while (removed >= batchSize);
+        return total;
+    }
+}
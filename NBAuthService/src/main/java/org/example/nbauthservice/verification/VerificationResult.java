@@ -0,0 +1,10 @@
+package org.example.nbauthservice.verification;
+
+public enum VerificationResult {
+    VERIFIED,
+    INVALID_CODE,
+    /** Кода нет или истёк TTL */
+    EXPIRED,
+    /** Лимит попыток исчерпан — код удалён, нужно запросить новый */
+    TOO_MANY_ATTEMPTS
+}
@@ -0,0 +1,13 @@
+-- Индексы для /api/v1/users/search (UserSearchService).
+-- Выполняется на старте SearchIndexInitializer (search.db-indexes.init-on-startup=true),
+-- каждый statement идемпотентен. CONCURRENTLY — не блокирует запись в users на большой таблице.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Подстрока (q >= 3 символов): lower(col) LIKE '%q%' → GIN trigram bitmap scan вместо seq scan
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_trgm ON users USING gin (lower(username) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_name_trgm ON users USING gin (lower(name) gin_trgm_ops);
+
+-- Префикс (q < 3 символов, триграммы не помогают): lower(col) LIKE 'q%' → btree range scan
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_username_prefix ON users (lower(username) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_users_name_prefix ON users (lower(name) text_pattern_ops);
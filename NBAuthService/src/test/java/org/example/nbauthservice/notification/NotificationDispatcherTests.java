@@ -0,0 +1,170 @@
+package org.example.nbauthservice.notification;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.nbauthservice.entity.NotificationChannel;
+import org.example.nbauthservice.entity.NotificationOutbox;
+import org.example.nbauthservice.entity.NotificationStatus;
+import org.example.nbauthservice.repository.NotificationOutboxRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * notification_outbox: enqueue → NotificationDispatcher → LocalNotificationTransport,
+ * статусы после отправки и затирание body (SMS-код) у SENT / FAILED строк.
+ * Репозиторий — in-memory мок, транзакции — мок PlatformTransactionManager.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class NotificationDispatcherTests {
+
+    private final List<NotificationOutbox> rows = new CopyOnWriteArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private NotificationOutboxRepository repository;
+    private NotificationDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(NotificationOutboxRepository.class);
+        when(repository.save(any(NotificationOutbox.class))).thenAnswer(inv -> {
+            NotificationOutbox row = inv.getArgument(0);
+            row.setId(ids.incrementAndGet());
+            rows.add(row);
+            return row;
+        });
+        when(repository.saveAll(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(repository.lockDueBatch(anyString(), any(LocalDateTime.class), anyInt())).thenAnswer(inv -> {
+            String channel = inv.getArgument(0);
+            LocalDateTime now = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            return rows.stream()
+                    .filter(n -> n.getChannel().name().equals(channel))
+                    .filter(n -> n.getStatus() == NotificationStatus.PENDING && !n.getNextAttemptAt().isAfter(now))
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) dispatcher.shutdown();
+    }
+
+    @Test
+    void localTransportDeliversSmsAndSentRowIsRedacted() {
+        LocalNotificationTransport transport = new LocalNotificationTransport();
+        dispatcher = dispatcher(transport, 6);
+        NotificationOutboxService outbox = new NotificationOutboxService(repository, dispatcher);
+
+        outbox.enqueueSms("+77010000000", "Ваш код подтверждения: 482913");
+        outbox.enqueueEmail("a@example.com", "Verify", "https://example.com/verify?token=abc");
+        dispatcher.poll();
+
+        await(() -> rows.stream().allMatch(n -> n.getStatus() == NotificationStatus.SENT
+                && NotificationDispatcher.REDACTED_BODY.equals(n.getBody())));
+
+        assertEquals(2, transport.getDelivered().size());
+        LocalNotificationTransport.Delivered sms = transport.getDelivered().stream()
+                .filter(d -> d.channel() == NotificationChannel.SMS)
+                .findFirst().orElseThrow();
+        assertEquals("+77010000000", sms.recipient());
+        assertEquals("Ваш код подтверждения: 482913", sms.body());
+
+        for (NotificationOutbox row : rows) {
+            assertEquals(NotificationDispatcher.REDACTED_BODY, row.getBody());
+            assertEquals(1, row.getAttempts());
+            assertNotNull(row.getSentAt());
+            assertNull(row.getLockedUntil());
+        }
+    }
+
+    @Test
+    void failedAttemptKeepsBodyForRetryAndFinalFailureRedactsIt() {
+        FailingTransport transport = new FailingTransport();
+        dispatcher = dispatcher(transport, 2);
+        NotificationOutboxService outbox = new NotificationOutboxService(repository, dispatcher);
+
+        NotificationOutbox row = outbox.enqueue(NotificationChannel.SMS, "+77010000000", null, "код 123456");
+        dispatcher.wakeUp(NotificationChannel.SMS);
+        await(() -> row.getAttempts() == 1 && row.getStatus() == NotificationStatus.PENDING
+                && row.getLastError() != null);
+
+        assertEquals("код 123456", row.getBody());
+        assertEquals("twilio down", row.getLastError());
+
+        // base-backoff = 0: повтор сразу; wakeUp повторяем, пока прошлый слив не отпустит канал
+        await(() -> {
+            dispatcher.wakeUp(NotificationChannel.SMS);
+            return row.getStatus() == NotificationStatus.FAILED
+                    && NotificationDispatcher.REDACTED_BODY.equals(row.getBody());
+        });
+
+        assertEquals(2, row.getAttempts());
+        assertEquals(NotificationDispatcher.REDACTED_BODY, row.getBody());
+        assertEquals(2, transport.calls);
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private NotificationDispatcher dispatcher(NotificationTransport transport, int maxAttempts) {
+        return new NotificationDispatcher(repository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new SimpleMeterRegistry(), List.of(transport),
+                50, maxAttempts, Duration.ZERO, Duration.ZERO, Duration.ofMinutes(2), Duration.ofDays(7),
+                1_000, 1_000);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not reached in 5s");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static final class FailingTransport implements NotificationTransport {
+        volatile int calls;
+
+        @Override
+        public Set<NotificationChannel> channels() {
+            return EnumSet.of(NotificationChannel.SMS);
+        }
+
+        @Override
+        public Map<Long, Exception> sendBatch(NotificationChannel channel, List<NotificationOutbox> batch,
+                                             Throttle throttle) {
+            calls++;
+            return batch.stream().collect(Collectors.toMap(NotificationOutbox::getId,
+                    n -> new IllegalStateException("twilio down")));
+        }
+    }
+}
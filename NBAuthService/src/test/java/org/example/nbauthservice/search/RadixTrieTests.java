@@ -0,0 +1,133 @@
+package org.example.nbauthservice.search;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * RadixTrie: разрез и склейка рёбер, порядок findByPrefix по длине ключа,
+ * случайные insert / remove против brute-force по map.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class RadixTrieTests {
+
+    @Test
+    void splitsEdgesAndFindsByPrefixShortestFirst() {
+        RadixTrie trie = new RadixTrie();
+        trie.insert("anna", 1);
+        trie.insert("annabel", 2);
+        trie.insert("ann", 3);
+        trie.insert("arman", 4);
+        trie.insert("anna", 5);
+
+        assertEquals(4, trie.keyCount());
+        assertEquals(List.of("ann", "anna", "anna", "annabel"), keys(trie.findByPrefix("an", 10)));
+        assertEquals(List.of("ann", "anna"), keys(trie.findByPrefix("an", 2)));
+        assertEquals(List.of("arman"), keys(trie.findByPrefix("ar", 10)));
+        assertEquals(List.of(), trie.findByPrefix("anx", 10));
+        assertEquals(List.of(), trie.findByPrefix("annabelle", 10));
+        assertEquals(5, trie.findByPrefix("", 10).size());
+    }
+
+    @Test
+    void removeMergesEdgesAndKeepsOtherIds() {
+        RadixTrie trie = new RadixTrie();
+        trie.insert("anna", 1);
+        trie.insert("anna", 2);
+        trie.insert("annabel", 3);
+
+        trie.remove("anna", 1);
+        assertEquals(2, trie.keyCount());
+        assertEquals(Set.of(2L, 3L), ids(trie.findByPrefix("ann", 10)));
+
+        trie.remove("anna", 2);
+        assertEquals(1, trie.keyCount());
+        assertEquals(List.of("annabel"), keys(trie.findByPrefix("anna", 10)));
+
+        trie.remove("annabel", 99);   // чужой id — без изменений
+        trie.remove("missing", 3);
+        assertEquals(1, trie.keyCount());
+
+        trie.remove("annabel", 3);
+        assertEquals(0, trie.keyCount());
+        assertEquals(List.of(), trie.findByPrefix("", 10));
+    }
+
+    @Test
+    void randomOperationsMatchBruteForce() {
+        Random random = new Random(42);
+        RadixTrie trie = new RadixTrie();
+        Map<String, Set<Long>> expected = new HashMap<>();
+        String alphabet = "abcд";
+
+        for (int op = 0; op < 20_000; op++) {
+            String key = randomKey(random, alphabet);
+            long id = random.nextInt(20);
+            Set<Long> ids = expected.computeIfAbsent(key, k -> new HashSet<>());
+            if (random.nextInt(3) > 0) {
+                if (ids.add(id)) trie.insert(key, id);
+            } else {
+                ids.remove(id);
+                trie.remove(key, id);
+            }
+            if (ids.isEmpty()) expected.remove(key);
+
+            if (op % 50 == 0) {
+                assertEquals(expected.size(), trie.keyCount());
+                String key2 = randomKey(random, alphabet);
+                String prefix = key2.substring(0, Math.min(key2.length(), random.nextInt(3)));
+                int limit = 1 + random.nextInt(15);
+                assertPrefixResult(expected, prefix, limit, trie.findByPrefix(prefix, limit));
+            }
+        }
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private static void assertPrefixResult(Map<String, Set<Long>> expected, String prefix, int limit,
+                                           List<RadixTrie.Match> actual) {
+        List<Integer> lengths = new ArrayList<>();
+        expected.forEach((key, ids) -> {
+            if (key.startsWith(prefix)) ids.forEach(id -> lengths.add(key.length()));
+        });
+        lengths.sort(Comparator.naturalOrder());
+        List<Integer> expectedLengths = lengths.subList(0, Math.min(limit, lengths.size()));
+
+        assertEquals(expectedLengths, actual.stream().map(m -> m.key().length()).toList(),
+                "prefix '" + prefix + "' limit " + limit);
+        for (RadixTrie.Match m : actual) {
+            assertTrue(m.key().startsWith(prefix));
+            assertTrue(expected.getOrDefault(m.key(), Set.of()).contains(m.id()), "stale match " + m);
+        }
+        assertEquals(actual.size(), new HashSet<>(actual).size(), "duplicate match");
+    }
+
+    private static String randomKey(Random random, String alphabet) {
+        int length = 1 + random.nextInt(6);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+
+    private static List<String> keys(List<RadixTrie.Match> matches) {
+        return matches.stream().map(RadixTrie.Match::key).toList();
+    }
+
+    private static Set<Long> ids(List<RadixTrie.Match> matches) {
+        Set<Long> ids = new HashSet<>();
+        matches.forEach(m -> ids.add(m.id()));
+        return ids;
+    }
+}
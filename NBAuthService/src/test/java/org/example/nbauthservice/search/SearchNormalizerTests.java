@@ -0,0 +1,51 @@
+package org.example.nbauthservice.search;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * SearchNormalizer: снятие диакритики для UserPrefixIndex и lower-case без снятия
+ * диакритики для SQL-пути (lower(col) в PostgreSQL).
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class SearchNormalizerTests {
+
+    @Test
+    void normalizeStripsMarksAndLowerCases() {
+        assertEquals("elodie", SearchNormalizer.normalize("  Élodie "));
+        assertEquals("алена", SearchNormalizer.normalize("Алёна"));
+        assertEquals("андреи", SearchNormalizer.normalize("Андрей"));
+        assertEquals("ulken", SearchNormalizer.normalize("Ülken"));
+        assertEquals("", SearchNormalizer.normalize(null));
+        assertEquals("", SearchNormalizer.normalize("   "));
+    }
+
+    @Test
+    void lowerCaseKeepsMarksLikePostgresLower() {
+        assertEquals("андрей", SearchNormalizer.lowerCase("Андрей"));
+        assertEquals("алёна", SearchNormalizer.lowerCase(" Алёна "));
+        assertEquals("élodie", SearchNormalizer.lowerCase("Élodie"));
+        assertEquals("", SearchNormalizer.lowerCase(null));
+    }
+
+    @Test
+    void lowerCaseComposesDecomposedInput() {
+        // macOS-клавиатуры присылают "й" как "и" + U+0306 — в БД хранится составной символ
+        String decomposed = Normalizer.normalize("Андрей", Normalizer.Form.NFD);
+        assertEquals(SearchNormalizer.lowerCase("Андрей"), SearchNormalizer.lowerCase(decomposed));
+    }
+
+    @Test
+    void nameTokensSplitOnSpacesAndPunctuationWithoutDuplicates() {
+        assertEquals(List.of("anna", "maria", "smith"), SearchNormalizer.nameTokens("Anna-Maria  Smith"));
+        assertEquals(List.of("ким"), SearchNormalizer.nameTokens("Ким Ким"));
+        assertEquals(List.of("o", "brien"), SearchNormalizer.nameTokens("O'Brien"));
+        assertEquals(List.of(), SearchNormalizer.nameTokens(null));
+    }
+}
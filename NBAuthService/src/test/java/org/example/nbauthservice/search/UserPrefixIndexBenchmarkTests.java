@@ -0,0 +1,101 @@
+package org.example.nbauthservice.search;
+
+import org.example.nbauthservice.dto.UserShortDto;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Латентность typeahead-поиска по UserPrefixIndex на 1M синтетических пользователей.
+ * Запуск: mvn -Pbenchmark test
+ *
+ * Trigram-путь (UserRepository.searchBySubstring) здесь не меряется —
+ * ему нужен реальный PostgreSQL с pg_trgm (EXPLAIN ANALYZE на стенде).
+ */
+@Tag("benchmark")
+class UserPrefixIndexBenchmarkTests {
+
+    private static final int USERS = 1_000_000;
+    private static final int QUERIES = 20_000;
+    private static final int WARMUP = 5_000;
+    private static final long P99_LIMIT_NANOS = 5_000_000L;   // 5 ms
+
+    private static final String[] FIRST_NAMES = {
+            "Aigerim", "Alexander", "Anna", "Arman", "Daniyar", "Dmitry", "Elena", "Zhanna",
+            "Ivan", "Kamila", "Maria", "Nursultan", "Olga", "Sergey", "Timur", "Ülken",
+            "Алия", "Максим", "Наталья", "Ерлан"
+    };
+    private static final String[] LAST_NAMES = {
+            "Abenov", "Ivanova", "Petrov", "Smirnova", "Kuznetsov", "Nurlanov", "Sokolova",
+            "Омаров", "Ким", "Zhaksylykov", "Müller", "Lee"
+    };
+
+    private static UserPrefixIndex index;
+    private static final Random random = new Random(42);
+
+    @BeforeAll
+    static void buildIndex() {
+        index = new UserPrefixIndex(null, null, true);
+        long start = System.currentTimeMillis();
+        for (long id = 1; id <= USERS; id++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String username = first.toLowerCase() + "_" + Long.toString(id * 7919L, 36);
+            index.onUserChanged(UserSearchChangedEvent.upserted(id, username, first + " " + last));
+        }
+        System.out.printf("UserPrefixIndex: %d users built in %d ms%n",
+                index.size(), System.currentTimeMillis() - start);
+    }
+
+    @Test
+    void prefixSearchP99UnderLimit() {
+        for (int i = 0; i < WARMUP; i++) {
+            index.search(randomQuery(), 20);
+        }
+
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String q = randomQuery();
+            long t0 = System.nanoTime();
+            List<UserShortDto> result = index.search(q, 20);
+            latencies[i] = System.nanoTime() - t0;
+            assertTrue(result.size() <= 20);
+        }
+        Arrays.sort(latencies);
+
+        long p50 = latencies[QUERIES / 2];
+        long p99 = latencies[(int) (QUERIES * 0.99)];
+        System.out.printf("UserPrefixIndex search: p50=%.3f ms, p99=%.3f ms, max=%.3f ms%n",
+                p50 / 1e6, p99 / 1e6, latencies[QUERIES - 1] / 1e6);
+
+        assertTrue(p99 < P99_LIMIT_NANOS, "p99 " + p99 / 1e6 + " ms exceeds " + P99_LIMIT_NANOS / 1e6 + " ms");
+    }
+
+    @Test
+    void exactUsernameRanksFirst() {
+        String username = "alexander_" + Long.toString(777L * 7919L, 36);
+        index.onUserChanged(UserSearchChangedEvent.upserted(777L, username, "Alexander Petrov"));
+
+        List<UserShortDto> result = index.search(username, 20);
+        assertEquals(777L, result.get(0).getId());
+    }
+
+    /** Префиксы длиной 1–6 символов: username, имя, фамилия */
+    private static String randomQuery() {
+        String source = switch (random.nextInt(3)) {
+            case 0 -> FIRST_NAMES[random.nextInt(FIRST_NAMES.length)].toLowerCase()
+                    + "_" + Long.toString((1 + random.nextInt(USERS)) * 7919L, 36);
+            case 1 -> FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            default -> LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        };
+        int len = 1 + random.nextInt(Math.min(6, source.length()));
+        return source.substring(0, len);
+    }
+}
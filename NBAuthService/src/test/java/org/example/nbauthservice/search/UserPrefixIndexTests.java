@@ -0,0 +1,87 @@
+package org.example.nbauthservice.search;
+
+import org.example.nbauthservice.dto.UserShortDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserPrefixIndex: ранжирование, поиск без учёта диакритики, применение
+ * UserSearchChangedEvent (создание, переименование, удаление).
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class UserPrefixIndexTests {
+
+    private UserPrefixIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new UserPrefixIndex(null, null, true);
+        upsert(1, "anna", "Anna Smith");
+        upsert(2, "annabel_k", "Annabel Kim");
+        upsert(3, "ivan", "Анна Петрова");
+        upsert(4, "andrey", "Андрей Ёлкин");
+        upsert(5, "elodie", "Élodie Müller");
+    }
+
+    @Test
+    void ranksExactUsernameThenUsernamePrefixThenNameToken() {
+        assertEquals(List.of(1L, 2L), ids(index.search("anna", 10)));
+        assertEquals(List.of(1L, 4L, 2L), ids(index.search("an", 10)));
+        assertEquals(List.of(3L), ids(index.search("анна", 10)));
+        assertEquals(List.of(1L), ids(index.search("an", 1)));
+    }
+
+    @Test
+    void matchesWithoutDiacriticsOnBothSides() {
+        assertEquals(List.of(4L), ids(index.search("Андрей", 10)));
+        assertEquals(List.of(4L), ids(index.search("андреи", 10)));
+        assertEquals(List.of(4L), ids(index.search("елкин", 10)));
+        assertEquals(List.of(5L), ids(index.search("muller", 10)));
+        assertEquals(List.of(5L), ids(index.search("ÉLO", 10)));
+    }
+
+    @Test
+    void renameAndDeleteUpdateTheIndex() {
+        upsert(1, "hanna", "Hanna Smith");
+        assertEquals(List.of(2L), ids(index.search("anna", 10)));
+        assertEquals(List.of(1L), ids(index.search("hann", 10)));
+        assertEquals(List.of(1L), ids(index.search("smith", 10)));
+
+        index.onUserChanged(UserSearchChangedEvent.deleted(2L));
+        assertEquals(List.of(), ids(index.search("annab", 10)));
+        assertEquals(4, index.size());
+
+        UserShortDto dto = index.search("hanna", 1).get(0);
+        assertEquals("hanna", dto.getUsername());
+        assertEquals("Hanna Smith", dto.getName());
+    }
+
+    @Test
+    void notReadyUntilRebuiltAndIgnoresEventsWhenDisabled() {
+        assertFalse(index.isReady(), "events alone do not make the index ready");
+
+        UserPrefixIndex disabled = new UserPrefixIndex(null, null, false);
+        disabled.onUserChanged(UserSearchChangedEvent.upserted(1L, "anna", "Anna"));
+        assertEquals(0, disabled.size());
+        assertFalse(disabled.isReady());
+        assertTrue(disabled.search("anna", 10).isEmpty());
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private void upsert(long id, String username, String name) {
+        index.onUserChanged(UserSearchChangedEvent.upserted(id, username, name));
+    }
+
+    private static List<Long> ids(List<UserShortDto> results) {
+        return results.stream().map(UserShortDto::getId).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.nbauthservice.search;
+
+import org.example.nbauthservice.dto.UserShortDto;
+import org.example.nbauthservice.entity.User;
+import org.example.nbauthservice.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * UserSearchService, SQL-путь: запрос в БД сравнивается с lower(col) —
+ * диакритика сохраняется ("Андрей" → "андрей", а не "андреи"), LIKE-символы экранируются.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class UserSearchServiceTests {
+
+    private UserRepository userRepository;
+    private UserSearchService service;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        service = new UserSearchService(userRepository, new UserPrefixIndex(null, null, false));
+    }
+
+    @Test
+    void substringQueryKeepsDiacriticsForLowerColumnMatch() {
+        User andrey = user(4L, "andrey", "Андрей Ёлкин");
+        when(userRepository.searchBySubstring("андрей", "%андрей%", "андрей%", 20)).thenReturn(List.of(andrey));
+
+        List<UserShortDto> results = service.search(" Андрей ", 0);
+
+        assertEquals(1, results.size());
+        assertEquals(4L, results.get(0).getId());
+        verify(userRepository, never()).searchBySubstring("андреи", "%андреи%", "андреи%", 20);
+    }
+
+    @Test
+    void shortQueryUsesPrefixSearch() {
+        when(userRepository.searchByPrefix("ёл", "ёл%", 5)).thenReturn(List.of(user(4L, "andrey", "Ёлкин")));
+
+        assertEquals(1, service.search("Ёл", 5).size());
+        verify(userRepository, never()).searchBySubstring(anyString(), anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void likeMetacharactersAreEscaped() {
+        service.search("a_b%c!", 10);
+
+        verify(userRepository).searchBySubstring("a_b%c!", "%a!_b!%c!!%", "a!_b!%c!!%", 10);
+    }
+
+    @Test
+    void blankQueryDoesNotHitTheDatabase() {
+        assertEquals(List.of(), service.search("   ", 10));
+        verify(userRepository, never()).searchByPrefix(anyString(), anyString(), anyInt());
+        verify(userRepository, never()).searchBySubstring(anyString(), anyString(), anyString(), anyInt());
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private static User user(Long id, String username, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setName(name);
+        return user;
+    }
+}
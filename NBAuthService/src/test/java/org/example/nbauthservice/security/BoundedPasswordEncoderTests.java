@@ -0,0 +1,145 @@
+package org.example.nbauthservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.nbauthservice.exception.PasswordHashingBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BoundedPasswordEncoder: bcrypt на отдельном пуле, отказ при полной очереди (429)
+ * и по таймауту (503), перехеширование хешей с устаревшей стоимостью.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class BoundedPasswordEncoderTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<BoundedPasswordEncoder> encoders = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        encoders.forEach(BoundedPasswordEncoder::close);
+    }
+
+    @Test
+    void encodesAndMatchesOnThePool() {
+        BoundedPasswordEncoder encoder = bounded(bcrypt(4), 2, 8, Duration.ofSeconds(5));
+
+        String hash = encoder.encode("s3cret");
+        assertTrue(hash.startsWith("{bcrypt}$2a$04$"), hash);
+        assertTrue(encoder.matches("s3cret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(3, meterRegistry.get("password.hash").tag("op", "matches").timer().count()
+                + meterRegistry.get("password.hash").tag("op", "encode").timer().count());
+    }
+
+    @Test
+    void legacyAndCheaperHashesMatchAndAskForUpgrade() {
+        BoundedPasswordEncoder encoder = bounded(bcrypt(6), 1, 4, Duration.ofSeconds(5));
+        String legacy = new BCryptPasswordEncoder(4).encode("s3cret");
+
+        assertTrue(encoder.matches("s3cret", legacy), "hash without {id} prefix is checked as bcrypt");
+        assertTrue(encoder.upgradeEncoding(legacy));
+        assertTrue(encoder.upgradeEncoding("{bcrypt}" + legacy));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("s3cret")));
+    }
+
+    @Test
+    void fullQueueIsRejectedImmediately() throws Exception {
+        BlockingEncoder blocking = new BlockingEncoder();
+        BoundedPasswordEncoder encoder = bounded(blocking, 1, 1, Duration.ofSeconds(5));
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        assertTrue(blocking.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        awaitQueueDepth(1);
+
+        PasswordHashingBusyException e = assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("c"));
+        assertTrue(e.isQueueFull());
+        assertEquals(1.0, meterRegistry.get("password.hash.rejected").tag("reason", "queue_full").counter().count());
+
+        blocking.release.countDown();
+        assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void slowHashTimesOut() throws Exception {
+        BlockingEncoder blocking = new BlockingEncoder();
+        BoundedPasswordEncoder encoder = bounded(blocking, 1, 1, Duration.ofMillis(50));
+
+        PasswordHashingBusyException e = assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("a"));
+        assertFalse(e.isQueueFull());
+        assertEquals(1.0, meterRegistry.get("password.hash.rejected").tag("reason", "timeout").counter().count());
+
+        // Таймаут отменяет задачу: воркер свободен для следующей
+        blocking.release.countDown();
+        assertEquals("hash:b", encoder.encode("b"));
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private BoundedPasswordEncoder bounded(PasswordEncoder delegate, int poolSize, int queueCapacity,
+                                           Duration timeout) {
+        BoundedPasswordEncoder encoder =
+                new BoundedPasswordEncoder(delegate, poolSize, queueCapacity, timeout, meterRegistry);
+        encoders.add(encoder);
+        return encoder;
+    }
+
+    /** Как в ApplicationConfig.passwordEncoder */
+    private static PasswordEncoder bcrypt(int strength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegating;
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("password.hash.queue.depth").gauge().value() < depth) {
+            if (System.nanoTime() > deadline) throw new AssertionError("task was not queued");
+            Thread.sleep(5);
+        }
+    }
+
+    /** Хеш, который ждёт release — держит воркер пула занятым */
+    private static final class BlockingEncoder implements PasswordEncoder {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
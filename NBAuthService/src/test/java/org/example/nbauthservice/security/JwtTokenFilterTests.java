@@ -0,0 +1,130 @@
+package org.example.nbauthservice.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.nbauthservice.entity.Role;
+import org.example.nbauthservice.entity.User;
+import org.example.nbauthservice.repository.UserRepository;
+import org.example.nbauthservice.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * JwtTokenFilter: повторные аутентифицированные запросы не ходят в БД —
+ * principal собирается из claims, UserRepository / UserService не вызываются.
+ * С включённым PrincipalCache — один запрос на пользователя за TTL.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class JwtTokenFilterTests {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+    private static final int REQUESTS = 50;
+    private static final long USER_ID = 11L;
+
+    private UserRepository userRepository;
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        userService = mock(UserService.class);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void repeatedAuthenticatedRequestsIssueNoDatabaseQueries() throws Exception {
+        JwtTokenProvider provider = provider(false);
+        JwtTokenFilter filter = new JwtTokenFilter(provider);
+        String token = provider.createAccessToken(user());
+
+        for (int i = 0; i < REQUESTS; i++) {
+            Authentication auth = authenticate(filter, token);
+            assertNotNull(auth, "request " + i + " must be authenticated");
+            JwtEntity principal = (JwtEntity) auth.getPrincipal();
+            assertEquals(USER_ID, principal.getId());
+            assertEquals("alice", principal.getUsername());
+            assertEquals(Set.of(Role.USER, Role.ADMIN), Set.copyOf(principal.getAuthorities()));
+        }
+
+        verifyNoInteractions(userRepository, userService);
+    }
+
+    @Test
+    void principalCacheReadsRolesOncePerTtl() throws Exception {
+        User user = user();
+        user.setRoles(Set.of(Role.USER));
+        when(userRepository.findById(USER_ID)).thenReturn(Optional.of(user));
+
+        JwtTokenProvider provider = provider(true);
+        JwtTokenFilter filter = new JwtTokenFilter(provider);
+        String token = provider.createAccessToken(user());
+
+        for (int i = 0; i < REQUESTS; i++) {
+            Authentication auth = authenticate(filter, token);
+            assertNotNull(auth);
+            // Роли из БД, а не из токена (в токене ещё ADMIN)
+            assertEquals(Set.of(Role.USER), Set.copyOf(auth.getAuthorities()));
+        }
+
+        verify(userRepository, times(1)).findById(USER_ID);
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void invalidTokenIsRejectedWithoutDatabaseQueries() throws Exception {
+        JwtTokenFilter filter = new JwtTokenFilter(provider(false));
+
+        assertNull(authenticate(filter, "not-a-jwt"));
+        verifyNoInteractions(userRepository, userService);
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private JwtTokenProvider provider(boolean principalCacheEnabled) {
+        JwtVerifier verifier = new JwtVerifier(SECRET, 1_000, new SimpleMeterRegistry());
+        PrincipalCache principalCache =
+                new PrincipalCache(userRepository, principalCacheEnabled, Duration.ofMinutes(1), 1_000);
+        return new JwtTokenProvider(SECRET, verifier, principalCache, userService);
+    }
+
+    private static Authentication authenticate(JwtTokenFilter filter, String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/users/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static User user() {
+        User user = new User();
+        user.setId(USER_ID);
+        user.setUsername("alice");
+        user.setName("Alice");
+        user.setRoles(Set.of(Role.USER, Role.ADMIN));
+        return user;
+    }
+}
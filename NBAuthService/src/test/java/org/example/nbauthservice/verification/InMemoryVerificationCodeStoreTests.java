@@ -0,0 +1,125 @@
+package org.example.nbauthservice.verification;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TTL-хранилище SMS-кодов: проверка, лимит попыток, сброс при перевыпуске кода,
+ * истечение TTL и purge через HierarchicalTimingWheel.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class InMemoryVerificationCodeStoreTests {
+
+    private static final String KEY = "sms:+77010000000";
+
+    @Test
+    void correctCodeVerifiesOnce() {
+        InMemoryVerificationCodeStore store = store(5);
+        store.put(KEY, "123456", Duration.ofMinutes(5));
+
+        assertEquals(VerificationResult.VERIFIED, store.verify(KEY, "123456"));
+        assertEquals(VerificationResult.EXPIRED, store.verify(KEY, "123456"), "code is single-use");
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void wrongCodesExhaustAttemptsAndDropTheCode() {
+        InMemoryVerificationCodeStore store = store(3);
+        store.put(KEY, "123456", Duration.ofMinutes(5));
+
+        assertEquals(VerificationResult.INVALID_CODE, store.verify(KEY, "000000"));
+        assertEquals(VerificationResult.INVALID_CODE, store.verify(KEY, "111111"));
+        assertEquals(VerificationResult.TOO_MANY_ATTEMPTS, store.verify(KEY, "222222"));
+        assertEquals(VerificationResult.EXPIRED, store.verify(KEY, "123456"), "right code after lockout must fail");
+    }
+
+    @Test
+    void reissuedCodeResetsAttemptsAndReplacesOldCode() {
+        InMemoryVerificationCodeStore store = store(3);
+        store.put(KEY, "123456", Duration.ofMinutes(5));
+        store.verify(KEY, "000000");
+        store.verify(KEY, "111111");
+
+        store.put(KEY, "654321", Duration.ofMinutes(5));
+        assertEquals(VerificationResult.INVALID_CODE, store.verify(KEY, "123456"));
+        assertEquals(VerificationResult.INVALID_CODE, store.verify(KEY, "000000"));
+        assertEquals(VerificationResult.VERIFIED, store.verify(KEY, "654321"));
+    }
+
+    @Test
+    void expiredCodeIsRejectedEvenBeforePurge() {
+        InMemoryVerificationCodeStore store = store(5);
+        store.put(KEY, "123456", Duration.ofMillis(-1));
+
+        assertEquals(VerificationResult.EXPIRED, store.verify(KEY, "123456"));
+        assertEquals(VerificationResult.EXPIRED, store.verify("sms:unknown", "123456"));
+    }
+
+    @Test
+    void purgeRemovesOnlyExpiredCodes() {
+        InMemoryVerificationCodeStore store = store(5);
+        store.put("a", "1", Duration.ofMinutes(1));
+        store.put("b", "2", Duration.ofHours(1));
+        store.put("c", "3", Duration.ofMinutes(1));
+        store.put("c", "3", Duration.ofHours(2));   // перевыпуск: старый таймер устарел
+
+        Instant now = Instant.now();
+        assertEquals(0, store.purgeExpired(now, 100));
+        assertEquals(1, store.purgeExpired(now.plus(Duration.ofMinutes(2)), 100));
+        assertEquals(2, store.size());
+        assertEquals(1, store.purgeExpired(now.plus(Duration.ofMinutes(90)), 100));
+        assertEquals(1, store.purgeExpired(now.plus(Duration.ofHours(3)), 100));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void timingWheelMatchesBruteForceAcrossLevels() {
+        Random random = new Random(7);
+        long tick = 1_000;
+        long start = 1_700_000_000_000L;
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(tick, start);
+        Map<Integer, Long> expiry = new HashMap<>();
+
+        // До ~3 уровней: 64^3 тиков
+        for (int key = 0; key < 2_000; key++) {
+            long at = start + (long) (random.nextDouble() * 300_000) * tick + random.nextInt(1_000);
+            expiry.put(key, at);
+            wheel.schedule(key, at);
+        }
+
+        long now = start;
+        List<Integer> fired = new ArrayList<>();
+        while (!expiry.isEmpty()) {
+            now += (1 + random.nextInt(5_000)) * tick;
+            fired.clear();
+            fired.addAll(wheel.advance(now));
+            for (Integer key : fired) {
+                Long at = expiry.remove(key);
+                assertTrue(at != null && at <= now, "key " + key + " fired early or twice");
+            }
+            for (Map.Entry<Integer, Long> e : expiry.entrySet()) {
+                // Таймер округляется вверх до тика: не позже конца тика, в котором наступил срок
+                assertTrue(e.getValue() > now - tick, "key " + e.getKey() + " missed its tick");
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private static InMemoryVerificationCodeStore store(int maxAttempts) {
+        return new InMemoryVerificationCodeStore(maxAttempts, Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.nbcheckinservice.calendar;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Годовая битовая карта: бит (день года - 1), 46 байт на 366 дней.
+ *
+ * Порядок бит тот же, что у Postgres get_bit/set_bit: бит n лежит в байте n / 8
+ * на позиции n % 8 от младшего. Поэтому карту, собранную в SQL, можно читать здесь
+ * (и на фронтенде после base64) без перестановок.
+ */
+public final class ActivityBitmap {
+
+    public static final int BYTES = 46;
+
+    private ActivityBitmap() {
+    }
+
+    public static int dayIndex(LocalDate date) {
+        return date.getDayOfYear() - 1;
+    }
+
+    public static boolean isSet(byte[] bits, int dayIndex) {
+        return bits != null && (bits[dayIndex >> 3] & (1 << (dayIndex & 7))) != 0;
+    }
+
+    public static void set(byte[] bits, int dayIndex) {
+        bits[dayIndex >> 3] |= (byte) (1 << (dayIndex & 7));
+    }
+
+    /** Побитовое OR двух карт одного года; аргументы не меняются */
+    public static byte[] or(byte[] a, byte[] b) {
+        byte[] out = a.clone();
+        for (int i = 0; i < out.length; i++) out[i] |= b[i];
+        return out;
+    }
+
+    public static int cardinality(byte[] bits) {
+        if (bits == null) return 0;
+        int count = 0;
+        for (byte b : bits) count += Integer.bitCount(b & 0xFF);
+        return count;
+    }
+
+    /** Отмеченные даты в [from, to]; обе даты — внутри года карты */
+    public static List<LocalDate> dates(byte[] bits, LocalDate from, LocalDate to) {
+        List<LocalDate> out = new ArrayList<>();
+        if (bits == null) return out;
+        LocalDate yearStart = from.withDayOfYear(1);
+        for (int i = dayIndex(from), last = dayIndex(to); i <= last; i++) {
+            if ((bits[i >> 3] & (1 << (i & 7))) != 0) out.add(yearStart.plusDays(i));
+        }
+        return out;
+    }
+}
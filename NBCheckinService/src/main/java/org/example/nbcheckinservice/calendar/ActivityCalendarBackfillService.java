@@ -0,0 +1,356 @@
+package org.example.nbcheckinservice.calendar;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.ActivityCalendarBackfillStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Backfill user_activity_calendar из исходных таблиц — для истории до появления карты.
+ *
+ * Идёт keyset-страницами по user_id всех пользователей с check-in, sleep log, задачей
+ * или игрой; каждый пользователь — отдельная транзакция: его строки карты берутся
+ * FOR UPDATE, биты из исходных таблиц сливаются с ними через OR. Live-отметки
+ * не теряются, повторный запуск ничего не меняет.
+ *
+ * Пока backfill ни разу не завершился без ошибок (нет строки activity_calendar_backfill),
+ * ActivityCalendarService читает даты из исходных таблиц через {@link #sourceBitmaps}.
+ *
+ * Автозапуск при старте (calendar.backfill.on-startup), если отметки ещё нет;
+ * вручную — POST /api/v1/admin/calendar/backfill.
+ */
+@Service
+@Slf4j
+public class ActivityCalendarBackfillService {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+
+    /** Диапазон «вся история» для backfill */
+    private static final LocalDate HISTORY_FROM = LocalDate.EPOCH;
+    private static final LocalDate HISTORY_TO = LocalDate.of(9999, 12, 31);
+
+    /** Отмеченные дни слоя; параметры: user_id, from, to. Та же логика, что у live-отметок */
+    private static final Map<ActivityLayer, String> SOURCE_DAYS_SQL = new EnumMap<>(Map.of(
+            ActivityLayer.CHECK_IN, """
+                    SELECT DISTINCT check_in_date FROM daily_check_ins
+                    WHERE user_id = ? AND check_in_date BETWEEN ? AND ?
+                    """,
+            ActivityLayer.SLEEP_LOG, """
+                    SELECT DISTINCT sleep_date FROM sleep_logs
+                    WHERE user_id = ? AND sleep_date BETWEEN ? AND ?
+                    """,
+            ActivityLayer.PERFECT_DAY, """
+                    SELECT task_date FROM daily_tasks
+                    WHERE user_id = ? AND task_date BETWEEN ? AND ?
+                    GROUP BY task_date
+                    HAVING bool_and(is_completed)
+                    """,
+            ActivityLayer.GAME_PLAYED, """
+                    SELECT DISTINCT CAST(played_at AS DATE) FROM (
+                        SELECT user_id, played_at FROM game_sessions
+                        UNION ALL
+                        SELECT user_id, played_at FROM new_game_sessions
+                        UNION ALL
+                        SELECT user_id, played_at FROM brain_game_results
+                    ) games
+                    WHERE user_id = ? AND CAST(played_at AS DATE) BETWEEN ? AND ?
+                    """,
+            ActivityLayer.JOURNAL_WRITTEN, """
+                    SELECT DISTINCT task_date FROM daily_tasks
+                    WHERE user_id = ? AND task_type = 'WRITE_NOTE' AND is_completed
+                      AND task_date BETWEEN ? AND ?
+                    """));
+
+    /** Следующая страница user_id после курсора; параметры: (cursor, limit) × 6 и limit */
+    private static final String USER_IDS_SQL = """
+            SELECT user_id FROM (
+                (SELECT DISTINCT user_id FROM daily_check_ins WHERE user_id > ? ORDER BY user_id LIMIT ?)
+                UNION
+                (SELECT DISTINCT user_id FROM sleep_logs WHERE user_id > ? ORDER BY user_id LIMIT ?)
+                UNION
+                (SELECT DISTINCT user_id FROM daily_tasks WHERE user_id > ? ORDER BY user_id LIMIT ?)
+                UNION
+                (SELECT DISTINCT user_id FROM game_sessions WHERE user_id > ? ORDER BY user_id LIMIT ?)
+                UNION
+                (SELECT DISTINCT user_id FROM new_game_sessions WHERE user_id > ? ORDER BY user_id LIMIT ?)
+                UNION
+                (SELECT DISTINCT user_id FROM brain_game_results WHERE user_id > ? ORDER BY user_id LIMIT ?)
+            ) users
+            ORDER BY user_id
+            LIMIT ?
+            """;
+
+    private static final String LOCK_USER_ROWS_SQL = """
+            SELECT year, layer, bits FROM user_activity_calendar
+            WHERE user_id = ?
+            FOR UPDATE
+            """;
+
+    private static final String LOCK_ROW_SQL = """
+            SELECT bits FROM user_activity_calendar
+            WHERE user_id = ? AND year = ? AND layer = ?
+            FOR UPDATE
+            """;
+
+    private static final String INSERT_ROW_SQL = """
+            INSERT INTO user_activity_calendar (user_id, year, layer, bits, updated_at)
+            VALUES (?, ?, ?, ?, NOW())
+            ON CONFLICT (user_id, year, layer) DO NOTHING
+            """;
+
+    private static final String UPDATE_ROW_SQL = """
+            UPDATE user_activity_calendar SET bits = ?, updated_at = NOW()
+            WHERE user_id = ? AND year = ? AND layer = ?
+            """;
+
+    private static final String MARKER_EXISTS_SQL =
+            "SELECT EXISTS (SELECT 1 FROM activity_calendar_backfill WHERE id = 1)";
+
+    private static final String MARKER_UPSERT_SQL = """
+            INSERT INTO activity_calendar_backfill (id, users_backfilled, completed_at)
+            VALUES (1, ?, ?)
+            ON CONFLICT (id) DO UPDATE
+                SET users_backfilled = EXCLUDED.users_backfilled, completed_at = EXCLUDED.completed_at
+            """;
+
+    private record Slot(int year, int layer) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean onStartup;
+    private final int pageSize;
+    private final Duration pause;
+
+    /** Отметка только появляется, поэтому true кэшируется навсегда */
+    private volatile boolean backfilled;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelRequested;
+    private volatile ActivityCalendarBackfillStatus status;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "activity-calendar-backfill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ActivityCalendarBackfillService(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            @Value("${calendar.backfill.on-startup:true}") boolean onStartup,
+            @Value("${calendar.backfill.page-size:200}") int pageSize,
+            @Value("${calendar.backfill.pause:PT0.05S}") Duration pause
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.onStartup = onStartup;
+        this.pageSize = Math.max(1, pageSize);
+        this.pause = pause;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cancelRequested = true;
+        runner.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!onStartup || isBackfilled()) return;
+        log.info("Activity calendar: backfill has not completed yet, starting it");
+        if (running.compareAndSet(false, true)) {
+            runner.submit(() -> run("startup"));
+        }
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // PUBLIC API
+    // ═════════════════════════════════════════════════════════════
+
+    /** true — backfill завершался, карта полна и читается напрямую */
+    public boolean isBackfilled() {
+        if (!backfilled) {
+            backfilled = Boolean.TRUE.equals(jdbcTemplate.queryForObject(MARKER_EXISTS_SQL, Boolean.class));
+        }
+        return backfilled;
+    }
+
+    /**
+     * Карты слоёв, собранные из исходных таблиц за [from, to]: год → слой → биты.
+     * Годы без отмеченных дней в ответ не попадают.
+     */
+    public Map<Integer, Map<ActivityLayer, byte[]>> sourceBitmaps(Long userId, Set<ActivityLayer> layers,
+                                                                  LocalDate from, LocalDate to) {
+        Map<Integer, Map<ActivityLayer, byte[]>> years = new HashMap<>();
+        for (ActivityLayer layer : layers) {
+            jdbcTemplate.query(SOURCE_DAYS_SQL.get(layer), rs -> {
+                LocalDate day = rs.getObject(1, LocalDate.class);
+                byte[] bits = years.computeIfAbsent(day.getYear(), y -> new EnumMap<>(ActivityLayer.class))
+                        .computeIfAbsent(layer, l -> new byte[ActivityBitmap.BYTES]);
+                ActivityBitmap.set(bits, ActivityBitmap.dayIndex(day));
+            }, userId, from, to);
+        }
+        return years;
+    }
+
+    /**
+     * Запускает backfill в фоне.
+     *
+     * @throws IllegalStateException backfill уже идёт
+     */
+    public ActivityCalendarBackfillStatus start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Activity calendar backfill already in progress");
+        }
+        runner.submit(() -> run("admin"));
+        return getStatus();
+    }
+
+    public boolean cancel() {
+        if (!running.get()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    public ActivityCalendarBackfillStatus getStatus() {
+        ActivityCalendarBackfillStatus current = status;
+        return current != null ? current : ActivityCalendarBackfillStatus.builder()
+                .state(running.get() ? "RUNNING" : "NEVER_RUN")
+                .backfilled(isBackfilled())
+                .build();
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // RUN
+    // ═════════════════════════════════════════════════════════════
+
+    private void run(String trigger) {
+        cancelRequested = false;
+        LocalDateTime startedAt = LocalDateTime.now(ALMATY_ZONE);
+        long users = 0, failed = 0, rows = 0, lastUserId = 0;
+        String state = "COMPLETED";
+        String error = null;
+        status = snapshot("RUNNING", trigger, 0, 0, 0, 0, startedAt, null, null);
+
+        try {
+            while (!cancelRequested) {
+                List<Long> userIds = nextUserIds(lastUserId);
+                if (userIds.isEmpty()) break;
+
+                for (Long userId : userIds) {
+                    try {
+                        rows += backfillUser(userId);
+                        users++;
+                    } catch (RuntimeException e) {
+                        // Один битый пользователь не останавливает job, но отметку о завершении не даёт
+                        failed++;
+                        log.warn("Activity calendar backfill failed for user {}: {}", userId, e.getMessage());
+                    }
+                    lastUserId = userId;
+                }
+                status = snapshot("RUNNING", trigger, users, failed, rows, lastUserId, startedAt, null, null);
+                Thread.sleep(pause.toMillis());
+            }
+            if (cancelRequested) {
+                state = "CANCELLED";
+            } else if (failed == 0) {
+                jdbcTemplate.update(MARKER_UPSERT_SQL, users, LocalDateTime.now(ALMATY_ZONE));
+                backfilled = true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "CANCELLED";
+        } catch (Exception e) {
+            state = "FAILED";
+            error = e.getMessage();
+            log.error("Activity calendar backfill failed after user {}: {}", lastUserId, e.getMessage(), e);
+        } finally {
+            status = snapshot(state, trigger, users, failed, rows, lastUserId, startedAt,
+                    LocalDateTime.now(ALMATY_ZONE), error);
+            running.set(false);
+        }
+        log.info("Activity calendar backfill {} ({}): {} users, {} rows written, {} failed",
+                state, trigger, users, rows, failed);
+    }
+
+    private List<Long> nextUserIds(long afterUserId) {
+        Object[] args = new Object[13];
+        for (int i = 0; i < 12; i += 2) {
+            args[i] = afterUserId;
+            args[i + 1] = pageSize;
+        }
+        args[12] = pageSize;
+        return jdbcTemplate.queryForList(USER_IDS_SQL, Long.class, args);
+    }
+
+    /** @return сколько строк карты вставлено или дополнено */
+    private int backfillUser(Long userId) {
+        Integer written = transactionTemplate.execute(tx -> {
+            Map<Slot, byte[]> stored = new HashMap<>();
+            jdbcTemplate.query(LOCK_USER_ROWS_SQL, rs -> {
+                stored.put(new Slot(rs.getInt("year"), rs.getInt("layer")), rs.getBytes("bits"));
+            }, userId);
+
+            int count = 0;
+            Map<Integer, Map<ActivityLayer, byte[]>> sources = sourceBitmaps(
+                    userId, EnumSet.allOf(ActivityLayer.class), HISTORY_FROM, HISTORY_TO);
+            for (Map.Entry<Integer, Map<ActivityLayer, byte[]>> year : sources.entrySet()) {
+                for (Map.Entry<ActivityLayer, byte[]> layer : year.getValue().entrySet()) {
+                    int y = year.getKey(), code = layer.getKey().code;
+                    byte[] current = stored.get(new Slot(y, code));
+                    if (current == null) {
+                        if (jdbcTemplate.update(INSERT_ROW_SQL, userId, y, code, layer.getValue()) == 1) {
+                            count++;
+                            continue;
+                        }
+                        // Строку только что создала live-отметка — дополняем её
+                        current = jdbcTemplate.queryForObject(LOCK_ROW_SQL, byte[].class, userId, y, code);
+                    }
+                    byte[] merged = ActivityBitmap.or(current, layer.getValue());
+                    if (!Arrays.equals(merged, current)) {
+                        jdbcTemplate.update(UPDATE_ROW_SQL, merged, userId, y, code);
+                        count++;
+                    }
+                }
+            }
+            return count;
+        });
+        return written != null ? written : 0;
+    }
+
+    private ActivityCalendarBackfillStatus snapshot(String state, String trigger, long users, long failed,
+                                                    long rows, long lastUserId, LocalDateTime startedAt,
+                                                    LocalDateTime finishedAt, String error) {
+        return ActivityCalendarBackfillStatus.builder()
+                .state(state)
+                .trigger(trigger)
+                .backfilled(backfilled)
+                .usersBackfilled(users)
+                .usersFailed(failed)
+                .rowsWritten(rows)
+                .lastUserId(lastUserId)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+}
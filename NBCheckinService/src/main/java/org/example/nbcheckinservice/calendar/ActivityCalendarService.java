@@ -0,0 +1,163 @@
+package org.example.nbcheckinservice.calendar;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.ActivityCalendarResponse;
+import org.example.nbcheckinservice.entity.UserActivityCalendar;
+import org.example.nbcheckinservice.repository.UserActivityCalendarRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Карта активности пользователя: строка user_activity_calendar на (user, year, layer),
+ * один бит на день.
+ *
+ * Write path — в транзакции самой записи (check-in, sleep log, задача, игра, заметка):
+ * один INSERT ... ON CONFLICT с set_bit, без чтения строки. Повторная отметка дня — no-op.
+ *
+ * Read path — до пяти строк по PK за год; календарь, даты месяца и текущие серии
+ * считаются по битам без обращения к исходным таблицам. Исключение — пока backfill
+ * истории (ActivityCalendarBackfillService) не завершён: в карте есть только отметки
+ * с момента её появления, поэтому те же карты собираются из исходных таблиц.
+ *
+ * Retention: архивирование исходных строк биты не снимает — карта остаётся историей
+ * пользователя. Снимают только явные удаления (check-in, sleep log).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityCalendarService {
+
+    private static final String EMPTY_LAYER =
+            Base64.getEncoder().encodeToString(new byte[ActivityBitmap.BYTES]);
+
+    private final UserActivityCalendarRepository calendarRepository;
+    private final ActivityCalendarBackfillService backfillService;
+
+    // ═════════════════════════════════════════════════════════════
+    // WRITE PATH
+    // ═════════════════════════════════════════════════════════════
+
+    @Transactional
+    public void mark(Long userId, ActivityLayer layer, LocalDate date) {
+        calendarRepository.setBit(userId, date.getYear(), layer.code, ActivityBitmap.dayIndex(date));
+    }
+
+    @Transactional
+    public void clear(Long userId, ActivityLayer layer, LocalDate date) {
+        calendarRepository.clearBit(userId, date.getYear(), layer.code, ActivityBitmap.dayIndex(date));
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // READ PATH
+    // ═════════════════════════════════════════════════════════════
+
+    @Transactional(readOnly = true)
+    public ActivityCalendarResponse getYear(Long userId, int year) {
+        Map<ActivityLayer, byte[]> bits = loadYears(userId, EnumSet.allOf(ActivityLayer.class), year, year)
+                .getOrDefault(year, Map.of());
+
+        Map<String, String> layers = new LinkedHashMap<>();
+        Map<String, Integer> totals = new LinkedHashMap<>();
+        for (ActivityLayer layer : ActivityLayer.values()) {
+            byte[] layerBits = bits.get(layer);
+            layers.put(key(layer), layerBits != null ? Base64.getEncoder().encodeToString(layerBits) : EMPTY_LAYER);
+            totals.put(key(layer), ActivityBitmap.cardinality(layerBits));
+        }
+
+        return ActivityCalendarResponse.builder()
+                .userId(userId)
+                .year(year)
+                .daysInYear(Year.of(year).length())
+                .layers(layers)
+                .totals(totals)
+                .build();
+    }
+
+    /** Отмеченные даты слоя в [from, to] по возрастанию */
+    @Transactional(readOnly = true)
+    public List<LocalDate> getDates(Long userId, ActivityLayer layer, LocalDate from, LocalDate to) {
+        Map<Integer, Map<ActivityLayer, byte[]>> byYear =
+                loadYears(userId, EnumSet.of(layer), from.getYear(), to.getYear());
+
+        List<LocalDate> dates = new ArrayList<>();
+        for (int year = from.getYear(); year <= to.getYear(); year++) {
+            LocalDate start = year == from.getYear() ? from : LocalDate.of(year, 1, 1);
+            LocalDate end = year == to.getYear() ? to : LocalDate.of(year, 12, 31);
+            dates.addAll(ActivityBitmap.dates(byYear.getOrDefault(year, Map.of()).get(layer), start, end));
+        }
+        return dates;
+    }
+
+    /**
+     * Текущая серия подряд идущих дней по каждому слою на дату today.
+     * Неотмеченный today серию не обрывает (день ещё не закончился) — считается от вчера.
+     * Годы догружаются по одному, только если серия уходит за 1 января.
+     */
+    @Transactional(readOnly = true)
+    public Map<ActivityLayer, Integer> currentRuns(Long userId, LocalDate today) {
+        Map<Integer, Map<ActivityLayer, byte[]>> years = new HashMap<>(
+                loadYears(userId, EnumSet.allOf(ActivityLayer.class), today.getYear() - 1, today.getYear()));
+        for (int year = today.getYear() - 1; year <= today.getYear(); year++) {
+            years.putIfAbsent(year, Map.of());
+        }
+
+        Map<ActivityLayer, Integer> runs = new EnumMap<>(ActivityLayer.class);
+        for (ActivityLayer layer : ActivityLayer.values()) {
+            LocalDate day = isSet(userId, years, layer, today) ? today : today.minusDays(1);
+            int run = 0;
+            while (isSet(userId, years, layer, day)) {
+                run++;
+                day = day.minusDays(1);
+            }
+            runs.put(layer, run);
+        }
+        return runs;
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    /** Год → слой → биты за [fromYear, toYear]; годы без строк в ответ не попадают */
+    private Map<Integer, Map<ActivityLayer, byte[]>> loadYears(Long userId, Set<ActivityLayer> layers,
+                                                              int fromYear, int toYear) {
+        if (!backfillService.isBackfilled()) {
+            return backfillService.sourceBitmaps(userId, layers,
+                    LocalDate.of(fromYear, 1, 1), LocalDate.of(toYear, 12, 31));
+        }
+        Map<Integer, Map<ActivityLayer, byte[]>> years = new HashMap<>();
+        for (UserActivityCalendar row : calendarRepository.findByUserIdAndYearBetween(userId, fromYear, toYear)) {
+            put(years.computeIfAbsent(row.getYear(), y -> new EnumMap<>(ActivityLayer.class)), row);
+        }
+        return years;
+    }
+
+    private boolean isSet(Long userId, Map<Integer, Map<ActivityLayer, byte[]>> years,
+                          ActivityLayer layer, LocalDate day) {
+        Map<ActivityLayer, byte[]> year = years.computeIfAbsent(day.getYear(),
+                y -> loadYears(userId, EnumSet.allOf(ActivityLayer.class), y, y).getOrDefault(y, Map.of()));
+        return ActivityBitmap.isSet(year.get(layer), ActivityBitmap.dayIndex(day));
+    }
+
+    private static void put(Map<ActivityLayer, byte[]> bits, UserActivityCalendar row) {
+        ActivityLayer layer = ActivityLayer.fromCode(row.getLayer());
+        // Слой из более новой версии приложения — пропускаем
+        if (layer != null) bits.put(layer, row.getBits());
+    }
+
+    private static String key(ActivityLayer layer) {
+        return layer.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.nbcheckinservice.calendar;
+
+/**
+ * Слой годовой карты активности. code хранится в user_activity_calendar.layer —
+ * его нельзя менять или переиспользовать, новые слои получают следующий код.
+ */
+public enum ActivityLayer {
+
+    CHECK_IN(0),
+    SLEEP_LOG(1),
+    /** Все задачи дня выполнены */
+    PERFECT_DAY(2),
+    /** Любая игра: game_sessions, new_game_sessions, brain_game_results */
+    GAME_PLAYED(3),
+    /** Заметка или запись журнала (note.written / POST /tasks/note-written) */
+    JOURNAL_WRITTEN(4);
+
+    public final int code;
+
+    ActivityLayer(int code) {
+        this.code = code;
+    }
+
+    public static ActivityLayer fromCode(int code) {
+        for (ActivityLayer layer : values()) {
+            if (layer.code == code) return layer;
+        }
+        return null;
+    }
+}
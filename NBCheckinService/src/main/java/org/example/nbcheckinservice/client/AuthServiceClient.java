@@ -9,16 +9,20 @@ import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDate;
 import java.time.Period;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 /**
  * HTTP client for NBAuthService.
- * Used to fetch the authenticated user's onboarding data (age, sex)
- * for personalizing ML recommendations.
  *
- * Calls GET /api/v1/onboarding with the user's own JWT token
- * — no service account or new auth endpoints needed.
+ * Only used off the request path: UserProfileReplicaService backfills
+ * user_profile_replica for users that registered before user.onboarding-updated
+ * existed. Calls POST /api/v1/onboarding/internal/bulk with the service key
+ * (X-Internal-Key) — one request per up to 500 users, no user JWT needed.
+ *
+ * The ML path reads age/sex from the local replica and never calls this synchronously.
  */
 @Component
 @Slf4j
@@ -26,87 +30,120 @@ public class AuthServiceClient {
 
     private final RestTemplate restTemplate;
     private final String authServiceUrl;
+    private final String internalKey;
 
     public AuthServiceClient(
             RestTemplate restTemplate,
-            @Value("${auth.service.url:http://localhost:8081}") String authServiceUrl
+            @Value("${auth.service.url:http://localhost:8081}") String authServiceUrl,
+            @Value("${auth.service.internal-key:}") String internalKey
     ) {
         this.restTemplate = restTemplate;
         this.authServiceUrl = authServiceUrl;
+        this.internalKey = internalKey;
+    }
+
+    public boolean isBulkEnabled() {
+        return internalKey != null && !internalKey.isBlank();
     }
 
     /**
-     * Fetches the current user's onboarding data from NBAuthService.
-     * The JWT is forwarded so NBAuthService identifies the user from the token.
+     * Fetches onboarding records for many users in one call.
+     * Users without onboarding are simply absent from the result.
      *
-     * @param authorizationHeader  full "Bearer <token>" header from the original request
-     * @return Optional with parsed onboarding data, or empty on error / not found
+     * @return list of raw onboarding records, or empty on error
      */
-    public Optional<OnboardingData> getMyOnboarding(String authorizationHeader) {
-        if (authorizationHeader == null || authorizationHeader.isBlank()) {
-            log.debug("No auth header — skipping onboarding enrichment");
+    public Optional<List<BulkOnboarding>> getOnboardingBulk(Collection<Long> userIds) {
+        if (!isBulkEnabled() || userIds.isEmpty()) {
             return Optional.empty();
         }
 
         try {
-            String url = authServiceUrl + "/api/v1/onboarding";
+            String url = authServiceUrl + "/api/v1/onboarding/internal/bulk";
 
             HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", authorizationHeader);
+            headers.set("X-Internal-Key", internalKey);
             headers.setContentType(MediaType.APPLICATION_JSON);
 
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
+            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(Map.of("userIds", userIds), headers);
 
-            ResponseEntity<Map<String, Object>> response = restTemplate.exchange(
+            ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
                     url,
-                    HttpMethod.GET,
+                    HttpMethod.POST,
                     entity,
-                    new ParameterizedTypeReference<Map<String, Object>>() {}
+                    new ParameterizedTypeReference<List<Map<String, Object>>>() {}
             );
 
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                OnboardingData data = parse(response.getBody());
-                log.debug("Onboarding fetched from auth service: age={}, gender={}", data.age(), data.gender());
-                return Optional.of(data);
+                List<BulkOnboarding> records = response.getBody().stream()
+                        .map(this::parseBulk)
+                        .filter(r -> r.userId() != null)
+                        .toList();
+                log.debug("Bulk onboarding fetched from auth service: requested={}, found={}",
+                        userIds.size(), records.size());
+                return Optional.of(records);
             }
 
         } catch (Exception e) {
-            // Graceful degradation — ML still works with defaults if auth service is down
-            log.warn("Could not fetch onboarding from auth service: {}", e.getMessage());
+            log.warn("Could not fetch bulk onboarding from auth service: {}", e.getMessage());
         }
         return Optional.empty();
     }
 
     // ─── Parsing ────────────────────────────────────────────────
 
-    private OnboardingData parse(Map<String, Object> body) {
-        String gender = parseGender(body.get("sex"));
-        int age = parseAge(body.get("birthDate"));
-        return new OnboardingData(age, gender);
+    private BulkOnboarding parseBulk(Map<String, Object> body) {
+        return new BulkOnboarding(
+                toLong(body.get("userId")),
+                body.get("sex") != null ? body.get("sex").toString() : null,
+                parseDate(body.get("birthDate")),
+                toInt(body.get("heightCm")),
+                toInt(body.get("weightKg")),
+                toInt(body.get("characterId")),
+                Boolean.TRUE.equals(body.get("isCompleted"))
+        );
     }
 
-    private String parseGender(Object sexRaw) {
-        if (sexRaw == null) return "Male";
-        String sex = sexRaw.toString().toUpperCase();
-        return sex.contains("FEMALE") ? "Female" : "Male";
+    private static Long toLong(Object raw) {
+        return raw instanceof Number n ? n.longValue() : null;
     }
 
-    private int parseAge(Object birthDateRaw) {
-        if (birthDateRaw == null) return 25;
+    private static Integer toInt(Object raw) {
+        return raw instanceof Number n ? n.intValue() : null;
+    }
+
+    private static LocalDate parseDate(Object raw) {
+        if (raw == null) return null;
         try {
-            LocalDate birthDate = LocalDate.parse(birthDateRaw.toString());
-            int age = Period.between(birthDate, LocalDate.now()).getYears();
-            // Clamp to ML model valid range [18, 100]
-            return Math.max(18, Math.min(age, 100));
+            return LocalDate.parse(raw.toString());
         } catch (Exception e) {
-            log.warn("Could not parse birthDate '{}': {}", birthDateRaw, e.getMessage());
-            return 25;
+            log.warn("Could not parse birthDate '{}': {}", raw, e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * Raw onboarding record from the bulk endpoint.
+     */
+    public record BulkOnboarding(Long userId, String sex, LocalDate birthDate,
+                                 Integer heightCm, Integer weightKg, Integer characterId,
+                                 boolean completed) {}
+
     /**
      * Parsed onboarding fields relevant to ML recommendations.
      * Only contains what the ML model actually uses.
      */
-    public record OnboardingData(int age, String gender) {}
+    public record OnboardingData(int age, String gender) {
+
+        /** Maps raw sex / birthDate to the ML model's expected values (defaults: 25, Male). */
+        public static OnboardingData of(String sex, LocalDate birthDate) {
+            String gender = (sex != null && sex.toUpperCase().contains("FEMALE")) ? "Female" : "Male";
+            int age = 25;
+            if (birthDate != null) {
+                age = Period.between(birthDate, LocalDate.now()).getYears();
+                // Clamp to ML model valid range [18, 100]
+                age = Math.max(18, Math.min(age, 100));
+            }
+            return new OnboardingData(age, gender);
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package org.example.nbcheckinservice.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Админ-контроллер под /admin/**: доступ только с заголовком X-Admin-Key,
+ * равным значению свойства {@link #value()}. Проверку делает {@link AdminKeyInterceptor}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdminKey {
+
+    /** Имя свойства с ключом, например "retention.admin-key" */
+    String value();
+}
@@ -0,0 +1,56 @@
+package org.example.nbcheckinservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Проверка X-Admin-Key для /admin/** (регистрируется в WebMvcConfig).
+ *
+ * Ключ берётся из свойства, указанного в {@link AdminKey} контроллера. Если ключ
+ * не задан, заголовка нет или контроллер не помечен @AdminKey — 403.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdminKeyInterceptor implements HandlerInterceptor {
+
+    public static final String HEADER = "X-Admin-Key";
+
+    private final Environment environment;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        if (!(handler instanceof HandlerMethod method)) return true;
+
+        AdminKey annotation = method.getBeanType().getAnnotation(AdminKey.class);
+        String adminKey = annotation != null ? environment.getProperty(annotation.value()) : null;
+        if (isAdmin(adminKey, request.getHeader(HEADER))) return true;
+
+        log.warn("Admin key rejected: {} {}", request.getMethod(), request.getRequestURI());
+        response.setStatus(HttpStatus.FORBIDDEN.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", "Admin key required"));
+        return false;
+    }
+
+    private static boolean isAdmin(String adminKey, String key) {
+        if (adminKey == null || adminKey.isBlank() || key == null) return false;
+        return MessageDigest.isEqual(adminKey.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,32 +1,27 @@
-
 package org.example.nbcheckinservice.config;
 
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import javax.crypto.SecretKey;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private final JwtVerifier jwtVerifier;
 
     @Override
     protected void doFilterInternal(
@@ -38,8 +33,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String token = extractToken(request);
 
-            if (token != null && validateToken(token)) {
-                Long userId = getUserIdFromToken(token);
+            if (token != null) {
+                // Одна проверка на запрос (с кэшем) — userId берём из уже проверенных claims
+                Long userId = jwtVerifier.verify(token)
+                        .map(this::getUserIdFromClaims)
+                        .orElse(null);
 
                 if (userId != null) {
                     UsernamePasswordAuthenticationToken authentication =
@@ -69,45 +67,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return null;
     }
 
-    private boolean validateToken(String token) {
-        try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
-            Jwts.parser()
-                    .verifyWith(key)
-                    .build()
-                    .parseSignedClaims(token);
+    private Long getUserIdFromClaims(Claims claims) {
+        // Достаем именно "id", так как auth-service кладет его туда
+        Object userIdObj = claims.get("id");
 
-            return true;
-        } catch (Exception e) {
-            log.error("JWT validation error: {}", e.getMessage());
-            return false;
+        if (userIdObj == null) {
+            log.error("JWT claim 'id' is missing. Available claims: {}", claims.keySet());
+            throw new RuntimeException("User ID is missing in token");
         }
-    }
-
-private Long getUserIdFromToken(String token) {
-    SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
 
-    Claims claims = Jwts.parser()
-            .verifyWith(key)
-            .build()
-            .parseSignedClaims(token)
-            .getPayload();
-
-    // Достаем именно "id", так как auth-service кладет его туда
-    Object userIdObj = claims.get("id");
-
-    if (userIdObj == null) {
-        log.error("JWT claim 'id' is missing. Available claims: {}", claims.keySet());
-        throw new RuntimeException("User ID is missing in token");
-    }
-
-    try {
-        // Безопасное приведение к Long (работает и для Integer, и для Long)
-        return Long.valueOf(userIdObj.toString());
-    } catch (NumberFormatException e) {
-        log.error("Invalid userId format in token: {}", userIdObj);
-        throw new RuntimeException("Invalid userId format");
+        try {
+            // Безопасное приведение к Long (работает и для Integer, и для Long)
+            return Long.valueOf(userIdObj.toString());
+        } catch (NumberFormatException e) {
+            log.error("Invalid userId format in token: {}", userIdObj);
+            throw new RuntimeException("Invalid userId format");
+        }
     }
 }
-}
\ No newline at end of file
@@ -0,0 +1,127 @@
+package org.example.nbcheckinservice.config;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Единая проверка JWT (одинаковая во всех трёх сервисах).
+ *
+ *  - Ключ и JwtParser собираются один раз при старте (а не на каждый запрос).
+ *  - Токен парсится не больше одного раза за запрос: вызывающий код получает Claims
+ *    и берёт из них всё нужное (id, sub, roles).
+ *  - Ограниченный LRU-кэш проверенных Claims, ключ — SHA-256 токена (сырые токены
+ *    в памяти не храним). Запись живёт до exp токена, но не дольше MAX_CACHE_TTL.
+ *    Невалидные токены не кэшируются.
+ *  - Метрика jwt.verification (Timer) с тегом result = cache_hit | parsed | rejected.
+ */
+@Component
+@Slf4j
+public class JwtVerifier {
+
+    private static final long MAX_CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtParser parser;
+    private final Map<String, CachedClaims> cache;
+
+    private final Timer cacheHitTimer;
+    private final Timer parsedTimer;
+    private final Timer rejectedTimer;
+
+    public JwtVerifier(@Value("${jwt.secret}") String jwtSecret,
+                       @Value("${jwt.verify-cache.max-size:10000}") int maxCacheSize,
+                       MeterRegistry meterRegistry) {
+        this.parser = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8)))
+                .build();
+
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+                return size() > maxCacheSize;
+            }
+        });
+
+        this.cacheHitTimer = verificationTimer(meterRegistry, "cache_hit");
+        this.parsedTimer   = verificationTimer(meterRegistry, "parsed");
+        this.rejectedTimer = verificationTimer(meterRegistry, "rejected");
+    }
+
+    /**
+     * Проверяет подпись и срок действия токена.
+     *
+     * @return Claims валидного токена или Optional.empty() для невалидного / истёкшего
+     */
+    public Optional<Claims> verify(String token) {
+        if (token == null || token.isBlank()) return Optional.empty();
+
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        String digest = digest(token);
+
+        CachedClaims cached = cache.get(digest);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now) {
+                cacheHitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return Optional.of(cached.claims());
+            }
+            cache.remove(digest);
+        }
+
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            long exp = claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE;
+            cache.put(digest, new CachedClaims(claims, Math.min(exp, now + MAX_CACHE_TTL_MS)));
+            parsedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return Optional.of(claims);
+        } catch (JwtException | IllegalArgumentException e) {
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("JWT rejected: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Сбрасывает кэш (например, после ротации секрета). */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static Timer verificationTimer(MeterRegistry registry, String result) {
+        return Timer.builder("jwt.verification")
+                .description("JWT verification latency")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private record CachedClaims(Claims claims, long expiresAtMillis) {}
+}
@@ -34,6 +34,10 @@ public class KafkaConsumerConfig {
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, true);
+        // События из NBAuthService и NoteAI-backend приходят с логическим __TypeId__, а не FQCN чужого пакета
+        props.put(JsonDeserializer.TYPE_MAPPINGS,
+                "userOnboardingUpdated:org.example.nbcheckinservice.kafka.UserOnboardingUpdatedEvent,"
+                        + "noteWritten:org.example.nbcheckinservice.kafka.NoteWrittenEvent");
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
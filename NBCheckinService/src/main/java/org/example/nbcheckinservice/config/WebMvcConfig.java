@@ -1,7 +1,9 @@
 package org.example.nbcheckinservice.config;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import java.time.LocalDate;
@@ -12,10 +14,19 @@ import java.time.format.DateTimeParseException;
 /**
  * Глобальные конвертеры для PathVariable и RequestParam.
  * Автоматически обрезает пробелы в датах (решает ошибку " 2026-04-13").
+ * Плюс проверка X-Admin-Key для админ-API.
  */
 @Configuration
+@RequiredArgsConstructor
 public class WebMvcConfig implements WebMvcConfigurer {
 
+    private final AdminKeyInterceptor adminKeyInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(adminKeyInterceptor).addPathPatterns("/admin/**");
+    }
+
     @Override
     public void addFormatters(FormatterRegistry registry) {
         registry.addConverter(String.class, LocalDate.class, source -> {
@@ -0,0 +1,56 @@
+package org.example.nbcheckinservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarBackfillService;
+import org.example.nbcheckinservice.config.AdminKey;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Админ-API backfill карты активности (user_activity_calendar) из исходных таблиц.
+ *
+ * Доступ — только с заголовком X-Admin-Key == calendar.admin-key (AdminKeyInterceptor).
+ * Если ключ не задан, эндпойнты отключены (403).
+ *
+ * Base path (с учётом context-path /api/v1): /api/v1/admin/calendar
+ */
+@RestController
+@AdminKey("calendar.admin-key")
+@RequestMapping("/admin/calendar")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Activity calendar", description = "Backfill activity bitmaps from check-ins, sleep logs, tasks and games (admin only)")
+public class ActivityCalendarAdminController {
+
+    private final ActivityCalendarBackfillService backfillService;
+
+    @GetMapping("/backfill")
+    @Operation(summary = "Status of the last backfill and whether reads already use the calendar")
+    public ResponseEntity<?> status() {
+        return ResponseEntity.ok(backfillService.getStatus());
+    }
+
+    @PostMapping("/backfill")
+    @Operation(summary = "Backfill the activity calendar of every user in the background",
+               description = "Idempotent: bits from the source tables are OR-ed into existing rows, one transaction per user.")
+    public ResponseEntity<?> backfill() {
+        log.info("POST /admin/calendar/backfill");
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(backfillService.start());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/backfill/cancel")
+    @Operation(summary = "Stop the running backfill after the current page")
+    public ResponseEntity<?> cancel() {
+        return ResponseEntity.ok(Map.of("cancelled", backfillService.cancel()));
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.nbcheckinservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.dto.ActivityCalendarResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+@RestController
+@RequestMapping("/calendar")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Activity calendar", description = "Per-day activity bitmaps: check-ins, sleep, perfect days, games, journal")
+public class ActivityCalendarController {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+
+    private final ActivityCalendarService activityCalendarService;
+
+    private Long getUserId(HttpServletRequest request) {
+        return (Long) request.getAttribute("userId");
+    }
+
+    @GetMapping
+    @Operation(summary = "All activity layers for a year (defaults to the current year)",
+               description = "Each layer is base64 of a 46-byte bitmap; day d of the year is set when "
+                       + "bytes[(d-1) >> 3] & (1 << ((d-1) & 7)) != 0")
+    public ResponseEntity<ActivityCalendarResponse> getCalendar(
+            HttpServletRequest request,
+            @RequestParam(required = false) Integer year
+    ) {
+        Long userId = getUserId(request);
+        int targetYear = year != null ? year : LocalDate.now(ALMATY_ZONE).getYear();
+        log.info("GET /calendar?year={} - User {}", targetYear, userId);
+        return ResponseEntity.ok(activityCalendarService.getYear(userId, targetYear));
+    }
+}
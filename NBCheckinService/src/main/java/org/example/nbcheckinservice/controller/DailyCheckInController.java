@@ -7,7 +7,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.nbcheckinservice.dto.CheckInRequest;
 import org.example.nbcheckinservice.dto.CheckInResponse;
 import org.example.nbcheckinservice.dto.CheckInStatsResponse;
+import org.example.nbcheckinservice.dto.InsightsResponse;
 import org.example.nbcheckinservice.dto.StreakResponse;
+import org.example.nbcheckinservice.insights.InsightStatsService;
 import org.example.nbcheckinservice.service.AnalyticsService;
 import org.example.nbcheckinservice.service.DailyCheckInService;
 import org.example.nbcheckinservice.service.StreakService;
@@ -34,6 +36,7 @@ public class DailyCheckInController {
     private final DailyCheckInService checkInService;
     private final StreakService streakService;
     private final AnalyticsService analyticsService;
+    private final InsightStatsService insightStatsService;
 
     // Константа таймзоны
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
@@ -230,6 +233,17 @@ public class DailyCheckInController {
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Correlation insights over the whole history (sleep / stress / mood / mood-log triggers).
+     * Served from incrementally maintained statistics — cost does not grow with history.
+     */
+    @GetMapping("/insights")
+    public ResponseEntity<InsightsResponse> getInsights(HttpServletRequest request) {
+        Long userId = getUserId(request);
+        log.info("GET /checkins/insights - User {}", userId);
+        return ResponseEntity.ok(insightStatsService.getInsights(userId));
+    }
+
     /**
      * Получить список дат выполненных задач для календаря
      */
@@ -122,6 +122,8 @@ public class DailyTaskController {
 
     /**
      * Called by NoteAI-backend when a user writes a note. Optional date (Asia/Almaty), defaults to today.
+     * Legacy: NoteAI now publishes note.written (NoteWrittenConsumer); this endpoint stays
+     * for the migration period while NoteAI's checkin.note-written.http.enabled can still be on.
      *
      * POST /api/v1/tasks/note-written
      * POST /api/v1/tasks/note-written?date=2026-05-15
@@ -139,11 +141,8 @@ public class DailyTaskController {
         LocalDate targetDate = date != null ? date : LocalDate.now(ZoneId.of("Asia/Almaty"));
         log.info("POST /tasks/note-written?date={} - auto-completing WRITE_NOTE for user {}", targetDate, userId);
 
-        // Ensure tasks exist for this date BEFORE trying to auto-complete.
-        // Without this, autoCompleteTask silently does nothing (ifPresent finds nothing).
-        // Same pattern as DailyCheckInService.createCheckIn().
-        taskService.getTasksForDate(userId, targetDate);
-        taskService.autoCompleteTask(userId, DailyTask.TaskType.WRITE_NOTE, targetDate);
+        // Creates the day's tasks if needed, completes WRITE_NOTE and marks the journal day
+        taskService.recordNoteWritten(userId, targetDate);
 
         return ResponseEntity.ok(java.util.Map.of(
                 "message", "WRITE_NOTE task completed",
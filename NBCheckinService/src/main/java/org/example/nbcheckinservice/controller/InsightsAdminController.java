@@ -0,0 +1,56 @@
+package org.example.nbcheckinservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.config.AdminKey;
+import org.example.nbcheckinservice.insights.InsightRebuildService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Админ-API полной пересборки user_insight_stats (после смены формул InsightStats).
+ *
+ * Доступ — только с заголовком X-Admin-Key == insights.admin-key (AdminKeyInterceptor).
+ * Если ключ не задан, эндпойнты отключены (403).
+ *
+ * Base path (с учётом context-path /api/v1): /api/v1/admin/insights
+ */
+@RestController
+@AdminKey("insights.admin-key")
+@RequestMapping("/admin/insights")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Insights", description = "Rebuild per-user insight statistics from check-ins and mood logs (admin only)")
+public class InsightsAdminController {
+
+    private final InsightRebuildService rebuildService;
+
+    @GetMapping("/rebuild")
+    @Operation(summary = "Status of the last full rebuild")
+    public ResponseEntity<?> status() {
+        return ResponseEntity.ok(rebuildService.getStatus());
+    }
+
+    @PostMapping("/rebuild")
+    @Operation(summary = "Rebuild insight statistics of every user in the background",
+               description = "Users are rebuilt one transaction each under a row lock; live writes keep working.")
+    public ResponseEntity<?> rebuild() {
+        log.info("POST /admin/insights/rebuild");
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(rebuildService.start());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/rebuild/cancel")
+    @Operation(summary = "Stop the running rebuild after the current page")
+    public ResponseEntity<?> cancel() {
+        return ResponseEntity.ok(Map.of("cancelled", rebuildService.cancel()));
+    }
+}
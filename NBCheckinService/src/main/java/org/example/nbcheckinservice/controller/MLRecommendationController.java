@@ -51,10 +51,10 @@ public class MLRecommendationController {
      *   dailyScreenTime, caffeineIntake, dietType
      *
      * Логика ответа (в порядке приоритета):
-     *   1. Onboarding обновлён → пересчитать с реальным age/gender, сохранить в БД, вернуть
-     *   2. In-memory cache свежий (<30 мин) → вернуть из памяти
-     *   3. Есть запись в daily_ml_recommendation на сегодня → вернуть из БД
-     *   4. Записи нет (первый запрос) → вычислить из реальных данных, сохранить в БД, вернуть
+     *   1. In-memory cache свежий (<30 мин) → вернуть из памяти
+     *   2. Есть запись в daily_ml_recommendation на сегодня → вернуть из БД
+     *   3. Записи нет (первый запрос) → вычислить из реальных данных, сохранить в БД, вернуть
+     * (изменение онбординга пересчитывает рекомендации асинхронно через user.onboarding-updated)
      *
      * Формат ответа: MLRecommendationResponse (не изменился).
      */
@@ -74,7 +74,6 @@ public class MLRecommendationController {
             return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
         }
 
-        String authHeader = request.getHeader("Authorization");
         log.info("POST /ml/recommendations - User {}", userId);
 
         // Только опциональные префы из тела (core-параметры игнорируем)
@@ -83,7 +82,7 @@ public class MLRecommendationController {
         String  dietType        = body != null ? body.getDietType()        : null;
 
         MLRecommendationResponse recommendations =
-                cacheService.getOrCompute(userId, authHeader, dailyScreenTime, caffeineIntake, dietType);
+                cacheService.getOrCompute(userId, dailyScreenTime, caffeineIntake, dietType);
 
         return ResponseEntity.ok(recommendations);
     }
@@ -163,11 +162,10 @@ public class MLRecommendationController {
             return ResponseEntity.status(401).body(Map.of("error", "Unauthorized"));
         }
 
-        String authHeader = request.getHeader("Authorization");
         log.info("GET /ml/recommendations - User {}", userId);
 
         MLRecommendationResponse recommendations =
-                cacheService.getOrCompute(userId, authHeader, dailyScreenTime, caffeineIntake, dietType);
+                cacheService.getOrCompute(userId, dailyScreenTime, caffeineIntake, dietType);
 
         return ResponseEntity.ok(recommendations);
     }
@@ -0,0 +1,79 @@
+package org.example.nbcheckinservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.config.AdminKey;
+import org.example.nbcheckinservice.dto.ProjectionRebuildStatus;
+import org.example.nbcheckinservice.projection.ProjectionRebuildService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Админ-API пересборки проекций (health_metrics, daily_ml_recommendation,
+ * уровень персонажа + награды) реплеем Kafka-топиков.
+ *
+ * Доступ — только с заголовком X-Admin-Key == projection.rebuild.admin-key (AdminKeyInterceptor).
+ * Если ключ не задан, эндпойнты отключены (403).
+ *
+ * Base path (с учётом context-path /api/v1): /api/v1/admin/projections
+ */
+@RestController
+@AdminKey("projection.rebuild.admin-key")
+@RequestMapping("/admin/projections")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Projection rebuild", description = "Replay Kafka topics into derived tables (admin only)")
+public class ProjectionRebuildController {
+
+    private final ProjectionRebuildService rebuildService;
+
+    @GetMapping
+    @Operation(summary = "List projections and their last rebuild status")
+    public ResponseEntity<?> list() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : rebuildService.getProjectionNames()) {
+            ProjectionRebuildStatus status = rebuildService.getStatus(name);
+            result.put(name, status != null ? status : Map.of("state", "NEVER_RUN"));
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/{name}/rebuild")
+    @Operation(summary = "Replay topics from a timestamp into the projection",
+               description = "from — ISO datetime in Asia/Almaty. groupId — optional consumer group " +
+                       "(default projection-rebuild-{name}, must start with projection-rebuild-); it is reset to " +
+                       "'from' before replay, and refused with 409 while it has active members.")
+    public ResponseEntity<?> rebuild(
+            @PathVariable String name,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) String groupId
+    ) {
+        log.info("POST /admin/projections/{}/rebuild from={} groupId={}", name, from, groupId);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(rebuildService.start(name, from, groupId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{name}/status")
+    @Operation(summary = "Status of the last rebuild of a projection")
+    public ResponseEntity<?> status(@PathVariable String name) {
+        ProjectionRebuildStatus status = rebuildService.getStatus(name);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/{name}/cancel")
+    @Operation(summary = "Cancel a running rebuild (offsets already committed are kept)")
+    public ResponseEntity<?> cancel(@PathVariable String name) {
+        return ResponseEntity.ok(Map.of("projection", name, "cancelled", rebuildService.cancel(name)));
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.nbcheckinservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.config.AdminKey;
+import org.example.nbcheckinservice.retention.RetentionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Админ-API retention: статус прогонов, ручной запуск, отмена и восстановление из архива.
+ *
+ * Доступ — только с заголовком X-Admin-Key == retention.admin-key (AdminKeyInterceptor).
+ * Если ключ не задан, эндпойнты отключены (403).
+ *
+ * Base path (с учётом context-path /api/v1): /api/v1/admin/retention
+ */
+@RestController
+@AdminKey("retention.admin-key")
+@RequestMapping("/admin/retention")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Retention", description = "Archive old check-ins / mood / sleep logs and restore them (admin only)")
+public class RetentionController {
+
+    private final RetentionService retentionService;
+
+    @GetMapping
+    @Operation(summary = "Last run status per table and archive summary")
+    public ResponseEntity<?> status() {
+        return ResponseEntity.ok(Map.of(
+                "runs", retentionService.getStatuses(),
+                "archive", retentionService.getArchiveSummary()
+        ));
+    }
+
+    @PostMapping("/run")
+    @Operation(summary = "Start a retention run in the background",
+               description = "table — optional, one of daily_check_ins / mood_logs / sleep_logs; " +
+                       "without it all enabled policies run.")
+    public ResponseEntity<?> run(@RequestParam(required = false) String table) {
+        log.info("POST /admin/retention/run table={}", table);
+        try {
+            retentionService.start(table);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("status", "started"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/cancel")
+    @Operation(summary = "Stop the current run after the chunk in progress")
+    public ResponseEntity<?> cancel() {
+        return ResponseEntity.ok(Map.of("cancelled", retentionService.cancel()));
+    }
+
+    @PostMapping("/{table}/restore")
+    @Operation(summary = "Restore archived rows of a table for a date range",
+               description = "Chunks overlapping [from, to] are inserted back (ON CONFLICT DO NOTHING). " +
+                       "Rows older than the policy horizon are archived again by the next run.")
+    public ResponseEntity<?> restore(
+            @PathVariable String table,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        if (to.isBefore(from)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'to' must not be before 'from'"));
+        }
+
+        log.info("POST /admin/retention/{}/restore from={} to={}", table, from, to);
+        try {
+            return ResponseEntity.ok(retentionService.restore(table, from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+}
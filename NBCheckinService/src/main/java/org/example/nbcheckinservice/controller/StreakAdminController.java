@@ -0,0 +1,57 @@
+package org.example.nbcheckinservice.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.config.AdminKey;
+import org.example.nbcheckinservice.service.StreakRecomputeService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Админ-API bulk-пересчёта user_streaks из daily_check_ins.
+ *
+ * Доступ — только с заголовком X-Admin-Key == streaks.admin-key (AdminKeyInterceptor).
+ * Если ключ не задан, эндпойнты отключены (403).
+ *
+ * Base path (с учётом context-path /api/v1): /api/v1/admin/streaks
+ */
+@RestController
+@AdminKey("streaks.admin-key")
+@RequestMapping("/admin/streaks")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Streaks", description = "Recompute stored streaks from check-in history and report drift (admin only)")
+public class StreakAdminController {
+
+    private final StreakRecomputeService recomputeService;
+
+    @GetMapping("/recompute")
+    @Operation(summary = "Status and drift report of the last recompute")
+    public ResponseEntity<?> status() {
+        return ResponseEntity.ok(recomputeService.getStatus());
+    }
+
+    @PostMapping("/recompute")
+    @Operation(summary = "Recompute user_streaks of every user in the background",
+               description = "dryRun=true (default) only reports drift between stored and derived values; "
+                       + "dryRun=false also writes the derived values.")
+    public ResponseEntity<?> recompute(@RequestParam(defaultValue = "true") boolean dryRun) {
+        log.info("POST /admin/streaks/recompute?dryRun={}", dryRun);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(recomputeService.start(dryRun));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/recompute/cancel")
+    @Operation(summary = "Stop the running recompute after the current chunk")
+    public ResponseEntity<?> cancel() {
+        return ResponseEntity.ok(Map.of("cancelled", recomputeService.cancel()));
+    }
+}
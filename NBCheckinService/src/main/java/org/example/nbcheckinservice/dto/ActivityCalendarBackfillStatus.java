@@ -0,0 +1,44 @@
+package org.example.nbcheckinservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of the last user_activity_calendar backfill (ActivityCalendarBackfillService).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ActivityCalendarBackfillStatus {
+
+    /** NEVER_RUN | RUNNING | COMPLETED | FAILED | CANCELLED */
+    private String state;
+
+    /** Причина запуска: startup | admin */
+    private String trigger;
+
+    /** Backfill хоть раз завершился без ошибок — чтения идут из карты, а не из исходных таблиц */
+    private Boolean backfilled;
+
+    private Long usersBackfilled;
+    private Long usersFailed;
+
+    /** Строк user_activity_calendar вставлено или дополнено */
+    private Long rowsWritten;
+
+    /** Keyset-курсор: последний обработанный user_id */
+    private Long lastUserId;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+
+    private String error;
+}
@@ -0,0 +1,27 @@
+package org.example.nbcheckinservice.dto;
+
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Все слои карты активности за год одним ответом.
+ *
+ * layers: ключ — слой (check_in, sleep_log, perfect_day, game_played, journal_written),
+ * значение — base64 от 46 байт; день d года (1..366) отмечен, если
+ * bytes[(d - 1) >> 3] & (1 << ((d - 1) & 7)) != 0.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ActivityCalendarResponse {
+
+    private Long userId;
+    private Integer year;
+    /** 365 или 366 */
+    private Integer daysInYear;
+    private Map<String, String> layers;
+    /** Число отмеченных дней по слоям */
+    private Map<String, Integer> totals;
+}
@@ -0,0 +1,39 @@
+package org.example.nbcheckinservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of the last full insight stats rebuild (InsightRebuildService).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InsightRebuildStatus {
+
+    /** RUNNING | COMPLETED | FAILED | CANCELLED */
+    private String state;
+
+    /** Причина запуска: startup | admin */
+    private String trigger;
+
+    private Integer formulaVersion;
+    private Long usersRebuilt;
+    private Long usersFailed;
+
+    /** Keyset-курсор: последний обработанный user_id */
+    private Long lastUserId;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+
+    private String error;
+}
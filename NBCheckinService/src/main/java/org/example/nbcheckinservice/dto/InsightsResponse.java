@@ -0,0 +1,58 @@
+package org.example.nbcheckinservice.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Response DTO for correlation insights (InsightStatsService).
+ * Все значения — из потоковых статистик за всю историю пользователя.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InsightsResponse {
+
+    private Long userId;
+    private Long checkInCount;
+    private Long moodLogCount;
+
+    /** Минимум дней/записей, после которого показывается корреляция или условное среднее */
+    private Integer minSamples;
+
+    private List<Correlation> correlations;
+    private List<ConditionalMood> conditionalMood;
+    private List<TriggerMood> triggers;
+
+    private List<String> insights;
+
+
+    @Data
+    @Builder
+    public static class Correlation {
+        private String x;           // sleep_hours, stress, ...
+        private String y;
+        private Long days;
+        private Double r;           // Pearson, -1..1
+    }
+
+    @Data
+    @Builder
+    public static class ConditionalMood {
+        private String condition;   // sleep_under_6h, exercised, ...
+        private String description;
+        private Long days;
+        private Double avgMood;
+        private Double otherDaysAvgMood;
+    }
+
+    @Data
+    @Builder
+    public static class TriggerMood {
+        private String trigger;
+        private Long logs;
+        private Double avgMood;
+        private Double otherLogsAvgMood;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.nbcheckinservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Snapshot of a projection rebuild (Kafka replay) job.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProjectionRebuildStatus {
+
+    private String projection;
+    private String groupId;
+
+    /** RUNNING | COMPLETED | COMPLETED_WITH_ERRORS | FAILED | CANCELLED */
+    private String state;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime replayFrom;
+
+    private Long recordsProcessed;
+    private Long recordsRemaining;
+
+    /** Users the handler failed on (their records' offsets are already committed) */
+    private Long usersFailed;
+    /** First 100 of those user ids, for a targeted retry */
+    private Set<Long> failedUserIds;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+
+    private String error;
+}
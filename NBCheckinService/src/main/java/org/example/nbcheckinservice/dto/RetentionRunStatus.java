@@ -0,0 +1,43 @@
+package org.example.nbcheckinservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of the last retention run for one table.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RetentionRunStatus {
+
+    private String table;
+
+    /** RUNNING | COMPLETED | DEADLINE_REACHED | FAILED | CANCELLED */
+    private String state;
+
+    /** Строки с датой раньше horizon переносятся в архив */
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime horizon;
+
+    private Long rowsArchived;
+    private Long chunks;
+    private Long compressedBytes;
+    private Long uncompressedBytes;
+
+    /** Суммарное время пауз троттлинга, мс */
+    private Long throttledMs;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+
+    private String error;
+}
@@ -0,0 +1,74 @@
+package org.example.nbcheckinservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Snapshot of the last bulk user_streaks recompute (StreakRecomputeService).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StreakRecomputeStatus {
+
+    /** RUNNING | COMPLETED | FAILED | CANCELLED */
+    private String state;
+
+    /** true — только отчёт о расхождениях, user_streaks не меняется */
+    private Boolean dryRun;
+
+    private Long usersChecked;
+    /** Пользователи, у которых хотя бы одно поле расходится с выведенным из daily_check_ins */
+    private Long usersDrifted;
+    private Long usersFailed;
+
+    // Расхождения по полям
+    private Long currentStreakDrift;
+    private Long longestStreakDrift;
+    private Long totalCheckinsDrift;
+    private Long lastCheckinDateDrift;
+    /** Check-in'ы есть, строки user_streaks нет */
+    private Long missingRows;
+
+    /** Первые расхождения — для ручной проверки */
+    private List<Drift> samples;
+
+    /** Keyset-курсор: последний обработанный user_id */
+    private Long lastUserId;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime startedAt;
+
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime finishedAt;
+
+    private String error;
+
+    /** Хранимые (stored*) и выведенные (derived*) значения одного пользователя; stored* null — строки нет */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Drift {
+        private Long userId;
+        private Integer storedCurrentStreak;
+        private Integer derivedCurrentStreak;
+        private Integer storedLongestStreak;
+        private Integer derivedLongestStreak;
+        private Integer storedTotalCheckins;
+        private Integer derivedTotalCheckins;
+
+        @JsonFormat(pattern = "yyyy-MM-dd")
+        private LocalDate storedLastCheckinDate;
+
+        @JsonFormat(pattern = "yyyy-MM-dd")
+        private LocalDate derivedLastCheckinDate;
+    }
+}
@@ -30,4 +30,7 @@ public class StreakResponse {
     private String nextMilestone;
     private Boolean isMilestoneDay;
     private Integer milestoneBonus;
+
+    /** Текущие серии дней по слоям карты активности: check_in, sleep_log, perfect_day, game_played, journal_written */
+    private Map<String, Integer> activityStreaks;
 }
\ No newline at end of file
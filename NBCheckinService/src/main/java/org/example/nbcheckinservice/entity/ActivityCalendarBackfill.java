@@ -0,0 +1,31 @@
+package org.example.nbcheckinservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отметка о завершённом backfill user_activity_calendar (ActivityCalendarBackfillService).
+ * Одна строка с id = 1; пока её нет, карта активности читается из исходных таблиц.
+ */
+@Entity
+@Table(name = "activity_calendar_backfill")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityCalendarBackfill {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "users_backfilled", nullable = false)
+    private Long usersBackfilled;
+
+    @Column(name = "completed_at", nullable = false)
+    private LocalDateTime completedAt;
+}
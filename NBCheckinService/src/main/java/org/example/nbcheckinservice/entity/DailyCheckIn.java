@@ -149,6 +149,18 @@ public class DailyCheckIn {
      * Based on all available metrics
      */
     public Double calculateWellnessScore() {
+        return wellnessScore(morningMood, eveningMood, sleepQuality, energyLevel, stressLevel,
+                didExercise, ateHealthy, hadSocialInteraction, playedCognitiveGameToday);
+    }
+
+    /**
+     * Same formula over raw column values — used by stats aggregation over
+     * projected rows (CheckInStatsAccumulator) without loading entities.
+     */
+    public static double wellnessScore(Integer morningMood, Integer eveningMood, Integer sleepQuality,
+                                       Integer energyLevel, Integer stressLevel,
+                                       Boolean didExercise, Boolean ateHealthy,
+                                       Boolean hadSocialInteraction, Boolean playedCognitiveGameToday) {
         double score = 0.0;
         int factorsCount = 0;
 
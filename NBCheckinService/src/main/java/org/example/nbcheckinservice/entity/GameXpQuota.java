@@ -0,0 +1,54 @@
+package org.example.nbcheckinservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Счётчик игр на (user, день, pipeline, тип) для дневного лимита XP.
+ * Пишется только upsert'ом GameXpQuotaService — сущность read-only.
+ */
+@Entity
+@Table(name = "game_xp_quota")
+@IdClass(GameXpQuota.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GameXpQuota {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "game_date")
+    private LocalDate gameDate;
+
+    /** GameXpQuotaService.Source */
+    @Id
+    @Column(name = "source", length = 20)
+    private String source;
+
+    @Id
+    @Column(name = "game_type", length = 50)
+    private String gameType;
+
+    @Column(name = "plays", nullable = false)
+    private Integer plays;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private LocalDate gameDate;
+        private String source;
+        private String gameType;
+    }
+}
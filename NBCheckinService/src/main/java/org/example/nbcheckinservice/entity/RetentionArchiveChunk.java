@@ -0,0 +1,58 @@
+package org.example.nbcheckinservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Чанк строк, вынесенных retention-движком из рабочей таблицы.
+ * payload — gzip JSON-массива строк (row_to_json), восстанавливается через json_populate_recordset.
+ */
+@Entity
+@Table(name = "retention_archive_chunks", indexes = {
+        @Index(name = "idx_retention_chunks_table_dates", columnList = "source_table, min_row_date, max_row_date")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionArchiveChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "source_table", nullable = false, length = 64)
+    private String sourceTable;
+
+    @Column(name = "row_count", nullable = false)
+    private Integer rowCount;
+
+    @Column(name = "min_row_id", nullable = false)
+    private Long minRowId;
+
+    @Column(name = "max_row_id", nullable = false)
+    private Long maxRowId;
+
+    @Column(name = "min_row_date", nullable = false)
+    private LocalDateTime minRowDate;
+
+    @Column(name = "max_row_date", nullable = false)
+    private LocalDateTime maxRowDate;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "bytea")
+    private byte[] payload;
+
+    @Column(name = "uncompressed_bytes", nullable = false)
+    private Integer uncompressedBytes;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    @Column(name = "restored_at")
+    private LocalDateTime restoredAt;
+}
@@ -0,0 +1,52 @@
+package org.example.nbcheckinservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Годовая карта одного слоя активности пользователя (см. ActivityBitmap).
+ * Биты меняются только атомарными UPDATE в UserActivityCalendarRepository — сущность read-only.
+ */
+@Entity
+@Table(name = "user_activity_calendar")
+@IdClass(UserActivityCalendar.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserActivityCalendar {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "year", columnDefinition = "smallint")
+    private Integer year;
+
+    /** ActivityLayer.code */
+    @Id
+    @Column(name = "layer", columnDefinition = "smallint")
+    private Integer layer;
+
+    @Column(name = "bits", nullable = false, columnDefinition = "bytea")
+    private byte[] bits;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private Integer year;
+        private Integer layer;
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.nbcheckinservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сериализованное состояние InsightStats одного пользователя.
+ * Пишется только InsightStatsService под PESSIMISTIC_WRITE на строку.
+ */
+@Entity
+@Table(name = "user_insight_stats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserInsightStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    /** InsightStats.FORMULA_VERSION на момент сборки; -1 — заглушка, состояние ещё не собрано */
+    @Column(name = "formula_version", nullable = false)
+    private Integer formulaVersion;
+
+    @Column(name = "state", columnDefinition = "bytea")
+    private byte[] state;
+
+    @Column(name = "check_in_count", nullable = false)
+    private Long checkInCount;
+
+    @Column(name = "mood_log_count", nullable = false)
+    private Long moodLogCount;
+
+    @Column(name = "rebuilt_at")
+    private LocalDateTime rebuiltAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
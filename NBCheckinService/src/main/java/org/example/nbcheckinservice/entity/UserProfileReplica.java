@@ -0,0 +1,53 @@
+package org.example.nbcheckinservice.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Реплика онбординга пользователя из NBAuthService.
+ * Обновляется из Kafka (user.onboarding-updated) и bulk-бэкфиллом;
+ * читается ML-расчётом вместо HTTP-запроса в auth-сервис.
+ */
+@Entity
+@Table(name = "user_profile_replica")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserProfileReplica {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "sex", length = 10)
+    private String sex;
+
+    @Column(name = "birth_date")
+    private LocalDate birthDate;
+
+    @Column(name = "height_cm")
+    private Integer heightCm;
+
+    @Column(name = "weight_kg")
+    private Integer weightKg;
+
+    @Column(name = "character_id")
+    private Integer characterId;
+
+    @Column(name = "onboarding_completed", nullable = false)
+    private boolean onboardingCompleted;
+
+    /** version события-источника — более старые события не перезаписывают реплику */
+    @Column(name = "source_version", nullable = false)
+    private Long sourceVersion;
+
+    @Column(name = "replicated_at", nullable = false)
+    private LocalDateTime replicatedAt;
+}
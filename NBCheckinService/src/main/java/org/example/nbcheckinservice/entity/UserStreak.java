@@ -36,6 +36,14 @@ public class UserStreak {
     @Builder.Default
     private Integer totalCheckins = 0;
 
+    /**
+     * Check-in'ы, перенесённые retention в архив (RetentionArchiver): в daily_check_ins
+     * их уже нет, но в totalCheckins они входят — пересчёт добавляет их к выведенному числу.
+     */
+    @Column(name = "archived_checkins", nullable = false, columnDefinition = "integer default 0")
+    @Builder.Default
+    private Integer archivedCheckins = 0;
+
     @Column(name = "total_xp_earned", nullable = false)
     @Builder.Default
     private Integer totalXpEarned = 0;
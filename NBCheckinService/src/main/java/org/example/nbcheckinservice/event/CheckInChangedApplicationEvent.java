@@ -0,0 +1,17 @@
+package org.example.nbcheckinservice.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * Check-in создан, изменён или удалён — сбрасывает кэш статистики окон,
+ * содержащих эту дату (CheckInStatsCache).
+ */
+@Getter
+@AllArgsConstructor
+public class CheckInChangedApplicationEvent {
+    private final Long userId;
+    private final LocalDate checkInDate;
+}
@@ -0,0 +1,177 @@
+package org.example.nbcheckinservice.insights;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.InsightRebuildStatus;
+import org.example.nbcheckinservice.repository.UserInsightStatsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Полная пересборка user_insight_stats — для смены формул (InsightStats.FORMULA_VERSION).
+ *
+ * Идёт keyset-страницами по user_id всех пользователей с check-in или mood log;
+ * каждый пользователь — отдельная транзакция InsightStatsService.rebuildUser
+ * под блокировкой его строки, так что live-записи не теряются: они либо ждут
+ * пересборку, либо уже видны ей.
+ *
+ * Автозапуск при старте (insights.rebuild.on-startup), если есть строки другой версии.
+ * Без него устаревшие пользователи всё равно пересобираются лениво — при первом
+ * чтении или записи; job нужен, чтобы не платить O(history) в foreground-запросах.
+ */
+@Service
+@Slf4j
+public class InsightRebuildService {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+
+    private final InsightStatsService statsService;
+    private final UserInsightStatsRepository statsRepository;
+    private final boolean onStartup;
+    private final int pageSize;
+    private final Duration pause;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelRequested;
+    private volatile InsightRebuildStatus status;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "insight-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public InsightRebuildService(
+            InsightStatsService statsService,
+            UserInsightStatsRepository statsRepository,
+            @Value("${insights.rebuild.on-startup:true}") boolean onStartup,
+            @Value("${insights.rebuild.page-size:200}") int pageSize,
+            @Value("${insights.rebuild.pause:PT0.05S}") Duration pause
+    ) {
+        this.statsService = statsService;
+        this.statsRepository = statsRepository;
+        this.onStartup = onStartup;
+        this.pageSize = Math.max(1, pageSize);
+        this.pause = pause;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cancelRequested = true;
+        runner.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildStaleOnStartup() {
+        if (!onStartup) return;
+        long stale = statsRepository.countByFormulaVersionNot(InsightStats.FORMULA_VERSION);
+        if (stale == 0) return;
+        log.info("Insight stats: {} rows not at formula version {}, starting rebuild", stale, InsightStats.FORMULA_VERSION);
+        if (running.compareAndSet(false, true)) {
+            runner.submit(() -> run("startup"));
+        }
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // PUBLIC API
+    // ═════════════════════════════════════════════════════════════
+
+    /**
+     * Запускает полную пересборку в фоне.
+     *
+     * @throws IllegalStateException пересборка уже идёт
+     */
+    public InsightRebuildStatus start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Insight stats rebuild already in progress");
+        }
+        runner.submit(() -> run("admin"));
+        return getStatus();
+    }
+
+    public boolean cancel() {
+        if (!running.get()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    public InsightRebuildStatus getStatus() {
+        InsightRebuildStatus current = status;
+        return current != null ? current : InsightRebuildStatus.builder()
+                .state(running.get() ? "RUNNING" : "NEVER_RUN")
+                .formulaVersion(InsightStats.FORMULA_VERSION)
+                .build();
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // RUN
+    // ═════════════════════════════════════════════════════════════
+
+    private void run(String trigger) {
+        cancelRequested = false;
+        LocalDateTime startedAt = LocalDateTime.now(ALMATY_ZONE);
+        long rebuilt = 0, failed = 0, lastUserId = 0;
+        String state = "COMPLETED";
+        String error = null;
+        status = snapshot("RUNNING", trigger, 0, 0, 0, startedAt, null, null);
+
+        try {
+            while (!cancelRequested) {
+                List<Long> userIds = statsRepository.findUserIdsAfter(lastUserId, pageSize);
+                if (userIds.isEmpty()) break;
+
+                for (Long userId : userIds) {
+                    try {
+                        statsService.rebuildUser(userId);
+                        rebuilt++;
+                    } catch (RuntimeException e) {
+                        // Один битый пользователь не останавливает job — он пересоберётся лениво
+                        failed++;
+                        log.warn("Insight stats rebuild failed for user {}: {}", userId, e.getMessage());
+                    }
+                    lastUserId = userId;
+                }
+                status = snapshot("RUNNING", trigger, rebuilt, failed, lastUserId, startedAt, null, null);
+                Thread.sleep(pause.toMillis());
+            }
+            if (cancelRequested) state = "CANCELLED";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "CANCELLED";
+        } catch (Exception e) {
+            state = "FAILED";
+            error = e.getMessage();
+            log.error("Insight stats rebuild failed after user {}: {}", lastUserId, e.getMessage(), e);
+        } finally {
+            status = snapshot(state, trigger, rebuilt, failed, lastUserId, startedAt,
+                    LocalDateTime.now(ALMATY_ZONE), error);
+            running.set(false);
+        }
+        log.info("Insight stats rebuild {} ({}): {} users rebuilt, {} failed", state, trigger, rebuilt, failed);
+    }
+
+    private static InsightRebuildStatus snapshot(String state, String trigger, long rebuilt, long failed,
+                                                 long lastUserId, LocalDateTime startedAt,
+                                                 LocalDateTime finishedAt, String error) {
+        return InsightRebuildStatus.builder()
+                .state(state)
+                .trigger(trigger)
+                .formulaVersion(InsightStats.FORMULA_VERSION)
+                .usersRebuilt(rebuilt)
+                .usersFailed(failed)
+                .lastUserId(lastUserId)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build();
+    }
+}
@@ -0,0 +1,477 @@
+package org.example.nbcheckinservice.insights;
+
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Потоковые достаточные статистики одного пользователя для insight-запросов за O(1).
+ *
+ *   - Welford (n, mean, M2) по каждому дневному признаку check-in;
+ *   - co-moments (n, mean_x, mean_y, M2_x, M2_y, C_xy) для выбранных пар → Pearson r;
+ *   - условные средние настроения дня по условиям (сон &lt; 6ч, была тренировка, ...);
+ *   - средние mood_value записей MoodLog по каждому trigger.
+ *
+ * Каждая запись обратима: add(x) / remove(x) — update и delete check-in / mood log
+ * применяются как remove(старое) + add(новое), без чтения истории.
+ *
+ * Состояние сериализуется в user_insight_stats.state; при изменении формул
+ * (признаки, пары, условия, пороги) поднимается FORMULA_VERSION, и старые
+ * состояния пересобираются из таблиц (InsightRebuildService).
+ */
+public final class InsightStats {
+
+    /** Версия формул: состояние с другой версией считается устаревшим */
+    public static final int FORMULA_VERSION = 1;
+
+    /** Меньше точек — корреляции и условные средние не показываются */
+    public static final int MIN_SAMPLES = 7;
+
+    /** Потолок словаря triggers на пользователя — новые сверх него не учитываются */
+    static final int MAX_TRIGGERS = 64;
+    static final int MAX_TRIGGER_LENGTH = 50;
+
+    // ═════════════════════════════════════════════════════════════
+    // FEATURES / PAIRS / CONDITIONS
+    // ═════════════════════════════════════════════════════════════
+
+    /** Дневные признаки check-in */
+    public enum Feature {
+        SLEEP_HOURS("sleep hours", r -> r.sleepHours() != null ? r.sleepHours().doubleValue() : null),
+        SLEEP_QUALITY("sleep quality", r -> toDouble(r.sleepQuality())),
+        MORNING_MOOD("morning mood", r -> toDouble(r.morningMood())),
+        EVENING_MOOD("evening mood", r -> toDouble(r.eveningMood())),
+        /** Среднее утреннего и вечернего, либо то, что есть */
+        DAY_MOOD("mood", InsightStats::dayMood),
+        ENERGY("energy", r -> toDouble(r.energyLevel())),
+        STRESS("stress", r -> toDouble(r.stressLevel())),
+        ACTIVITY_MINUTES("activity minutes", r -> toDouble(r.physicalActivityMinutes()));
+
+        public final String label;
+        private final Function<CheckInStatsRow, Double> extractor;
+
+        Feature(String label, Function<CheckInStatsRow, Double> extractor) {
+            this.label = label;
+            this.extractor = extractor;
+        }
+
+        Double of(CheckInStatsRow row) {
+            return extractor.apply(row);
+        }
+    }
+
+    /** Пары признаков с co-moments */
+    public enum Pair {
+        SLEEP_HOURS_MORNING_MOOD(Feature.SLEEP_HOURS, Feature.MORNING_MOOD),
+        SLEEP_HOURS_EVENING_MOOD(Feature.SLEEP_HOURS, Feature.EVENING_MOOD),
+        SLEEP_HOURS_ENERGY(Feature.SLEEP_HOURS, Feature.ENERGY),
+        SLEEP_QUALITY_DAY_MOOD(Feature.SLEEP_QUALITY, Feature.DAY_MOOD),
+        STRESS_DAY_MOOD(Feature.STRESS, Feature.DAY_MOOD),
+        STRESS_SLEEP_QUALITY(Feature.STRESS, Feature.SLEEP_QUALITY),
+        ENERGY_DAY_MOOD(Feature.ENERGY, Feature.DAY_MOOD),
+        ACTIVITY_DAY_MOOD(Feature.ACTIVITY_MINUTES, Feature.DAY_MOOD),
+        ACTIVITY_STRESS(Feature.ACTIVITY_MINUTES, Feature.STRESS);
+
+        public final Feature x;
+        public final Feature y;
+
+        Pair(Feature x, Feature y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /** Условия дня для условного среднего DAY_MOOD; null от предиката — данных нет, день не учитывается */
+    public enum Condition {
+        SLEEP_UNDER_6H("slept under 6h", r -> r.sleepHours() == null ? null : r.sleepHours().doubleValue() < 6.0),
+        SLEEP_6_TO_8H("slept 6-8h", r -> r.sleepHours() == null ? null
+                : r.sleepHours().doubleValue() >= 6.0 && r.sleepHours().doubleValue() < 8.0),
+        SLEEP_8H_PLUS("slept 8h or more", r -> r.sleepHours() == null ? null : r.sleepHours().doubleValue() >= 8.0),
+        EXERCISED("exercised", r -> r.didExercise()),
+        ATE_HEALTHY("ate healthy", r -> r.ateHealthy()),
+        SOCIAL("had social interaction", r -> r.hadSocialInteraction()),
+        HIGH_STRESS("stress was 7+", r -> r.stressLevel() == null ? null : r.stressLevel() >= 7),
+        LOW_STRESS("stress was 3 or lower", r -> r.stressLevel() == null ? null : r.stressLevel() <= 3);
+
+        public final String description;
+        private final Function<CheckInStatsRow, Boolean> predicate;
+
+        Condition(String description, Function<CheckInStatsRow, Boolean> predicate) {
+            this.description = description;
+            this.predicate = predicate;
+        }
+
+        boolean holds(CheckInStatsRow row) {
+            return Boolean.TRUE.equals(predicate.apply(row));
+        }
+    }
+
+    // ─── Query results ───
+
+    public record Correlation(Pair pair, long n, double r) {}
+
+    /** mean — при выполнении условия, othersMean — во все остальные дни с настроением */
+    public record ConditionalMean(Condition condition, long n, double mean, double othersMean) {}
+
+    public record TriggerMean(String trigger, long n, double mean, double othersMean) {}
+
+    // ═════════════════════════════════════════════════════════════
+    // STATE
+    // ═════════════════════════════════════════════════════════════
+
+    private long checkIns;
+    private final Moments[] features = newMoments(Feature.values().length);
+    private final CoMoments[] pairs = newCoMoments(Pair.values().length);
+    private final Moments[] conditions = newMoments(Condition.values().length);
+
+    private final Moments moodLogs = new Moments();
+    private final Map<String, Moments> triggers = new TreeMap<>();
+
+    // ═════════════════════════════════════════════════════════════
+    // UPDATES
+    // ═════════════════════════════════════════════════════════════
+
+    /** before / after — состояние check-in до и после записи; null — строки не было / больше нет */
+    public void applyCheckIn(CheckInStatsRow before, CheckInStatsRow after) {
+        if (before != null) checkIn(before, false);
+        if (after != null) checkIn(after, true);
+    }
+
+    public void applyMoodLog(Integer moodBefore, Collection<String> triggersBefore,
+                             Integer moodAfter, Collection<String> triggersAfter) {
+        if (moodBefore != null) moodLog(moodBefore, triggersBefore, false);
+        if (moodAfter != null) moodLog(moodAfter, triggersAfter, true);
+    }
+
+    private void checkIn(CheckInStatsRow row, boolean add) {
+        checkIns += add ? 1 : -1;
+
+        Double[] v = new Double[Feature.values().length];
+        for (Feature f : Feature.values()) {
+            v[f.ordinal()] = f.of(row);
+            if (v[f.ordinal()] != null) features[f.ordinal()].apply(v[f.ordinal()], add);
+        }
+        for (Pair p : Pair.values()) {
+            Double x = v[p.x.ordinal()], y = v[p.y.ordinal()];
+            if (x != null && y != null) pairs[p.ordinal()].apply(x, y, add);
+        }
+        Double mood = v[Feature.DAY_MOOD.ordinal()];
+        if (mood != null) {
+            for (Condition c : Condition.values()) {
+                if (c.holds(row)) conditions[c.ordinal()].apply(mood, add);
+            }
+        }
+    }
+
+    private void moodLog(int mood, Collection<String> rawTriggers, boolean add) {
+        moodLogs.apply(mood, add);
+        for (String trigger : normalizeTriggers(rawTriggers)) {
+            Moments m = triggers.get(trigger);
+            if (m == null) {
+                if (!add || triggers.size() >= MAX_TRIGGERS) continue;
+                m = new Moments();
+                triggers.put(trigger, m);
+            }
+            m.apply(mood, add);
+            if (m.n == 0) triggers.remove(trigger);
+        }
+    }
+
+    /** trim + lower-case, без пустых и дублей в одной записи */
+    static Set<String> normalizeTriggers(Collection<String> raw) {
+        Set<String> out = new LinkedHashSet<>();
+        if (raw == null) return out;
+        for (String t : raw) {
+            if (t == null) continue;
+            String s = t.trim().toLowerCase(Locale.ROOT);
+            if (s.isEmpty()) continue;
+            out.add(s.length() > MAX_TRIGGER_LENGTH ? s.substring(0, MAX_TRIGGER_LENGTH) : s);
+        }
+        return out;
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // QUERIES (O(1) по истории)
+    // ═════════════════════════════════════════════════════════════
+
+    public long checkInCount() {
+        return checkIns;
+    }
+
+    public long moodLogCount() {
+        return moodLogs.n;
+    }
+
+    /** Среднее признака; null — значений нет */
+    public Double mean(Feature feature) {
+        Moments m = features[feature.ordinal()];
+        return m.n > 0 ? m.mean : null;
+    }
+
+    /** Выборочное стандартное отклонение; null — меньше двух значений */
+    public Double stdDev(Feature feature) {
+        Moments m = features[feature.ordinal()];
+        return m.n > 1 ? Math.sqrt(Math.max(0, m.m2) / (m.n - 1)) : null;
+    }
+
+    /** Pearson r по парам с n ≥ MIN_SAMPLES и ненулевой дисперсией обоих признаков */
+    public List<Correlation> correlations() {
+        List<Correlation> out = new ArrayList<>();
+        for (Pair p : Pair.values()) {
+            CoMoments c = pairs[p.ordinal()];
+            Double r = c.pearson();
+            if (c.n >= MIN_SAMPLES && r != null) out.add(new Correlation(p, c.n, r));
+        }
+        return out;
+    }
+
+    /** Условные средние DAY_MOOD против остальных дней; обе группы — не меньше MIN_SAMPLES */
+    public List<ConditionalMean> conditionalMeans() {
+        Moments all = features[Feature.DAY_MOOD.ordinal()];
+        List<ConditionalMean> out = new ArrayList<>();
+        for (Condition c : Condition.values()) {
+            Moments m = conditions[c.ordinal()];
+            Double others = complementMean(all, m);
+            if (m.n >= MIN_SAMPLES && all.n - m.n >= MIN_SAMPLES && others != null) {
+                out.add(new ConditionalMean(c, m.n, m.mean, others));
+            }
+        }
+        return out;
+    }
+
+    /** Среднее mood_value по trigger против записей без него; trigger — минимум minLogs записей */
+    public List<TriggerMean> triggerMeans(int minLogs) {
+        List<TriggerMean> out = new ArrayList<>();
+        for (Map.Entry<String, Moments> e : triggers.entrySet()) {
+            Moments m = e.getValue();
+            Double others = complementMean(moodLogs, m);
+            if (m.n >= minLogs && others != null) {
+                out.add(new TriggerMean(e.getKey(), m.n, m.mean, others));
+            }
+        }
+        return out;
+    }
+
+    private static Double complementMean(Moments all, Moments part) {
+        long n = all.n - part.n;
+        return n > 0 ? (all.n * all.mean - part.n * part.mean) / n : null;
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // CODEC
+    // ═════════════════════════════════════════════════════════════
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMULA_VERSION);
+            out.writeLong(checkIns);
+            writeAll(out, features);
+            out.writeShort(pairs.length);
+            for (CoMoments c : pairs) c.write(out);
+            writeAll(out, conditions);
+            moodLogs.write(out);
+            out.writeShort(triggers.size());
+            for (Map.Entry<String, Moments> e : triggers.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().write(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalStateException состояние другой FORMULA_VERSION или другой формы —
+     *                               вызывающий пересобирает его из таблиц
+     */
+    public static InsightStats decode(byte[] state) {
+        InsightStats s = new InsightStats();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            int version = in.readInt();
+            if (version != FORMULA_VERSION) {
+                throw new IllegalStateException("Insight state version " + version + " != " + FORMULA_VERSION);
+            }
+            s.checkIns = in.readLong();
+            readAll(in, s.features);
+            expectLength(in, s.pairs.length);
+            for (CoMoments c : s.pairs) c.read(in);
+            readAll(in, s.conditions);
+            s.moodLogs.read(in);
+            int n = in.readUnsignedShort();
+            for (int i = 0; i < n; i++) {
+                String trigger = in.readUTF();
+                Moments m = new Moments();
+                m.read(in);
+                s.triggers.put(trigger, m);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted insight state", e);
+        }
+        return s;
+    }
+
+    private static void writeAll(DataOutputStream out, Moments[] all) throws IOException {
+        out.writeShort(all.length);
+        for (Moments m : all) m.write(out);
+    }
+
+    private static void readAll(DataInputStream in, Moments[] all) throws IOException {
+        expectLength(in, all.length);
+        for (Moments m : all) m.read(in);
+    }
+
+    private static void expectLength(DataInputStream in, int expected) throws IOException {
+        int length = in.readUnsignedShort();
+        if (length != expected) {
+            throw new IllegalStateException("Insight state shape mismatch: " + length + " != " + expected);
+        }
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // WELFORD
+    // ═════════════════════════════════════════════════════════════
+
+    /** Одномерные моменты: n, mean, M2 = Σ(x − mean)² */
+    static final class Moments {
+        long n;
+        double mean;
+        double m2;
+
+        void apply(double x, boolean add) {
+            if (add) {
+                n++;
+                double delta = x - mean;
+                mean += delta / n;
+                m2 += delta * (x - mean);
+            } else if (n <= 1) {
+                reset();
+            } else {
+                // Обратный шаг Welford: восстанавливаем mean без x, затем вычитаем вклад x в M2
+                double meanWithout = (n * mean - x) / (n - 1);
+                m2 -= (x - meanWithout) * (x - mean);
+                mean = meanWithout;
+                n--;
+                if (m2 < 0) m2 = 0;
+            }
+        }
+
+        private void reset() {
+            n = 0;
+            mean = 0;
+            m2 = 0;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(n);
+            out.writeDouble(mean);
+            out.writeDouble(m2);
+        }
+
+        void read(DataInputStream in) throws IOException {
+            n = in.readLong();
+            mean = in.readDouble();
+            m2 = in.readDouble();
+        }
+    }
+
+    /** Двумерные моменты: Welford по x и y плюс C = Σ(x − mean_x)(y − mean_y) */
+    static final class CoMoments {
+        long n;
+        double meanX, meanY;
+        double m2X, m2Y;
+        double c;
+
+        void apply(double x, double y, boolean add) {
+            if (add) {
+                n++;
+                double dx = x - meanX;
+                meanX += dx / n;
+                double dy = y - meanY;
+                meanY += dy / n;
+                m2X += dx * (x - meanX);
+                m2Y += dy * (y - meanY);
+                c += dx * (y - meanY);
+            } else if (n <= 1) {
+                n = 0;
+                meanX = meanY = m2X = m2Y = c = 0;
+            } else {
+                double mxWithout = (n * meanX - x) / (n - 1);
+                double myWithout = (n * meanY - y) / (n - 1);
+                m2X -= (x - mxWithout) * (x - meanX);
+                m2Y -= (y - myWithout) * (y - meanY);
+                c -= (x - mxWithout) * (y - meanY);
+                meanX = mxWithout;
+                meanY = myWithout;
+                n--;
+                if (m2X < 0) m2X = 0;
+                if (m2Y < 0) m2Y = 0;
+            }
+        }
+
+        Double pearson() {
+            if (n < 2) return null;
+            double denominator = Math.sqrt(m2X * m2Y);
+            if (denominator < 1e-9) return null;
+            return Math.max(-1.0, Math.min(1.0, c / denominator));
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(n);
+            out.writeDouble(meanX);
+            out.writeDouble(meanY);
+            out.writeDouble(m2X);
+            out.writeDouble(m2Y);
+            out.writeDouble(c);
+        }
+
+        void read(DataInputStream in) throws IOException {
+            n = in.readLong();
+            meanX = in.readDouble();
+            meanY = in.readDouble();
+            m2X = in.readDouble();
+            m2Y = in.readDouble();
+            c = in.readDouble();
+        }
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private static Moments[] newMoments(int n) {
+        Moments[] out = new Moments[n];
+        for (int i = 0; i < n; i++) out[i] = new Moments();
+        return out;
+    }
+
+    private static CoMoments[] newCoMoments(int n) {
+        CoMoments[] out = new CoMoments[n];
+        for (int i = 0; i < n; i++) out[i] = new CoMoments();
+        return out;
+    }
+
+    private static Double toDouble(Integer value) {
+        return value != null ? value.doubleValue() : null;
+    }
+
+    private static Double dayMood(CheckInStatsRow r) {
+        Integer morning = r.morningMood(), evening = r.eveningMood();
+        if (morning != null && evening != null) return (morning + evening) / 2.0;
+        if (morning != null) return morning.doubleValue();
+        return evening != null ? evening.doubleValue() : null;
+    }
+}
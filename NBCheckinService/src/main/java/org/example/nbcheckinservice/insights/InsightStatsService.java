@@ -0,0 +1,243 @@
+package org.example.nbcheckinservice.insights;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.InsightsResponse;
+import org.example.nbcheckinservice.entity.MoodLog;
+import org.example.nbcheckinservice.entity.UserInsightStats;
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
+import org.example.nbcheckinservice.repository.DailyCheckInRepository;
+import org.example.nbcheckinservice.repository.MoodLogRepository;
+import org.example.nbcheckinservice.repository.UserInsightStatsRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Инкрементальный insights-движок поверх InsightStats.
+ *
+ * Write path (DailyCheckInService, MoodLogService) — в транзакции самой записи:
+ *   INSERT заглушки ON CONFLICT DO NOTHING → SELECT ... FOR UPDATE → delta(before, after) → UPDATE.
+ *   Откат записи откатывает и статистику; параллельные записи одного пользователя
+ *   сериализуются на строке user_insight_stats.
+ *
+ * Если состояния нет или оно другой FORMULA_VERSION, вместо delta пользователь
+ * пересобирается из таблиц под той же блокировкой — запрос уже видит текущую запись.
+ *
+ * Read path — одна строка по PK и O(1) арифметика по моментам.
+ * Полная пересборка после смены формул — InsightRebuildService.
+ *
+ * Retention: архивированные строки из статистики не вычитаются (это всё ещё история
+ * пользователя), но пересборка видит только то, что осталось в рабочих таблицах.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InsightStatsService {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+
+    /** Порог разницы средних настроения (шкала 1–5) для текстового insight */
+    private static final double MOOD_DIFF_THRESHOLD = 0.5;
+    /** Порог |r| для текстового insight по корреляции */
+    private static final double CORRELATION_THRESHOLD = 0.4;
+    private static final int MIN_TRIGGER_LOGS = 3;
+    private static final int MAX_INSIGHTS = 6;
+
+    private final UserInsightStatsRepository statsRepository;
+    private final DailyCheckInRepository checkInRepository;
+    private final MoodLogRepository moodLogRepository;
+    private final MeterRegistry meterRegistry;
+
+    // ═════════════════════════════════════════════════════════════
+    // WRITE PATH
+    // ═════════════════════════════════════════════════════════════
+
+    /**
+     * @param before check-in до записи (null — создание)
+     * @param after  check-in после записи (null — удаление)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onCheckInChanged(Long userId, CheckInStatsRow before, CheckInStatsRow after) {
+        update(userId, stats -> stats.applyCheckIn(before, after));
+    }
+
+    /** moodBefore == null — создание, moodAfter == null — удаление */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMoodLogChanged(Long userId,
+                                 Integer moodBefore, List<String> triggersBefore,
+                                 Integer moodAfter, List<String> triggersAfter) {
+        update(userId, stats -> stats.applyMoodLog(moodBefore, triggersBefore, moodAfter, triggersAfter));
+    }
+
+    private void update(Long userId, Consumer<InsightStats> delta) {
+        UserInsightStats row = lock(userId);
+        InsightStats stats = decode(row);
+        if (stats == null) {
+            rebuildLocked(row, "write");
+            return;
+        }
+        delta.accept(stats);
+        store(row, stats);
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // REBUILD
+    // ═════════════════════════════════════════════════════════════
+
+    /** Пересборка одного пользователя из daily_check_ins + mood_logs (своя транзакция для job'а) */
+    @Transactional
+    public InsightStats rebuildUser(Long userId) {
+        return rebuildLocked(lock(userId), "job");
+    }
+
+    private InsightStats rebuildLocked(UserInsightStats row, String reason) {
+        // Незафлашенные изменения текущей транзакции должны попасть в выборку
+        checkInRepository.flush();
+
+        InsightStats stats = new InsightStats();
+        for (CheckInStatsRow checkIn : checkInRepository.findAllStatsRows(row.getUserId())) {
+            stats.applyCheckIn(null, checkIn);
+        }
+        for (MoodLog moodLog : moodLogRepository.findByUserIdOrderByLogTimestampDesc(row.getUserId())) {
+            stats.applyMoodLog(null, null, moodLog.getMoodValue(), moodLog.getTriggers());
+        }
+
+        row.setRebuiltAt(LocalDateTime.now(ALMATY_ZONE));
+        store(row, stats);
+        meterRegistry.counter("insights.stats.rebuilds", "reason", reason).increment();
+        log.debug("Insight stats rebuilt for user {} ({}): {} check-ins, {} mood logs",
+                row.getUserId(), reason, stats.checkInCount(), stats.moodLogCount());
+        return stats;
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // READ PATH
+    // ═════════════════════════════════════════════════════════════
+
+    /** Не readOnly: устаревшее состояние пересобирается и сохраняется при первом чтении */
+    @Transactional
+    public InsightsResponse getInsights(Long userId) {
+        InsightStats stats = statsRepository.findById(userId).map(this::decode).orElse(null);
+        if (stats == null) {
+            stats = rebuildLocked(lock(userId), "read");
+        }
+        return toResponse(userId, stats);
+    }
+
+    private InsightsResponse toResponse(Long userId, InsightStats stats) {
+        List<InsightStats.Correlation> correlations = stats.correlations();
+        List<InsightStats.ConditionalMean> conditional = stats.conditionalMeans();
+        List<InsightStats.TriggerMean> triggers = stats.triggerMeans(MIN_TRIGGER_LOGS);
+
+        return InsightsResponse.builder()
+                .userId(userId)
+                .checkInCount(stats.checkInCount())
+                .moodLogCount(stats.moodLogCount())
+                .minSamples(InsightStats.MIN_SAMPLES)
+                .correlations(correlations.stream()
+                        .map(c -> InsightsResponse.Correlation.builder()
+                                .x(key(c.pair().x))
+                                .y(key(c.pair().y))
+                                .days(c.n())
+                                .r(round(c.r(), 100))
+                                .build())
+                        .toList())
+                .conditionalMood(conditional.stream()
+                        .map(c -> InsightsResponse.ConditionalMood.builder()
+                                .condition(key(c.condition()))
+                                .description(c.condition().description)
+                                .days(c.n())
+                                .avgMood(round(c.mean(), 10))
+                                .otherDaysAvgMood(round(c.othersMean(), 10))
+                                .build())
+                        .toList())
+                .triggers(triggers.stream()
+                        .map(t -> InsightsResponse.TriggerMood.builder()
+                                .trigger(t.trigger())
+                                .logs(t.n())
+                                .avgMood(round(t.mean(), 10))
+                                .otherLogsAvgMood(round(t.othersMean(), 10))
+                                .build())
+                        .toList())
+                .insights(generateInsights(correlations, conditional, triggers))
+                .build();
+    }
+
+    /** Самые сильные эффекты первыми: условия дня, затем triggers, затем корреляции */
+    private List<String> generateInsights(List<InsightStats.Correlation> correlations,
+                                          List<InsightStats.ConditionalMean> conditional,
+                                          List<InsightStats.TriggerMean> triggers) {
+        List<String> insights = new ArrayList<>();
+
+        conditional.stream()
+                .filter(c -> Math.abs(c.mean() - c.othersMean()) >= MOOD_DIFF_THRESHOLD)
+                .sorted(Comparator.comparingDouble(c -> -Math.abs(c.mean() - c.othersMean())))
+                .forEach(c -> insights.add(String.format(Locale.ROOT,
+                        "On days you %s your mood averaged %.1f (%.1f on other days).",
+                        c.condition().description, c.mean(), c.othersMean())));
+
+        triggers.stream()
+                .filter(t -> Math.abs(t.mean() - t.othersMean()) >= MOOD_DIFF_THRESHOLD)
+                .sorted(Comparator.comparingDouble(t -> -Math.abs(t.mean() - t.othersMean())))
+                .forEach(t -> insights.add(String.format(Locale.ROOT,
+                        "Moods logged with \"%s\" average %.1f vs %.1f without it.",
+                        t.trigger(), t.mean(), t.othersMean())));
+
+        correlations.stream()
+                .filter(c -> Math.abs(c.r()) >= CORRELATION_THRESHOLD)
+                .sorted(Comparator.comparingDouble(c -> -Math.abs(c.r())))
+                .forEach(c -> insights.add(String.format(Locale.ROOT,
+                        "Higher %s tends to come with %s %s (r = %.2f over %d days).",
+                        c.pair().x.label, c.r() > 0 ? "higher" : "lower", c.pair().y.label, c.r(), c.n())));
+
+        return insights.size() > MAX_INSIGHTS ? new ArrayList<>(insights.subList(0, MAX_INSIGHTS)) : insights;
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private UserInsightStats lock(Long userId) {
+        statsRepository.insertPlaceholder(userId);
+        return statsRepository.findByUserIdForUpdate(userId)
+                .orElseThrow(() -> new IllegalStateException("Insight stats row missing for user " + userId));
+    }
+
+    /** null — состояния нет, другая FORMULA_VERSION или оно не читается: нужна пересборка */
+    private InsightStats decode(UserInsightStats row) {
+        if (row.getState() == null || row.getFormulaVersion() != InsightStats.FORMULA_VERSION) {
+            return null;
+        }
+        try {
+            return InsightStats.decode(row.getState());
+        } catch (IllegalStateException e) {
+            log.warn("Insight stats of user {} unreadable, rebuilding: {}", row.getUserId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(UserInsightStats row, InsightStats stats) {
+        row.setState(stats.encode());
+        row.setFormulaVersion(InsightStats.FORMULA_VERSION);
+        row.setCheckInCount(stats.checkInCount());
+        row.setMoodLogCount(stats.moodLogCount());
+        row.setUpdatedAt(LocalDateTime.now(ALMATY_ZONE));
+        statsRepository.save(row);
+    }
+
+    private static String key(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double round(double value, int scale) {
+        return Math.round(value * scale) / (double) scale;
+    }
+}
@@ -0,0 +1,60 @@
+package org.example.nbcheckinservice.kafka;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.service.DailyTaskService;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Kafka consumer: подписывается на note.written из NoteAI-backend (outbox → Kafka).
+ *
+ * Заменяет HTTP-колбэк POST /tasks/note-written: задача WRITE_NOTE закрывается без
+ * второй проверки JWT и не теряется, пока сервис лежит — событие ждёт в топике.
+ * Идемпотентно: повтор доставки или параллельный HTTP-колбэк упираются в условный
+ * UPDATE в DailyTaskService.completeTask, XP начисляется один раз.
+ *
+ * Ошибки БД пробрасываются — контейнер повторит доставку (DefaultErrorHandler);
+ * например, гонку создания задач дня с HTTP-колбэком на уникальном ключе.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NoteWrittenConsumer {
+
+    private final DailyTaskService taskService;
+
+    @KafkaListener(
+            topics = "${kafka.topics.note-written:note.written}",
+            groupId = "note-written-task-group"
+    )
+    public void handleNoteWritten(
+            @Payload NoteWrittenEvent event,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+            @Header(KafkaHeaders.OFFSET) long offset
+    ) {
+        log.info("Received NoteWrittenEvent: topic={}, partition={}, offset={}, eventId={}, userId={}, source={} {}",
+                topic, partition, offset, event.getEventId(), event.getUserId(), event.getSource(), event.getSourceId());
+
+        LocalDate date;
+        try {
+            date = LocalDate.parse(event.getDate());
+        } catch (DateTimeParseException | NullPointerException e) {
+            log.error("Skipping NoteWrittenEvent {} with invalid date '{}'", event.getEventId(), event.getDate());
+            return;
+        }
+        if (event.getUserId() == null) {
+            log.error("Skipping NoteWrittenEvent {} without userId", event.getEventId());
+            return;
+        }
+
+        taskService.recordNoteWritten(event.getUserId(), date);
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.nbcheckinservice.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kafka event из NoteAI-backend: note.written
+ * (__TypeId__ = noteWritten, см. KafkaConsumerConfig type mapping).
+ *
+ * date — день задачи WRITE_NOTE (Asia/Almaty) на момент создания заметки / записи журнала.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteWrittenEvent {
+
+    private String eventId;
+    private Long userId;
+    private String source;      // note | journal
+    private Long sourceId;
+    private String date;        // ISO-8601 date string
+    private long occurredAt;    // epoch millis
+}
@@ -0,0 +1,27 @@
+package org.example.nbcheckinservice.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kafka event из NBAuthService: user.onboarding-updated
+ * (__TypeId__ = userOnboardingUpdated, см. KafkaConsumerConfig type mapping).
+ *
+ * version — epoch millis изменения; deleted=true — онбординг удалён.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserOnboardingUpdatedEvent {
+
+    private Long userId;
+    private String sex;
+    private String birthDate;   // ISO-8601 date string
+    private Integer heightCm;
+    private Integer weightKg;
+    private Integer characterId;
+    private boolean completed;
+    private boolean deleted;
+    private long version;
+}
@@ -0,0 +1,51 @@
+package org.example.nbcheckinservice.kafka;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.service.MLRecommendationCacheService;
+import org.example.nbcheckinservice.service.UserProfileReplicaService;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+/**
+ * Kafka consumer: подписывается на user.onboarding-updated из NBAuthService.
+ *
+ * Держит user_profile_replica в актуальном состоянии — ML-расчёт берёт
+ * возраст и пол оттуда, без синхронного вызова auth-сервиса.
+ * После изменения реплики рекомендации пересчитываются асинхронно.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserProfileReplicaConsumer {
+
+    private final UserProfileReplicaService replicaService;
+    private final MLRecommendationCacheService mlCacheService;
+
+    @KafkaListener(
+            topics = "${kafka.topics.user-onboarding-updated:user.onboarding-updated}",
+            groupId = "user-profile-replica-group"
+    )
+    public void handleOnboardingUpdated(
+            @Payload UserOnboardingUpdatedEvent event,
+            @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
+            @Header(KafkaHeaders.OFFSET) long offset
+    ) {
+        log.info("Received UserOnboardingUpdatedEvent: topic={}, partition={}, offset={}, userId={}, deleted={}",
+                topic, partition, offset, event.getUserId(), event.isDeleted());
+        try {
+            if (replicaService.apply(event)) {
+                // Возраст / пол могли измениться — пересчитать ML без debounce
+                mlCacheService.evict(event.getUserId());
+                mlCacheService.asyncRefresh(event.getUserId(), "onboarding-updated");
+            }
+        } catch (Exception e) {
+            log.error("Error applying UserOnboardingUpdatedEvent for user {}: {}",
+                    event.getUserId(), e.getMessage(), e);
+        }
+    }
+}
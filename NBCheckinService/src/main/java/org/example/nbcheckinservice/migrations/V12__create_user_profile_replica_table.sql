@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS user_profile_replica (
+                                                    user_id BIGINT PRIMARY KEY,
+
+                                                    sex VARCHAR(10),
+                                                    birth_date DATE,
+                                                    height_cm INTEGER,
+                                                    weight_kg INTEGER,
+                                                    character_id INTEGER,
+                                                    onboarding_completed BOOLEAN NOT NULL DEFAULT FALSE,
+
+                                                    source_version BIGINT NOT NULL, -- version из user.onboarding-updated (epoch millis)
+                                                    replicated_at TIMESTAMP NOT NULL DEFAULT NOW()
+    );
+
+COMMENT ON TABLE user_profile_replica IS 'Локальная реплика онбординга из NBAuthService (user.onboarding-updated) — возраст/пол для ML без синхронных вызовов auth-сервиса';
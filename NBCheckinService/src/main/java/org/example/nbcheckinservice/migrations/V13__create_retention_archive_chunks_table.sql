@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS retention_archive_chunks (
+                                                        id BIGSERIAL PRIMARY KEY,
+
+                                                        source_table VARCHAR(64) NOT NULL,   -- daily_check_ins / mood_logs / sleep_logs
+                                                        row_count INTEGER NOT NULL,
+                                                        min_row_id BIGINT NOT NULL,
+                                                        max_row_id BIGINT NOT NULL,
+                                                        min_row_date TIMESTAMP NOT NULL,
+                                                        max_row_date TIMESTAMP NOT NULL,
+
+                                                        payload BYTEA NOT NULL,              -- gzip(JSON array из row_to_json строк)
+                                                        uncompressed_bytes INTEGER NOT NULL,
+
+                                                        archived_at TIMESTAMP NOT NULL DEFAULT NOW(),
+                                                        restored_at TIMESTAMP
+);
+
+CREATE INDEX idx_retention_chunks_table_dates ON retention_archive_chunks(source_table, min_row_date, max_row_date);
+
+COMMENT ON TABLE retention_archive_chunks IS 'Архив строк старше горизонта retention: одна запись = один чанк DELETE ... RETURNING, сжатый gzip';
@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS user_insight_stats (
+                                                  user_id BIGINT PRIMARY KEY,
+
+                                                  formula_version INTEGER NOT NULL,   -- InsightStats.FORMULA_VERSION; -1 = строка-заглушка, ещё не собрана
+                                                  state BYTEA,                        -- сериализованные моменты (Welford, co-moments, triggers)
+                                                  check_in_count BIGINT NOT NULL DEFAULT 0,
+                                                  mood_log_count BIGINT NOT NULL DEFAULT 0,
+
+                                                  rebuilt_at TIMESTAMP,
+                                                  updated_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_user_insight_stats_version ON user_insight_stats(formula_version);
+
+COMMENT ON TABLE user_insight_stats IS 'Потоковые достаточные статистики пользователя для корреляций и insights: обновляются в транзакции каждой записи check-in / mood log, пересобираются при смене formula_version';
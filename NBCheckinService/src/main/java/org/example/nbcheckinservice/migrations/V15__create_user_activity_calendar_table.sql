@@ -0,0 +1,23 @@
+CREATE TABLE IF NOT EXISTS user_activity_calendar (
+                                                      user_id BIGINT NOT NULL,
+                                                      year SMALLINT NOT NULL,
+                                                      layer SMALLINT NOT NULL,            -- ActivityLayer.code: 0 check-in, 1 sleep, 2 perfect day, 3 game, 4 journal
+
+                                                      bits BYTEA NOT NULL,                -- 46 байт = 368 бит; бит (день года - 1), порядок get_bit/set_bit (LSB первым в байте)
+                                                      updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+
+                                                      PRIMARY KEY (user_id, year, layer),
+                                                      CONSTRAINT chk_activity_calendar_bits CHECK (octet_length(bits) = 46)
+);
+
+COMMENT ON TABLE user_activity_calendar IS 'Годовые битовые карты активности пользователя: один бит на день на слой, ставится инкрементально на каждой записи';
+
+-- Отметка о завершённом backfill истории из исходных таблиц. Сам backfill делает приложение
+-- (ActivityCalendarBackfillService: при старте или POST /admin/calendar/backfill); пока строки нет,
+-- карта читается из исходных таблиц
+
+CREATE TABLE IF NOT EXISTS activity_calendar_backfill (
+                                                          id INTEGER PRIMARY KEY,
+                                                          users_backfilled BIGINT NOT NULL,
+                                                          completed_at TIMESTAMP NOT NULL
+);
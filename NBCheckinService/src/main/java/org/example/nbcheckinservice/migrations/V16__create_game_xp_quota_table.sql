@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS game_xp_quota (
+                                             user_id BIGINT NOT NULL,
+                                             game_date DATE NOT NULL,
+                                             source VARCHAR(20) NOT NULL,        -- GameXpQuotaService.Source: BRAIN_GAME, GAME_SESSION, NEW_GAME_SESSION
+                                             game_type VARCHAR(50) NOT NULL,     -- имя GameType своего pipeline
+
+                                             plays INTEGER NOT NULL,             -- засчитанные игры; после исчерпания лимита может отставать (in-memory окно)
+
+                                             PRIMARY KEY (user_id, game_date, source, game_type)
+);
+
+COMMENT ON TABLE game_xp_quota IS 'Счётчики игр на (user, день, pipeline, тип) для дневного лимита XP: один upsert с RETURNING вместо COUNT по played_at';
+
+-- Backfill не нужен: первая игра ключа создаёт строку с COUNT(*) + 1 по таблице игр за этот день
+-- (GameXpQuotaService.tryConsume), так что игры до появления счётчиков тоже учитываются
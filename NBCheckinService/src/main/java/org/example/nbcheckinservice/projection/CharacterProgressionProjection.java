@@ -0,0 +1,71 @@
+package org.example.nbcheckinservice.projection;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.example.nbcheckinservice.kafka.CheckInEvent;
+import org.example.nbcheckinservice.kafka.GameCompletedEvent;
+import org.example.nbcheckinservice.service.RewardService;
+import org.example.nbcheckinservice.service.UserCharacterService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пересборка уровня персонажа и наград из checkin.created + game.completed.
+ *
+ * checkAndAutoLevelUp / checkAndUnlockRewards сверяют текущее состояние
+ * (XP, streak, уже открытые награды) и ничего не делают, если условие уже
+ * выполнено — повторный прогон не начисляет ничего второй раз.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CharacterProgressionProjection implements ProjectionHandler {
+
+    private final UserCharacterService characterService;
+    private final RewardService rewardService;
+
+    @Value("${kafka.topics.checkin-created:checkin.created}")
+    private String checkinCreatedTopic;
+
+    @Value("${kafka.topics.game-completed:game.completed}")
+    private String gameCompletedTopic;
+
+    @Override
+    public String name() {
+        return "character-progression";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of(checkinCreatedTopic, gameCompletedTopic);
+    }
+
+    @Override
+    public Set<Long> applyBatch(List<ConsumerRecord<String, Object>> records) {
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            if (record.value() instanceof CheckInEvent e && e.getUserId() != null) {
+                userIds.add(e.getUserId());
+            } else if (record.value() instanceof GameCompletedEvent e && e.getUserId() != null) {
+                userIds.add(e.getUserId());
+            }
+        }
+
+        Set<Long> failed = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            try {
+                characterService.checkAndAutoLevelUp(userId);
+                rewardService.checkAndUnlockRewards(userId);
+            } catch (Exception e) {
+                failed.add(userId);
+                log.error("character-progression replay failed for user {}: {}", userId, e.getMessage());
+            }
+        }
+        return failed;
+    }
+}
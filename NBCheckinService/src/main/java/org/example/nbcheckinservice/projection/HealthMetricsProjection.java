@@ -0,0 +1,73 @@
+package org.example.nbcheckinservice.projection;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.example.nbcheckinservice.kafka.CheckInEvent;
+import org.example.nbcheckinservice.kafka.SleepLogEvent;
+import org.example.nbcheckinservice.service.HealthMetricsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пересборка health_metrics из checkin.created + sleep.logged.
+ *
+ * Внутри пачки события схлопываются до уникальных (userId, date) — десять
+ * событий одного дня дают один пересчёт. calculateAndSave делает upsert,
+ * поэтому повторная обработка безопасна.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HealthMetricsProjection implements ProjectionHandler {
+
+    private final HealthMetricsService healthMetricsService;
+
+    @Value("${kafka.topics.checkin-created:checkin.created}")
+    private String checkinCreatedTopic;
+
+    @Value("${kafka.topics.sleep-logged:sleep.logged}")
+    private String sleepLoggedTopic;
+
+    @Override
+    public String name() {
+        return "health-metrics";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of(checkinCreatedTopic, sleepLoggedTopic);
+    }
+
+    @Override
+    public Set<Long> applyBatch(List<ConsumerRecord<String, Object>> records) {
+        Set<UserDay> keys = new LinkedHashSet<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            if (record.value() instanceof CheckInEvent e && e.getUserId() != null) {
+                keys.add(new UserDay(e.getUserId(), LocalDate.parse(e.getCheckInDate())));
+            } else if (record.value() instanceof SleepLogEvent e && e.getUserId() != null) {
+                keys.add(new UserDay(e.getUserId(), LocalDate.parse(e.getSleepDate())));
+            }
+        }
+
+        Set<Long> failed = new LinkedHashSet<>();
+        for (UserDay key : keys) {
+            try {
+                healthMetricsService.calculateAndSave(key.userId(), key.date());
+            } catch (Exception e) {
+                failed.add(key.userId());
+                log.error("health-metrics replay failed for user {} on {}: {}",
+                        key.userId(), key.date(), e.getMessage());
+            }
+        }
+        log.debug("health-metrics replay: {} records → {} upserts", records.size(), keys.size());
+        return failed;
+    }
+
+    private record UserDay(Long userId, LocalDate date) {}
+}
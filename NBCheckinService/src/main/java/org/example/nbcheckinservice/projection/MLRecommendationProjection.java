@@ -0,0 +1,80 @@
+package org.example.nbcheckinservice.projection;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.example.nbcheckinservice.kafka.CheckInEvent;
+import org.example.nbcheckinservice.kafka.GameCompletedEvent;
+import org.example.nbcheckinservice.kafka.SleepLogEvent;
+import org.example.nbcheckinservice.service.MLRecommendationCacheService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пересборка daily_ml_recommendation из всех трёх топиков.
+ *
+ * Строка рекомендации — на (userId, дата события): checkInDate / sleepDate /
+ * дата playedAt. Из пачки берутся уникальные пары и для каждой делается один
+ * синхронный пересчёт по 7-дневному окну, заканчивающемуся этой датой
+ * (refreshNow — без 2-минутного дебаунса asyncRefresh).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MLRecommendationProjection implements ProjectionHandler {
+
+    private final MLRecommendationCacheService cacheService;
+
+    @Value("${kafka.topics.checkin-created:checkin.created}")
+    private String checkinCreatedTopic;
+
+    @Value("${kafka.topics.sleep-logged:sleep.logged}")
+    private String sleepLoggedTopic;
+
+    @Value("${kafka.topics.game-completed:game.completed}")
+    private String gameCompletedTopic;
+
+    @Override
+    public String name() {
+        return "ml-recommendation";
+    }
+
+    @Override
+    public Set<String> topics() {
+        return Set.of(checkinCreatedTopic, sleepLoggedTopic, gameCompletedTopic);
+    }
+
+    @Override
+    public Set<Long> applyBatch(List<ConsumerRecord<String, Object>> records) {
+        Set<UserDay> keys = new LinkedHashSet<>();
+        for (ConsumerRecord<String, Object> record : records) {
+            if (record.value() instanceof CheckInEvent e && e.getUserId() != null) {
+                keys.add(new UserDay(e.getUserId(), LocalDate.parse(e.getCheckInDate())));
+            } else if (record.value() instanceof SleepLogEvent e && e.getUserId() != null) {
+                keys.add(new UserDay(e.getUserId(), LocalDate.parse(e.getSleepDate())));
+            } else if (record.value() instanceof GameCompletedEvent e && e.getUserId() != null) {
+                keys.add(new UserDay(e.getUserId(), LocalDateTime.parse(e.getPlayedAt()).toLocalDate()));
+            }
+        }
+
+        Set<Long> failed = new LinkedHashSet<>();
+        for (UserDay key : keys) {
+            try {
+                cacheService.refreshNow(key.userId(), key.date(), "projection-rebuild");
+            } catch (Exception e) {
+                failed.add(key.userId());
+                log.error("ml-recommendation replay failed for user {} on {}: {}",
+                        key.userId(), key.date(), e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    private record UserDay(Long userId, LocalDate date) {}
+}
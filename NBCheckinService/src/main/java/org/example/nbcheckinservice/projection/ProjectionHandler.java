@@ -0,0 +1,36 @@
+package org.example.nbcheckinservice.projection;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Проекция, которую можно пересобрать реплеем Kafka-топиков.
+ *
+ * Контракт идемпотентности: applyBatch может получить одно и то же событие
+ * несколько раз (реплей + live-трафик одновременно, повтор после сбоя),
+ * поэтому реализация обязана писать upsert / пересчёт «из текущего состояния БД»,
+ * а не инкременты.
+ */
+public interface ProjectionHandler {
+
+    /** Имя проекции — используется в URL и как суффикс consumer group. */
+    String name();
+
+    /** Топики, из которых собирается проекция. */
+    Set<String> topics();
+
+    /**
+     * Применяет пачку записей. Записи одного userId всегда приходят в одну пачку
+     * в порядке offset (см. ProjectionRebuildService — шардинг по userId).
+     *
+     * Ошибка одного пользователя не должна останавливать остальных: реализация
+     * продолжает пачку и возвращает userId, которые применить не удалось, —
+     * они попадают в статус rebuild (usersFailed / failedUserIds), и их можно
+     * переиграть отдельно.
+     *
+     * @return userId с ошибкой применения; пустое множество, если всё прошло
+     */
+    Set<Long> applyBatch(List<ConsumerRecord<String, Object>> records);
+}
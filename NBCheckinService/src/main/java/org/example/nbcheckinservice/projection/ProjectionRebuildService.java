@@ -0,0 +1,371 @@
+package org.example.nbcheckinservice.projection;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.example.nbcheckinservice.dto.ProjectionRebuildStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пересборка производных таблиц реплеем retained Kafka-топиков.
+ *
+ * Алгоритм одного rebuild:
+ *   1. Consumer group "projection-rebuild-{name}" (или переданная явно, но тоже
+ *      с префиксом "projection-rebuild-") сбрасывается на offset, соответствующий
+ *      timestamp (offsetsForTimes → commitSync). Группа с активными участниками
+ *      не сбрасывается — иначе реплей перемотал бы живых consumers.
+ *   2. Фиксируются end offsets на момент старта — реплей заканчивается на них,
+ *      live-трафик дальше обрабатывают обычные @KafkaListener.
+ *   3. Каждый poll шардируется по ключу записи (= userId) на N lanes,
+ *      lane режется на write-batch и отдаётся ProjectionHandler.applyBatch.
+ *      Offset коммитится после применения всего poll. Пользователи, на которых
+ *      handler упал, не останавливают реплей, а копятся в статусе
+ *      (usersFailed / failedUserIds, итоговое состояние COMPLETED_WITH_ERRORS).
+ *
+ * Replay mode vs live mode:
+ *   live   — max.poll.records=500 (default), по одной записи на вызов listener'а
+ *   replay — крупные fetch'и (projection.replay.*), параллельные lanes,
+ *            схлопывание дублей внутри write-batch
+ *
+ * Write-batch — единица дедупликации, а не транзакция: каждый уникальный ключ
+ * пачки пишется своим вызовом сервиса (и своей транзакцией), чтобы ошибка одного
+ * пользователя не откатывала остальных, а ML-пересчёт не держал транзакцию
+ * на время HTTP-вызова.
+ *
+ * Handlers идемпотентны (upsert / пересчёт из БД), поэтому реплей может
+ * идти параллельно с live-consumers и безопасно перезапускаться.
+ * Глубина реплея ограничена retention топиков (по умолчанию Kafka — 7 дней).
+ */
+@Service
+@Slf4j
+public class ProjectionRebuildService {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    private static final String GROUP_PREFIX = "projection-rebuild-";
+    private static final long ADMIN_TIMEOUT_SECONDS = 10;
+    /** Сколько failed userId держать в статусе — остальные только в счётчике и логе */
+    private static final int FAILED_USERS_SAMPLE = 100;
+
+    private final Map<String, ProjectionHandler> handlers;
+    private final ConcurrentHashMap<String, RebuildJob> jobs = new ConcurrentHashMap<>();
+
+    private final ExecutorService coordinators = Executors.newCachedThreadPool();
+    private final ExecutorService lanes;
+
+    private final String bootstrapServers;
+    private final int maxPollRecords;
+    private final int fetchMinBytes;
+    private final int fetchMaxWaitMs;
+    private final int concurrency;
+    private final int writeBatchSize;
+
+    public ProjectionRebuildService(
+            List<ProjectionHandler> handlers,
+            @Value("${spring.kafka.bootstrap-servers}") String bootstrapServers,
+            @Value("${projection.replay.max-poll-records:2000}") int maxPollRecords,
+            @Value("${projection.replay.fetch-min-bytes:1048576}") int fetchMinBytes,
+            @Value("${projection.replay.fetch-max-wait-ms:500}") int fetchMaxWaitMs,
+            @Value("${projection.replay.concurrency:4}") int concurrency,
+            @Value("${projection.replay.write-batch-size:200}") int writeBatchSize
+    ) {
+        this.handlers = handlers.stream()
+                .collect(Collectors.toMap(ProjectionHandler::name, Function.identity()));
+        this.bootstrapServers = bootstrapServers;
+        this.maxPollRecords = maxPollRecords;
+        this.fetchMinBytes = fetchMinBytes;
+        this.fetchMaxWaitMs = fetchMaxWaitMs;
+        this.concurrency = Math.max(1, concurrency);
+        this.writeBatchSize = Math.max(1, writeBatchSize);
+        this.lanes = Executors.newFixedThreadPool(this.concurrency);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobs.values().forEach(job -> job.cancelled = true);
+        coordinators.shutdownNow();
+        lanes.shutdownNow();
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // PUBLIC API
+    // ═════════════════════════════════════════════════════════════
+
+    public List<String> getProjectionNames() {
+        return handlers.keySet().stream().sorted().toList();
+    }
+
+    /**
+     * Запускает rebuild в фоне.
+     *
+     * @param from     момент (Asia/Almaty), с которого переигрываются события
+     * @param groupId  consumer group для реплея; null → "projection-rebuild-{name}"
+     * @throws IllegalArgumentException неизвестная проекция или groupId без префикса "projection-rebuild-"
+     * @throws IllegalStateException    rebuild этой проекции уже идёт или в группе есть активные участники
+     */
+    public ProjectionRebuildStatus start(String projection, LocalDateTime from, String groupId) {
+        ProjectionHandler handler = handlers.get(projection);
+        if (handler == null) {
+            throw new IllegalArgumentException("Unknown projection: " + projection
+                    + ". Available: " + getProjectionNames());
+        }
+
+        String group = (groupId == null || groupId.isBlank()) ? GROUP_PREFIX + projection : groupId;
+        if (!group.startsWith(GROUP_PREFIX)) {
+            throw new IllegalArgumentException("groupId must start with '" + GROUP_PREFIX
+                    + "' — live consumer groups cannot be reset by a rebuild");
+        }
+        requireNoActiveMembers(group);
+        RebuildJob job = new RebuildJob(projection, group, from);
+
+        RebuildJob existing = jobs.compute(projection, (k, current) ->
+                current != null && "RUNNING".equals(current.state) ? current : job);
+        if (existing != job) {
+            throw new IllegalStateException("Rebuild of '" + projection + "' is already running");
+        }
+
+        log.info("Projection rebuild started: projection={}, group={}, from={}", projection, group, from);
+        coordinators.submit(() -> run(handler, job));
+        return job.toStatus();
+    }
+
+    public ProjectionRebuildStatus getStatus(String projection) {
+        RebuildJob job = jobs.get(projection);
+        return job != null ? job.toStatus() : null;
+    }
+
+    public boolean cancel(String projection) {
+        RebuildJob job = jobs.get(projection);
+        if (job == null || !"RUNNING".equals(job.state)) return false;
+        job.cancelled = true;
+        return true;
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // REPLAY LOOP
+    // ═════════════════════════════════════════════════════════════
+
+    private void run(ProjectionHandler handler, RebuildJob job) {
+        try (KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(replayConsumerProps(job))) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (String topic : handler.topics()) {
+                consumer.partitionsFor(topic)
+                        .forEach(p -> partitions.add(new TopicPartition(p.topic(), p.partition())));
+            }
+            consumer.assign(partitions);
+
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+            resetGroupToTimestamp(consumer, partitions, endOffsets, job);
+
+            while (!job.cancelled) {
+                long remaining = remaining(consumer, endOffsets);
+                job.remaining.set(remaining);
+                if (remaining == 0) break;
+
+                ConsumerRecords<String, Object> records = consumer.poll(POLL_TIMEOUT);
+                if (records.isEmpty()) continue;
+
+                job.recordFailures(applyInLanes(handler, records));
+                consumer.commitSync();
+                job.processed.addAndGet(records.count());
+            }
+
+            String finalState = job.cancelled ? "CANCELLED"
+                    : job.usersFailed.get() > 0 ? "COMPLETED_WITH_ERRORS" : "COMPLETED";
+            job.finish(finalState, null);
+            log.info("Projection rebuild {}: projection={}, records={}, usersFailed={}",
+                    job.state, job.projection, job.processed.get(), job.usersFailed.get());
+        } catch (Exception e) {
+            job.finish("FAILED", e.getMessage());
+            log.error("Projection rebuild failed: projection={}, group={}: {}",
+                    job.projection, job.groupId, e.getMessage(), e);
+        }
+    }
+
+    private void resetGroupToTimestamp(KafkaConsumer<String, Object> consumer,
+                                       List<TopicPartition> partitions,
+                                       Map<TopicPartition, Long> endOffsets,
+                                       RebuildJob job) {
+        long fromMillis = job.replayFrom.atZone(ALMATY_ZONE).toInstant().toEpochMilli();
+        Map<TopicPartition, Long> query = new HashMap<>();
+        partitions.forEach(tp -> query.put(tp, fromMillis));
+
+        Map<TopicPartition, OffsetAndTimestamp> byTime = consumer.offsetsForTimes(query);
+        Map<TopicPartition, OffsetAndMetadata> reset = new HashMap<>();
+        for (TopicPartition tp : partitions) {
+            OffsetAndTimestamp found = byTime.get(tp);
+            long offset = found != null ? found.offset() : endOffsets.getOrDefault(tp, 0L);
+            consumer.seek(tp, offset);
+            reset.put(tp, new OffsetAndMetadata(offset));
+        }
+        consumer.commitSync(reset);
+        log.info("Consumer group {} reset to {} on {} partitions", job.groupId, job.replayFrom, reset.size());
+    }
+
+    /**
+     * Отказ, если в группе есть участники: commitSync(reset) перемотал бы их offsets.
+     * Несуществующая группа описывается как DEAD без участников — это норма.
+     */
+    private void requireNoActiveMembers(String group) {
+        try (Admin admin = Admin.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers))) {
+            ConsumerGroupDescription description = admin.describeConsumerGroups(List.of(group))
+                    .describedGroups().get(group)
+                    .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!description.members().isEmpty()) {
+                throw new IllegalStateException("Consumer group '" + group + "' has "
+                        + description.members().size() + " active member(s); refusing to reset it");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while describing consumer group " + group, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Cannot describe consumer group " + group + ": " + e.getMessage(), e);
+        }
+    }
+
+    private long remaining(KafkaConsumer<String, Object> consumer, Map<TopicPartition, Long> endOffsets) {
+        long total = 0;
+        for (Map.Entry<TopicPartition, Long> e : endOffsets.entrySet()) {
+            total += Math.max(0, e.getValue() - consumer.position(e.getKey()));
+        }
+        return total;
+    }
+
+    /**
+     * Шардирование по ключу (userId) сохраняет порядок событий одного пользователя:
+     * все его записи попадают в одну lane и применяются последовательно.
+     *
+     * @return userId, которые handler не смог применить
+     */
+    private Set<Long> applyInLanes(ProjectionHandler handler, ConsumerRecords<String, Object> records)
+            throws InterruptedException, ExecutionException {
+        List<List<ConsumerRecord<String, Object>>> shards = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) shards.add(new ArrayList<>());
+        for (ConsumerRecord<String, Object> record : records) {
+            int lane = record.key() == null ? 0 : Math.floorMod(record.key().hashCode(), concurrency);
+            shards.get(lane).add(record);
+        }
+
+        List<Future<Set<Long>>> futures = new ArrayList<>();
+        for (List<ConsumerRecord<String, Object>> shard : shards) {
+            if (shard.isEmpty()) continue;
+            futures.add(lanes.submit(() -> {
+                Set<Long> failed = new LinkedHashSet<>();
+                for (int from = 0; from < shard.size(); from += writeBatchSize) {
+                    failed.addAll(handler.applyBatch(shard.subList(from, Math.min(from + writeBatchSize, shard.size()))));
+                }
+                return failed;
+            }));
+        }
+        Set<Long> failed = new LinkedHashSet<>();
+        for (Future<Set<Long>> f : futures) failed.addAll(f.get());
+        return failed;
+    }
+
+    private Map<String, Object> replayConsumerProps(RebuildJob job) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, job.groupId);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, "projection-replay-" + job.projection);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, fetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, 4 * 1024 * 1024);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        props.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, true);
+        return props;
+    }
+
+    // ─── Job state ───
+
+    private static final class RebuildJob {
+        final String projection;
+        final String groupId;
+        final LocalDateTime replayFrom;
+        final LocalDateTime startedAt = LocalDateTime.now(ALMATY_ZONE);
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong remaining = new AtomicLong();
+        final AtomicLong usersFailed = new AtomicLong();
+        final Set<Long> failedUserIds = ConcurrentHashMap.newKeySet();
+        volatile String state = "RUNNING";
+        volatile boolean cancelled;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        RebuildJob(String projection, String groupId, LocalDateTime replayFrom) {
+            this.projection = projection;
+            this.groupId = groupId;
+            this.replayFrom = replayFrom;
+        }
+
+        /** userId из выборки, упавший повторно в другом poll, не задваивается в счётчике. */
+        void recordFailures(Set<Long> userIds) {
+            for (Long userId : userIds) {
+                if (failedUserIds.contains(userId)) continue;
+                if (failedUserIds.size() < FAILED_USERS_SAMPLE) {
+                    if (failedUserIds.add(userId)) usersFailed.incrementAndGet();
+                } else {
+                    usersFailed.incrementAndGet();
+                }
+            }
+        }
+
+        void finish(String finalState, String errorMessage) {
+            this.error = errorMessage;
+            this.finishedAt = LocalDateTime.now(ALMATY_ZONE);
+            this.state = finalState;
+        }
+
+        ProjectionRebuildStatus toStatus() {
+            return ProjectionRebuildStatus.builder()
+                    .projection(projection)
+                    .groupId(groupId)
+                    .state(state)
+                    .replayFrom(replayFrom)
+                    .recordsProcessed(processed.get())
+                    .recordsRemaining(remaining.get())
+                    .usersFailed(usersFailed.get())
+                    .failedUserIds(failedUserIds.isEmpty() ? null : new TreeSet<>(failedUserIds))
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+}
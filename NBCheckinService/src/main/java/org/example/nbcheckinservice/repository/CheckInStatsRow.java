@@ -0,0 +1,37 @@
+package org.example.nbcheckinservice.repository;
+
+import org.example.nbcheckinservice.entity.DailyCheckIn;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Проекция daily_checkins для статистики (DailyCheckInRepository.findStatsRows).
+ */
+public record CheckInStatsRow(
+        LocalDate checkInDate,
+        Integer morningMood,
+        Integer eveningMood,
+        String morningMoodEmoji,
+        String eveningMoodEmoji,
+        Integer sleepQuality,
+        BigDecimal sleepHours,
+        Integer energyLevel,
+        Integer stressLevel,
+        Integer physicalActivityMinutes,
+        Integer cognitiveGameCount,
+        Boolean didExercise,
+        Boolean ateHealthy,
+        Boolean hadSocialInteraction,
+        Boolean playedCognitiveGameToday
+) {
+
+    /** Снимок уже загруженной сущности (для before/after в InsightStatsService) */
+    public static CheckInStatsRow of(DailyCheckIn c) {
+        return new CheckInStatsRow(c.getCheckInDate(),
+                c.getMorningMood(), c.getEveningMood(), c.getMorningMoodEmoji(), c.getEveningMoodEmoji(),
+                c.getSleepQuality(), c.getSleepHours(), c.getEnergyLevel(), c.getStressLevel(),
+                c.getPhysicalActivityMinutes(), c.getCognitiveGameCount(),
+                c.getDidExercise(), c.getAteHealthy(), c.getHadSocialInteraction(), c.getPlayedCognitiveGameToday());
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -137,8 +138,61 @@ public interface DailyCheckInRepository extends JpaRepository<DailyCheckIn, Long
     );
 
     /**
-     * Delete check-ins older than a certain date
+     * Только колонки, нужные статистике (AnalyticsService), новые даты первыми.
+     * Без гидрации сущностей и снимков dirty-checking — на 365 днях это основная часть времени.
      */
-    void deleteByCheckInDateBefore(LocalDate date);
+    @Query("SELECT new org.example.nbcheckinservice.repository.CheckInStatsRow(" +
+            "d.checkInDate, d.morningMood, d.eveningMood, d.morningMoodEmoji, d.eveningMoodEmoji, " +
+            "d.sleepQuality, d.sleepHours, d.energyLevel, d.stressLevel, " +
+            "d.physicalActivityMinutes, d.cognitiveGameCount, " +
+            "d.didExercise, d.ateHealthy, d.hadSocialInteraction, d.playedCognitiveGameToday) " +
+            "FROM DailyCheckIn d " +
+            "WHERE d.userId = :userId " +
+            "AND d.checkInDate BETWEEN :startDate AND :endDate " +
+            "ORDER BY d.checkInDate DESC")
+    List<CheckInStatsRow> findStatsRows(
+            @Param("userId") Long userId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate") LocalDate endDate
+    );
+
+    /** Та же проекция за всю историю — полная пересборка InsightStats */
+    @Query("SELECT new org.example.nbcheckinservice.repository.CheckInStatsRow(" +
+            "d.checkInDate, d.morningMood, d.eveningMood, d.morningMoodEmoji, d.eveningMoodEmoji, " +
+            "d.sleepQuality, d.sleepHours, d.energyLevel, d.stressLevel, " +
+            "d.physicalActivityMinutes, d.cognitiveGameCount, " +
+            "d.didExercise, d.ateHealthy, d.hadSocialInteraction, d.playedCognitiveGameToday) " +
+            "FROM DailyCheckIn d " +
+            "WHERE d.userId = :userId")
+    List<CheckInStatsRow> findAllStatsRows(@Param("userId") Long userId);
 
-}
\ No newline at end of file
+    /**
+     * Gaps-and-islands по датам check-in: дата минус её номер по порядку постоянна
+     * внутри каждой непрерывной серии. Одна строка на пользователя с check-in'ами;
+     * пользователи без check-in'ов в ответ не попадают.
+     */
+    @Query(value = """
+            WITH islands AS (
+                SELECT user_id, check_in_date,
+                       check_in_date - CAST(ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY check_in_date) AS INTEGER) AS island
+                FROM daily_check_ins
+                WHERE user_id IN (:userIds)
+            ), runs AS (
+                SELECT user_id, COUNT(*) AS run_length, MAX(check_in_date) AS run_end
+                FROM islands
+                GROUP BY user_id, island
+            )
+            SELECT user_id,
+                   (ARRAY_AGG(run_length ORDER BY run_end DESC))[1] AS current_streak,
+                   MAX(run_length) AS longest_streak,
+                   SUM(run_length) AS total_checkins,
+                   MAX(run_end) AS last_checkin_date
+            FROM runs
+            GROUP BY user_id
+            """, nativeQuery = true)
+    List<Object[]> deriveStreakRows(@Param("userIds") Collection<Long> userIds);
+
+    default List<StreakDerivation> deriveStreaks(Collection<Long> userIds) {
+        return deriveStreakRows(userIds).stream().map(StreakDerivation::of).toList();
+    }
+}
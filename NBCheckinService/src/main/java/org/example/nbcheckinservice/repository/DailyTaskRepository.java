@@ -2,9 +2,13 @@ package org.example.nbcheckinservice.repository;
 
 import org.example.nbcheckinservice.entity.DailyTask;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,4 +24,14 @@ public interface DailyTaskRepository extends JpaRepository<DailyTask, Long> {
     );
     List<DailyTask> findByUserIdAndTaskDateBetween(Long userId, LocalDate startDate, LocalDate endDate);
     long countByUserIdAndTaskDateAndIsCompletedTrue(Long userId, LocalDate taskDate);
+    boolean existsByUserIdAndTaskDateAndIsCompletedFalse(Long userId, LocalDate taskDate);
+
+    /**
+     * Условная отметка выполнения: 1 — задачу закрыл этот вызов, 0 — уже была выполнена.
+     * Параллельные HTTP-колбэк и Kafka-событие (или повтор доставки) не начислят XP дважды.
+     */
+    @Modifying
+    @Query("UPDATE DailyTask t SET t.isCompleted = true, t.completedAt = :completedAt " +
+           "WHERE t.id = :id AND t.isCompleted = false")
+    int markCompleted(@Param("id") Long id, @Param("completedAt") LocalDateTime completedAt);
 }
\ No newline at end of file
@@ -54,6 +54,4 @@ public interface MoodLogRepository extends JpaRepository<MoodLog, Long> {
      */
     @Query("SELECT m FROM MoodLog m JOIN m.triggers t WHERE m.userId = :userId AND t = :trigger ORDER BY m.logTimestamp DESC")
     List<MoodLog> findByUserIdAndTrigger(@Param("userId") Long userId, @Param("trigger") String trigger);
-
-    void deleteByLogTimestampBefore(LocalDateTime timestamp);
 }
\ No newline at end of file
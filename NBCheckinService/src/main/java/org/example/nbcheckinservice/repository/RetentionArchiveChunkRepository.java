@@ -0,0 +1,45 @@
+package org.example.nbcheckinservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.example.nbcheckinservice.entity.RetentionArchiveChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RetentionArchiveChunkRepository extends JpaRepository<RetentionArchiveChunk, Long> {
+
+    /**
+     * Id невосстановленных чанков таблицы, пересекающихся с [from, to]
+     * (payload не грузим — чанки восстанавливаются по одному).
+     */
+    @Query("SELECT c.id FROM RetentionArchiveChunk c " +
+            "WHERE c.sourceTable = :table AND c.restoredAt IS NULL " +
+            "AND c.maxRowDate >= :from AND c.minRowDate <= :to " +
+            "ORDER BY c.minRowDate ASC")
+    List<Long> findRestorableIds(@Param("table") String table,
+                                 @Param("from") LocalDateTime from,
+                                 @Param("to") LocalDateTime to);
+
+    /** Блокирует чанк на время восстановления — параллельный restore того же чанка ждёт */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM RetentionArchiveChunk c WHERE c.id = :id")
+    Optional<RetentionArchiveChunk> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Сводка архива по таблицам: [sourceTable, chunks, rows, compressedBytes, uncompressedBytes]
+     */
+    @Query(value = """
+            SELECT source_table, COUNT(*), SUM(row_count), SUM(octet_length(payload)), SUM(uncompressed_bytes)
+            FROM retention_archive_chunks
+            WHERE restored_at IS NULL
+            GROUP BY source_table
+            """, nativeQuery = true)
+    List<Object[]> summarize();
+}
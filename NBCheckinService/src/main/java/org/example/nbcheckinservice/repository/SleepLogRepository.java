@@ -90,7 +90,4 @@ public interface SleepLogRepository extends JpaRepository<SleepLog, Long> {
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate
     );
-
-
-    void deleteBySleepDateBefore(LocalDate date);
 }
\ No newline at end of file
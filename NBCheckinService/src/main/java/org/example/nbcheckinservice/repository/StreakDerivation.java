@@ -0,0 +1,30 @@
+package org.example.nbcheckinservice.repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Серии одного пользователя, выведенные из daily_check_ins (DailyCheckInRepository.deriveStreaks).
+ *
+ * currentStreak — длина последнего острова дат, как у StreakService.updateStreak:
+ * серия не обнуляется сама по себе, пока не придёт следующий check-in.
+ */
+public record StreakDerivation(
+        Long userId,
+        int currentStreak,
+        int longestStreak,
+        int totalCheckins,
+        LocalDate lastCheckinDate
+) {
+
+    /** Строка native-запроса: user_id, current_streak, longest_streak, total_checkins, last_checkin_date */
+    static StreakDerivation of(Object[] row) {
+        Object last = row[4];
+        return new StreakDerivation(
+                ((Number) row[0]).longValue(),
+                ((Number) row[1]).intValue(),
+                ((Number) row[2]).intValue(),
+                ((Number) row[3]).intValue(),
+                last instanceof Date date ? date.toLocalDate() : (LocalDate) last);
+    }
+}
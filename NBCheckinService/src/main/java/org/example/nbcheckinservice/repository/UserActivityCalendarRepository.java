@@ -0,0 +1,42 @@
+package org.example.nbcheckinservice.repository;
+
+import org.example.nbcheckinservice.entity.UserActivityCalendar;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserActivityCalendarRepository
+        extends JpaRepository<UserActivityCalendar, UserActivityCalendar.Key> {
+
+    /**
+     * Ставит бит дня одним statement: первая отметка года создаёт строку,
+     * повторная отметка того же дня ничего не пишет (WHERE get_bit = 0).
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_activity_calendar (user_id, year, layer, bits, updated_at)
+            VALUES (:userId, :year, :layer, set_bit(decode(repeat('00', 46), 'hex'), :day, 1), NOW())
+            ON CONFLICT (user_id, year, layer) DO UPDATE
+                SET bits = set_bit(user_activity_calendar.bits, :day, 1), updated_at = NOW()
+                WHERE get_bit(user_activity_calendar.bits, :day) = 0
+            """, nativeQuery = true)
+    int setBit(@Param("userId") Long userId, @Param("year") int year,
+               @Param("layer") int layer, @Param("day") int day);
+
+    @Modifying
+    @Query(value = """
+            UPDATE user_activity_calendar
+            SET bits = set_bit(bits, :day, 0), updated_at = NOW()
+            WHERE user_id = :userId AND year = :year AND layer = :layer
+              AND get_bit(bits, :day) = 1
+            """, nativeQuery = true)
+    int clearBit(@Param("userId") Long userId, @Param("year") int year,
+                 @Param("layer") int layer, @Param("day") int day);
+
+    List<UserActivityCalendar> findByUserIdAndYearBetween(Long userId, Integer fromYear, Integer toYear);
+}
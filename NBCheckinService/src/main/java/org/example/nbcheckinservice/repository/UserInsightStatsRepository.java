@@ -0,0 +1,51 @@
+package org.example.nbcheckinservice.repository;
+
+import jakarta.persistence.LockModeType;
+import org.example.nbcheckinservice.entity.UserInsightStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserInsightStatsRepository extends JpaRepository<UserInsightStats, Long> {
+
+    /**
+     * Заглушка (formula_version = -1), чтобы первой записи пользователя было что блокировать:
+     * два параллельных первых write не падают на PK, второй ждёт блокировку первого.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO user_insight_stats (user_id, formula_version, check_in_count, mood_log_count, updated_at)
+            VALUES (:userId, -1, 0, 0, NOW())
+            ON CONFLICT (user_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertPlaceholder(@Param("userId") Long userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserInsightStats s WHERE s.userId = :userId")
+    Optional<UserInsightStats> findByUserIdForUpdate(@Param("userId") Long userId);
+
+    long countByFormulaVersionNot(Integer formulaVersion);
+
+    /**
+     * Keyset-страница пользователей с данными для полной пересборки:
+     * все, у кого есть check-in или mood log, с user_id > afterUserId.
+     */
+    @Query(value = """
+            SELECT u.user_id FROM (
+                SELECT user_id FROM daily_check_ins
+                UNION
+                SELECT user_id FROM mood_logs
+            ) u
+            WHERE u.user_id > :afterUserId
+            ORDER BY u.user_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Long> findUserIdsAfter(@Param("afterUserId") Long afterUserId, @Param("limit") int limit);
+}
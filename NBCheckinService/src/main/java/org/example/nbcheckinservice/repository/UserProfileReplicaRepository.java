@@ -0,0 +1,22 @@
+package org.example.nbcheckinservice.repository;
+
+import org.example.nbcheckinservice.entity.UserProfileReplica;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserProfileReplicaRepository extends JpaRepository<UserProfileReplica, Long> {
+
+    /**
+     * Пользователи с чекинами, но без реплики профиля — кандидаты на bulk-бэкфилл
+     * (зарегистрировались до появления user.onboarding-updated).
+     */
+    @Query("SELECT DISTINCT c.userId FROM DailyCheckIn c " +
+           "WHERE NOT EXISTS (SELECT 1 FROM UserProfileReplica r WHERE r.userId = c.userId) " +
+           "ORDER BY c.userId")
+    List<Long> findUserIdsWithoutReplica(Pageable pageable);
+}
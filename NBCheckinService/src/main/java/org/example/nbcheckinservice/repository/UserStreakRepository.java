@@ -1,11 +1,14 @@
 package org.example.nbcheckinservice.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.nbcheckinservice.entity.UserStreak;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,4 +29,24 @@ public interface UserStreakRepository extends JpaRepository<UserStreak, Long> {
     // Получить ранг пользователя по XP
     @Query(value = "SELECT count(*) + 1 FROM user_streaks WHERE total_xp_earned > (SELECT total_xp_earned FROM user_streaks WHERE user_id = :userId)", nativeQuery = true)
     Long getUserRankByTotalXp(@Param("userId") Long userId);
-}
\ No newline at end of file
+
+    /** Строки чанка bulk-пересчёта; порядок по user_id — чтобы параллельные блокировки не сходились в deadlock */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserStreak s WHERE s.userId IN :userIds ORDER BY s.userId")
+    List<UserStreak> findByUserIdInForUpdate(@Param("userIds") Collection<Long> userIds);
+
+    List<UserStreak> findByUserIdIn(Collection<Long> userIds);
+
+    /** Keyset-страница пользователей со строкой user_streaks или хотя бы одним check-in */
+    @Query(value = """
+            SELECT u.user_id FROM (
+                SELECT user_id FROM user_streaks
+                UNION
+                SELECT user_id FROM daily_check_ins
+            ) u
+            WHERE u.user_id > :afterUserId
+            ORDER BY u.user_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Long> findUserIdsAfter(@Param("afterUserId") Long afterUserId, @Param("limit") int limit);
+}
@@ -0,0 +1,219 @@
+package org.example.nbcheckinservice.retention;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.entity.RetentionArchiveChunk;
+import org.example.nbcheckinservice.event.CheckInChangedApplicationEvent;
+import org.example.nbcheckinservice.repository.RetentionArchiveChunkRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Один шаг retention — одна короткая транзакция.
+ *
+ * archiveChunk:
+ *   WITH victims AS (SELECT id ... ORDER BY date, id LIMIT n FOR UPDATE SKIP LOCKED)
+ *   DELETE ... USING victims RETURNING row_to_json(...)
+ *   → gzip JSON-массива → одна строка retention_archive_chunks в той же транзакции.
+ *   Ничего не грузится в persistence context; SKIP LOCKED позволяет нескольким
+ *   инстансам работать параллельно и не ждать строк, которые сейчас пишет пользователь.
+ *
+ * restoreChunk:
+ *   gunzip → INSERT ... SELECT * FROM json_populate_recordset(NULL::table, json)
+ *   ON CONFLICT DO NOTHING (строка за ту же дату могла появиться заново).
+ *
+ * Для daily_check_ins в той же транзакции меняется user_streaks.archived_checkins
+ * (пересчёт серии не теряет заархивированные check-in'ы в totalCheckins), а после
+ * коммита CheckInChangedApplicationEvent сбрасывает кэш статистики затронутых дат.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RetentionArchiver {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RetentionArchiveChunkRepository chunkRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final String CHECK_INS_TABLE = "daily_check_ins";
+
+    /** Новая строка user_streaks — только если у пользователя остались одни архивные check-in'ы */
+    private static final String ARCHIVED_CHECKINS_ADD_SQL = """
+            INSERT INTO user_streaks (user_id, current_streak, longest_streak, total_checkins,
+                                      total_xp_earned, archived_checkins, created_at, updated_at)
+            SELECT r.user_id, 0, 0, count(*), 0, count(*),
+                   CAST(now() AT TIME ZONE 'Asia/Almaty' AS timestamp),
+                   CAST(now() AT TIME ZONE 'Asia/Almaty' AS timestamp)
+            FROM json_populate_recordset(NULL::daily_check_ins, CAST(? AS json)) r
+            GROUP BY r.user_id
+            ON CONFLICT (user_id) DO UPDATE
+                SET archived_checkins = user_streaks.archived_checkins + EXCLUDED.archived_checkins
+            """;
+
+    /** Чанк восстановлен целиком: совпавшие по дате строки уже учтены живой таблицей */
+    private static final String ARCHIVED_CHECKINS_SUBTRACT_SQL = """
+            UPDATE user_streaks s
+            SET archived_checkins = GREATEST(0, s.archived_checkins - a.rows)
+            FROM (SELECT r.user_id, count(*) AS rows
+                  FROM json_populate_recordset(NULL::daily_check_ins, CAST(? AS json)) r
+                  GROUP BY r.user_id) a
+            WHERE s.user_id = a.user_id
+            """;
+
+    private static final String CHECK_IN_DATES_SQL = """
+            SELECT DISTINCT r.user_id, r.check_in_date
+            FROM json_populate_recordset(NULL::daily_check_ins, CAST(? AS json)) r
+            """;
+
+    /** Результат одного чанка: rows == 0 → архивировать больше нечего */
+    public record ChunkResult(int rows, int compressedBytes, int uncompressedBytes) {
+        static final ChunkResult EMPTY = new ChunkResult(0, 0, 0);
+    }
+
+    private record ArchivedRow(long id, LocalDateTime rowDate, String json) {
+    }
+
+    public ChunkResult archiveChunk(RetentionPolicy policy, LocalDateTime horizon, int batchSize) {
+        String sql = """
+                WITH victims AS (
+                    SELECT id FROM %1$s
+                    WHERE %2$s < ?
+                    ORDER BY %2$s, id
+                    LIMIT ?
+                    FOR UPDATE SKIP LOCKED
+                ), moved AS (
+                    DELETE FROM %1$s t
+                    USING victims v
+                    WHERE t.id = v.id
+                    RETURNING t.*
+                )
+                SELECT m.id, CAST(m.%2$s AS timestamp) AS row_date, row_to_json(m)::text AS row_json
+                FROM moved m
+                """.formatted(policy.table(), policy.dateColumn());
+
+        return transactionTemplate.execute(status -> {
+            List<ArchivedRow> rows = jdbcTemplate.query(sql,
+                    (rs, i) -> new ArchivedRow(
+                            rs.getLong("id"),
+                            rs.getTimestamp("row_date").toLocalDateTime(),
+                            rs.getString("row_json")),
+                    Timestamp.valueOf(horizon), batchSize);
+            if (rows.isEmpty()) return ChunkResult.EMPTY;
+
+            StringBuilder json = new StringBuilder(rows.size() * 512).append('[');
+            long minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+            LocalDateTime minDate = null, maxDate = null;
+            for (int i = 0; i < rows.size(); i++) {
+                ArchivedRow row = rows.get(i);
+                if (i > 0) json.append(',');
+                json.append(row.json());
+                minId = Math.min(minId, row.id());
+                maxId = Math.max(maxId, row.id());
+                if (minDate == null || row.rowDate().isBefore(minDate)) minDate = row.rowDate();
+                if (maxDate == null || row.rowDate().isAfter(maxDate)) maxDate = row.rowDate();
+            }
+            String payload = json.append(']').toString();
+            byte[] raw = payload.getBytes(StandardCharsets.UTF_8);
+            byte[] compressed = gzip(raw);
+
+            if (CHECK_INS_TABLE.equals(policy.table())) {
+                jdbcTemplate.update(ARCHIVED_CHECKINS_ADD_SQL, payload);
+                publishCheckInsChanged(payload);
+            }
+
+            chunkRepository.save(RetentionArchiveChunk.builder()
+                    .sourceTable(policy.table())
+                    .rowCount(rows.size())
+                    .minRowId(minId)
+                    .maxRowId(maxId)
+                    .minRowDate(minDate)
+                    .maxRowDate(maxDate)
+                    .payload(compressed)
+                    .uncompressedBytes(raw.length)
+                    .archivedAt(LocalDateTime.now())
+                    .build());
+            return new ChunkResult(rows.size(), compressed.length, raw.length);
+        });
+    }
+
+    /**
+     * Возвращает строки чанка в исходную таблицу.
+     *
+     * @return число вставленных строк (конфликтующие по PK / unique пропускаются)
+     */
+    public int restoreChunk(RetentionPolicy policy, Long chunkId) {
+        String sql = """
+                INSERT INTO %1$s
+                SELECT * FROM json_populate_recordset(NULL::%1$s, CAST(? AS json))
+                ON CONFLICT DO NOTHING
+                """.formatted(policy.table());
+
+        Integer inserted = transactionTemplate.execute(status -> {
+            RetentionArchiveChunk chunk = chunkRepository.findByIdForUpdate(chunkId).orElse(null);
+            if (chunk == null || chunk.getRestoredAt() != null) return 0;
+            if (!chunk.getSourceTable().equals(policy.table())) {
+                throw new IllegalArgumentException("Chunk " + chunkId + " belongs to " + chunk.getSourceTable());
+            }
+
+            String json = new String(gunzip(chunk.getPayload()), StandardCharsets.UTF_8);
+            int rows = jdbcTemplate.update(sql, json);
+
+            if (CHECK_INS_TABLE.equals(policy.table())) {
+                jdbcTemplate.update(ARCHIVED_CHECKINS_SUBTRACT_SQL, json);
+                publishCheckInsChanged(json);
+            }
+
+            // Payload больше не нужен — оставляем только метаданные для аудита
+            chunk.setPayload(new byte[0]);
+            chunk.setRestoredAt(LocalDateTime.now());
+            chunkRepository.save(chunk);
+
+            if (rows < chunk.getRowCount()) {
+                log.warn("Retention restore {}#{}: {} of {} rows skipped on conflict",
+                        policy.table(), chunkId, chunk.getRowCount() - rows, chunk.getRowCount());
+            }
+            return rows;
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    /** Внутри транзакции чанка: слушатели (CheckInStatsCache) срабатывают после коммита */
+    private void publishCheckInsChanged(String json) {
+        jdbcTemplate.query(CHECK_IN_DATES_SQL, rs -> {
+            eventPublisher.publishEvent(new CheckInChangedApplicationEvent(
+                    rs.getLong("user_id"), rs.getDate("check_in_date").toLocalDate()));
+        }, json);
+    }
+
+    private static byte[] gzip(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) {
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return gz.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
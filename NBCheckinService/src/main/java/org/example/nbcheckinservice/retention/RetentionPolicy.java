@@ -0,0 +1,25 @@
+package org.example.nbcheckinservice.retention;
+
+import java.time.Period;
+import java.util.regex.Pattern;
+
+/**
+ * Политика хранения одной таблицы: строки с dateColumn старше (сегодня − keep)
+ * переносятся в retention_archive_chunks.
+ *
+ * table / dateColumn подставляются в SQL как идентификаторы, поэтому проверяются
+ * по whitelist-шаблону; у таблицы должен быть BIGINT PK id.
+ */
+public record RetentionPolicy(String table, String dateColumn, Period keep, boolean enabled) {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    public RetentionPolicy {
+        if (!IDENTIFIER.matcher(table).matches() || !IDENTIFIER.matcher(dateColumn).matches()) {
+            throw new IllegalArgumentException("Invalid retention identifier: " + table + "." + dateColumn);
+        }
+        if (keep.isNegative() || keep.isZero()) {
+            throw new IllegalArgumentException("Retention period must be positive for " + table);
+        }
+    }
+}
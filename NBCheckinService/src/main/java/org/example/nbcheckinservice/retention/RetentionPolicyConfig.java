@@ -0,0 +1,37 @@
+package org.example.nbcheckinservice.retention;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Period;
+
+/**
+ * Политики retention для пользовательских логов чекин-сервиса.
+ * Каждая политика — отдельный bean, RetentionService собирает их списком.
+ * Горизонт и включение — в application.properties (retention.policy.*).
+ */
+@Configuration
+public class RetentionPolicyConfig {
+
+    @Bean
+    public RetentionPolicy dailyCheckInsRetention(
+            @Value("${retention.policy.daily-check-ins.keep:P2Y}") Period keep,
+            @Value("${retention.policy.daily-check-ins.enabled:true}") boolean enabled) {
+        return new RetentionPolicy("daily_check_ins", "check_in_date", keep, enabled);
+    }
+
+    @Bean
+    public RetentionPolicy moodLogsRetention(
+            @Value("${retention.policy.mood-logs.keep:P1Y}") Period keep,
+            @Value("${retention.policy.mood-logs.enabled:true}") boolean enabled) {
+        return new RetentionPolicy("mood_logs", "log_timestamp", keep, enabled);
+    }
+
+    @Bean
+    public RetentionPolicy sleepLogsRetention(
+            @Value("${retention.policy.sleep-logs.keep:P2Y}") Period keep,
+            @Value("${retention.policy.sleep-logs.enabled:true}") boolean enabled) {
+        return new RetentionPolicy("sleep_logs", "sleep_date", keep, enabled);
+    }
+}
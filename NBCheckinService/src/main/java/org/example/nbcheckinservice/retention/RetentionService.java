@@ -0,0 +1,333 @@
+package org.example.nbcheckinservice.retention;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.RetentionRunStatus;
+import org.example.nbcheckinservice.repository.RetentionArchiveChunkRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retention-движок: переносит строки старше горизонта политики в retention_archive_chunks.
+ *
+ * Один прогон (ночной cron или админ-запуск) идёт по политикам последовательно:
+ *   - чанк = RetentionArchiver.archiveChunk (batch-size строк, своя короткая транзакция);
+ *   - после чанка — пауза: не меньше min-pause и такая, чтобы доля времени прогона,
+ *     занятая DELETE'ами, не превышала max-duty-cycle;
+ *   - если в Hikari-пуле есть потоки, ждущие соединение, пауза растягивается до busy-pause —
+ *     foreground-запросы важнее архивации;
+ *   - прогон останавливается по max-run-duration (DEADLINE_REACHED), следующий продолжит.
+ *
+ * Метрики: retention.rows.archived / retention.rows.restored / retention.bytes.archived
+ * (tag table), retention.chunk (Timer), retention.throttle.pauses (tag reason), retention.running.
+ */
+@Service
+@Slf4j
+public class RetentionService {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+
+    private final Map<String, RetentionPolicy> policies = new LinkedHashMap<>();
+    private final RetentionArchiver archiver;
+    private final RetentionArchiveChunkRepository chunkRepository;
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration maxRunDuration;
+    private final double maxDutyCycle;
+    private final Duration minPause;
+    private final Duration busyPause;
+
+    private final ConcurrentHashMap<String, RetentionRunStatus> statuses = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelRequested;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "retention-runner");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RetentionService(
+            List<RetentionPolicy> policies,
+            RetentionArchiver archiver,
+            RetentionArchiveChunkRepository chunkRepository,
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${retention.enabled:false}") boolean enabled,
+            @Value("${retention.batch-size:500}") int batchSize,
+            @Value("${retention.max-run-duration:PT30M}") Duration maxRunDuration,
+            @Value("${retention.throttle.max-duty-cycle:0.2}") double maxDutyCycle,
+            @Value("${retention.throttle.min-pause:PT0.05S}") Duration minPause,
+            @Value("${retention.throttle.busy-pause:PT2S}") Duration busyPause
+    ) {
+        policies.forEach(p -> this.policies.put(p.table(), p));
+        this.archiver = archiver;
+        this.chunkRepository = chunkRepository;
+        this.dataSource = dataSource;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRunDuration = maxRunDuration;
+        this.maxDutyCycle = Math.min(1.0, Math.max(0.01, maxDutyCycle));
+        this.minPause = minPause;
+        this.busyPause = busyPause;
+
+        meterRegistry.gauge("retention.running", running, r -> r.get() ? 1 : 0);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cancelRequested = true;
+        runner.shutdownNow();
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // PUBLIC API
+    // ═════════════════════════════════════════════════════════════
+
+    /** Ночной прогон всех включённых политик (retention.enabled=true) */
+    @Scheduled(cron = "${retention.cron:0 30 3 * * *}", zone = "Asia/Almaty")
+    public void scheduledRun() {
+        if (!enabled) return;
+        if (!running.compareAndSet(false, true)) {
+            log.info("Retention: previous run still in progress, skipping");
+            return;
+        }
+        runPolicies(null);
+    }
+
+    /**
+     * Запускает прогон в фоне (админ-API). Работает и при retention.enabled=false —
+     * флаг выключает только расписание.
+     *
+     * @param table таблица политики; null → все включённые политики
+     * @throws IllegalArgumentException неизвестная таблица
+     * @throws IllegalStateException    прогон или restore уже идёт
+     */
+    public void start(String table) {
+        if (table != null && !policies.containsKey(table)) {
+            throw new IllegalArgumentException("Unknown retention table: " + table);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Retention run already in progress");
+        }
+        runner.submit(() -> runPolicies(table));
+    }
+
+    /** Просит текущий прогон остановиться после текущего чанка */
+    public boolean cancel() {
+        if (!running.get()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    public List<RetentionRunStatus> getStatuses() {
+        List<RetentionRunStatus> result = new ArrayList<>();
+        for (RetentionPolicy policy : policies.values()) {
+            RetentionRunStatus status = statuses.get(policy.table());
+            result.add(status != null ? status : RetentionRunStatus.builder()
+                    .table(policy.table())
+                    .state(policy.enabled() ? "NEVER_RUN" : "DISABLED")
+                    .build());
+        }
+        return result;
+    }
+
+    /** Сводка архива по таблицам (только невосстановленные чанки) */
+    public List<Map<String, Object>> getArchiveSummary() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Object[] row : chunkRepository.summarize()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("table", row[0]);
+            entry.put("chunks", ((Number) row[1]).longValue());
+            entry.put("rows", ((Number) row[2]).longValue());
+            entry.put("compressedBytes", ((Number) row[3]).longValue());
+            entry.put("uncompressedBytes", ((Number) row[4]).longValue());
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает в таблицу все архивные чанки, пересекающиеся с [from, to].
+     * Выполняется синхронно, по чанку на транзакцию, с теми же паузами, что и архивация.
+     *
+     * Если восстановленные строки старше текущего горизонта включённой политики,
+     * следующий прогон снова заархивирует их — для долгого возврата сначала увеличьте keep.
+     *
+     * @throws IllegalArgumentException неизвестная таблица
+     * @throws IllegalStateException    идёт прогон retention
+     */
+    public Map<String, Object> restore(String table, LocalDate from, LocalDate to) {
+        RetentionPolicy policy = policies.get(table);
+        if (policy == null) {
+            throw new IllegalArgumentException("Unknown retention table: " + table);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Retention run in progress — cancel it or retry later");
+        }
+        try {
+            List<Long> chunkIds = chunkRepository.findRestorableIds(
+                    table, from.atStartOfDay(), to.plusDays(1).atStartOfDay().minusNanos(1));
+
+            long rows = 0;
+            int restoredChunks = 0;
+            try {
+                for (Long chunkId : chunkIds) {
+                    long start = System.nanoTime();
+                    int restored = archiver.restoreChunk(policy, chunkId);
+                    rows += restored;
+                    restoredChunks++;
+                    meterRegistry.counter("retention.rows.restored", "table", table).increment(restored);
+                    throttle(Duration.ofNanos(System.nanoTime() - start));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            log.info("Retention restore {} [{}..{}]: {} chunks, {} rows", table, from, to, restoredChunks, rows);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("table", table);
+            result.put("from", from.toString());
+            result.put("to", to.toString());
+            result.put("chunksRestored", restoredChunks);
+            result.put("rowsRestored", rows);
+            result.put("willBeRearchived", policy.enabled() && from.atStartOfDay().isBefore(horizon(policy)));
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // RUN
+    // ═════════════════════════════════════════════════════════════
+
+    private void runPolicies(String onlyTable) {
+        cancelRequested = false;
+        LocalDateTime deadline = LocalDateTime.now().plus(maxRunDuration);
+        try {
+            for (RetentionPolicy policy : policies.values()) {
+                if (onlyTable != null ? !policy.table().equals(onlyTable) : !policy.enabled()) continue;
+                if (cancelRequested || LocalDateTime.now().isAfter(deadline)) break;
+                runPolicy(policy, deadline);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void runPolicy(RetentionPolicy policy, LocalDateTime deadline) {
+        String table = policy.table();
+        LocalDateTime horizon = horizon(policy);
+        LocalDateTime startedAt = LocalDateTime.now();
+        long rows = 0, chunks = 0, compressed = 0, uncompressed = 0, throttledMs = 0;
+        String state = "COMPLETED";
+        String error = null;
+
+        log.info("Retention {}: archiving rows with {} < {}", table, policy.dateColumn(), horizon);
+        publish(table, "RUNNING", horizon, 0, 0, 0, 0, 0, startedAt, null, null);
+
+        try {
+            while (true) {
+                if (cancelRequested) { state = "CANCELLED"; break; }
+                if (LocalDateTime.now().isAfter(deadline)) { state = "DEADLINE_REACHED"; break; }
+
+                long start = System.nanoTime();
+                RetentionArchiver.ChunkResult chunk = archiver.archiveChunk(policy, horizon, batchSize);
+                long elapsed = System.nanoTime() - start;
+                meterRegistry.timer("retention.chunk", "table", table).record(elapsed, TimeUnit.NANOSECONDS);
+
+                if (chunk.rows() == 0) break;
+                rows += chunk.rows();
+                chunks++;
+                compressed += chunk.compressedBytes();
+                uncompressed += chunk.uncompressedBytes();
+                meterRegistry.counter("retention.rows.archived", "table", table).increment(chunk.rows());
+                meterRegistry.counter("retention.bytes.archived", "table", table).increment(chunk.compressedBytes());
+                publish(table, "RUNNING", horizon, rows, chunks, compressed, uncompressed, throttledMs, startedAt, null, null);
+
+                if (chunk.rows() < batchSize) break;   // хвост — больше строк старше горизонта нет
+                throttledMs += throttle(Duration.ofNanos(elapsed));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "CANCELLED";
+        } catch (RuntimeException e) {
+            log.error("Retention {} failed after {} rows: {}", table, rows, e.getMessage(), e);
+            state = "FAILED";
+            error = e.getMessage();
+        }
+
+        publish(table, state, horizon, rows, chunks, compressed, uncompressed, throttledMs,
+                startedAt, LocalDateTime.now(), error);
+        log.info("Retention {} {}: {} rows in {} chunks, {} → {} bytes, throttled {} ms",
+                table, state, rows, chunks, uncompressed, compressed, throttledMs);
+    }
+
+    /**
+     * Пауза после чанка, занявшего chunkTime.
+     * @return фактическая пауза, мс
+     */
+    private long throttle(Duration chunkTime) throws InterruptedException {
+        long pauseMs = Math.max(minPause.toMillis(),
+                (long) (chunkTime.toMillis() * (1 - maxDutyCycle) / maxDutyCycle));
+        String reason = "duty_cycle";
+        if (poolHasWaiters()) {
+            pauseMs = Math.max(pauseMs, busyPause.toMillis());
+            reason = "pool_busy";
+        }
+        meterRegistry.counter("retention.throttle.pauses", "reason", reason).increment();
+        Thread.sleep(pauseMs);
+        return pauseMs;
+    }
+
+    private boolean poolHasWaiters() {
+        if (dataSource instanceof HikariDataSource hikari && hikari.getHikariPoolMXBean() != null) {
+            return hikari.getHikariPoolMXBean().getThreadsAwaitingConnection() > 0;
+        }
+        return false;
+    }
+
+    private static LocalDateTime horizon(RetentionPolicy policy) {
+        return LocalDate.now(ALMATY_ZONE).minus(policy.keep()).atStartOfDay();
+    }
+
+    private void publish(String table, String state, LocalDateTime horizon, long rows, long chunks,
+                         long compressed, long uncompressed, long throttledMs,
+                         LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+        statuses.put(table, RetentionRunStatus.builder()
+                .table(table)
+                .state(state)
+                .horizon(horizon)
+                .rowsArchived(rows)
+                .chunks(chunks)
+                .compressedBytes(compressed)
+                .uncompressedBytes(uncompressed)
+                .throttledMs(throttledMs)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .error(error)
+                .build());
+    }
+}
@@ -3,7 +3,7 @@ package org.example.nbcheckinservice.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.nbcheckinservice.dto.CheckInStatsResponse;
-import org.example.nbcheckinservice.entity.DailyCheckIn;
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
 import org.example.nbcheckinservice.repository.DailyCheckInRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,8 +11,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.ZoneId;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Service for analytics and statistics
@@ -24,123 +24,41 @@ import java.util.stream.Collectors;
 public class AnalyticsService {
 
     private final DailyCheckInRepository checkInRepository;
+    private final CheckInStatsCache statsCache;
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
 
     /**
-     * Get comprehensive statistics for user in date range
+     * Get comprehensive statistics for user in date range.
+     * Один запрос по нужным колонкам + один проход CheckInStatsAccumulator;
+     * результат кэшируется по (user, окно) до изменения check-in внутри окна.
      */
     @Transactional(readOnly = true)
     public CheckInStatsResponse getStats(Long userId, LocalDate startDate, LocalDate endDate) {
-        log.info("Generating stats for user {} from {} to {}", userId, startDate, endDate);
+        return statsCache.get(userId, startDate, endDate, () -> computeStats(userId, startDate, endDate));
+    }
 
-        List<DailyCheckIn> checkIns = checkInRepository
-                .findByUserIdAndCheckInDateBetweenOrderByCheckInDateDesc(userId, startDate, endDate);
+    private CheckInStatsResponse computeStats(Long userId, LocalDate startDate, LocalDate endDate) {
+        log.info("Generating stats for user {} from {} to {}", userId, startDate, endDate);
 
-        if (checkIns.isEmpty()) {
+        List<CheckInStatsRow> rows = checkInRepository.findStatsRows(userId, startDate, endDate);
+        if (rows.isEmpty()) {
             return buildEmptyStats(userId, startDate, endDate);
         }
 
-        // Calculate averages
-        Double avgMorningMood = calculateAverage(checkIns, DailyCheckIn::getMorningMood);
-        Double avgEveningMood = calculateAverage(checkIns, DailyCheckIn::getEveningMood);
-        Double avgSleepQuality = calculateAverage(checkIns, DailyCheckIn::getSleepQuality);
-        Double avgSleepHours = calculateAverageBigDecimal(checkIns, DailyCheckIn::getSleepHours);
-        Double avgEnergyLevel = calculateAverage(checkIns, DailyCheckIn::getEnergyLevel);
-        Double avgStressLevel = calculateAverage(checkIns, DailyCheckIn::getStressLevel);
-        Double avgWellnessScore = checkIns.stream()
-                .mapToDouble(DailyCheckIn::calculateWellnessScore)
-                .average()
-                .orElse(0.0);
-
-        int totalPhysicalActivityMinutes = checkIns.stream()
-                .mapToInt(c -> c.getPhysicalActivityMinutes() != null ? c.getPhysicalActivityMinutes() : 0)
-                .sum();
-
-        int totalCognitiveGames = checkIns.stream()
-                .mapToInt(c -> c.getCognitiveGameCount() != null ? c.getCognitiveGameCount() : 0)
-                .sum();
-
-        // Calculate percentages
-        long totalDays = checkIns.size();
-        double exercisePercentage = calculatePercentage(checkIns, DailyCheckIn::getDidExercise, totalDays);
-        double healthyEatingPercentage = calculatePercentage(checkIns, DailyCheckIn::getAteHealthy, totalDays);
-        double socialInteractionPercentage = calculatePercentage(checkIns, DailyCheckIn::getHadSocialInteraction, totalDays);
-        double cognitiveGamePercentage = calculatePercentage(checkIns, DailyCheckIn::getPlayedCognitiveGameToday, totalDays);
-
-        // Calculate trends
-        String moodTrend = calculateTrend(checkIns, c -> {
-            if (c.getMorningMood() != null && c.getEveningMood() != null) {
-                return (c.getMorningMood() + c.getEveningMood()) / 2.0;
-            }
-            return c.getMorningMood() != null ? c.getMorningMood().doubleValue() :
-                    c.getEveningMood() != null ? c.getEveningMood().doubleValue() : null;
-        });
-
-        String sleepTrend = calculateTrend(checkIns, c ->
-                c.getSleepQuality() != null ? c.getSleepQuality().doubleValue() : null
-        );
-
-        String stressTrend = calculateTrendInverted(checkIns, c ->
-                c.getStressLevel() != null ? c.getStressLevel().doubleValue() : null
-        );
-
-        String energyTrend = calculateTrend(checkIns, c ->
-                c.getEnergyLevel() != null ? c.getEnergyLevel().doubleValue() : null
-        );
-
-        // Build daily data
-        List<CheckInStatsResponse.DailyData> dailyData = buildDailyData(checkIns, startDate, endDate);
-
-        // Generate insights
-        List<String> insights = generateInsights(
-                avgMorningMood, avgEveningMood, avgSleepQuality, avgSleepHours,
-                avgEnergyLevel, avgStressLevel, exercisePercentage,
-                healthyEatingPercentage, cognitiveGamePercentage,
-                moodTrend, sleepTrend, stressTrend
-        );
-
-        // Mood distribution
-        Map<String, Integer> moodDistribution = calculateMoodDistribution(checkIns);
-
-        // Best/Worst days
-        DailyCheckIn bestDay = checkIns.stream()
-                .max(Comparator.comparingDouble(DailyCheckIn::calculateWellnessScore))
-                .orElse(null);
-
-        DailyCheckIn worstDay = checkIns.stream()
-                .min(Comparator.comparingDouble(DailyCheckIn::calculateWellnessScore))
-                .orElse(null);
-
-        return CheckInStatsResponse.builder()
-                .userId(userId)
-                .startDate(startDate)
-                .endDate(endDate)
-                .avgMorningMood(avgMorningMood)
-                .avgEveningMood(avgEveningMood)
-                .avgSleepQuality(avgSleepQuality)
-                .avgSleepHours(avgSleepHours)
-                .avgEnergyLevel(avgEnergyLevel)
-                .avgStressLevel(avgStressLevel)
-                .avgWellnessScore(avgWellnessScore)
-                .totalCheckIns((int) totalDays)
-                .totalPhysicalActivityMinutes(totalPhysicalActivityMinutes)
-                .totalCognitiveGamesPlayed(totalCognitiveGames)
-                .exercisePercentage(exercisePercentage)
-                .healthyEatingPercentage(healthyEatingPercentage)
-                .socialInteractionPercentage(socialInteractionPercentage)
-                .cognitiveGamePercentage(cognitiveGamePercentage)
-                .moodTrend(moodTrend)
-                .sleepTrend(sleepTrend)
-                .stressTrend(stressTrend)
-                .energyTrend(energyTrend)
-                .dailyData(dailyData)
-                .insights(insights)
-                .moodDistribution(moodDistribution)
-                .bestDay(bestDay != null ? bestDay.getCheckInDate() : null)
-                .worstDay(worstDay != null ? worstDay.getCheckInDate() : null)
-                .bestWellnessScore(bestDay != null ? bestDay.calculateWellnessScore() : null)
-                .worstWellnessScore(worstDay != null ? worstDay.calculateWellnessScore() : null)
-                .build();
+        CheckInStatsAccumulator acc = new CheckInStatsAccumulator(startDate, endDate, rows.size());
+        for (CheckInStatsRow row : rows) {
+            acc.add(row);
+        }
+        CheckInStatsResponse stats = acc.toResponse(userId);
+
+        stats.setInsights(generateInsights(
+                stats.getAvgMorningMood(), stats.getAvgEveningMood(), stats.getAvgSleepQuality(),
+                stats.getAvgSleepHours(), stats.getAvgEnergyLevel(), stats.getAvgStressLevel(),
+                stats.getExercisePercentage(), stats.getHealthyEatingPercentage(),
+                stats.getCognitiveGamePercentage(),
+                stats.getMoodTrend(), stats.getSleepTrend(), stats.getStressTrend()
+        ));
+        return stats;
     }
 
     /**
@@ -165,109 +83,6 @@ public class AnalyticsService {
 
     // ========== HELPER METHODS ==========
 
-    private Double calculateAverage(List<DailyCheckIn> checkIns,
-                                    java.util.function.Function<DailyCheckIn, Integer> getter) {
-        return checkIns.stream()
-                .map(getter)
-                .filter(Objects::nonNull)
-                .mapToInt(Integer::intValue)
-                .average()
-                .orElse(0.0);
-    }
-
-    private Double calculateAverageBigDecimal(List<DailyCheckIn> checkIns,
-                                              java.util.function.Function<DailyCheckIn, java.math.BigDecimal> getter) {
-        return checkIns.stream()
-                .map(getter)
-                .filter(Objects::nonNull)
-                .mapToDouble(java.math.BigDecimal::doubleValue)
-                .average()
-                .orElse(0.0);
-    }
-
-    private double calculatePercentage(List<DailyCheckIn> checkIns,
-                                       java.util.function.Function<DailyCheckIn, Boolean> getter,
-                                       long total) {
-        long count = checkIns.stream()
-                .map(getter)
-                .filter(Boolean.TRUE::equals)
-                .count();
-        return total > 0 ? (count * 100.0) / total : 0.0;
-    }
-
-    private String calculateTrend(List<DailyCheckIn> checkIns,
-                                  java.util.function.Function<DailyCheckIn, Double> getter) {
-        int mid = checkIns.size() / 2;
-        if (mid == 0) return "stable";
-
-        List<DailyCheckIn> firstHalf = checkIns.subList(0, mid);
-        List<DailyCheckIn> secondHalf = checkIns.subList(mid, checkIns.size());
-
-        double firstAvg = firstHalf.stream()
-                .map(getter)
-                .filter(Objects::nonNull)
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
-
-        double secondAvg = secondHalf.stream()
-                .map(getter)
-                .filter(Objects::nonNull)
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
-
-        double diff = secondAvg - firstAvg;
-
-        if (Math.abs(diff) < 0.5) return "stable";
-        return diff > 0 ? "improving" : "declining";
-    }
-
-    private String calculateTrendInverted(List<DailyCheckIn> checkIns,
-                                          java.util.function.Function<DailyCheckIn, Double> getter) {
-        String trend = calculateTrend(checkIns, getter);
-        return switch (trend) {
-            case "improving" -> "declining";
-            case "declining" -> "improving";
-            default -> "stable";
-        };
-    }
-
-    private List<CheckInStatsResponse.DailyData> buildDailyData(
-            List<DailyCheckIn> checkIns,
-            LocalDate startDate,
-            LocalDate endDate
-    ) {
-        Map<LocalDate, DailyCheckIn> checkInMap = checkIns.stream()
-                .collect(Collectors.toMap(DailyCheckIn::getCheckInDate, c -> c));
-
-        List<CheckInStatsResponse.DailyData> dailyData = new ArrayList<>();
-
-        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            DailyCheckIn checkIn = checkInMap.get(date);
-
-            if (checkIn != null) {
-                dailyData.add(CheckInStatsResponse.DailyData.builder()
-                        .date(date)
-                        .morningMood(checkIn.getMorningMood())
-                        .eveningMood(checkIn.getEveningMood())
-                        .sleepQuality(checkIn.getSleepQuality())
-                        .energyLevel(checkIn.getEnergyLevel())
-                        .stressLevel(checkIn.getStressLevel())
-                        .wellnessScore(checkIn.calculateWellnessScore())
-                        .hasCheckIn(true)
-                        .build());
-            } else {
-                dailyData.add(CheckInStatsResponse.DailyData.builder()
-                        .date(date)
-                        .hasCheckIn(false)
-                        .build());
-            }
-        }
-
-        return dailyData;
-    }
-
     private List<String> generateInsights(
             Double avgMood1, Double avgMood2, Double avgSleep, Double avgSleepHours,
             Double avgEnergy, Double avgStress, double exercisePercent,
@@ -319,21 +134,6 @@ public class AnalyticsService {
         return insights;
     }
 
-    private Map<String, Integer> calculateMoodDistribution(List<DailyCheckIn> checkIns) {
-        Map<String, Integer> distribution = new HashMap<>();
-
-        for (DailyCheckIn checkIn : checkIns) {
-            if (checkIn.getMorningMoodEmoji() != null) {
-                distribution.merge(checkIn.getMorningMoodEmoji(), 1, Integer::sum);
-            }
-            if (checkIn.getEveningMoodEmoji() != null) {
-                distribution.merge(checkIn.getEveningMoodEmoji(), 1, Integer::sum);
-            }
-        }
-
-        return distribution;
-    }
-
     private CheckInStatsResponse buildEmptyStats(Long userId, LocalDate startDate, LocalDate endDate) {
         return CheckInStatsResponse.builder()
                 .userId(userId)
@@ -2,6 +2,8 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.calendar.ActivityLayer;
 import org.example.nbcheckinservice.dto.BrainGameStatsResponse;
 import org.example.nbcheckinservice.dto.BrainGameSubmitRequest;
 import org.example.nbcheckinservice.dto.GameResultResponse;
@@ -33,20 +35,19 @@ public class BrainGameService {
     private final KafkaProducerService kafkaProducerService;
     private final UserCharacterService characterService;
     private final RewardService rewardService;
+    private final ActivityCalendarService activityCalendarService;
+    private final GameXpQuotaService xpQuotaService;
 
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
 
-    private static final int DAILY_XP_GAME_LIMIT = 3;
-
     @Transactional
     public GameResultResponse submitGameResult(Long userId, BrainGameSubmitRequest request) {
 
         LocalDate today = LocalDate.now(ALMATY_ZONE);
-        LocalDateTime dayStart = today.atStartOfDay();
-        LocalDateTime dayEnd = today.plusDays(1).atStartOfDay();
 
-        long todayCountForType = gameResultRepository.countTodayByGameType(userId, request.getGameType(), dayStart, dayEnd);
-        Integer xpEarned = todayCountForType >= DAILY_XP_GAME_LIMIT ? 0 : calculateXP(request);
+        boolean withinDailyLimit = xpQuotaService.tryConsume(
+                userId, GameXpQuotaService.Source.BRAIN_GAME, request.getGameType(), today);
+        Integer xpEarned = withinDailyLimit ? calculateXP(request) : 0;
 
         BrainGameResult result = BrainGameResult.builder()
                 .userId(userId)
@@ -60,6 +61,7 @@ public class BrainGameService {
                 .build();
 
         result = gameResultRepository.save(result);
+        activityCalendarService.mark(userId, ActivityLayer.GAME_PLAYED, today);
 
         UserGameStats stats = gameStatsRepository.findByUserId(userId)
                 .orElse(UserGameStats.builder().userId(userId).build());
@@ -107,7 +109,7 @@ public class BrainGameService {
             }
         });
 
-        String message = todayCountForType >= DAILY_XP_GAME_LIMIT
+        String message = !withinDailyLimit
                 ? "Лимит XP за этот тип игры исчерпан (3 игры в день). Результат записан."
                 : generateMessage(request, xpEarned, isNewBestTime);
 
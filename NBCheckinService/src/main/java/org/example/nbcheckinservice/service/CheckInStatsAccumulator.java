@@ -0,0 +1,193 @@
+package org.example.nbcheckinservice.service;
+
+import org.example.nbcheckinservice.dto.CheckInStatsResponse;
+import org.example.nbcheckinservice.entity.DailyCheckIn;
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Статистика check-in за окно за один проход по строкам на примитивных счётчиках.
+ *
+ * Строки подаются в порядке findStatsRows (новые даты первыми) — от этого зависят
+ * тренды (первая половина списка против второй) и выбор best/worst дня при равенстве
+ * (побеждает более ранняя в списке, как у Stream.max / Stream.min).
+ * Insights добавляет AnalyticsService.
+ */
+public final class CheckInStatsAccumulator {
+
+    // Индексы метрик трендов
+    private static final int MOOD = 0, SLEEP = 1, STRESS = 2, ENERGY = 3;
+
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final int mid;
+    private final CheckInStatsResponse.DailyData[] days;
+
+    private int count;
+
+    private long morningSum, eveningSum, sleepQualitySum, energySum, stressSum;
+    private int morningN, eveningN, sleepQualityN, energyN, stressN;
+    private double sleepHoursSum;
+    private int sleepHoursN;
+    private double wellnessSum;
+
+    private int activityMinutes, cognitiveGames;
+    private int exerciseDays, healthyEatingDays, socialDays, cognitiveGameDays;
+
+    /** [metric][half] — сумма и число непустых значений для трендов */
+    private final double[][] trendSum = new double[4][2];
+    private final int[][] trendN = new int[4][2];
+
+    private LocalDate bestDay, worstDay;
+    private double bestScore = Double.NEGATIVE_INFINITY, worstScore = Double.POSITIVE_INFINITY;
+
+    private final Map<String, Integer> moodDistribution = new HashMap<>();
+
+    /**
+     * @param rowCount число строк, которые будут поданы (для деления на половины в трендах)
+     */
+    public CheckInStatsAccumulator(LocalDate startDate, LocalDate endDate, int rowCount) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.mid = rowCount / 2;
+        long span = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        this.days = new CheckInStatsResponse.DailyData[(int) Math.max(0, span)];
+    }
+
+    public void add(CheckInStatsRow r) {
+        int half = count < mid ? 0 : 1;
+        count++;
+
+        Integer morning = r.morningMood(), evening = r.eveningMood();
+        Integer sleepQuality = r.sleepQuality(), energy = r.energyLevel(), stress = r.stressLevel();
+
+        if (morning != null) { morningSum += morning; morningN++; }
+        if (evening != null) { eveningSum += evening; eveningN++; }
+        if (sleepQuality != null) {
+            sleepQualitySum += sleepQuality; sleepQualityN++;
+            trend(SLEEP, half, sleepQuality);
+        }
+        if (energy != null) {
+            energySum += energy; energyN++;
+            trend(ENERGY, half, energy);
+        }
+        if (stress != null) {
+            stressSum += stress; stressN++;
+            trend(STRESS, half, stress);
+        }
+        if (r.sleepHours() != null) { sleepHoursSum += r.sleepHours().doubleValue(); sleepHoursN++; }
+
+        if (morning != null && evening != null) trend(MOOD, half, (morning + evening) / 2.0);
+        else if (morning != null) trend(MOOD, half, morning);
+        else if (evening != null) trend(MOOD, half, evening);
+
+        if (r.physicalActivityMinutes() != null) activityMinutes += r.physicalActivityMinutes();
+        if (r.cognitiveGameCount() != null) cognitiveGames += r.cognitiveGameCount();
+        if (Boolean.TRUE.equals(r.didExercise())) exerciseDays++;
+        if (Boolean.TRUE.equals(r.ateHealthy())) healthyEatingDays++;
+        if (Boolean.TRUE.equals(r.hadSocialInteraction())) socialDays++;
+        if (Boolean.TRUE.equals(r.playedCognitiveGameToday())) cognitiveGameDays++;
+
+        double wellness = DailyCheckIn.wellnessScore(morning, evening, sleepQuality, energy, stress,
+                r.didExercise(), r.ateHealthy(), r.hadSocialInteraction(), r.playedCognitiveGameToday());
+        wellnessSum += wellness;
+        if (wellness > bestScore) { bestScore = wellness; bestDay = r.checkInDate(); }
+        if (wellness < worstScore) { worstScore = wellness; worstDay = r.checkInDate(); }
+
+        if (r.morningMoodEmoji() != null) moodDistribution.merge(r.morningMoodEmoji(), 1, Integer::sum);
+        if (r.eveningMoodEmoji() != null) moodDistribution.merge(r.eveningMoodEmoji(), 1, Integer::sum);
+
+        long dayIndex = ChronoUnit.DAYS.between(startDate, r.checkInDate());
+        if (dayIndex >= 0 && dayIndex < days.length) {
+            days[(int) dayIndex] = CheckInStatsResponse.DailyData.builder()
+                    .date(r.checkInDate())
+                    .morningMood(morning)
+                    .eveningMood(evening)
+                    .sleepQuality(sleepQuality)
+                    .energyLevel(energy)
+                    .stressLevel(stress)
+                    .wellnessScore(wellness)
+                    .hasCheckIn(true)
+                    .build();
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public CheckInStatsResponse toResponse(Long userId) {
+        return CheckInStatsResponse.builder()
+                .userId(userId)
+                .startDate(startDate)
+                .endDate(endDate)
+                .avgMorningMood(avg(morningSum, morningN))
+                .avgEveningMood(avg(eveningSum, eveningN))
+                .avgSleepQuality(avg(sleepQualitySum, sleepQualityN))
+                .avgSleepHours(avg(sleepHoursSum, sleepHoursN))
+                .avgEnergyLevel(avg(energySum, energyN))
+                .avgStressLevel(avg(stressSum, stressN))
+                .avgWellnessScore(avg(wellnessSum, count))
+                .totalCheckIns(count)
+                .totalPhysicalActivityMinutes(activityMinutes)
+                .totalCognitiveGamesPlayed(cognitiveGames)
+                .exercisePercentage(percent(exerciseDays))
+                .healthyEatingPercentage(percent(healthyEatingDays))
+                .socialInteractionPercentage(percent(socialDays))
+                .cognitiveGamePercentage(percent(cognitiveGameDays))
+                .moodTrend(trend(MOOD, false))
+                .sleepTrend(trend(SLEEP, false))
+                .stressTrend(trend(STRESS, true))
+                .energyTrend(trend(ENERGY, false))
+                .dailyData(dailyData())
+                .moodDistribution(moodDistribution)
+                .bestDay(bestDay)
+                .worstDay(worstDay)
+                .bestWellnessScore(bestDay != null ? bestScore : null)
+                .worstWellnessScore(worstDay != null ? worstScore : null)
+                .build();
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private void trend(int metric, int half, double value) {
+        trendSum[metric][half] += value;
+        trendN[metric][half]++;
+    }
+
+    /** Вторая половина против первой; разница меньше 0.5 — stable. inverted — для стресса */
+    private String trend(int metric, boolean inverted) {
+        if (mid == 0) return "stable";
+        double diff = avg(trendSum[metric][1], trendN[metric][1]) - avg(trendSum[metric][0], trendN[metric][0]);
+        if (Math.abs(diff) < 0.5) return "stable";
+        boolean up = diff > 0;
+        return up != inverted ? "improving" : "declining";
+    }
+
+    private List<CheckInStatsResponse.DailyData> dailyData() {
+        List<CheckInStatsResponse.DailyData> out = new ArrayList<>(days.length);
+        LocalDate date = startDate;
+        for (CheckInStatsResponse.DailyData d : days) {
+            out.add(d != null ? d : CheckInStatsResponse.DailyData.builder()
+                    .date(date)
+                    .hasCheckIn(false)
+                    .build());
+            date = date.plusDays(1);
+        }
+        return out;
+    }
+
+    private double percent(int days) {
+        return count > 0 ? (days * 100.0) / count : 0.0;
+    }
+
+    private static double avg(double sum, int n) {
+        return n > 0 ? sum / n : 0.0;
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.nbcheckinservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.CheckInStatsResponse;
+import org.example.nbcheckinservice.event.CheckInChangedApplicationEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Read model статистики check-in: кэш CheckInStatsResponse по (user, startDate, endDate).
+ *
+ * Инвалидация — по CheckInChangedApplicationEvent после коммита: у пользователя
+ * сбрасываются только окна, содержащие изменённую дату. Weekly / monthly окна
+ * заканчиваются сегодняшним днём, поэтому со сменой дня ключ меняется сам.
+ *
+ * Гонка «чтение старых данных → коммит изменения → put устаревшего результата»
+ * закрыта поколением пользователя: put проходит, только если с начала вычисления
+ * инвалидаций не было.
+ *
+ * LRU по пользователям (checkin.stats-cache.max-users), на пользователя —
+ * до MAX_WINDOWS_PER_USER окон.
+ */
+@Component
+@Slf4j
+public class CheckInStatsCache {
+
+    private static final int MAX_WINDOWS_PER_USER = 16;
+
+    private record Window(LocalDate start, LocalDate end) {
+        boolean contains(LocalDate date) {
+            return !date.isBefore(start) && !date.isAfter(end);
+        }
+    }
+
+    private static final class UserEntry {
+        long generation;
+        final Map<Window, CheckInStatsResponse> windows = new LinkedHashMap<>(8, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Window, CheckInStatsResponse> eldest) {
+                return size() > MAX_WINDOWS_PER_USER;
+            }
+        };
+    }
+
+    private final Map<Long, UserEntry> users;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CheckInStatsCache(@Value("${checkin.stats-cache.max-users:10000}") int maxUsers,
+                             MeterRegistry meterRegistry) {
+        this.users = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, UserEntry> eldest) {
+                return size() > maxUsers;
+            }
+        });
+        this.hits = meterRegistry.counter("checkin.stats.cache", "result", "hit");
+        this.misses = meterRegistry.counter("checkin.stats.cache", "result", "miss");
+    }
+
+    /**
+     * Кэшированная статистика окна или compute() с сохранением результата.
+     * compute выполняется вне блокировки — параллельные промахи считают независимо.
+     */
+    public CheckInStatsResponse get(Long userId, LocalDate start, LocalDate end,
+                                    Supplier<CheckInStatsResponse> compute) {
+        Window window = new Window(start, end);
+        UserEntry entry;
+        long generation;
+        synchronized (users) {
+            entry = users.computeIfAbsent(userId, id -> new UserEntry());
+            CheckInStatsResponse cached = entry.windows.get(window);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            generation = entry.generation;
+        }
+
+        misses.increment();
+        CheckInStatsResponse computed = compute.get();
+
+        synchronized (users) {
+            // Та же запись (не вытеснена LRU и не пересоздана) и без инвалидаций за время compute
+            if (users.get(userId) == entry && entry.generation == generation) {
+                entry.windows.put(window, computed);
+            }
+        }
+        return computed;
+    }
+
+    public void evict(Long userId, LocalDate date) {
+        synchronized (users) {
+            UserEntry entry = users.get(userId);
+            if (entry == null) return;
+            entry.generation++;
+            entry.windows.keySet().removeIf(w -> w.contains(date));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCheckInChanged(CheckInChangedApplicationEvent event) {
+        evict(event.getUserId(), event.getCheckInDate());
+        log.debug("Stats cache evicted for user {} around {}", event.getUserId(), event.getCheckInDate());
+    }
+}
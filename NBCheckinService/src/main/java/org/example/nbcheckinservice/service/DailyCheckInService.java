@@ -2,6 +2,8 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.calendar.ActivityLayer;
 import org.example.nbcheckinservice.dto.CheckInRequest;
 import org.example.nbcheckinservice.dto.CheckInResponse;
 import org.example.nbcheckinservice.dto.RewardResponse;
@@ -9,7 +11,10 @@ import org.example.nbcheckinservice.entity.DailyCheckIn;
 import org.example.nbcheckinservice.entity.DailyTask;
 import org.example.nbcheckinservice.entity.UserStreak;
 import org.example.nbcheckinservice.exception.CheckInAlreadyExistsException;
+import org.example.nbcheckinservice.event.CheckInChangedApplicationEvent;
 import org.example.nbcheckinservice.event.CheckInCreatedApplicationEvent;
+import org.example.nbcheckinservice.insights.InsightStatsService;
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
 import org.example.nbcheckinservice.repository.DailyCheckInRepository;
 import org.example.nbcheckinservice.repository.DailyTaskRepository;
 import org.springframework.context.ApplicationEventPublisher;
@@ -38,24 +43,21 @@ public class DailyCheckInService {
     private final RewardService rewardService;
     private final DailyTaskRepository taskRepository;
     private final ApplicationEventPublisher eventPublisher;
+    private final InsightStatsService insightStatsService;
+    private final ActivityCalendarService activityCalendarService;
 
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
 
     /**
-     * Возвращает список дат текущего месяца, в которые пользователь выполнил ВСЕ заданные таски.
-     * Полезно для календаря на фронтенде.
+     * Возвращает список дат месяца, в которые у пользователя есть check-in.
+     * Полезно для календаря на фронтенде. Читается из карты активности (слой CHECK_IN),
+     * а до завершения её backfill — из daily_check_ins (см. ActivityCalendarService).
      */
     @Transactional(readOnly = true)
     public List<LocalDate> getCompletionDatesInMonth(Long userId, int year, int month) {
         LocalDate start = LocalDate.of(year, month, 1);
         LocalDate end = start.withDayOfMonth(start.lengthOfMonth());
-        // Returns all dates in the month where the user has a check-in record
-        return checkInRepository
-                .findByUserIdAndCheckInDateBetweenOrderByCheckInDateDesc(userId, start, end)
-                .stream()
-                .map(DailyCheckIn::getCheckInDate)
-                .sorted()
-                .collect(Collectors.toList());
+        return activityCalendarService.getDates(userId, ActivityLayer.CHECK_IN, start, end);
     }
 
     @Transactional
@@ -75,6 +77,8 @@ public class DailyCheckInService {
         DailyCheckIn checkIn = buildCheckInFromRequest(userId, request, checkInDate);
         DailyCheckIn savedCheckIn = checkInRepository.save(checkIn);
         log.info("Check-in created successfully with ID: {}", savedCheckIn.getId());
+        insightStatsService.onCheckInChanged(userId, null, CheckInStatsRow.of(savedCheckIn));
+        activityCalendarService.mark(userId, ActivityLayer.CHECK_IN, checkInDate);
 
         UserStreak streak = streakService.updateStreak(userId, checkInDate);
         log.info("Streak updated for user {}: current={}, longest={}",
@@ -106,6 +110,8 @@ public class DailyCheckInService {
         //  → TransactionalKafkaPublisher (Order=2): sends Kafka event AFTER_COMMIT
         // Both run after the check-in TX is committed, so the check-in is guaranteed to be in DB.
         eventPublisher.publishEvent(new CheckInCreatedApplicationEvent(userId, checkInDate));
+        // CheckInStatsCache: инвалидирует окна статистики, содержащие эту дату (AFTER_COMMIT)
+        eventPublisher.publishEvent(new CheckInChangedApplicationEvent(userId, checkInDate));
 
         return buildCheckInResponse(savedCheckIn, streak);
     }
@@ -120,9 +126,12 @@ public class DailyCheckInService {
                         "Check-in not found for date: " + date
                 ));
 
+        CheckInStatsRow before = CheckInStatsRow.of(checkIn);
         updateCheckInFields(checkIn, request);
         DailyCheckIn updatedCheckIn = checkInRepository.save(checkIn);
         log.info("Check-in updated successfully");
+        insightStatsService.onCheckInChanged(userId, before, CheckInStatsRow.of(updatedCheckIn));
+        eventPublisher.publishEvent(new CheckInChangedApplicationEvent(userId, date));
 
         UserStreak streak = streakService.getOrCreateStreak(userId);
         return buildCheckInResponse(updatedCheckIn, streak);
@@ -189,7 +198,10 @@ public class DailyCheckInService {
                 .orElseThrow(() -> new IllegalArgumentException("Check-in not found"));
 
         checkInRepository.delete(checkIn);
+        insightStatsService.onCheckInChanged(userId, CheckInStatsRow.of(checkIn), null);
+        activityCalendarService.clear(userId, ActivityLayer.CHECK_IN, date);
         streakService.recalculateStreak(userId);
+        eventPublisher.publishEvent(new CheckInChangedApplicationEvent(userId, date));
     }
 
     // ========== HELPER METHODS ==========
@@ -2,6 +2,8 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.calendar.ActivityLayer;
 import org.example.nbcheckinservice.dto.DailyTaskResponse;
 import org.example.nbcheckinservice.entity.DailyTask;
 import org.example.nbcheckinservice.repository.DailyTaskRepository;
@@ -12,6 +14,7 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.List;
@@ -31,6 +34,7 @@ public class DailyTaskService {
     private final DailyTaskRepository taskRepository;
     private final UserCharacterService characterService;
     private final RewardService rewardService;
+    private final ActivityCalendarService activityCalendarService;
 
     @Transactional
     public List<DailyTaskResponse> getTodayTasks(Long userId) {
@@ -64,13 +68,27 @@ public class DailyTaskService {
             return buildTaskResponse(task);
         }
 
-        task.complete();
+        // Условный UPDATE до изменения сущности: иначе auto-flush перед запросом
+        // записал бы isCompleted=true и условие никогда бы не выполнилось
+        LocalDateTime completedAt = LocalDateTime.now(ALMATY_ZONE);
+        if (taskRepository.markCompleted(task.getId(), completedAt) == 0) {
+            // Закрыта параллельным запросом между чтением и UPDATE — XP уже начислен там
+            log.warn("Task {} concurrently completed for user {} on {}", taskType, userId, date);
+            return buildTaskResponse(task);
+        }
+        task.setIsCompleted(true);
+        task.setCompletedAt(completedAt);
         DailyTask savedTask = taskRepository.save(task);
         characterService.addXp(userId, task.getXpReward());
 
         log.info("Task {} completed for user {} on {}, awarded {} XP",
                 taskType, userId, date, task.getXpReward());
 
+        // Последняя незакрытая задача дня — perfect day в карте активности
+        if (!taskRepository.existsByUserIdAndTaskDateAndIsCompletedFalse(userId, date)) {
+            activityCalendarService.mark(userId, ActivityLayer.PERFECT_DAY, date);
+        }
+
         // Check PERFECT_DAY reward and others after commit
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
             @Override
@@ -97,6 +115,18 @@ public class DailyTaskService {
                 });
     }
 
+    /**
+     * Заметка или запись журнала за день (note.written / POST /tasks/note-written):
+     * задачи дня создаются при необходимости, WRITE_NOTE закрывается, день отмечается в карте активности.
+     */
+    @Transactional
+    public void recordNoteWritten(Long userId, LocalDate date) {
+        // Без задач дня autoCompleteTask ничего не найдёт (ifPresent)
+        getTasksForDate(userId, date);
+        autoCompleteTask(userId, DailyTask.TaskType.WRITE_NOTE, date);
+        activityCalendarService.mark(userId, ActivityLayer.JOURNAL_WRITTEN, date);
+    }
+
     /** Get (or create) tasks for any date, not just today. */
     @Transactional
     public List<DailyTaskResponse> getTasksForDate(Long userId, LocalDate date) {
@@ -2,6 +2,8 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.calendar.ActivityLayer;
 import org.example.nbcheckinservice.dto.GameSessionRequest;
 import org.example.nbcheckinservice.dto.GameSessionResponse;
 import org.example.nbcheckinservice.entity.GameSession;
@@ -24,7 +26,6 @@ import java.util.stream.Collectors;
 public class GameSessionService {
 
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
-    private static final int DAILY_XP_GAME_LIMIT = 3;
     private static final int MIN_DURATION_FOR_XP_SECONDS = 20;
 
     private final GameSessionRepository gameRepository;
@@ -32,6 +33,8 @@ public class GameSessionService {
     private final DailyTaskService taskService;
     private final KafkaProducerService kafkaProducerService;
     private final RewardService rewardService;
+    private final ActivityCalendarService activityCalendarService;
+    private final GameXpQuotaService xpQuotaService;
 
     @Transactional
     public GameSessionResponse recordGameSession(Long userId, GameSessionRequest request) {
@@ -40,12 +43,10 @@ public class GameSessionService {
         LocalDate gameDate = request.getGameDate() != null
                 ? request.getGameDate()
                 : LocalDate.now(ALMATY_ZONE);
-        LocalDateTime dayStart = gameDate.atStartOfDay();
-        LocalDateTime dayEnd = gameDate.plusDays(1).atStartOfDay();
         LocalDateTime playedAt = gameDate.atTime(java.time.LocalTime.now(ALMATY_ZONE));
 
-        long todayCountForType = gameRepository.countByUserIdAndGameTypeAndPlayedAtBetween(
-                userId, request.getGameType(), dayStart, dayEnd);
+        boolean withinDailyLimit = xpQuotaService.tryConsume(
+                userId, GameXpQuotaService.Source.GAME_SESSION, request.getGameType(), gameDate);
 
         GameSession game = GameSession.builder()
                 .userId(userId)
@@ -59,7 +60,6 @@ public class GameSessionService {
         boolean meetsMinDuration = request.getDurationSeconds() != null
                 && request.getDurationSeconds() >= MIN_DURATION_FOR_XP_SECONDS;
         boolean completedProperly = Boolean.TRUE.equals(request.getIsCompleted()) && meetsMinDuration;
-        boolean withinDailyLimit = todayCountForType < DAILY_XP_GAME_LIMIT;
 
         if (completedProperly && withinDailyLimit) {
             game.calculateXpEarned();
@@ -81,6 +81,7 @@ public class GameSessionService {
         }
 
         GameSession savedGame = gameRepository.save(game);
+        activityCalendarService.mark(userId, ActivityLayer.GAME_PLAYED, gameDate);
 
         if (game.getXpEarned() > 0) {
             characterService.addXp(userId, game.getXpEarned());
@@ -101,10 +102,10 @@ public class GameSessionService {
             }
         });
 
-        log.info("Game session recorded for user {}: type={}, difficulty={}, xp={}, duration={}s, attempts={}, limit={}/{}",
+        log.info("Game session recorded for user {}: type={}, difficulty={}, xp={}, duration={}s, attempts={}, withinXpLimit={} (limit {}/day)",
                 userId, request.getGameType(), request.getDifficultyLevel(),
                 game.getXpEarned(), request.getDurationSeconds(), request.getAttemptsCount(),
-                todayCountForType + 1, DAILY_XP_GAME_LIMIT);
+                withinDailyLimit, GameXpQuotaService.DAILY_XP_GAME_LIMIT);
 
         return buildGameResponse(savedGame);
     }
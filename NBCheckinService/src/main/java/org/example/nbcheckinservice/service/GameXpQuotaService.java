@@ -0,0 +1,154 @@
+package org.example.nbcheckinservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Дневной лимит XP-игр — DAILY_XP_GAME_LIMIT игр на (user, день, pipeline, тип игры)
+ * для BrainGameService, GameSessionService и NewGameSessionService.
+ *
+ * Каждая отправка игры засчитывается одним UPDATE game_xp_quota ... RETURNING plays
+ * в транзакции самой игры: откат игры откатывает и счётчик, параллельные отправки
+ * одного ключа сериализуются на строке счётчика. Первая игра ключа создаёт строку
+ * со значением COUNT(*) + 1 по таблице игр pipeline'а за этот день — так учитываются
+ * игры, сыгранные до появления счётчиков (отдельного backfill нет).
+ *
+ * Счётчик только растёт, поэтому исчерпанный ключ исчерпан до конца дня — такие ключи
+ * помнит in-memory окно (games.xp-quota.window), и повторные игры сверх лимита
+ * в базу не ходят. Для этих игр plays не увеличивается — для лимита это не важно.
+ */
+@Service
+@Slf4j
+public class GameXpQuotaService {
+
+    public static final int DAILY_XP_GAME_LIMIT = 3;
+
+    /** Pipeline игры: у каждого свой GameType и своя таблица, лимиты считаются раздельно */
+    public enum Source {
+        BRAIN_GAME("brain_game_results"),
+        GAME_SESSION("game_sessions"),
+        NEW_GAME_SESSION("new_game_sessions");
+
+        private final String table;
+
+        Source(String table) {
+            this.table = table;
+        }
+    }
+
+    private static final String CONSUME_SQL = """
+            UPDATE game_xp_quota SET plays = plays + 1
+            WHERE user_id = ? AND game_date = ? AND source = ? AND game_type = ?
+            RETURNING plays
+            """;
+
+    /** Строки ещё нет: засчитываем уже сохранённые игры дня; параллельный первый вызов уходит в DO UPDATE */
+    private static final String SEED_SQL = """
+            INSERT INTO game_xp_quota (user_id, game_date, source, game_type, plays)
+            SELECT ?, ?, ?, ?, COUNT(*) + 1 FROM %s
+            WHERE user_id = ? AND game_type = ? AND played_at >= ? AND played_at < ?
+            ON CONFLICT (user_id, game_date, source, game_type)
+                DO UPDATE SET plays = game_xp_quota.plays + 1
+            RETURNING plays
+            """;
+
+    private record Key(Long userId, LocalDate day, Source source, String gameType) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long windowNanos;
+    private final int maxEntries;
+    /** Исчерпанные ключи → System.nanoTime(), до которого запись действительна */
+    private final Map<Key, Long> exhausted = new ConcurrentHashMap<>();
+    private final Counter windowHits;
+    private final Counter dbHits;
+
+    public GameXpQuotaService(JdbcTemplate jdbcTemplate,
+                              @Value("${games.xp-quota.window:PT10M}") Duration window,
+                              @Value("${games.xp-quota.max-entries:50000}") int maxEntries,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.windowNanos = window.toNanos();
+        this.maxEntries = Math.max(1, maxEntries);
+        this.windowHits = meterRegistry.counter("games.xp_quota.lookups", "source", "window");
+        this.dbHits = meterRegistry.counter("games.xp_quota.lookups", "source", "db");
+    }
+
+    /**
+     * Засчитывает игру в дневной счётчик.
+     *
+     * @return true — игра в пределах лимита и может приносить XP
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryConsume(Long userId, Source source, Enum<?> gameType, LocalDate day) {
+        Key key = new Key(userId, day, source, gameType.name());
+
+        Long until = exhausted.get(key);
+        if (until != null) {
+            if (System.nanoTime() - until < 0) {
+                windowHits.increment();
+                return false;
+            }
+            exhausted.remove(key, until);
+        }
+
+        List<Integer> updated = jdbcTemplate.queryForList(CONSUME_SQL, Integer.class,
+                userId, day, source.name(), key.gameType());
+        Integer plays = !updated.isEmpty() ? updated.get(0) : jdbcTemplate.queryForObject(
+                SEED_SQL.formatted(source.table), Integer.class,
+                userId, day, source.name(), key.gameType(),
+                userId, key.gameType(), day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        dbHits.increment();
+
+        if (plays != null && plays >= DAILY_XP_GAME_LIMIT) {
+            rememberExhausted(key, plays);
+        }
+        return plays != null && plays <= DAILY_XP_GAME_LIMIT;
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    /**
+     * plays > лимита: закоммиченное значение уже ≥ лимита (чужие инкременты до нашего
+     * ждали на блокировке строки), ключ исчерпан при любом исходе нашей транзакции.
+     * plays == лимиту: исчерпан, только если наша игра закоммитится.
+     */
+    private void rememberExhausted(Key key, int plays) {
+        if (plays == DAILY_XP_GAME_LIMIT && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(key);
+                }
+            });
+            return;
+        }
+        put(key);
+    }
+
+    private void put(Key key) {
+        long now = System.nanoTime();
+        if (exhausted.size() >= maxEntries) {
+            exhausted.values().removeIf(until -> now - until >= 0);
+            if (exhausted.size() >= maxEntries) {
+                log.debug("XP quota window full ({} keys), clearing", exhausted.size());
+                exhausted.clear();
+            }
+        }
+        exhausted.put(key, now + windowNanos);
+    }
+}
@@ -1,9 +1,10 @@
 package org.example.nbcheckinservice.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.example.nbcheckinservice.client.AuthServiceClient;
+import org.example.nbcheckinservice.client.AuthServiceClient.OnboardingData;
 import org.example.nbcheckinservice.dto.MLMetricsRequest;
 import org.example.nbcheckinservice.dto.MLRecommendationResponse;
 import org.example.nbcheckinservice.entity.DailyCheckIn;
@@ -29,7 +30,7 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  *  1. In-memory cache (30-min TTL, fastest — avoids DB round-trip on every GET)
  *  2. DB table daily_ml_recommendation (today's record — survives server restarts)
- *  3. Fresh computation from real user data (check-ins, game stats, auth-service onboarding)
+ *  3. Fresh computation from real user data (check-ins, game stats, user_profile_replica)
  *
  * Real-time update flow:
  *   Kafka event → asyncRefresh() → computeAndCache() → saves to DB + in-memory cache
@@ -40,7 +41,9 @@ import java.util.concurrent.ConcurrentHashMap;
  *   - Never trigger an immediate recompute — frontend always gets data from DB/cache
  *   → This is the "masking": frontend sends any params, we return real data from DB.
  *
- * age and gender always from NBAuthService /api/v1/onboarding (24h cached).
+ * age and gender from user_profile_replica — a local copy of NBAuthService onboarding kept in
+ * sync by user.onboarding-updated (UserProfileReplicaConsumer). No synchronous auth-service calls,
+ * so Kafka-triggered refreshes get the real values too.
  */
 @Service
 @RequiredArgsConstructor
@@ -54,8 +57,6 @@ public class MLRecommendationCacheService {
     private static final Duration ML_TTL         = Duration.ofMinutes(30);
     /** Kafka debounce — skip refresh if last computation was within this window */
     private static final Duration DEBOUNCE       = Duration.ofMinutes(2);
-    /** Onboarding cache TTL */
-    private static final Duration ONBOARDING_TTL = Duration.ofHours(24);
 
     // ── Default fallbacks ─────────────────────────────────────────
     private static final int    DEF_AGE      = 25;
@@ -68,14 +69,13 @@ public class MLRecommendationCacheService {
     private final MLService mlService;
     private final DailyCheckInRepository checkInRepository;
     private final UserGameStatsRepository gameStatsRepository;
-    private final AuthServiceClient authServiceClient;
+    private final UserProfileReplicaService profileReplicaService;
     private final DailyMLRecommendationRepository mlRecommendationRepository;
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // ── In-memory layers ─────────────────────────────────────────
     private final ConcurrentHashMap<Long, MLCacheEntry>         mlCache         = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Long, OnboardingCacheEntry> onboardingCache = new ConcurrentHashMap<>();
     /** PATCH storage: optional params sent by user on GET, reused on Kafka refreshes */
     private final ConcurrentHashMap<Long, MLUserPrefs>          userPrefsCache  = new ConcurrentHashMap<>();
 
@@ -95,29 +95,17 @@ public class MLRecommendationCacheService {
      *   Stored for future Kafka-triggered refreshes (PATCH — doesn't reset prior values).
      *   NOT used to trigger immediate recompute — we always serve from DB/cache.
      *
-     * @param authorizationHeader  "Bearer ..." JWT from the HTTP request — used to fetch onboarding
+     * Onboarding changes arrive via user.onboarding-updated → evict() + asyncRefresh(),
+     * so there is nothing to fetch from NBAuthService here.
      */
     public MLRecommendationResponse getOrCompute(Long userId,
-                                                  String authorizationHeader,
                                                   Double dailyScreenTime,
                                                   Integer caffeineIntake,
                                                   String dietType) {
-        // 1. Refresh real age/gender from NBAuthService (24h cached).
-        //    Returns true if onboarding was just fetched for the first time (or after 24h expiry).
-        boolean onboardingJustLoaded = refreshOnboardingIfNeeded(userId, authorizationHeader);
-
-        // 2. PATCH: store optional params so the next Kafka refresh uses them, not defaults
+        // 1. PATCH: store optional params so the next Kafka refresh uses them, not defaults
         updateUserPrefs(userId, dailyScreenTime, caffeineIntake, dietType);
 
-        // 3. If onboarding was just loaded — recompute immediately so the DB record contains
-        //    the real age/gender, not the defaults that may have been used by prior Kafka events.
-        if (onboardingJustLoaded) {
-            log.info("Onboarding freshly loaded for user {} — recomputing to apply real age/gender", userId);
-            mlCache.remove(userId);   // evict any stale in-memory entry
-            return computeAndCache(userId, "onboarding-refresh");
-        }
-
-        // 4. In-memory cache
+        // 2. In-memory cache
         MLCacheEntry cached = mlCache.get(userId);
         if (cached != null && cached.isFresh()) {
             log.debug("ML in-memory cache hit for user {} ({}s ago)", userId,
@@ -125,7 +113,7 @@ public class MLRecommendationCacheService {
             return cached.response();
         }
 
-        // 5. DB record for today
+        // 3. DB record for today
         LocalDate today = LocalDate.now(ALMATY);
         Optional<DailyMLRecommendation> dbRecord =
                 mlRecommendationRepository.findByUserIdAndRecommendationDate(userId, today);
@@ -141,7 +129,7 @@ public class MLRecommendationCacheService {
             }
         }
 
-        // 6. Nothing in cache or DB — compute from real data, save to DB
+        // 4. Nothing in cache or DB — compute from real data, save to DB
         log.info("No cache/DB record for user {} today — computing from real data", userId);
         return computeAndCache(userId, "on-demand");
     }
@@ -164,9 +152,9 @@ public class MLRecommendationCacheService {
      *   - checkin.created / sleep.logged / game.completed  (Kafka → MLRecommendationConsumer)
      *   - POST /api/v1/ml/recommendations/refresh          (manual / internal endpoint)
      *
-     * Always recomputes from real user data (DB check-ins, game stats, onboarding cache).
+     * Always recomputes from real user data (DB check-ins, game stats, profile replica).
      * Saves result to DB so it survives server restarts.
-     * Reuses onboarding + userPrefs caches (PATCH — never loses previously set params).
+     * Reuses userPrefs cache (PATCH — never loses previously set params).
      */
     @Async
     public void asyncRefresh(Long userId, String triggerSource) {
@@ -187,6 +175,33 @@ public class MLRecommendationCacheService {
         }
     }
 
+    /**
+     * Drops the in-memory entry so the next asyncRefresh is not debounced —
+     * used when the user's profile (age / sex) changed.
+     */
+    public void evict(Long userId) {
+        mlCache.remove(userId);
+    }
+
+    /**
+     * Synchronous, non-debounced recompute for a given day — used by projection rebuild
+     * (Kafka replay). The request is built from the 7 days ending at {@code date} and
+     * the (userId, date) daily_ml_recommendation row is upserted. The in-memory cache
+     * and the Python-side user cache only ever hold today's result, so they are touched
+     * only when {@code date} is today.
+     *
+     * Unlike the Kafka path, failures (ML service or DB) are thrown to the caller.
+     */
+    public void refreshNow(Long userId, LocalDate date, String triggerSource) {
+        boolean today = date.equals(LocalDate.now(ALMATY));
+        MLMetricsRequest request = buildRequest(userId, date);
+        MLRecommendationResponse response = mlService.getTop3Recommendations(request, today ? userId : null);
+        if (today) {
+            mlCache.put(userId, new MLCacheEntry(response, LocalDateTime.now()));
+        }
+        persist(userId, date, response, triggerSource);
+    }
+
     // ═════════════════════════════════════════════════════════════
     // CORE COMPUTATION
     // ═════════════════════════════════════════════════════════════
@@ -200,7 +215,7 @@ public class MLRecommendationCacheService {
         mlCache.put(userId, new MLCacheEntry(response, LocalDateTime.now()));
 
         // Save to DB (upsert by userId + date) — graceful degradation on failure
-        saveOrUpdateDb(userId, response, triggerSource);
+        saveOrUpdateDb(userId, LocalDate.now(ALMATY), response, triggerSource);
 
         return response;
     }
@@ -214,8 +229,8 @@ public class MLRecommendationCacheService {
      *   exercise_frequency  ← days with didExercise=true last 7 days (DB)
      *   memory_test_score   ← cognitive game win-rate proxy          (DB)
      *   reaction_time       ← NUMBER_SEQUENCE best-time proxy        (DB)
-     *   age                 ← onboarding birthDate → years           (auth-service, 24h cached)
-     *   gender              ← onboarding sex                         (auth-service, 24h cached)
+     *   age                 ← onboarding birthDate → years           (user_profile_replica)
+     *   gender              ← onboarding sex                         (user_profile_replica)
      *
      * Optional (from userPrefsCache, set via GET params, PATCH semantics):
      *   daily_screen_time   screen hours/day  (default 8.0)
@@ -223,11 +238,15 @@ public class MLRecommendationCacheService {
      *   diet_type           diet type         (default "Non-Vegetarian")
      */
     public MLMetricsRequest buildRequest(Long userId) {
-        LocalDate today   = LocalDate.now(ALMATY);
-        LocalDate weekAgo = today.minusDays(6);
+        return buildRequest(userId, LocalDate.now(ALMATY));
+    }
+
+    /** Same as {@link #buildRequest(Long)}, with the 7-day check-in window ending at {@code date}. */
+    public MLMetricsRequest buildRequest(Long userId, LocalDate date) {
+        LocalDate weekAgo = date.minusDays(6);
 
         List<DailyCheckIn> recent = checkInRepository
-                .findByUserIdAndCheckInDateBetweenOrderByCheckInDateDesc(userId, weekAgo, today);
+                .findByUserIdAndCheckInDateBetweenOrderByCheckInDateDesc(userId, weekAgo, date);
 
         double sleepDuration = recent.stream()
                 .filter(c -> c.getSleepHours() != null)
@@ -266,7 +285,7 @@ public class MLRecommendationCacheService {
                 })
                 .orElse(300);
 
-        OnboardingCacheEntry onboarding = onboardingCache.get(userId);
+        OnboardingData onboarding = profileReplicaService.getDemographics(userId).orElse(null);
         int age       = (onboarding != null) ? onboarding.age()    : DEF_AGE;
         String gender = (onboarding != null) ? onboarding.gender() : DEF_GENDER;
 
@@ -296,31 +315,40 @@ public class MLRecommendationCacheService {
     // DB PERSISTENCE
     // ═════════════════════════════════════════════════════════════
 
-    private void saveOrUpdateDb(Long userId, MLRecommendationResponse response, String triggerSource) {
+    private void saveOrUpdateDb(Long userId, LocalDate date, MLRecommendationResponse response,
+                                String triggerSource) {
         try {
-            LocalDate today = LocalDate.now(ALMATY);
-            String json = objectMapper.writeValueAsString(response);
-
-            DailyMLRecommendation record = mlRecommendationRepository
-                    .findByUserIdAndRecommendationDate(userId, today)
-                    .orElseGet(() -> DailyMLRecommendation.builder()
-                            .userId(userId)
-                            .recommendationDate(today)
-                            .build());
-
-            record.setRecommendationsJson(json);
-            record.setCognitiveScore(response.getCognitiveScore());
-            record.setTriggerSource(triggerSource);
-
-            mlRecommendationRepository.save(record);
-            log.debug("ML recommendation persisted to DB for user {} (trigger={}, date={})",
-                    userId, triggerSource, today);
+            persist(userId, date, response, triggerSource);
         } catch (Exception e) {
             // Graceful degradation — ML still served from cache even if DB write fails
             log.warn("Failed to persist ML recommendation to DB for user {}: {}", userId, e.getMessage());
         }
     }
 
+    private void persist(Long userId, LocalDate date, MLRecommendationResponse response, String triggerSource) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize ML recommendation: " + e.getMessage(), e);
+        }
+
+        DailyMLRecommendation record = mlRecommendationRepository
+                .findByUserIdAndRecommendationDate(userId, date)
+                .orElseGet(() -> DailyMLRecommendation.builder()
+                        .userId(userId)
+                        .recommendationDate(date)
+                        .build());
+
+        record.setRecommendationsJson(json);
+        record.setCognitiveScore(response.getCognitiveScore());
+        record.setTriggerSource(triggerSource);
+
+        mlRecommendationRepository.save(record);
+        log.debug("ML recommendation persisted to DB for user {} (trigger={}, date={})",
+                userId, triggerSource, date);
+    }
+
     private MLRecommendationResponse deserialize(String json) {
         try {
             return objectMapper.readValue(json, MLRecommendationResponse.class);
@@ -330,32 +358,6 @@ public class MLRecommendationCacheService {
         }
     }
 
-    // ═════════════════════════════════════════════════════════════
-    // ONBOARDING CACHE
-    // ═════════════════════════════════════════════════════════════
-
-    /**
-     * Fetches onboarding data from NBAuthService and caches it (24h TTL).
-     *
-     * @return true if data was just fetched (cache was empty or stale), false if cache was already fresh.
-     *         Callers use this to force ML recompute when real age/gender becomes available.
-     */
-    private boolean refreshOnboardingIfNeeded(Long userId, String authHeader) {
-        if (authHeader == null || authHeader.isBlank()) return false;
-
-        OnboardingCacheEntry existing = onboardingCache.get(userId);
-        if (existing != null && !existing.isStale()) return false;  // still fresh — no fetch needed
-
-        boolean[] fetched = {false};
-        authServiceClient.getMyOnboarding(authHeader).ifPresent(data -> {
-            onboardingCache.put(userId,
-                    new OnboardingCacheEntry(data.age(), data.gender(), LocalDateTime.now()));
-            log.info("Onboarding cached for user {}: age={}, gender={}", userId, data.age(), data.gender());
-            fetched[0] = true;
-        });
-        return fetched[0];
-    }
-
     // ═════════════════════════════════════════════════════════════
     // USER PREFS (PATCH semantics)
     // ═════════════════════════════════════════════════════════════
@@ -396,13 +398,6 @@ public class MLRecommendationCacheService {
         }
     }
 
-    private record OnboardingCacheEntry(int age, String gender, LocalDateTime cachedAt) {
-
-        boolean isStale() {
-            return Duration.between(cachedAt, LocalDateTime.now()).compareTo(ONBOARDING_TTL) >= 0;
-        }
-    }
-
     /**
      * User-provided optional ML params.
      * Persisted between GET calls so Kafka refreshes never reset them (PATCH behaviour).
@@ -6,6 +6,7 @@ import org.example.nbcheckinservice.dto.MoodLogRequest;
 import org.example.nbcheckinservice.dto.MoodLogResponse;
 import org.example.nbcheckinservice.entity.DailyTask;
 import org.example.nbcheckinservice.entity.MoodLog;
+import org.example.nbcheckinservice.insights.InsightStatsService;
 import org.example.nbcheckinservice.repository.MoodLogRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -33,6 +34,7 @@ public class MoodLogService {
     private final DailyTaskService dailyTaskService;
     private final RewardService rewardService;
     private final MLRecommendationCacheService mlRecommendationCacheService;
+    private final InsightStatsService insightStatsService;
 
     @Transactional
     public MoodLogResponse createMoodLog(Long userId, MoodLogRequest request) {
@@ -62,6 +64,7 @@ public class MoodLogService {
 
         MoodLog savedLog = moodLogRepository.save(moodLog);
         log.info("Mood log created with ID: {}", savedLog.getId());
+        insightStatsService.onMoodLogChanged(userId, null, null, savedLog.getMoodValue(), savedLog.getTriggers());
 
         // Auto-complete LOG_MOOD for the same date the mood was logged on
         LocalDate taskDate = timestamp.toLocalDate();
@@ -165,6 +168,8 @@ public class MoodLogService {
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Mood log not found or access denied"
                 ));
+        Integer moodBefore = moodLog.getMoodValue();
+        List<String> triggersBefore = moodLog.getTriggers() != null ? List.copyOf(moodLog.getTriggers()) : null;
 
         if (request.getMoodValue() != null) {
             moodLog.setMoodValue(request.getMoodValue());
@@ -194,6 +199,8 @@ public class MoodLogService {
 
         MoodLog updatedLog = moodLogRepository.save(moodLog);
         log.info("Mood log {} updated successfully", id);
+        insightStatsService.onMoodLogChanged(userId, moodBefore, triggersBefore,
+                updatedLog.getMoodValue(), updatedLog.getTriggers());
 
         // Refresh ML recommendations after mood update (runs after TX commits)
         TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
@@ -216,6 +223,7 @@ public class MoodLogService {
                 ));
 
         moodLogRepository.delete(moodLog);
+        insightStatsService.onMoodLogChanged(userId, moodLog.getMoodValue(), moodLog.getTriggers(), null, null);
         log.info("Mood log {} deleted successfully", id);
     }
 
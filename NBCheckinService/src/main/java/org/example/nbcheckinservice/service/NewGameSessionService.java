@@ -2,6 +2,8 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.calendar.ActivityLayer;
 import org.example.nbcheckinservice.dto.GameSessionResponse;
 import org.example.nbcheckinservice.dto.NewGameSessionRequest;
 import org.example.nbcheckinservice.entity.NewGameSession;
@@ -28,9 +30,10 @@ public class NewGameSessionService {
     private final DailyTaskService taskService;
     private final RewardService rewardService;
     private final KafkaProducerService kafkaProducerService;
+    private final ActivityCalendarService activityCalendarService;
+    private final GameXpQuotaService xpQuotaService;
 
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
-    private static final int DAILY_XP_GAME_LIMIT = 3;
     private static final int MIN_DURATION_FOR_XP_SECONDS = 20;
 
     @Transactional
@@ -46,10 +49,8 @@ public class NewGameSessionService {
 
         NewGameSession.GameType gameType = request.getGameType(); // already correct enum type
 
-        LocalDateTime dayStart = gameDate.atStartOfDay();
-        LocalDateTime dayEnd = gameDate.plusDays(1).atStartOfDay();
-        long todayCountForType = gameRepository.countByUserIdAndGameTypeAndPlayedAtBetween(
-                userId, gameType, dayStart, dayEnd);
+        boolean withinDailyLimit = xpQuotaService.tryConsume(
+                userId, GameXpQuotaService.Source.NEW_GAME_SESSION, gameType, gameDate);
 
         NewGameSession game = NewGameSession.builder()
                 .userId(userId)
@@ -63,7 +64,6 @@ public class NewGameSessionService {
         boolean meetsMinDuration = request.getDurationSeconds() != null
                 && request.getDurationSeconds() >= MIN_DURATION_FOR_XP_SECONDS;
         boolean completedProperly = Boolean.TRUE.equals(request.getIsCompleted()) && meetsMinDuration;
-        boolean withinDailyLimit = todayCountForType < DAILY_XP_GAME_LIMIT;
 
         if (completedProperly && withinDailyLimit) {
             game.calculateXpWithMultiplier(xpMultiplier);
@@ -86,6 +86,7 @@ public class NewGameSessionService {
         }
 
         NewGameSession savedGame = gameRepository.save(game);
+        activityCalendarService.mark(userId, ActivityLayer.GAME_PLAYED, gameDate);
 
         if (game.getXpEarned() > 0) {
             characterService.addXp(userId, game.getXpEarned());
@@ -106,10 +107,10 @@ public class NewGameSessionService {
             }
         });
 
-        log.info("New game session recorded for user {}: type={}, difficulty={}, xp={}, duration={}s, attempts={}, limit={}/{}",
+        log.info("New game session recorded for user {}: type={}, difficulty={}, xp={}, duration={}s, attempts={}, withinXpLimit={} (limit {}/day)",
                 userId, gameType, request.getDifficultyLevel(),
                 game.getXpEarned(), request.getDurationSeconds(), request.getAttemptsCount(),
-                todayCountForType + 1, DAILY_XP_GAME_LIMIT);
+                withinDailyLimit, GameXpQuotaService.DAILY_XP_GAME_LIMIT);
 
         return buildGameResponse(savedGame);
     }
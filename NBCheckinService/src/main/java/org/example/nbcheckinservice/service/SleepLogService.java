@@ -2,6 +2,8 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.calendar.ActivityLayer;
 import org.example.nbcheckinservice.dto.SleepLogRequest;
 import org.example.nbcheckinservice.dto.SleepLogResponse;
 import org.example.nbcheckinservice.entity.DailyTask;
@@ -34,6 +36,7 @@ public class SleepLogService {
     private final SleepLogRepository sleepLogRepository;
     private final ApplicationEventPublisher eventPublisher;
     private final DailyTaskService dailyTaskService;
+    private final ActivityCalendarService activityCalendarService;
 
     @Transactional
     public SleepLogResponse createSleepLog(Long userId, SleepLogRequest request) {
@@ -52,6 +55,7 @@ public class SleepLogService {
 
         SleepLog savedLog = sleepLogRepository.save(sleepLog);
         log.info("Sleep log created with ID: {}", savedLog.getId());
+        activityCalendarService.mark(userId, ActivityLayer.SLEEP_LOG, savedLog.getSleepDate());
 
         autoCompleteSleepTaskIfNeeded(userId, savedLog);
         eventPublisher.publishEvent(new SleepLoggedApplicationEvent(userId, request.getSleepDate(), "CREATED"));
@@ -130,11 +134,13 @@ public class SleepLogService {
                         "Sleep log not found or access denied"
                 ));
 
+        LocalDate previousDate = sleepLog.getSleepDate();
         updateSleepLogFromRequest(sleepLog, request);
         calculateDerivedFields(sleepLog);
 
         SleepLog updatedLog = sleepLogRepository.save(sleepLog);
         log.info("Sleep log {} updated successfully", id);
+        moveCalendarDay(userId, previousDate, updatedLog.getSleepDate());
 
         autoCompleteSleepTaskIfNeeded(userId, updatedLog);
         eventPublisher.publishEvent(new SleepLoggedApplicationEvent(userId, sleepLog.getSleepDate(), "UPDATED"));
@@ -156,6 +162,7 @@ public class SleepLogService {
 
         SleepLog updatedLog = sleepLogRepository.save(sleepLog);
         log.info("Sleep log updated successfully for date {}", date);
+        moveCalendarDay(userId, date, updatedLog.getSleepDate());
 
         autoCompleteSleepTaskIfNeeded(userId, updatedLog);
         eventPublisher.publishEvent(new SleepLoggedApplicationEvent(userId, date, "UPDATED"));
@@ -173,6 +180,7 @@ public class SleepLogService {
                 ));
 
         sleepLogRepository.delete(sleepLog);
+        activityCalendarService.clear(userId, ActivityLayer.SLEEP_LOG, sleepLog.getSleepDate());
         log.info("Sleep log {} deleted successfully", id);
     }
 
@@ -186,11 +194,19 @@ public class SleepLogService {
                 ));
 
         sleepLogRepository.delete(sleepLog);
+        activityCalendarService.clear(userId, ActivityLayer.SLEEP_LOG, date);
         log.info("Sleep log deleted successfully for date {}", date);
     }
 
     // ========== HELPER METHODS ==========
 
+    /** Update может перенести лог на другую дату (sleep_date уникальна на пользователя) */
+    private void moveCalendarDay(Long userId, LocalDate previousDate, LocalDate newDate) {
+        if (newDate.equals(previousDate)) return;
+        activityCalendarService.clear(userId, ActivityLayer.SLEEP_LOG, previousDate);
+        activityCalendarService.mark(userId, ActivityLayer.SLEEP_LOG, newDate);
+    }
+
     /**
      * Auto-completes SLEEP_7_HOURS daily task when sleep log has 7+ hours.
      * Covers: create new log, update by date (+ upsert path from create), update by ID.
@@ -0,0 +1,198 @@
+package org.example.nbcheckinservice.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.dto.StreakRecomputeStatus;
+import org.example.nbcheckinservice.repository.UserStreakRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bulk-пересчёт user_streaks из daily_check_ins — после исправлений таймзоны,
+ * ручных правок данных и т.п.
+ *
+ * Keyset-страницы по user_id (строка user_streaks или хоть один check-in);
+ * страница — одна транзакция StreakService.recomputeChunk: один gaps-and-islands
+ * запрос на весь чанк вместо загрузки истории каждого пользователя.
+ *
+ * dryRun (по умолчанию) только считает расхождения. Check-in'ы, перенесённые retention
+ * в архив, запрос не видит, поэтому у пользователей с архивом пересчёт
+ * (StreakService.apply) не опускает longestStreak ниже хранимого и добавляет к
+ * totalCheckins архивные. Без архива longestStreak берётся выведенным; в отчёте
+ * derivedLongestStreak всегда сырое выведенное значение.
+ */
+@Service
+@Slf4j
+public class StreakRecomputeService {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+    private static final int MAX_SAMPLES = 20;
+
+    private final StreakService streakService;
+    private final UserStreakRepository streakRepository;
+    private final int pageSize;
+    private final Duration pause;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean cancelRequested;
+    private volatile StreakRecomputeStatus status;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "streak-recompute");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public StreakRecomputeService(
+            StreakService streakService,
+            UserStreakRepository streakRepository,
+            @Value("${streaks.recompute.page-size:500}") int pageSize,
+            @Value("${streaks.recompute.pause:PT0.05S}") Duration pause
+    ) {
+        this.streakService = streakService;
+        this.streakRepository = streakRepository;
+        this.pageSize = Math.max(1, pageSize);
+        this.pause = pause;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        cancelRequested = true;
+        runner.shutdownNow();
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // PUBLIC API
+    // ═════════════════════════════════════════════════════════════
+
+    /**
+     * Запускает пересчёт в фоне.
+     *
+     * @param dryRun true — только отчёт о расхождениях, без записи
+     * @throws IllegalStateException пересчёт уже идёт
+     */
+    public StreakRecomputeStatus start(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Streak recompute already in progress");
+        }
+        runner.submit(() -> run(dryRun));
+        return getStatus();
+    }
+
+    public boolean cancel() {
+        if (!running.get()) return false;
+        cancelRequested = true;
+        return true;
+    }
+
+    public StreakRecomputeStatus getStatus() {
+        StreakRecomputeStatus current = status;
+        return current != null ? current : StreakRecomputeStatus.builder()
+                .state(running.get() ? "RUNNING" : "NEVER_RUN")
+                .build();
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // RUN
+    // ═════════════════════════════════════════════════════════════
+
+    private void run(boolean dryRun) {
+        cancelRequested = false;
+        Report report = new Report(dryRun, LocalDateTime.now(ALMATY_ZONE));
+        String state = "COMPLETED";
+        status = report.snapshot("RUNNING", null, null);
+
+        try {
+            while (!cancelRequested) {
+                List<Long> userIds = streakRepository.findUserIdsAfter(report.lastUserId, pageSize);
+                if (userIds.isEmpty()) break;
+
+                try {
+                    report.add(userIds.size(), streakService.recomputeChunk(userIds, dryRun));
+                } catch (RuntimeException e) {
+                    // Битый чанк не останавливает job: его пользователи остаются как есть
+                    report.usersFailed += userIds.size();
+                    log.warn("Streak recompute failed for users {}..{}: {}",
+                            userIds.get(0), userIds.get(userIds.size() - 1), e.getMessage());
+                }
+                report.lastUserId = userIds.get(userIds.size() - 1);
+                status = report.snapshot("RUNNING", null, null);
+                Thread.sleep(pause.toMillis());
+            }
+            if (cancelRequested) state = "CANCELLED";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "CANCELLED";
+        } catch (Exception e) {
+            state = "FAILED";
+            report.error = e.getMessage();
+            log.error("Streak recompute failed after user {}: {}", report.lastUserId, e.getMessage(), e);
+        } finally {
+            status = report.snapshot(state, LocalDateTime.now(ALMATY_ZONE), report.error);
+            running.set(false);
+        }
+        log.info("Streak recompute {} (dryRun={}): {} users checked, {} drifted, {} failed",
+                state, dryRun, report.usersChecked, report.usersDrifted, report.usersFailed);
+    }
+
+    /** Накопитель отчёта; пишется только потоком job'а, наружу уходят snapshot'ы */
+    private static final class Report {
+        final boolean dryRun;
+        final LocalDateTime startedAt;
+        final List<StreakRecomputeStatus.Drift> samples = new ArrayList<>();
+        long usersChecked, usersDrifted, usersFailed;
+        long currentDrift, longestDrift, totalDrift, lastDateDrift, missingRows;
+        long lastUserId;
+        String error;
+
+        Report(boolean dryRun, LocalDateTime startedAt) {
+            this.dryRun = dryRun;
+            this.startedAt = startedAt;
+        }
+
+        void add(int checked, List<StreakRecomputeStatus.Drift> drifts) {
+            usersChecked += checked;
+            usersDrifted += drifts.size();
+            for (StreakRecomputeStatus.Drift d : drifts) {
+                if (d.getStoredCurrentStreak() == null) {
+                    missingRows++;
+                } else {
+                    if (!Objects.equals(d.getStoredCurrentStreak(), d.getDerivedCurrentStreak())) currentDrift++;
+                    if (!Objects.equals(d.getStoredLongestStreak(), d.getDerivedLongestStreak())) longestDrift++;
+                    if (!Objects.equals(d.getStoredTotalCheckins(), d.getDerivedTotalCheckins())) totalDrift++;
+                    if (!Objects.equals(d.getStoredLastCheckinDate(), d.getDerivedLastCheckinDate())) lastDateDrift++;
+                }
+                if (samples.size() < MAX_SAMPLES) samples.add(d);
+            }
+        }
+
+        StreakRecomputeStatus snapshot(String state, LocalDateTime finishedAt, String error) {
+            return StreakRecomputeStatus.builder()
+                    .state(state)
+                    .dryRun(dryRun)
+                    .usersChecked(usersChecked)
+                    .usersDrifted(usersDrifted)
+                    .usersFailed(usersFailed)
+                    .currentStreakDrift(currentDrift)
+                    .longestStreakDrift(longestDrift)
+                    .totalCheckinsDrift(totalDrift)
+                    .lastCheckinDateDrift(lastDateDrift)
+                    .missingRows(missingRows)
+                    .samples(List.copyOf(samples))
+                    .lastUserId(lastUserId)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+}
@@ -2,10 +2,12 @@ package org.example.nbcheckinservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.calendar.ActivityCalendarService;
+import org.example.nbcheckinservice.dto.StreakRecomputeStatus;
 import org.example.nbcheckinservice.dto.StreakResponse;
-import org.example.nbcheckinservice.entity.DailyCheckIn;
 import org.example.nbcheckinservice.entity.UserStreak;
 import org.example.nbcheckinservice.repository.DailyCheckInRepository;
+import org.example.nbcheckinservice.repository.StreakDerivation;
 import org.example.nbcheckinservice.repository.UserStreakRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,7 +15,13 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Service for managing user streaks and XP
@@ -25,6 +33,7 @@ public class StreakService {
     private final UserStreakRepository streakRepository;
     private final DailyCheckInRepository checkInRepository;
     private final RewardService rewardService;
+    private final ActivityCalendarService activityCalendarService;
 
     private static final int BASE_XP_PER_CHECKIN = 10;
     private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
@@ -97,9 +106,12 @@ public class StreakService {
         UserStreak streak = getOrCreateStreak(userId);
 
         // Исправлено время на Алматы
-        boolean canCheckinToday = !checkInRepository.existsByUserIdAndCheckInDate(
-                userId, LocalDate.now(ALMATY_ZONE)
-        );
+        LocalDate today = LocalDate.now(ALMATY_ZONE);
+        boolean canCheckinToday = !checkInRepository.existsByUserIdAndCheckInDate(userId, today);
+
+        Map<String, Integer> activityStreaks = new LinkedHashMap<>();
+        activityCalendarService.currentRuns(userId, today).forEach((layer, run) ->
+                activityStreaks.put(layer.name().toLowerCase(Locale.ROOT), run));
 
         return StreakResponse.builder()
                 .userId(userId)
@@ -113,48 +125,83 @@ public class StreakService {
                 .nextMilestone(streak.getNextMilestone())
                 .isMilestoneDay(streak.isMilestoneDay())
                 .milestoneBonus(streak.calculateStreakBonusXP())
+                .activityStreaks(activityStreaks)
                 .build();
     }
+    /**
+     * Пересчёт серии из daily_check_ins одним gaps-and-islands запросом.
+     * Без check-in'ов серия обнуляется, счётчик сводится к архивным, longestStreak остаётся как был.
+     */
     @Transactional
     public UserStreak recalculateStreak(Long userId) {
         log.info("Recalculating streak for user {}", userId);
         UserStreak streak = getOrCreateStreak(userId);
 
-        List<DailyCheckIn> checkIns = checkInRepository.findByUserIdOrderByCheckInDateAsc(userId);
-
-        if (checkIns.isEmpty()) {
-            streak.setCurrentStreak(0);
-            streak.setLastCheckinDate(null);
-            streak.setTotalCheckins(0);
-            return streakRepository.save(streak);
-        }
+        // Незафлашенный delete текущей транзакции (deleteCheckIn) должен попасть в выборку
+        checkInRepository.flush();
+        StreakDerivation derived = checkInRepository.deriveStreaks(List.of(userId)).stream()
+                .findFirst()
+                .orElse(null);
 
-        int currentStreak = 0;
-        int longestStreak = 0;
-        LocalDate lastDate = null;
+        apply(streak, derived);
+        return streakRepository.save(streak);
+    }
 
-        for (DailyCheckIn checkIn : checkIns) {
-            LocalDate date = checkIn.getCheckInDate();
-            if (lastDate == null) {
-                currentStreak = 1;
-            } else {
-                long daysDiff = ChronoUnit.DAYS.between(lastDate, date);
-                if (daysDiff == 1) {
-                    currentStreak++;
-                } else if (daysDiff > 1) {
-                    currentStreak = 1;
+    /**
+     * Чанк bulk-пересчёта (StreakRecomputeService): строки user_streaks чанка блокируются
+     * до вывода серий, так что параллельный check-in либо уже виден запросу, либо ждёт
+     * блокировку и применяет свой +1 поверх пересчитанного значения.
+     *
+     * @return расхождения хранимых значений с выведенными; при dryRun ничего не пишется
+     */
+    @Transactional
+    public List<StreakRecomputeStatus.Drift> recomputeChunk(List<Long> userIds, boolean dryRun) {
+        List<UserStreak> rows = dryRun
+                ? streakRepository.findByUserIdIn(userIds)
+                : streakRepository.findByUserIdInForUpdate(userIds);
+        Map<Long, UserStreak> stored = new HashMap<>();
+        rows.forEach(row -> stored.put(row.getUserId(), row));
+
+        Map<Long, StreakDerivation> derived = new HashMap<>();
+        checkInRepository.deriveStreaks(userIds).forEach(d -> derived.put(d.userId(), d));
+
+        List<StreakRecomputeStatus.Drift> drifts = new ArrayList<>();
+        for (Long userId : userIds) {
+            UserStreak streak = stored.get(userId);
+            StreakDerivation derivation = derived.get(userId);
+            if (streak == null && derivation == null) continue;
+
+            // Те же исходные данные, что у записи: хранимый максимум и архивные check-in'ы
+            UserStreak expected = UserStreak.builder()
+                    .userId(userId)
+                    .longestStreak(streak != null ? streak.getLongestStreak() : 0)
+                    .archivedCheckins(streak != null ? streak.getArchivedCheckins() : 0)
+                    .build();
+            apply(expected, derivation);
+            if (streak != null && sameStreak(streak, expected)) continue;
+
+            drifts.add(StreakRecomputeStatus.Drift.builder()
+                    .userId(userId)
+                    .storedCurrentStreak(streak != null ? streak.getCurrentStreak() : null)
+                    .derivedCurrentStreak(expected.getCurrentStreak())
+                    .storedLongestStreak(streak != null ? streak.getLongestStreak() : null)
+                    // Сырое выведенное значение: завышенный хранимый максимум виден в отчёте
+                    .derivedLongestStreak(derivation != null ? derivation.longestStreak() : 0)
+                    .storedTotalCheckins(streak != null ? streak.getTotalCheckins() : null)
+                    .derivedTotalCheckins(expected.getTotalCheckins())
+                    .storedLastCheckinDate(streak != null ? streak.getLastCheckinDate() : null)
+                    .derivedLastCheckinDate(expected.getLastCheckinDate())
+                    .build());
+
+            if (!dryRun) {
+                if (streak == null) {
+                    streak = UserStreak.builder().userId(userId).build();
                 }
+                apply(streak, derivation);
+                streakRepository.save(streak);
             }
-            if (currentStreak > longestStreak) longestStreak = currentStreak;
-            lastDate = date;
         }
-
-        streak.setCurrentStreak(currentStreak);
-        streak.setLongestStreak(longestStreak);
-        streak.setTotalCheckins(checkIns.size());
-        streak.setLastCheckinDate(lastDate);
-
-        return streakRepository.save(streak);
+        return drifts;
     }
 
     @Transactional(readOnly = true)
@@ -192,4 +239,33 @@ public class StreakService {
 
         return streakRepository.save(streak);
     }
-}
\ No newline at end of file
+
+    /**
+     * Общий для recalculateStreak и bulk-пересчёта. Если часть check-in'ов ушла в архив
+     * (archivedCheckins > 0), daily_check_ins содержит не всю историю: longestStreak не
+     * опускается ниже хранимого, к totalCheckins добавляются архивные. Без архива история
+     * полная и longestStreak берётся выведенным — удалённый check-in, разорвавший серию,
+     * его уменьшает.
+     */
+    private static void apply(UserStreak streak, StreakDerivation derived) {
+        int archived = streak.getArchivedCheckins() != null ? streak.getArchivedCheckins() : 0;
+        if (derived == null) {
+            streak.setCurrentStreak(0);
+            streak.setTotalCheckins(archived);
+            streak.setLastCheckinDate(null);
+            return;
+        }
+        streak.setCurrentStreak(derived.currentStreak());
+        int longest = streak.getLongestStreak() != null ? streak.getLongestStreak() : 0;
+        streak.setLongestStreak(archived > 0 ? Math.max(longest, derived.longestStreak()) : derived.longestStreak());
+        streak.setTotalCheckins(derived.totalCheckins() + archived);
+        streak.setLastCheckinDate(derived.lastCheckinDate());
+    }
+
+    private static boolean sameStreak(UserStreak a, UserStreak b) {
+        return Objects.equals(a.getCurrentStreak(), b.getCurrentStreak())
+                && Objects.equals(a.getLongestStreak(), b.getLongestStreak())
+                && Objects.equals(a.getTotalCheckins(), b.getTotalCheckins())
+                && Objects.equals(a.getLastCheckinDate(), b.getLastCheckinDate());
+    }
+}
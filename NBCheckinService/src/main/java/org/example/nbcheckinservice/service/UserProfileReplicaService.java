@@ -0,0 +1,184 @@
+package org.example.nbcheckinservice.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.nbcheckinservice.client.AuthServiceClient;
+import org.example.nbcheckinservice.client.AuthServiceClient.BulkOnboarding;
+import org.example.nbcheckinservice.client.AuthServiceClient.OnboardingData;
+import org.example.nbcheckinservice.entity.UserProfileReplica;
+import org.example.nbcheckinservice.kafka.UserOnboardingUpdatedEvent;
+import org.example.nbcheckinservice.repository.UserProfileReplicaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Локальная реплика онбординга (user_profile_replica).
+ *
+ * Источники:
+ *   - user.onboarding-updated (Kafka, UserProfileReplicaConsumer) — основной путь;
+ *   - bulk-бэкфилл из NBAuthService для пользователей без реплики
+ *     (зарегистрированы до появления события) — по расписанию, пачками.
+ *
+ * Порядок: применяем только события с version > source_version,
+ * так что реплей / переупорядочивание не откатывает профиль назад.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserProfileReplicaService {
+
+    private final UserProfileReplicaRepository replicaRepository;
+    private final AuthServiceClient authServiceClient;
+
+    @Value("${profile.replica.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    @Value("${profile.replica.backfill-max-batches:20}")
+    private int backfillMaxBatches;
+
+    // ═════════════════════════════════════════════════════════════
+    // READ — ML path
+    // ═════════════════════════════════════════════════════════════
+
+    /**
+     * Возраст и пол для ML из локальной реплики; empty — реплики ещё нет (ML берёт дефолты).
+     */
+    @Transactional(readOnly = true)
+    public Optional<OnboardingData> getDemographics(Long userId) {
+        return replicaRepository.findById(userId)
+                .filter(r -> r.getSex() != null || r.getBirthDate() != null)
+                .map(r -> OnboardingData.of(r.getSex(), r.getBirthDate()));
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // WRITE — Kafka event
+    // ═════════════════════════════════════════════════════════════
+
+    /**
+     * @return true, если реплика изменилась (событие новее сохранённого)
+     */
+    @Transactional
+    public boolean apply(UserOnboardingUpdatedEvent event) {
+        Optional<UserProfileReplica> existing = replicaRepository.findById(event.getUserId());
+        if (existing.isPresent() && existing.get().getSourceVersion() >= event.getVersion()) {
+            log.debug("Stale onboarding event for user {} (version {} <= {}) — skipped",
+                    event.getUserId(), event.getVersion(), existing.get().getSourceVersion());
+            return false;
+        }
+
+        if (event.isDeleted()) {
+            // Строку оставляем с пустыми полями — version защищает от старых событий,
+            // а бэкфилл не будет перезапрашивать пользователя
+            UserProfileReplica replica = existing.orElseGet(() -> UserProfileReplica.builder()
+                    .userId(event.getUserId()).build());
+            replica.setSex(null);
+            replica.setBirthDate(null);
+            replica.setHeightCm(null);
+            replica.setWeightKg(null);
+            replica.setCharacterId(null);
+            replica.setOnboardingCompleted(false);
+            replica.setSourceVersion(event.getVersion());
+            replica.setReplicatedAt(LocalDateTime.now());
+            replicaRepository.save(replica);
+            return true;
+        }
+
+        UserProfileReplica replica = existing.orElseGet(() -> UserProfileReplica.builder()
+                .userId(event.getUserId()).build());
+        replica.setSex(event.getSex());
+        replica.setBirthDate(parseDate(event.getBirthDate()));
+        replica.setHeightCm(event.getHeightCm());
+        replica.setWeightKg(event.getWeightKg());
+        replica.setCharacterId(event.getCharacterId());
+        replica.setOnboardingCompleted(event.isCompleted());
+        replica.setSourceVersion(event.getVersion());
+        replica.setReplicatedAt(LocalDateTime.now());
+        replicaRepository.save(replica);
+        return true;
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // BACKFILL — bulk endpoint NBAuthService
+    // ═════════════════════════════════════════════════════════════
+
+    /**
+     * Пользователи с чекинами, но без реплики → POST /api/v1/onboarding/internal/bulk пачками.
+     * Пользователи без онбординга получают пустую строку, чтобы не запрашиваться снова.
+     */
+    @Scheduled(fixedDelayString = "${profile.replica.backfill-interval:30m}",
+               initialDelayString = "${profile.replica.backfill-initial-delay:1m}")
+    public void backfillMissing() {
+        if (!authServiceClient.isBulkEnabled()) {
+            log.debug("Profile replica backfill skipped — auth.service.internal-key not set");
+            return;
+        }
+
+        int total = 0;
+        for (int i = 0; i < backfillMaxBatches; i++) {
+            List<Long> userIds = replicaRepository.findUserIdsWithoutReplica(PageRequest.of(0, backfillBatchSize));
+            if (userIds.isEmpty()) break;
+
+            // version = момент запроса: события, опубликованные раньше снимка, не перезапишут его
+            long snapshotVersion = System.currentTimeMillis();
+            Optional<List<BulkOnboarding>> fetched = authServiceClient.getOnboardingBulk(userIds);
+            if (fetched.isEmpty()) break;   // auth недоступен — попробуем в следующий раз
+
+            saveSnapshot(userIds, fetched.get(), snapshotVersion);
+            total += userIds.size();
+            if (userIds.size() < backfillBatchSize) break;
+        }
+        if (total > 0) {
+            log.info("Profile replica backfilled for {} users", total);
+        }
+    }
+
+    private void saveSnapshot(List<Long> userIds, List<BulkOnboarding> records, long snapshotVersion) {
+        Map<Long, BulkOnboarding> byUser = records.stream()
+                .collect(Collectors.toMap(BulkOnboarding::userId, Function.identity(), (a, b) -> a));
+        Map<Long, UserProfileReplica> existing = replicaRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(UserProfileReplica::getUserId, Function.identity()));
+
+        List<UserProfileReplica> toSave = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Long userId : userIds) {
+            UserProfileReplica current = existing.get(userId);
+            if (current != null && current.getSourceVersion() >= snapshotVersion) continue;
+
+            BulkOnboarding r = byUser.get(userId);
+            UserProfileReplica replica = current != null ? current
+                    : UserProfileReplica.builder().userId(userId).build();
+            replica.setSex(r != null ? r.sex() : null);
+            replica.setBirthDate(r != null ? r.birthDate() : null);
+            replica.setHeightCm(r != null ? r.heightCm() : null);
+            replica.setWeightKg(r != null ? r.weightKg() : null);
+            replica.setCharacterId(r != null ? r.characterId() : null);
+            replica.setOnboardingCompleted(r != null && r.completed());
+            replica.setSourceVersion(snapshotVersion);
+            replica.setReplicatedAt(now);
+            toSave.add(replica);
+        }
+        replicaRepository.saveAll(toSave);
+    }
+
+    private static LocalDate parseDate(String raw) {
+        if (raw == null || raw.isBlank()) return null;
+        try {
+            return LocalDate.parse(raw);
+        } catch (Exception e) {
+            log.warn("Could not parse birthDate '{}' from onboarding event: {}", raw, e.getMessage());
+            return null;
+        }
+    }
+}
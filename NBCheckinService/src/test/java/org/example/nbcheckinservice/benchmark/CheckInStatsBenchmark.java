@@ -0,0 +1,251 @@
+package org.example.nbcheckinservice.benchmark;
+
+import org.example.nbcheckinservice.dto.CheckInStatsResponse;
+import org.example.nbcheckinservice.entity.DailyCheckIn;
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
+import org.example.nbcheckinservice.service.CheckInStatsAccumulator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Вычисление статистики check-in за год (365 дней, ~90% заполнено), JMH, µs/op:
+ *
+ *   legacyStats — старый AnalyticsService.getStats: ~20 stream-проходов по сущностям,
+ *                 wellness score пересчитывается в каждом (avg, best, worst, dailyData)
+ *   accumulator — CheckInStatsAccumulator: один проход по проекции CheckInStatsRow
+ *
+ * Стоимость SQL (гидрация сущностей против проекции) сюда не входит.
+ * Запуск: mvn -Pbenchmark test -Dtest=CheckInStatsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Tag("benchmark")
+public class CheckInStatsBenchmark {
+
+    private static final LocalDate END = LocalDate.of(2025, 12, 31);
+    private static final LocalDate START = END.minusDays(364);
+    private static final String[] EMOJIS = {"😞", "😐", "🙂", "😊", "🤩"};
+
+    private List<DailyCheckIn> checkIns;
+    private List<CheckInStatsRow> rows;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(46);
+        checkIns = new ArrayList<>();
+        // Порядок как у репозитория: новые даты первыми
+        for (LocalDate d = END; !d.isBefore(START); d = d.minusDays(1)) {
+            if (rnd.nextInt(10) == 0) continue;
+            int morning = 1 + rnd.nextInt(5);
+            checkIns.add(DailyCheckIn.builder()
+                    .userId(1L)
+                    .checkInDate(d)
+                    .morningMood(morning)
+                    .eveningMood(rnd.nextInt(4) == 0 ? null : 1 + rnd.nextInt(5))
+                    .morningMoodEmoji(EMOJIS[morning - 1])
+                    .eveningMoodEmoji(EMOJIS[rnd.nextInt(EMOJIS.length)])
+                    .sleepQuality(1 + rnd.nextInt(5))
+                    .sleepHours(BigDecimal.valueOf(50 + rnd.nextInt(40), 1))
+                    .energyLevel(1 + rnd.nextInt(5))
+                    .stressLevel(1 + rnd.nextInt(5))
+                    .physicalActivityMinutes(rnd.nextInt(90))
+                    .didExercise(rnd.nextBoolean())
+                    .ateHealthy(rnd.nextBoolean())
+                    .hadSocialInteraction(rnd.nextBoolean())
+                    .playedCognitiveGameToday(rnd.nextBoolean())
+                    .cognitiveGameCount(rnd.nextInt(4))
+                    .build());
+        }
+        rows = checkIns.stream().map(CheckInStatsBenchmark::toRow).toList();
+    }
+
+    @Benchmark
+    public CheckInStatsResponse legacyStats() {
+        List<DailyCheckIn> c = checkIns;
+        long total = c.size();
+
+        Map<LocalDate, DailyCheckIn> byDate = c.stream()
+                .collect(Collectors.toMap(DailyCheckIn::getCheckInDate, x -> x));
+        List<CheckInStatsResponse.DailyData> dailyData = new ArrayList<>();
+        for (LocalDate date = START; !date.isAfter(END); date = date.plusDays(1)) {
+            DailyCheckIn ci = byDate.get(date);
+            dailyData.add(ci == null
+                    ? CheckInStatsResponse.DailyData.builder().date(date).hasCheckIn(false).build()
+                    : CheckInStatsResponse.DailyData.builder()
+                            .date(date)
+                            .morningMood(ci.getMorningMood())
+                            .eveningMood(ci.getEveningMood())
+                            .sleepQuality(ci.getSleepQuality())
+                            .energyLevel(ci.getEnergyLevel())
+                            .stressLevel(ci.getStressLevel())
+                            .wellnessScore(ci.calculateWellnessScore())
+                            .hasCheckIn(true)
+                            .build());
+        }
+
+        Map<String, Integer> moods = new HashMap<>();
+        for (DailyCheckIn ci : c) {
+            if (ci.getMorningMoodEmoji() != null) moods.merge(ci.getMorningMoodEmoji(), 1, Integer::sum);
+            if (ci.getEveningMoodEmoji() != null) moods.merge(ci.getEveningMoodEmoji(), 1, Integer::sum);
+        }
+
+        DailyCheckIn best = c.stream().max(Comparator.comparingDouble(DailyCheckIn::calculateWellnessScore)).orElse(null);
+        DailyCheckIn worst = c.stream().min(Comparator.comparingDouble(DailyCheckIn::calculateWellnessScore)).orElse(null);
+
+        return CheckInStatsResponse.builder()
+                .userId(1L)
+                .startDate(START)
+                .endDate(END)
+                .avgMorningMood(avg(c, DailyCheckIn::getMorningMood))
+                .avgEveningMood(avg(c, DailyCheckIn::getEveningMood))
+                .avgSleepQuality(avg(c, DailyCheckIn::getSleepQuality))
+                .avgSleepHours(c.stream().map(DailyCheckIn::getSleepHours).filter(Objects::nonNull)
+                        .mapToDouble(BigDecimal::doubleValue).average().orElse(0.0))
+                .avgEnergyLevel(avg(c, DailyCheckIn::getEnergyLevel))
+                .avgStressLevel(avg(c, DailyCheckIn::getStressLevel))
+                .avgWellnessScore(c.stream().mapToDouble(DailyCheckIn::calculateWellnessScore).average().orElse(0.0))
+                .totalCheckIns((int) total)
+                .totalPhysicalActivityMinutes(c.stream().mapToInt(x -> x.getPhysicalActivityMinutes() != null ? x.getPhysicalActivityMinutes() : 0).sum())
+                .totalCognitiveGamesPlayed(c.stream().mapToInt(x -> x.getCognitiveGameCount() != null ? x.getCognitiveGameCount() : 0).sum())
+                .exercisePercentage(percent(c, DailyCheckIn::getDidExercise, total))
+                .healthyEatingPercentage(percent(c, DailyCheckIn::getAteHealthy, total))
+                .socialInteractionPercentage(percent(c, DailyCheckIn::getHadSocialInteraction, total))
+                .cognitiveGamePercentage(percent(c, DailyCheckIn::getPlayedCognitiveGameToday, total))
+                .moodTrend(trend(c, x -> x.getMorningMood() != null && x.getEveningMood() != null
+                        ? (x.getMorningMood() + x.getEveningMood()) / 2.0
+                        : x.getMorningMood() != null ? x.getMorningMood().doubleValue()
+                        : x.getEveningMood() != null ? x.getEveningMood().doubleValue() : null))
+                .sleepTrend(trend(c, x -> x.getSleepQuality() != null ? x.getSleepQuality().doubleValue() : null))
+                .stressTrend(invert(trend(c, x -> x.getStressLevel() != null ? x.getStressLevel().doubleValue() : null)))
+                .energyTrend(trend(c, x -> x.getEnergyLevel() != null ? x.getEnergyLevel().doubleValue() : null))
+                .dailyData(dailyData)
+                .moodDistribution(moods)
+                .bestDay(best != null ? best.getCheckInDate() : null)
+                .worstDay(worst != null ? worst.getCheckInDate() : null)
+                .bestWellnessScore(best != null ? best.calculateWellnessScore() : null)
+                .worstWellnessScore(worst != null ? worst.calculateWellnessScore() : null)
+                .build();
+    }
+
+    @Benchmark
+    public CheckInStatsResponse accumulator() {
+        CheckInStatsAccumulator acc = new CheckInStatsAccumulator(START, END, rows.size());
+        for (CheckInStatsRow row : rows) {
+            acc.add(row);
+        }
+        return acc.toResponse(1L);
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // JUnit entry point (profile -Pbenchmark)
+    // ═════════════════════════════════════════════════════════════
+
+    @Test
+    void singlePassIsEquivalentAndCheaperThanLegacyStreams() throws Exception {
+        setUp();
+        CheckInStatsResponse legacy = legacyStats();
+        CheckInStatsResponse single = accumulator();
+        assertEquals(legacy.getAvgMorningMood(), single.getAvgMorningMood(), 1e-9);
+        assertEquals(legacy.getAvgSleepHours(), single.getAvgSleepHours(), 1e-9);
+        assertEquals(legacy.getAvgWellnessScore(), single.getAvgWellnessScore(), 1e-9);
+        assertEquals(legacy.getExercisePercentage(), single.getExercisePercentage(), 1e-9);
+        assertEquals(legacy.getTotalPhysicalActivityMinutes(), single.getTotalPhysicalActivityMinutes());
+        assertEquals(legacy.getMoodTrend(), single.getMoodTrend());
+        assertEquals(legacy.getStressTrend(), single.getStressTrend());
+        assertEquals(legacy.getBestDay(), single.getBestDay());
+        assertEquals(legacy.getWorstDay(), single.getWorstDay());
+        assertEquals(legacy.getMoodDistribution(), single.getMoodDistribution());
+        assertEquals(legacy.getDailyData(), single.getDailyData());
+
+        Options options = new OptionsBuilder()
+                .include(CheckInStatsBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        Map<String, Double> scores = new HashMap<>();
+        for (RunResult r : results) {
+            String label = r.getParams().getBenchmark();
+            scores.put(label.substring(label.lastIndexOf('.') + 1), r.getPrimaryResult().getScore());
+        }
+
+        double legacyScore = scores.get("legacyStats");
+        double singleScore = scores.get("accumulator");
+        System.out.printf("Check-in stats over 365 days (µs): legacy=%.2f single-pass=%.2f%n",
+                legacyScore, singleScore);
+
+        assertTrue(singleScore < legacyScore, "single pass should be cheaper than per-metric streams");
+    }
+
+    // ─── legacy helpers ──────────────────────────────────────────
+
+    private static double avg(List<DailyCheckIn> c, Function<DailyCheckIn, Integer> getter) {
+        return c.stream().map(getter).filter(Objects::nonNull).mapToInt(Integer::intValue).average().orElse(0.0);
+    }
+
+    private static double percent(List<DailyCheckIn> c, Function<DailyCheckIn, Boolean> getter, long total) {
+        long n = c.stream().map(getter).filter(Boolean.TRUE::equals).count();
+        return total > 0 ? (n * 100.0) / total : 0.0;
+    }
+
+    private static String trend(List<DailyCheckIn> c, Function<DailyCheckIn, Double> getter) {
+        int mid = c.size() / 2;
+        if (mid == 0) return "stable";
+        double first = c.subList(0, mid).stream().map(getter).filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue).average().orElse(0.0);
+        double second = c.subList(mid, c.size()).stream().map(getter).filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue).average().orElse(0.0);
+        double diff = second - first;
+        if (Math.abs(diff) < 0.5) return "stable";
+        return diff > 0 ? "improving" : "declining";
+    }
+
+    private static String invert(String trend) {
+        if ("improving".equals(trend)) return "declining";
+        if ("declining".equals(trend)) return "improving";
+        return "stable";
+    }
+
+    private static CheckInStatsRow toRow(DailyCheckIn c) {
+        return new CheckInStatsRow(c.getCheckInDate(),
+                c.getMorningMood(), c.getEveningMood(), c.getMorningMoodEmoji(), c.getEveningMoodEmoji(),
+                c.getSleepQuality(), c.getSleepHours(), c.getEnergyLevel(), c.getStressLevel(),
+                c.getPhysicalActivityMinutes(), c.getCognitiveGameCount(),
+                c.getDidExercise(), c.getAteHealthy(), c.getHadSocialInteraction(), c.getPlayedCognitiveGameToday());
+    }
+}
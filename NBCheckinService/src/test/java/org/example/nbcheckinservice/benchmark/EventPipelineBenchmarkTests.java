@@ -0,0 +1,445 @@
+package org.example.nbcheckinservice.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочный прогон цепочки событий:
+ *   HTTP (checkin / sleep / game) → commit → Kafka → consumers → DB / level-up topic.
+ *
+ * Окружение полностью in-process:
+ *   - Kafka      — @EmbeddedKafka
+ *   - PostgreSQL — embedded-postgres (настоящий postgres-бинарник, ddl-auto=update)
+ *   - ML-сервис  — stub на com.sun.net.httpserver, отвечает фиксированным top3
+ *
+ * Замеряемые стадии (от начала HTTP-запроса чекина):
+ *   checkin → health_metrics persisted
+ *   checkin → daily_ml_recommendation persisted
+ *   activity → character.leveled-up published (только для пользователей, у которых был level-up)
+ *
+ * Проекции в DB опрашиваются отдельным потоком параллельно с нагрузкой (один запрос
+ * на обе таблицы за тик), иначе в латентность попадает всё окно нагрузки.
+ *
+ * Плюс максимальный consumer lag по группам за время прогона.
+ * Результат пишется в target/benchmark/pipeline-report.properties;
+ * превышение порогов из benchmark/pipeline-thresholds.properties валит сборку.
+ *
+ * Запуск: mvn -Pbenchmark test [-Dbenchmark.users=200 -Dbenchmark.rate=50]
+ */
+@Slf4j
+@Tag("benchmark")
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.jpa.show-sql=false",
+                "logging.level.org.example.nbcheckinservice=WARN",
+                "logging.level.org.hibernate.SQL=WARN"
+        }
+)
+@EmbeddedKafka(
+        partitions = 3,
+        topics = {"checkin.created", "sleep.logged", "game.completed", "character.leveled-up"}
+)
+class EventPipelineBenchmarkTests {
+
+    private static final ZoneId ALMATY_ZONE = ZoneId.of("Asia/Almaty");
+
+    private static final List<String> CONSUMER_GROUPS = List.of(
+            "health-metrics-consumer-group",
+            "ml-recommendation-consumer-group",
+            "character-progression-consumer-group"
+    );
+
+    /** Пользователи диапазона, у которых уже видны health_metrics / daily_ml_recommendation за день */
+    private static final String PROJECTIONS_SQL = """
+            SELECT 'metrics' AS stage, user_id FROM health_metrics
+            WHERE metric_date = ? AND user_id BETWEEN ? AND ?
+            UNION ALL
+            SELECT 'ml', user_id FROM daily_ml_recommendation
+            WHERE recommendation_date = ? AND user_id BETWEEN ? AND ?
+            """;
+
+    private static final String STUB_ML_RESPONSE = """
+            {"status":"success","cognitive_score":72.5,"summary":"stub",
+             "recommendations":[],"total_potential":0.0,"timestamp":"stub"}
+            """;
+
+    private static final EmbeddedPostgres POSTGRES;
+    private static final HttpServer ML_STUB;
+
+    static {
+        try {
+            POSTGRES = EmbeddedPostgres.builder().start();
+            ML_STUB = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            ML_STUB.createContext("/", exchange -> {
+                try (InputStream in = exchange.getRequestBody()) {
+                    in.readAllBytes();
+                }
+                byte[] body = STUB_ML_RESPONSE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            ML_STUB.setExecutor(Executors.newFixedThreadPool(4));
+            ML_STUB.start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start benchmark infrastructure", e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void infrastructure(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("ml.service.url", () -> "http://localhost:" + ML_STUB.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void shutdown() throws IOException {
+        ML_STUB.stop(0);
+        POSTGRES.close();
+    }
+
+    @Autowired private Environment environment;
+    @Autowired private EmbeddedKafkaBroker broker;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // ═════════════════════════════════════════════════════════════
+    // BENCHMARK
+    // ═════════════════════════════════════════════════════════════
+
+    @Test
+    void checkInPipelineStaysWithinThresholds() throws Exception {
+        int users = Integer.getInteger("benchmark.users", 100);
+        int ratePerSecond = Integer.getInteger("benchmark.rate", 20);
+        long drainTimeoutMs = Long.getLong("benchmark.drain-timeout-ms", 60_000L);
+        long firstUserId = 9_000_000L + (System.currentTimeMillis() % 100_000L) * 1_000L;
+
+        String baseUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/v1";
+        LocalDate today = LocalDate.now(ALMATY_ZONE);
+
+        Map<Long, Long> startedAt = new ConcurrentHashMap<>();
+        Map<Long, Long> metricsAt = new ConcurrentHashMap<>();
+        Map<Long, Long> mlAt = new ConcurrentHashMap<>();
+        Map<Long, Long> levelUpAt = new ConcurrentHashMap<>();
+        AtomicLong maxLag = new AtomicLong();
+        AtomicLong httpErrors = new AtomicLong();
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(4, ratePerSecond / 2));
+        ExecutorService observers = Executors.newFixedThreadPool(3);
+        AtomicBoolean loadFinished = new AtomicBoolean();
+
+        observers.submit(() -> listenForLevelUps(levelUpAt, startedAt, drainTimeoutMs));
+        observers.submit(() -> sampleConsumerLag(maxLag, drainTimeoutMs));
+        Future<?> projections = observers.submit(() -> pollProjections(today, firstUserId, users,
+                startedAt, metricsAt, mlAt, loadFinished, drainTimeoutMs));
+
+        // ─── Load: check-in + sleep log + game per user at a fixed rate ───
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, ratePerSecond);
+        long next = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            long userId = firstUserId + i;
+            String auth = "Bearer " + tokenFor(userId);
+            workers.submit(() -> {
+                startedAt.put(userId, System.nanoTime());
+                post(baseUrl + "/checkins", auth, checkInJson(), httpErrors);
+                post(baseUrl + "/sleep", auth, sleepLogJson(today), httpErrors);
+                post(baseUrl + "/new-game-sessions", auth, gameJson(), httpErrors);
+            });
+            next += intervalNanos;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+        }
+        workers.shutdown();
+        workers.awaitTermination(drainTimeoutMs, TimeUnit.MILLISECONDS);
+        loadFinished.set(true);
+
+        // ─── Drain: poller останавливается, когда у всех пользователей видны обе проекции ───
+        try {
+            projections.get(drainTimeoutMs + 5_000, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Projection poller did not finish in time");
+        }
+        observers.shutdownNow();
+
+        // ─── Report + thresholds ───
+        Map<String, Double> report = new HashMap<>();
+        putPercentiles(report, "checkin-to-metrics", latenciesMs(startedAt, metricsAt));
+        putPercentiles(report, "checkin-to-ml", latenciesMs(startedAt, mlAt));
+        putPercentiles(report, "activity-to-levelup", latenciesMs(startedAt, levelUpAt));
+        report.put("consumer-lag.max", (double) maxLag.get());
+        report.put("http-errors", (double) httpErrors.get());
+        report.put("metrics-missing", (double) (startedAt.size() - metricsAt.size()));
+        report.put("ml-missing", (double) (startedAt.size() - mlAt.size()));
+
+        writeReport(report);
+        List<String> violations = checkThresholds(report);
+        assertTrue(violations.isEmpty(), "Pipeline benchmark regressions: " + violations);
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // OBSERVERS
+    // ═════════════════════════════════════════════════════════════
+
+    private void listenForLevelUps(Map<Long, Long> levelUpAt, Map<Long, Long> startedAt, long timeoutMs) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "benchmark-levelup-observer");
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props)) {
+            consumer.subscribe(List.of("character.leveled-up"));
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (!Thread.currentThread().isInterrupted() && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(100))) {
+                    Long userId = Long.valueOf(record.key());
+                    if (startedAt.containsKey(userId)) {
+                        levelUpAt.putIfAbsent(userId, System.nanoTime());
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Level-up observer stopped: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Опрашивает обе проекции одним запросом каждые 20 мс, пока идёт нагрузка и до тех пор,
+     * пока у всех начатых пользователей не появятся обе строки (или не выйдет таймаут).
+     * Время фиксируется при первом появлении строки.
+     */
+    private void pollProjections(LocalDate day, long firstUserId, int users,
+                                 Map<Long, Long> startedAt, Map<Long, Long> metricsAt, Map<Long, Long> mlAt,
+                                 AtomicBoolean loadFinished, long timeoutMs) {
+        long lastUserId = firstUserId + users - 1;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        try {
+            while (!Thread.currentThread().isInterrupted() && System.currentTimeMillis() < deadline) {
+                long now = System.nanoTime();
+                jdbcTemplate.query(PROJECTIONS_SQL, rs -> {
+                    Map<Long, Long> target = "metrics".equals(rs.getString("stage")) ? metricsAt : mlAt;
+                    target.putIfAbsent(rs.getLong("user_id"), now);
+                }, day, firstUserId, lastUserId, day, firstUserId, lastUserId);
+
+                if (loadFinished.get()
+                        && metricsAt.size() >= startedAt.size() && mlAt.size() >= startedAt.size()) {
+                    return;
+                }
+                TimeUnit.MILLISECONDS.sleep(20);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Projection poller stopped: {}", e.getMessage());
+        }
+    }
+
+    private void sampleConsumerLag(AtomicLong maxLag, long timeoutMs) {
+        try (AdminClient admin = AdminClient.create(Map.of(
+                AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString()))) {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (!Thread.currentThread().isInterrupted() && System.currentTimeMillis() < deadline) {
+                for (String group : CONSUMER_GROUPS) {
+                    Map<TopicPartition, OffsetAndMetadata> committed =
+                            admin.listConsumerGroupOffsets(group).partitionsToOffsetAndMetadata().get();
+                    if (committed.isEmpty()) continue;
+
+                    Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+                    committed.keySet().forEach(tp -> latest.put(tp, OffsetSpec.latest()));
+                    var ends = admin.listOffsets(latest).all().get();
+
+                    long lag = 0;
+                    for (var e : committed.entrySet()) {
+                        if (e.getValue() == null) continue;
+                        lag += Math.max(0, ends.get(e.getKey()).offset() - e.getValue().offset());
+                    }
+                    maxLag.accumulateAndGet(lag, Math::max);
+                }
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Consumer lag sampler stopped: {}", e.getMessage());
+        }
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // HELPERS
+    // ═════════════════════════════════════════════════════════════
+
+    private String tokenFor(long userId) {
+        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        return Jwts.builder()
+                .subject("bench_" + userId)
+                .claim("id", userId)
+                .signWith(key)
+                .compact();
+    }
+
+    private void post(String url, String auth, String json, AtomicLong errors) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                    .header("Authorization", auth)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) errors.incrementAndGet();
+        } catch (Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private static String checkInJson() {
+        return """
+                {"sleepQuality":7,"sleepHours":7.5,"energyLevel":6,"stressLevel":4,
+                 "morningMood":4,"physicalActivityMinutes":30,"didExercise":true}
+                """;
+    }
+
+    private static String sleepLogJson(LocalDate date) {
+        return """
+                {"sleepDate":"%s","bedtime":"23:00","wakeTime":"07:00","qualityScore":7}
+                """.formatted(date);
+    }
+
+    private static String gameJson() {
+        return """
+                {"gameType":"DONUT_GAME","durationSeconds":60,"isCompleted":true,"isWon":true}
+                """;
+    }
+
+    private static List<Double> latenciesMs(Map<Long, Long> start, Map<Long, Long> end) {
+        List<Double> result = new ArrayList<>();
+        end.forEach((userId, t) -> {
+            Long t0 = start.get(userId);
+            if (t0 != null) result.add((t - t0) / 1_000_000.0);
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void putPercentiles(Map<String, Double> report, String stage, List<Double> sorted) {
+        report.put(stage + ".count", (double) sorted.size());
+        if (sorted.isEmpty()) return;
+        report.put(stage + ".p50.ms", percentile(sorted, 0.50));
+        report.put(stage + ".p95.ms", percentile(sorted, 0.95));
+        report.put(stage + ".p99.ms", percentile(sorted, 0.99));
+    }
+
+    private static double percentile(List<Double> sorted, double q) {
+        int index = (int) Math.ceil(q * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    private static void writeReport(Map<String, Double> report) throws IOException {
+        Path dir = Path.of("target", "benchmark");
+        Files.createDirectories(dir);
+        Properties out = new Properties();
+        report.forEach((k, v) -> out.setProperty(k, String.format(Locale.ROOT, "%.2f", v)));
+        try (OutputStream os = Files.newOutputStream(dir.resolve("pipeline-report.properties"))) {
+            out.store(os, "Event pipeline benchmark");
+        }
+        report.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> log.warn("BENCHMARK {} = {}", e.getKey(), String.format(Locale.ROOT, "%.2f", e.getValue())));
+    }
+
+    /**
+     * Каждый ключ файла порогов — верхняя граница для одноимённого ключа отчёта.
+     * Стадии без замеров (например, level-up не случился) пропускаются.
+     */
+    private static List<String> checkThresholds(Map<String, Double> report) throws IOException {
+        Properties thresholds = new Properties();
+        try (InputStream in = EventPipelineBenchmarkTests.class
+                .getResourceAsStream("/benchmark/pipeline-thresholds.properties")) {
+            if (in == null) return List.of();
+            thresholds.load(in);
+        }
+
+        List<String> violations = new ArrayList<>();
+        Set<String> keys = thresholds.stringPropertyNames();
+        for (String key : keys) {
+            Double actual = report.get(key);
+            if (actual == null) continue;
+            double limit = Double.parseDouble(thresholds.getProperty(key).trim());
+            if (actual > limit) {
+                violations.add(key + "=" + String.format(Locale.ROOT, "%.2f", actual) + " > " + limit);
+            }
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.nbcheckinservice.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.nbcheckinservice.config.JwtVerifier;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Стоимость аутентификации одного запроса (JMH, µs/op):
+ *
+ *   legacyDoubleParse — старый JwtAuthenticationFilter: ключ + парсер создаются
+ *                       заново и токен парсится дважды (validateToken + getUserIdFromToken)
+ *   singleParse       — JwtVerifier без кэша: один prebuilt parser, один parse
+ *   cachedVerify      — JwtVerifier с кэшем Claims (повторные запросы с тем же токеном)
+ *
+ * Запуск: mvn -Pbenchmark test -Dtest=JwtVerificationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Tag("benchmark")
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "RjvtMF7pgKMqcaeQPzmP0aGgHbOOX8ytteqBjbGIBDw=";
+
+    private String token;
+    private JwtVerifier uncachedVerifier;
+    private JwtVerifier cachedVerifier;
+
+    @Setup
+    public void setUp() {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        token = Jwts.builder()
+                .subject("bench_user")
+                .claim("id", 42L)
+                .claim("roles", List.of("USER"))
+                .expiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(12)))
+                .signWith(key)
+                .compact();
+
+        uncachedVerifier = new JwtVerifier(SECRET, 0, new SimpleMeterRegistry());
+        cachedVerifier = new JwtVerifier(SECRET, 10_000, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public Object legacyDoubleParse() {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+
+        SecretKey key2 = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        Claims claims = Jwts.parser().verifyWith(key2).build().parseSignedClaims(token).getPayload();
+        return claims.get("id");
+    }
+
+    @Benchmark
+    public Object singleParse() {
+        return uncachedVerifier.verify(token).map(c -> c.get("id")).orElse(null);
+    }
+
+    @Benchmark
+    public Object cachedVerify() {
+        return cachedVerifier.verify(token).map(c -> c.get("id")).orElse(null);
+    }
+
+    // ═════════════════════════════════════════════════════════════
+    // JUnit entry point (profile -Pbenchmark)
+    // ═════════════════════════════════════════════════════════════
+
+    @Test
+    void cachedVerificationIsCheaperThanLegacyFilter() throws Exception {
+        Options options = new OptionsBuilder()
+                .include(JwtVerificationBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+
+        Map<String, Double> scores = new HashMap<>();
+        for (RunResult r : results) {
+            String label = r.getParams().getBenchmark();
+            scores.put(label.substring(label.lastIndexOf('.') + 1), r.getPrimaryResult().getScore());
+        }
+
+        double legacy = scores.get("legacyDoubleParse");
+        double single = scores.get("singleParse");
+        double cached = scores.get("cachedVerify");
+        System.out.printf("JWT auth cost per request (µs): legacy=%.2f single=%.2f cached=%.2f%n",
+                legacy, single, cached);
+
+        assertTrue(single < legacy, "single parse should be cheaper than double parse");
+        assertTrue(cached < single, "cache hit should be cheaper than a parse");
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.nbcheckinservice.insights;
+
+import org.example.nbcheckinservice.repository.CheckInStatsRow;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * InsightStats: обратимые add / remove против пересчёта с нуля (среднее, дисперсия,
+ * Pearson r), сброс моментов при удалении последней точки, round trip encode / decode.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class InsightStatsTests {
+
+    private static final double EPS = 1e-6;
+    private static final LocalDate DAY = LocalDate.of(2026, 1, 1);
+
+    @Test
+    void randomAddUpdateRemoveMatchesRecomputeFromScratch() {
+        Random random = new Random(47);
+        InsightStats stats = new InsightStats();
+        List<CheckInStatsRow> live = new ArrayList<>();
+
+        for (int step = 1; step <= 3_000; step++) {
+            int op = random.nextInt(10);
+            if (live.isEmpty() || op < 5) {
+                CheckInStatsRow row = randomRow(random, step);
+                stats.applyCheckIn(null, row);
+                live.add(row);
+            } else if (op < 8) {
+                CheckInStatsRow removed = live.remove(random.nextInt(live.size()));
+                stats.applyCheckIn(removed, null);
+            } else {
+                int i = random.nextInt(live.size());
+                CheckInStatsRow updated = randomRow(random, step);
+                stats.applyCheckIn(live.get(i), updated);
+                live.set(i, updated);
+            }
+            if (step % 25 == 0) assertMatchesRecompute(stats, live, "step " + step);
+        }
+
+        // Всё удаляем, кроме небольшого хвоста — моменты должны сойтись и после долгой истории
+        while (live.size() > 10) {
+            stats.applyCheckIn(live.remove(live.size() - 1), null);
+        }
+        assertMatchesRecompute(stats, live, "tail");
+    }
+
+    @Test
+    void removingLastValueResetsMomentsExactly() {
+        InsightStats stats = new InsightStats();
+        List<CheckInStatsRow> rows = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50; i++) {
+            CheckInStatsRow row = row(i, 3 + random.nextInt(7), 1 + random.nextInt(10),
+                    String.valueOf(4 + random.nextInt(12) / 2.0));
+            rows.add(row);
+            stats.applyCheckIn(null, row);
+        }
+        for (CheckInStatsRow row : rows) stats.applyCheckIn(row, null);
+
+        assertEquals(0, stats.checkInCount());
+        for (InsightStats.Feature f : InsightStats.Feature.values()) {
+            assertNull(stats.mean(f), f.name());
+            assertNull(stats.stdDev(f), f.name());
+        }
+        assertTrue(stats.correlations().isEmpty());
+
+        // Остатков от обратных шагов нет: одна новая точка — ровно её значение
+        stats.applyCheckIn(null, row(0, 6, 9, "7.5"));
+        assertEquals(7.5, stats.mean(InsightStats.Feature.SLEEP_HOURS));
+        assertEquals(6.0, stats.mean(InsightStats.Feature.MORNING_MOOD));
+        assertNull(stats.stdDev(InsightStats.Feature.SLEEP_HOURS));
+
+        stats.applyCheckIn(null, row(1, 8, 3, "5.5"));
+        assertEquals(Math.sqrt(2.0), stats.stdDev(InsightStats.Feature.SLEEP_HOURS), 1e-12);
+    }
+
+    @Test
+    void moodLogTriggerIsDroppedWithItsLastLog() {
+        InsightStats stats = new InsightStats();
+        stats.applyMoodLog(null, null, 4, List.of(" Работа ", "работа", "сон"));
+        stats.applyMoodLog(null, null, 8, List.of("сон"));
+        // Без триггеров — иначе у "сон" нет записей для сравнения
+        stats.applyMoodLog(null, null, 6, List.of());
+
+        assertEquals(List.of("работа", "сон"),
+                stats.triggerMeans(1).stream().map(InsightStats.TriggerMean::trigger).toList());
+
+        stats.applyMoodLog(4, List.of("работа", "сон"), null, null);
+
+        List<InsightStats.TriggerMean> left = stats.triggerMeans(1);
+        assertEquals(1, left.size());
+        assertEquals("сон", left.get(0).trigger());
+        assertEquals(8.0, left.get(0).mean(), EPS);
+        assertEquals(6.0, left.get(0).othersMean(), EPS);
+        assertEquals(2, stats.moodLogCount());
+    }
+
+    @Test
+    void codecRoundTripPreservesState() {
+        Random random = new Random(11);
+        InsightStats stats = new InsightStats();
+        for (int i = 0; i < 200; i++) {
+            stats.applyCheckIn(null, randomRow(random, i));
+            stats.applyMoodLog(null, null, 1 + random.nextInt(10),
+                    List.of("t" + random.nextInt(5), "общий"));
+        }
+
+        byte[] encoded = stats.encode();
+        InsightStats decoded = InsightStats.decode(encoded);
+
+        assertArrayEquals(encoded, decoded.encode());
+        assertEquals(stats.checkInCount(), decoded.checkInCount());
+        assertEquals(stats.moodLogCount(), decoded.moodLogCount());
+        for (InsightStats.Feature f : InsightStats.Feature.values()) {
+            assertEquals(stats.mean(f), decoded.mean(f));
+            assertEquals(stats.stdDev(f), decoded.stdDev(f));
+        }
+        assertEquals(stats.correlations(), decoded.correlations());
+        assertEquals(stats.conditionalMeans(), decoded.conditionalMeans());
+        assertEquals(stats.triggerMeans(1), decoded.triggerMeans(1));
+
+        byte[] otherVersion = Arrays.copyOf(encoded, encoded.length);
+        otherVersion[3] ^= 0x7F;
+        assertThrows(IllegalStateException.class, () -> InsightStats.decode(otherVersion));
+        assertThrows(IllegalStateException.class,
+                () -> InsightStats.decode(Arrays.copyOf(encoded, encoded.length / 2)));
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private static void assertMatchesRecompute(InsightStats stats, List<CheckInStatsRow> rows, String at) {
+        assertEquals(rows.size(), stats.checkInCount(), at);
+
+        for (InsightStats.Feature f : InsightStats.Feature.values()) {
+            double[] values = rows.stream().map(f::of).filter(v -> v != null).mapToDouble(Double::doubleValue).toArray();
+            if (values.length == 0) {
+                assertNull(stats.mean(f), at + " " + f);
+            } else {
+                assertEquals(mean(values), stats.mean(f), EPS, at + " mean " + f);
+            }
+            if (values.length < 2) {
+                assertNull(stats.stdDev(f), at + " " + f);
+            } else {
+                double m = mean(values);
+                double ss = Arrays.stream(values).map(v -> (v - m) * (v - m)).sum();
+                assertEquals(Math.sqrt(ss / (values.length - 1)), stats.stdDev(f), EPS, at + " stdDev " + f);
+            }
+        }
+
+        Map<InsightStats.Pair, Double> expected = new EnumMap<>(InsightStats.Pair.class);
+        for (InsightStats.Pair p : InsightStats.Pair.values()) {
+            List<double[]> xy = new ArrayList<>();
+            for (CheckInStatsRow row : rows) {
+                Double x = p.x.of(row), y = p.y.of(row);
+                if (x != null && y != null) xy.add(new double[]{x, y});
+            }
+            if (xy.size() < InsightStats.MIN_SAMPLES) continue;
+            double mx = xy.stream().mapToDouble(v -> v[0]).average().orElseThrow();
+            double my = xy.stream().mapToDouble(v -> v[1]).average().orElseThrow();
+            double sxx = 0, syy = 0, sxy = 0;
+            for (double[] v : xy) {
+                sxx += (v[0] - mx) * (v[0] - mx);
+                syy += (v[1] - my) * (v[1] - my);
+                sxy += (v[0] - mx) * (v[1] - my);
+            }
+            if (Math.sqrt(sxx * syy) < 1e-9) continue;
+            expected.put(p, sxy / Math.sqrt(sxx * syy));
+        }
+
+        Map<InsightStats.Pair, Double> actual = new EnumMap<>(InsightStats.Pair.class);
+        for (InsightStats.Correlation c : stats.correlations()) actual.put(c.pair(), c.r());
+        assertEquals(expected.keySet(), actual.keySet(), at + " correlated pairs");
+        expected.forEach((pair, r) -> assertEquals(r, actual.get(pair), EPS, at + " r " + pair));
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).sum() / values.length;
+    }
+
+    /** Значения в диапазонах формы check-in; каждое поле с вероятностью ~15% отсутствует */
+    private static CheckInStatsRow randomRow(Random random, int day) {
+        return new CheckInStatsRow(DAY.plusDays(day),
+                maybe(random, 1 + random.nextInt(10)),
+                maybe(random, 1 + random.nextInt(10)),
+                null, null,
+                maybe(random, 1 + random.nextInt(10)),
+                random.nextInt(7) == 0 ? null : BigDecimal.valueOf(3 + random.nextInt(15) * 0.5),
+                maybe(random, 1 + random.nextInt(10)),
+                maybe(random, 1 + random.nextInt(10)),
+                maybe(random, random.nextInt(121)),
+                0,
+                random.nextBoolean(), random.nextBoolean(), random.nextBoolean(), false);
+    }
+
+    private static Integer maybe(Random random, int value) {
+        return random.nextInt(7) == 0 ? null : value;
+    }
+
+    private static CheckInStatsRow row(int day, int morningMood, int energy, String sleepHours) {
+        return new CheckInStatsRow(DAY.plusDays(day), morningMood, null, null, null, null,
+                new BigDecimal(sleepHours), energy, null, null, 0, null, null, null, false);
+    }
+}
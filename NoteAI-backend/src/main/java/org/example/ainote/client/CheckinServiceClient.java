@@ -11,6 +11,10 @@ import org.springframework.web.client.RestTemplate;
  * HTTP client that notifies NBCheckinService when a note is written.
  * The call is @Async (fire-and-forget) so note creation never fails
  * if the checkin service is temporarily unavailable.
+ *
+ * Legacy path: WRITE_NOTE is now completed from the note.written Kafka event
+ * (NoteWrittenPublisher). Kept behind checkin.note-written.http.enabled until
+ * every NBCheckinService instance consumes the topic.
  */
 @Component
 @Slf4j
@@ -18,13 +22,20 @@ public class CheckinServiceClient {
 
     private final RestTemplate restTemplate;
     private final String checkinServiceUrl;
+    private final boolean noteWrittenHttpEnabled;
 
     public CheckinServiceClient(
             RestTemplate restTemplate,
-            @Value("${checkin.service.url:http://localhost:8082}") String checkinServiceUrl
+            @Value("${checkin.service.url:http://localhost:8082}") String checkinServiceUrl,
+            @Value("${checkin.note-written.http.enabled:false}") boolean noteWrittenHttpEnabled
     ) {
         this.restTemplate = restTemplate;
         this.checkinServiceUrl = checkinServiceUrl;
+        this.noteWrittenHttpEnabled = noteWrittenHttpEnabled;
+    }
+
+    public boolean isNoteWrittenHttpEnabled() {
+        return noteWrittenHttpEnabled;
     }
 
     /**
@@ -1,35 +1,31 @@
 package org.example.ainote.config;
 
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import javax.crypto.SecretKey;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
  * JWT Authentication Filter
- *  Extracts userId from JWT token (claim "id" from NBAuthService)
+ *  Extracts userId from JWT claim "id" (NBAuthService); verification is delegated to JwtVerifier
  */
 @Component
+@RequiredArgsConstructor
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private final JwtVerifier jwtVerifier;
 
     @Override
     protected void doFilterInternal(
@@ -41,8 +37,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String token = extractToken(request);
 
-            if (token != null && validateToken(token)) {
-                Long userId = getUserIdFromToken(token);
+            if (token != null) {
+                // Одна проверка на запрос (с кэшем) — userId берём из уже проверенных claims
+                Long userId = jwtVerifier.verify(token)
+                        .map(this::getUserIdFromClaims)
+                        .orElse(null);
 
                 if (userId != null) {
                     UsernamePasswordAuthenticationToken authentication =
@@ -53,7 +52,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                             );
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
-
                     request.setAttribute("userId", userId);
 
                     log.debug("Authenticated user ID: {}", userId);
@@ -75,34 +73,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return null;
     }
 
-    private boolean validateToken(String token) {
-        try {
-            SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
-            Jwts.parser()
-                    .verifyWith(key)
-                    .build()
-                    .parseSignedClaims(token);
-
-            return true;
-        } catch (Exception e) {
-            log.error("JWT validation error: {}", e.getMessage());
-            return false;
-        }
-    }
-
     /**
      *  Extract userId from JWT claim "id" (NBAuthService uses "id", NOT "userId")
      */
-    private Long getUserIdFromToken(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
-        Claims claims = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
+    private Long getUserIdFromClaims(Claims claims) {
         Object userIdObj = claims.get("id");
 
         if (userIdObj == null) {
@@ -118,4 +92,4 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throw new RuntimeException("Invalid userId format");
         }
     }
-}
\ No newline at end of file
+}
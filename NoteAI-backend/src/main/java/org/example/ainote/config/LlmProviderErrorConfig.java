@@ -0,0 +1,47 @@
+package org.example.ainote.config;
+
+import org.example.ainote.exception.ProviderRateLimitedException;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResponseErrorHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ошибки blocking-вызовов провайдера (OpenAiApi через RestClient) по HTTP-статусу:
+ * 429 → ProviderRateLimitedException, прочие 4xx → NonTransientAiException, 5xx → TransientAiException.
+ * Заменяет ResponseErrorHandler Spring AI, который оставляет код ответа только в тексте ошибки.
+ */
+@Configuration
+public class LlmProviderErrorConfig {
+
+    @Bean
+    public ResponseErrorHandler responseErrorHandler() {
+        return new ResponseErrorHandler() {
+            @Override
+            public boolean hasError(ClientHttpResponse response) throws IOException {
+                return response.getStatusCode().isError();
+            }
+
+            @Override
+            public void handleError(ClientHttpResponse response) throws IOException {
+                int status = response.getStatusCode().value();
+                String body = StreamUtils.copyToString(response.getBody(), StandardCharsets.UTF_8);
+                String message = status + " - " + body;
+                if (status == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    throw new ProviderRateLimitedException(message);
+                }
+                if (response.getStatusCode().is4xxClientError()) {
+                    throw new NonTransientAiException(message);
+                }
+                throw new TransientAiException(message);
+            }
+        };
+    }
+}
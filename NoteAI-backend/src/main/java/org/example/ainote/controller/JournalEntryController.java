@@ -8,15 +8,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ainote.dto.JournalEntryRequest;
 import org.example.ainote.dto.JournalEntryResponse;
+import org.example.ainote.dto.JournalSearchResponse;
+import org.example.ainote.dto.JournalTagFacet;
 import org.example.ainote.dto.NoteAiRequest;
 import org.example.ainote.dto.NoteAiResponse;
+import org.example.ainote.dto.RelatedJournalEntryResponse;
 import org.example.ainote.entity.JournalEntry;
 import org.example.ainote.service.JournalEntryService;
 import org.example.ainote.service.NoteAiService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -40,6 +46,9 @@ import java.util.Map;
 @Tag(name = "Journal", description = "Enhanced journal entries with auto-save, date filters and AI")
 public class JournalEntryController {
 
+    /** Сколько похожих прошлых записей добавлять в промпт /ai/chat */
+    private static final int CHAT_RELATED_ENTRIES = 3;
+
     private final JournalEntryService journalService;
     private final NoteAiService noteAiService;
 
@@ -83,13 +92,22 @@ public class JournalEntryController {
 
     /**
      * GET /api/v1/journal
+     * GET /api/v1/journal?tag=работа
      *
      * Все записи пользователя, от новых к старым.
+     * С ?tag= — только записи с этим тегом (без учёта регистра и пробелов по краям).
      */
     @GetMapping
-    @Operation(summary = "Get all journal entries (newest first)")
-    public ResponseEntity<List<JournalEntryResponse>> getAll(HttpServletRequest request) {
+    @Operation(summary = "Get all journal entries (newest first), optionally filtered by tag")
+    public ResponseEntity<List<JournalEntryResponse>> getAll(
+            HttpServletRequest request,
+            @RequestParam(required = false) String tag
+    ) {
         Long userId = getUserId(request);
+        if (tag != null) {
+            log.info("GET /journal?tag - User {}", userId);
+            return ResponseEntity.ok(journalService.getByTag(userId, tag));
+        }
         log.info("GET /journal - User {}", userId);
         return ResponseEntity.ok(journalService.getAll(userId));
     }
@@ -153,6 +171,47 @@ public class JournalEntryController {
         return ResponseEntity.ok(journalService.getFavorites(userId));
     }
 
+    /**
+     * GET /api/v1/journal/tags?limit=100
+     *
+     * Фасеты тегов: [{ "tag": "работа", "count": 12 }, ...], самые частые сверху.
+     * Счётчики поддерживаются инкрементально при create / update / patch / delete.
+     */
+    @GetMapping("/tags")
+    @Operation(summary = "Tag facets: tag → number of entries (most used first)")
+    public ResponseEntity<List<JournalTagFacet>> getTagFacets(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        Long userId = getUserId(request);
+        log.info("GET /journal/tags - User {}", userId);
+        return ResponseEntity.ok(journalService.getTagFacets(userId, limit));
+    }
+
+    /**
+     * GET /api/v1/journal/search?q=сон работа&limit=20&cursor=...
+     *
+     * Полнотекстовый поиск (русский / английский со стеммингом, казахский и прочее — как есть).
+     * Синтаксис q: слова через пробел (AND), "точная фраза", OR, -исключить.
+     * Ответ: items (rank, titleHighlight / snippet с <mark>) + nextCursor для следующей страницы.
+     */
+    @GetMapping("/search")
+    @Operation(
+            summary = "Full-text search over journal entries",
+            description = "Ranked matches over title, tags and content with highlighted snippets. " +
+                    "Pass nextCursor from the previous page as ?cursor= to continue."
+    )
+    public ResponseEntity<JournalSearchResponse> search(
+            HttpServletRequest request,
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        Long userId = getUserId(request);
+        log.info("GET /journal/search - User {}", userId);
+        return ResponseEntity.ok(journalService.search(userId, query, cursor, limit));
+    }
+
     /**
      * GET /api/v1/journal/{id}
      */
@@ -167,6 +226,24 @@ public class JournalEntryController {
         return ResponseEntity.ok(journalService.getById(userId, id));
     }
 
+    /**
+     * GET /api/v1/journal/{id}/related?limit=5
+     *
+     * Семантически похожие записи пользователя (эмбеддинги + HNSW), самые близкие сверху.
+     * Свежая запись попадает в индекс через доли секунды после сохранения.
+     */
+    @GetMapping("/{id}/related")
+    @Operation(summary = "Journal entries semantically similar to this one")
+    public ResponseEntity<List<RelatedJournalEntryResponse>> getRelated(
+            HttpServletRequest request,
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "5") int limit
+    ) {
+        Long userId = getUserId(request);
+        log.info("GET /journal/{}/related - User {}", id, userId);
+        return ResponseEntity.ok(journalService.getRelated(userId, id, limit));
+    }
+
     /**
      * PUT /api/v1/journal/{id}
      *
@@ -198,23 +275,46 @@ public class JournalEntryController {
      * {
      *   "content": "...новый текст..."
      * }
+     *
+     * Патч копится в буфере auto-save и подтверждается полем version; в БД уходит
+     * последнее состояние — после паузы в наборе, раз в несколько секунд или по POST .../save.
+     * Переданные поля проверяются до буферизации (400), а не при записи в БД после ack.
      */
     @PatchMapping("/{id}")
     @Operation(
             summary = "Partial update / auto-save (debounce endpoint)",
             description = "Updates only the provided fields. Call with 2-3s debounce from frontend. " +
-                    "updatedAt is auto-refreshed. WRITE_NOTE task NOT re-triggered."
+                    "Patches are coalesced server-side and acknowledged with a version; " +
+                    "the latest state is written on idle, on a short interval or via POST /{id}/save. " +
+                    "WRITE_NOTE task NOT re-triggered."
     )
     public ResponseEntity<JournalEntryResponse> patch(
             HttpServletRequest request,
             @PathVariable Long id,
-            @RequestBody JournalEntryRequest body
+            @Validated(JournalEntryRequest.Patch.class) @RequestBody JournalEntryRequest body
     ) {
         Long userId = getUserId(request);
         log.debug("PATCH /journal/{} (auto-save) - User {}", id, userId);
         return ResponseEntity.ok(journalService.patch(userId, id, body));
     }
 
+    /**
+     * POST /api/v1/journal/{id}/save
+     *
+     * Явное сохранение: сбрасывает накопленные auto-save патчи записи в БД.
+     * Фронтенд вызывает при уходе со страницы / закрытии редактора.
+     */
+    @PostMapping("/{id}/save")
+    @Operation(summary = "Flush buffered auto-save patches of a journal entry to the database")
+    public ResponseEntity<JournalEntryResponse> save(
+            HttpServletRequest request,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserId(request);
+        log.info("POST /journal/{}/save - User {}", id, userId);
+        return ResponseEntity.ok(journalService.save(userId, id));
+    }
+
     /**
      * DELETE /api/v1/journal/{id}
      */
@@ -311,6 +411,7 @@ public class JournalEntryController {
      * POST /api/v1/journal/ai/chat
      *
      * AI-чат. Передай message и (необязательно) journalId для контекста записи.
+     * В промпт также добавляются до 3 прошлых записей, близких к сообщению по смыслу.
      *
      * Тело запроса:
      * {
@@ -347,8 +448,87 @@ public class JournalEntryController {
             title   = entry.getTitle();
             content = entry.getContent();
         }
+        List<JournalEntry> related = journalService.findChatContext(
+                userId, body.getMessage(), journalId, CHAT_RELATED_ENTRIES);
 
-        NoteAiResponse resp = noteAiService.chatRaw(userId, journalId, title, content, body.getMessage());
+        NoteAiResponse resp = noteAiService.chatRaw(userId, journalId, title, content, body.getMessage(), related);
         return ResponseEntity.ok(resp);
     }
+
+    // ─────────────────────────────────────────────────────────────
+    // AI STREAMING (SSE) — те же операции, токены по мере генерации
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * POST /api/v1/journal/{id}/ai/summary/stream
+     *
+     * События: token (фрагмент текста) … done (NoteAiResponse как у /ai/summary) | error.
+     * Владение записью проверяется до открытия потока — 404 приходит обычным ответом.
+     */
+    @PostMapping(path = "/{id}/ai/summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Streamed AI summary of a journal entry (SSE)",
+            description = "Same as /ai/summary, but tokens are pushed as `token` events while the model " +
+                    "generates; the final NoteAiResponse arrives as a `done` event."
+    )
+    public SseEmitter aiSummaryStream(
+            HttpServletRequest request,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserId(request);
+        log.info("POST /journal/{}/ai/summary/stream - User {}", id, userId);
+
+        JournalEntry entry = journalService.findOwned(userId, id);
+        return noteAiService.streamSummaryRaw(userId, id, entry.getTitle(), entry.getContent());
+    }
+
+    /**
+     * POST /api/v1/journal/{id}/ai/analyze/stream
+     *
+     * token-события содержат сырой JSON модели; разобранный анализ приходит в done.
+     */
+    @PostMapping(path = "/{id}/ai/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Streamed wellness analysis of a journal entry (SSE)",
+            description = "Same as /ai/analyze; `token` events carry the raw model output, " +
+                    "the parsed NoteAiResponse arrives as a `done` event."
+    )
+    public SseEmitter aiAnalyzeStream(
+            HttpServletRequest request,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserId(request);
+        log.info("POST /journal/{}/ai/analyze/stream - User {}", id, userId);
+
+        JournalEntry entry = journalService.findOwned(userId, id);
+        return noteAiService.streamAnalysisRaw(userId, id, entry.getTitle(), entry.getContent());
+    }
+
+    /**
+     * POST /api/v1/journal/ai/chat/stream — тело как у /ai/chat.
+     */
+    @PostMapping(path = "/ai/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Streamed AI chat about a journal entry (SSE)",
+            description = "Same as /ai/chat, answer tokens are pushed as `token` events."
+    )
+    public SseEmitter aiChatStream(
+            HttpServletRequest request,
+            @Valid @RequestBody NoteAiRequest body
+    ) {
+        Long userId = getUserId(request);
+        Long journalId = body.getNoteId();
+        log.info("POST /journal/ai/chat/stream - User {} (journalId={})", userId, journalId);
+
+        String title = null, content = null;
+        if (journalId != null) {
+            JournalEntry entry = journalService.findOwned(userId, journalId);
+            title   = entry.getTitle();
+            content = entry.getContent();
+        }
+        List<JournalEntry> related = journalService.findChatContext(
+                userId, body.getMessage(), journalId, CHAT_RELATED_ENTRIES);
+
+        return noteAiService.streamChatRaw(userId, journalId, title, content, body.getMessage(), related);
+    }
 }
@@ -9,8 +9,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.ainote.dto.NoteAiRequest;
 import org.example.ainote.dto.NoteAiResponse;
 import org.example.ainote.service.NoteAiService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * AI-powered endpoints for notes.
@@ -22,6 +24,8 @@ import org.springframework.web.bind.annotation.*;
  *   POST /api/v1/notes/{id}/ai/summary   — 1-2 sentence summary
  *   POST /api/v1/notes/{id}/ai/analyze   — tone, themes, wellness insight, suggestion
  *   POST /api/v1/notes/ai/chat           — free-form Q&A with optional note context
+ *
+ * Each has a /stream twin (text/event-stream) that pushes tokens as they are generated.
  */
 @RestController
 @RequestMapping("/api/v1/notes")
@@ -157,6 +161,72 @@ public class NoteAiController {
         return ResponseEntity.ok(response);
     }
 
+    // ─────────────────────────────────────────────────────────────
+    // 4. STREAMING (SSE)
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * POST /api/v1/notes/{id}/ai/summary/stream
+     *
+     * Server-Sent Events:
+     *   event: token  data: Пользователь описывает
+     *   event: token  data:  усталость и стресс…
+     *   event: done   data: {"noteId":5,"type":"summary","summary":"…", …}
+     *
+     * При ошибке модели — event: error и поток закрывается.
+     */
+    @PostMapping(path = "/{id}/ai/summary/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Streamed note summary (SSE)",
+            description = "Same as /ai/summary, but tokens are pushed as `token` events while the model " +
+                    "generates; the final NoteAiResponse arrives as a `done` event."
+    )
+    public SseEmitter summarizeStream(
+            HttpServletRequest request,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserId(request);
+        log.info("POST /notes/{}/ai/summary/stream - User {}", id, userId);
+        return noteAiService.streamSummary(userId, id);
+    }
+
+    /**
+     * POST /api/v1/notes/{id}/ai/analyze/stream
+     *
+     * token-события содержат сырой JSON модели; разобранный анализ приходит в done.
+     */
+    @PostMapping(path = "/{id}/ai/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Streamed wellness analysis of a note (SSE)",
+            description = "Same as /ai/analyze; `token` events carry the raw model output, " +
+                    "the parsed NoteAiResponse arrives as a `done` event."
+    )
+    public SseEmitter analyzeStream(
+            HttpServletRequest request,
+            @PathVariable Long id
+    ) {
+        Long userId = getUserId(request);
+        log.info("POST /notes/{}/ai/analyze/stream - User {}", id, userId);
+        return noteAiService.streamAnalysis(userId, id);
+    }
+
+    /**
+     * POST /api/v1/notes/ai/chat/stream — тело как у /ai/chat.
+     */
+    @PostMapping(path = "/ai/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Streamed AI chat for notes (SSE)",
+            description = "Same as /ai/chat, answer tokens are pushed as `token` events."
+    )
+    public SseEmitter chatStream(
+            HttpServletRequest request,
+            @Valid @RequestBody NoteAiRequest body
+    ) {
+        Long userId = getUserId(request);
+        log.info("POST /notes/ai/chat/stream - User {} (noteId={})", userId, body.getNoteId());
+        return noteAiService.streamChat(userId, body.getMessage(), body.getNoteId());
+    }
+
     // ─────────────────────────────────────────────────────────────
 
     private Long getUserId(HttpServletRequest request) {
@@ -7,12 +7,15 @@ import org.example.ainote.dto.validation.OnUpdate;
 import org.example.ainote.entity.Note;
 import org.example.ainote.mapper.NoteMapper;
 import org.example.ainote.service.NoteService;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * REST Controller for Notes
@@ -28,18 +31,23 @@ public class NoteController {
     private final NoteMapper noteMapper;
 
     /**
-     * Get all notes for current user
-     * GET /api/v1/notes
+     * Get notes for current user, newest first
+     * GET /api/v1/notes?page=0&size=50
+     *
+     * Тело — по-прежнему массив NoteDTO; заголовок X-Has-Next: true — есть следующая страница.
      */
     @GetMapping
-    public List<NoteDTO> getNotesForCurrentUser(HttpServletRequest request) {
+    public ResponseEntity<List<NoteDTO>> getNotesForCurrentUser(
+            HttpServletRequest request,
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(200) int size) {
         Long userId = (Long) request.getAttribute("userId");
-        log.info("GET /notes - User {} fetching notes", userId);
+        log.info("GET /notes - User {} fetching notes (page={}, size={})", userId, page, size);
 
-        return noteService.getAllByUserId(userId)
-                .stream()
-                .map(noteMapper::toDto)
-                .collect(Collectors.toList());
+        Slice<Note> notes = noteService.getPageByUserId(userId, page, size);
+        return ResponseEntity.ok()
+                .header("X-Has-Next", String.valueOf(notes.hasNext()))
+                .body(noteMapper.toDto(notes.getContent()));
     }
 
     /**
@@ -1,24 +1,45 @@
 package org.example.ainote.controller;
 
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.model.ChatModel;
+import org.example.ainote.service.AiStreamService;
+import org.example.ainote.service.LlmGateway;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chat")
 public class StreamChatController {
 
-    private final ChatClient chatClient;
+    private static final String OPERATION = "quick-summary";
+
+    private final LlmGateway llmGateway;
+    private final AiStreamService aiStreamService;
 
-    public StreamChatController(ChatModel chatModel) {
-        this.chatClient = ChatClient.builder(chatModel).build();
+    public StreamChatController(LlmGateway llmGateway, AiStreamService aiStreamService) {
+        this.llmGateway = llmGateway;
+        this.aiStreamService = aiStreamService;
     }
 
     @GetMapping(path = "/string", produces = MediaType.TEXT_PLAIN_VALUE)
     public String chat(@RequestParam String prompt,
                        @RequestParam(required = false, defaultValue = "en") String lang) {
-        String formattedPrompt = String.format("""
+        // Без пользователя — общая анонимная очередь gateway; одинаковый текст схлопывается
+        return llmGateway.call(null, OPERATION, summaryPrompt(prompt, lang), true);
+    }
+
+    /** То же, что /string, но токены идут SSE-событиями token, в конце — done. */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam String prompt,
+                             @RequestParam(required = false, defaultValue = "en") String lang) {
+        return aiStreamService.stream(OPERATION,
+                llmGateway.stream(null, OPERATION, summaryPrompt(prompt, lang)),
+                full -> Map.of("summary", full));
+    }
+
+    private static String summaryPrompt(String prompt, String lang) {
+        return String.format("""
                 You are a helpful assistant that writes **short summaries** of user notes.
                 Here's the note:
                 %s
@@ -28,10 +49,5 @@ public class StreamChatController {
                 Keep the summary concise — 1–2 sentences, **no introductions or conclusions**.
                 Only output the summary.
                 """, prompt, lang);
-
-        return chatClient.prompt()
-                .user(formattedPrompt)
-                .call()
-                .content();
     }
-}
\ No newline at end of file
+}
@@ -3,30 +3,37 @@ package org.example.ainote.dto;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
+import jakarta.validation.groups.Default;
 import lombok.Data;
 
 /**
  * Request DTO for creating / updating a JournalEntry.
- * На PATCH-запросах (auto-save) все поля необязательны — обновляются только переданные.
+ * На PATCH-запросах (auto-save) все поля необязательны — обновляются только переданные,
+ * но переданные проверяются теми же ограничениями (группа Patch).
  * На POST-запросе title обязателен.
  */
 @Data
 public class JournalEntryRequest {
 
+    /** Группа валидации PATCH: без обязательности полей, ограничения значений — те же */
+    public interface Patch {}
+
     @NotBlank(message = "Title cannot be blank")
-    @Size(max = 500, message = "Title must be ≤ 500 characters")
+    @Pattern(regexp = "(?s).*\\S.*", message = "Title cannot be blank", groups = Patch.class)
+    @Size(max = 500, message = "Title must be ≤ 500 characters", groups = {Default.class, Patch.class})
     private String title;
 
     private String content;
 
     /** Настроение в момент написания (1–5, необязательно) */
-    @Min(value = 1, message = "Mood score must be 1–5")
-    @Max(value = 5, message = "Mood score must be 1–5")
+    @Min(value = 1, message = "Mood score must be 1–5", groups = {Default.class, Patch.class})
+    @Max(value = 5, message = "Mood score must be 1–5", groups = {Default.class, Patch.class})
     private Integer moodScore;
 
     /** Теги через запятую, например: "работа,стресс,планирование" */
-    @Size(max = 500, message = "Tags must be ≤ 500 characters")
+    @Size(max = 500, message = "Tags must be ≤ 500 characters", groups = {Default.class, Patch.class})
     private String tags;
 
     private Boolean isFavorite;
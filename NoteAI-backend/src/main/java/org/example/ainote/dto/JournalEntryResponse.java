@@ -35,4 +35,10 @@ public class JournalEntryResponse {
 
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime updatedAt;
+
+    /**
+     * Версия auto-save (PATCH / POST .../save): монотонна для записи,
+     * по ней фронтенд понимает, какой из своих PATCH уже подтверждён.
+     */
+    private Long version;
 }
@@ -0,0 +1,46 @@
+package org.example.ainote.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Страница результатов GET /api/v1/journal/search.
+ * nextCursor == null — страниц больше нет; иначе передать его в ?cursor= следующего запроса.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalSearchResponse {
+
+    private List<Hit> items;
+    private String nextCursor;
+
+    /**
+     * titleHighlight / snippet — HTML: текст экранирован, совпадения обёрнуты в &lt;mark&gt;.
+     */
+    @Data
+    @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Hit {
+
+        private Long id;
+
+        private String title;
+        private String titleHighlight;
+        private String snippet;
+
+        private Integer moodScore;
+        private String moodEmoji;
+        private String tags;
+
+        private Float rank;
+
+        @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+        private LocalDateTime createdAt;
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.ainote.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Элемент GET /api/v1/journal/tags — нормализованный тег (lowercase) и число записей с ним.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalTagFacet {
+
+    private String tag;
+    private Integer count;
+}
@@ -51,6 +51,9 @@ public class NoteAiResponse {
     /** AI answer to the user's free-form question. */
     private String answer;
 
+    /** true — результат взят из AI-кэша (текст заметки не менялся с прошлого вызова). */
+    private Boolean cached;
+
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime generatedAt;
 }
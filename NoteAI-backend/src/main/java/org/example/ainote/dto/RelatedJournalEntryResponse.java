@@ -0,0 +1,31 @@
+package org.example.ainote.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Элемент GET /api/v1/journal/{id}/related — похожая запись без полного текста.
+ * similarity — косинусное сходство эмбеддингов (0..1, выше — ближе).
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RelatedJournalEntryResponse {
+
+    private Long id;
+    private String title;
+    private String excerpt;        // первые ~200 символов content
+
+    private Integer moodScore;
+    private String moodEmoji;
+    private String tags;
+
+    private Float similarity;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+}
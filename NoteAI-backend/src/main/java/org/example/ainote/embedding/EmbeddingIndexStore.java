@@ -0,0 +1,132 @@
+package org.example.ainote.embedding;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Снимок всех HNSW-индексов в одном файле; читается и пишется через memory-mapped буфер,
+ * поэтому рестарт — это разбор файла без пересчёта эмбеддингов.
+ *
+ * Формат (little-endian):
+ * <pre>
+ *   int magic 'NBEM' | int formatVersion | short len + utf8 modelId | int dims
+ *   long watermarkEpochMillis | int userCount
+ *   на пользователя: long userId | int m | int efConstruction | int entryPoint | int maxLevel | int nodeCount
+ *     на узел: long entryId | long contentHash | float scale | byte deleted | byte level
+ *              | byte[dims] codes | на уровень: short linkCount + int[linkCount]
+ * </pre>
+ * Запись — во временный файл + атомарный rename: оборванный снимок не заменяет предыдущий.
+ */
+final class EmbeddingIndexStore {
+
+    private static final int MAGIC = 0x4E42454D;   // "NBEM"
+    private static final int FORMAT_VERSION = 1;
+
+    record Snapshot(String modelId, int dimensions, long watermarkEpochMillis, Map<Long, HnswIndex> indexes) {}
+
+    private EmbeddingIndexStore() {
+    }
+
+    static void write(Path path, Snapshot snapshot) throws IOException {
+        byte[] model = snapshot.modelId().getBytes(StandardCharsets.UTF_8);
+        long size = 4 + 4 + 2 + model.length + 4 + 8 + 4;
+        for (HnswIndex index : snapshot.indexes().values()) {
+            size += 8 + 4 * 5;
+            for (HnswIndex.Node n : index.nodes) {
+                size += 8 + 8 + 4 + 1 + 1 + snapshot.dimensions();
+                for (int[] links : n.links) size += 2 + 4L * links.length;
+            }
+        }
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(FORMAT_VERSION);
+            buf.putShort((short) model.length).put(model);
+            buf.putInt(snapshot.dimensions());
+            buf.putLong(snapshot.watermarkEpochMillis());
+            buf.putInt(snapshot.indexes().size());
+            for (Map.Entry<Long, HnswIndex> e : snapshot.indexes().entrySet()) {
+                HnswIndex index = e.getValue();
+                buf.putLong(e.getKey());
+                buf.putInt(index.m).putInt(index.efConstruction);
+                buf.putInt(index.entryPoint).putInt(index.maxLevel);
+                buf.putInt(index.nodes.size());
+                for (HnswIndex.Node n : index.nodes) {
+                    buf.putLong(n.entryId).putLong(n.contentHash);
+                    buf.putFloat(n.vector.scale());
+                    buf.put((byte) (n.deleted ? 1 : 0)).put((byte) n.level());
+                    buf.put(n.vector.codes());
+                    for (int[] links : n.links) {
+                        buf.putShort((short) links.length);
+                        for (int l : links) buf.putInt(l);
+                    }
+                }
+            }
+            buf.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** @throws IOException файл повреждён или чужого формата */
+    static Snapshot read(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not an embedding index snapshot: " + path);
+            }
+            byte[] model = new byte[buf.getShort()];
+            buf.get(model);
+            int dims = buf.getInt();
+            long watermark = buf.getLong();
+            int users = buf.getInt();
+
+            Map<Long, HnswIndex> indexes = new HashMap<>(Math.max(16, users * 2));
+            for (int u = 0; u < users; u++) {
+                long userId = buf.getLong();
+                int m = buf.getInt();
+                int efConstruction = buf.getInt();
+                int entryPoint = buf.getInt();
+                int maxLevel = buf.getInt();
+                int count = buf.getInt();
+                List<HnswIndex.Node> nodes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long entryId = buf.getLong();
+                    long hash = buf.getLong();
+                    float scale = buf.getFloat();
+                    boolean deleted = buf.get() != 0;
+                    int level = buf.get();
+                    byte[] codes = new byte[dims];
+                    buf.get(codes);
+                    int[][] links = new int[level + 1][];
+                    for (int l = 0; l <= level; l++) {
+                        int[] ls = new int[buf.getShort()];
+                        for (int j = 0; j < ls.length; j++) ls[j] = buf.getInt();
+                        links[l] = ls;
+                    }
+                    nodes.add(new HnswIndex.Node(entryId, hash, new QuantizedVector(codes, scale), links, deleted));
+                }
+                indexes.put(userId, new HnswIndex(m, efConstruction, userId, nodes, entryPoint, maxLevel));
+            }
+            return new Snapshot(new String(model, StandardCharsets.UTF_8), dims, watermark, indexes);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException / NegativeArraySizeException — обрезанный файл
+            throw new IOException("Corrupted embedding index snapshot " + path + ": " + e, e);
+        }
+    }
+}
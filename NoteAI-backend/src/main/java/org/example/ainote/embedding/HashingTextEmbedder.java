@@ -0,0 +1,83 @@
+package org.example.ainote.embedding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Локальная детерминированная модель: feature hashing слов и символьных триграмм
+ * в вектор фиксированной размерности (знак — от отдельного бита хэша).
+ *
+ * Не понимает синонимов, но ловит общую лексику, а триграммы — общие корни
+ * при разных окончаниях ("работа" / "работой" / "жұмыс" / "жұмыста").
+ * Нужна для работы без провайдера эмбеддингов (Groq их не отдаёт) и в тестах.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.embedding.provider", havingValue = "local", matchIfMissing = true)
+public class HashingTextEmbedder implements TextEmbedder {
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float TRIGRAM_WEIGHT = 0.5f;
+
+    private final int dimensions;
+
+    public HashingTextEmbedder(@Value("${journal.embedding.local.dimensions:256}") int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public String modelId() {
+        return "local-hashing-v1-" + dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] v = new float[dimensions];
+        if (text == null) return v;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int i = 0;
+        int n = lower.length();
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(lower.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(lower.charAt(i))) i++;
+            if (i > start) addToken(v, lower, start, i);
+        }
+        return v;
+    }
+
+    private void addToken(float[] v, String s, int start, int end) {
+        add(v, hash(s, start, end, 0x9E3779B97F4A7C15L), WORD_WEIGHT);
+        if (end - start < 3) return;
+        // Триграммы с границами слова: "^ра", "раб", ..., "та$"
+        String padded = "^" + s.substring(start, end) + "$";
+        for (int j = 0; j + 3 <= padded.length(); j++) {
+            add(v, hash(padded, j, j + 3, 0xC2B2AE3D27D4EB4FL), TRIGRAM_WEIGHT);
+        }
+    }
+
+    private void add(float[] v, long h, float weight) {
+        int bucket = (int) Long.remainderUnsigned(h, dimensions);
+        v[bucket] += (h >>> 63) == 0 ? weight : -weight;
+    }
+
+    /** FNV-1a 64 с затравкой + финальное перемешивание */
+    private static long hash(String s, int start, int end, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = start; i < end; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
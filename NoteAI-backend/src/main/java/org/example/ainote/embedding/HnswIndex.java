@@ -0,0 +1,314 @@
+package org.example.ainote.embedding;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * HNSW-граф (Malkov &amp; Yashunin) по записям одного пользователя, сходство — косинус
+ * int8-векторов.
+ *
+ * Обновление записи = tombstone старого узла + вставка нового; когда tombstone-ов больше,
+ * чем живых узлов, граф перестраивается (compactIfNeeded). Маленькие индексы
+ * (≤ BRUTE_FORCE_LIMIT узлов) ищутся полным перебором — это и точнее, и быстрее графа.
+ *
+ * Не потокобезопасен: JournalEmbeddingService держит на индекс ReadWriteLock
+ * (search — под read lock, он не меняет состояние).
+ */
+final class HnswIndex {
+
+    static final int DEFAULT_M = 16;
+    static final int DEFAULT_EF_CONSTRUCTION = 100;
+    static final int BRUTE_FORCE_LIMIT = 512;
+    private static final int COMPACT_MIN_DELETED = 64;
+
+    final int m;
+    final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    final List<Node> nodes;
+    private final Map<Long, Integer> byEntry = new HashMap<>();
+    int entryPoint = -1;
+    int maxLevel = -1;
+    private int deleted;
+
+    HnswIndex(int m, int efConstruction, long seed) {
+        this(m, efConstruction, seed, new ArrayList<>(), -1, -1);
+    }
+
+    /** Восстановление из снимка (EmbeddingIndexStore) */
+    HnswIndex(int m, int efConstruction, long seed, List<Node> nodes, int entryPoint, int maxLevel) {
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.nodes = nodes;
+        this.entryPoint = entryPoint;
+        this.maxLevel = maxLevel;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            if (n.deleted) deleted++;
+            else byEntry.put(n.entryId, i);
+        }
+    }
+
+    static final class Node {
+        final long entryId;
+        final long contentHash;
+        final QuantizedVector vector;
+        /** links[level] — соседи на уровне, индексы в nodes */
+        final int[][] links;
+        boolean deleted;
+
+        Node(long entryId, long contentHash, QuantizedVector vector, int[][] links, boolean deleted) {
+            this.entryId = entryId;
+            this.contentHash = contentHash;
+            this.vector = vector;
+            this.links = links;
+            this.deleted = deleted;
+        }
+
+        int level() {
+            return links.length - 1;
+        }
+    }
+
+    record Hit(long entryId, float similarity) {}
+
+    private record Scored(int node, float similarity) {}
+
+    private static final Comparator<Scored> BEST_FIRST =
+            Comparator.comparingDouble(Scored::similarity).reversed();
+    private static final Comparator<Scored> WORST_FIRST =
+            Comparator.comparingDouble(Scored::similarity);
+
+    // ═══════════════════════════════════════════════════════════
+    //  MUTATIONS
+    // ═══════════════════════════════════════════════════════════
+
+    /** @return false — запись уже проиндексирована с тем же contentHash */
+    boolean upsert(long entryId, long contentHash, QuantizedVector vector) {
+        Integer existing = byEntry.get(entryId);
+        if (existing != null) {
+            if (nodes.get(existing).contentHash == contentHash) return false;
+            tombstone(existing);
+        }
+        insert(new Node(entryId, contentHash, vector, new int[randomLevel() + 1][], false));
+        return true;
+    }
+
+    boolean remove(long entryId) {
+        Integer existing = byEntry.get(entryId);
+        if (existing == null) return false;
+        tombstone(existing);
+        return true;
+    }
+
+    Long contentHash(long entryId) {
+        Integer idx = byEntry.get(entryId);
+        return idx == null ? null : nodes.get(idx).contentHash;
+    }
+
+    QuantizedVector vector(long entryId) {
+        Integer idx = byEntry.get(entryId);
+        return idx == null ? null : nodes.get(idx).vector;
+    }
+
+    int size() {
+        return byEntry.size();
+    }
+
+    /**
+     * Перестраивает граф без tombstone-ов, если их больше живых узлов.
+     * @return новый индекс или this
+     */
+    HnswIndex compactIfNeeded(long seed) {
+        if (deleted < COMPACT_MIN_DELETED || deleted <= byEntry.size()) return this;
+        HnswIndex rebuilt = new HnswIndex(m, efConstruction, seed);
+        for (Node n : nodes) {
+            if (!n.deleted) rebuilt.upsert(n.entryId, n.contentHash, n.vector);
+        }
+        return rebuilt;
+    }
+
+    private void tombstone(int idx) {
+        Node n = nodes.get(idx);
+        n.deleted = true;
+        byEntry.remove(n.entryId);
+        deleted++;
+    }
+
+    private int randomLevel() {
+        double u = 1.0 - random.nextDouble();   // (0, 1]
+        return (int) Math.min(16, Math.floor(-Math.log(u) * levelMultiplier));
+    }
+
+    private void insert(Node node) {
+        int idx = nodes.size();
+        nodes.add(node);
+        byEntry.put(node.entryId, idx);
+        int level = node.level();
+        for (int l = 0; l <= level; l++) node.links[l] = new int[0];
+
+        if (entryPoint < 0) {
+            entryPoint = idx;
+            maxLevel = level;
+            return;
+        }
+
+        int cur = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            cur = greedy(node.vector, cur, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Scored> candidates = searchLayer(node.vector, cur, efConstruction, l);
+            int[] selected = selectNeighbors(node.vector, candidates, m);
+            node.links[l] = selected;
+            for (int nb : selected) {
+                link(nb, idx, l);
+            }
+            cur = candidates.get(0).node();
+        }
+        if (level > maxLevel) {
+            entryPoint = idx;
+            maxLevel = level;
+        }
+    }
+
+    /** Обратная связь nb → idx; при переполнении список соседей nb прореживается эвристикой */
+    private void link(int nb, int idx, int level) {
+        Node n = nodes.get(nb);
+        int[] old = n.links[level];
+        int[] grown = new int[old.length + 1];
+        System.arraycopy(old, 0, grown, 0, old.length);
+        grown[old.length] = idx;
+        int max = level == 0 ? 2 * m : m;
+        if (grown.length <= max) {
+            n.links[level] = grown;
+            return;
+        }
+        List<Scored> scored = new ArrayList<>(grown.length);
+        for (int g : grown) {
+            scored.add(new Scored(g, n.vector.similarity(nodes.get(g).vector)));
+        }
+        scored.sort(BEST_FIRST);
+        n.links[level] = selectNeighbors(n.vector, scored, max);
+    }
+
+    /**
+     * Эвристика выбора соседей (алгоритм 4 статьи): кандидат берётся, если он ближе к базе,
+     * чем к любому уже выбранному соседу — граф остаётся связным между кластерами.
+     * Недобор добивается ближайшими из отброшенных.
+     */
+    private int[] selectNeighbors(QuantizedVector base, List<Scored> bestFirst, int max) {
+        List<Scored> selected = new ArrayList<>(max);
+        List<Scored> discarded = new ArrayList<>();
+        for (Scored c : bestFirst) {
+            if (selected.size() >= max) break;
+            QuantizedVector cv = nodes.get(c.node()).vector;
+            boolean good = true;
+            for (Scored s : selected) {
+                if (cv.similarity(nodes.get(s.node()).vector) > c.similarity()) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) selected.add(c);
+            else discarded.add(c);
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < max; i++) {
+            selected.add(discarded.get(i));
+        }
+        int[] out = new int[selected.size()];
+        for (int i = 0; i < out.length; i++) out[i] = selected.get(i).node();
+        return out;
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  SEARCH
+    // ═══════════════════════════════════════════════════════════
+
+    /** k ближайших живых записей, лучшие первыми */
+    List<Hit> search(QuantizedVector query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) return List.of();
+        List<Scored> found;
+        if (nodes.size() <= BRUTE_FORCE_LIMIT) {
+            found = new ArrayList<>(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                if (!nodes.get(i).deleted) found.add(new Scored(i, query.similarity(nodes.get(i).vector)));
+            }
+            found.sort(BEST_FIRST);
+        } else {
+            int cur = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                cur = greedy(query, cur, l);
+            }
+            found = searchLayer(query, cur, Math.max(ef, k), 0);
+        }
+
+        List<Hit> hits = new ArrayList<>(k);
+        for (Scored s : found) {
+            Node n = nodes.get(s.node());
+            if (n.deleted) continue;
+            hits.add(new Hit(n.entryId, s.similarity()));
+            if (hits.size() == k) break;
+        }
+        return hits;
+    }
+
+    private int greedy(QuantizedVector q, int start, int level) {
+        int cur = start;
+        float best = q.similarity(nodes.get(cur).vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int nb : nodes.get(cur).links[level]) {
+                float s = q.similarity(nodes.get(nb).vector);
+                if (s > best) {
+                    best = s;
+                    cur = nb;
+                    improved = true;
+                }
+            }
+        }
+        return cur;
+    }
+
+    /** Поиск на одном уровне (алгоритм 2 статьи); результат — до ef узлов, лучшие первыми */
+    private List<Scored> searchLayer(QuantizedVector q, int start, int ef, int level) {
+        BitSet visited = new BitSet(nodes.size());
+        visited.set(start);
+        Scored first = new Scored(start, q.similarity(nodes.get(start).vector));
+        PriorityQueue<Scored> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Scored> results = new PriorityQueue<>(WORST_FIRST);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Scored c = candidates.poll();
+            if (results.size() >= ef && c.similarity() < results.peek().similarity()) break;
+            int[][] links = nodes.get(c.node()).links;
+            if (level >= links.length) continue;
+            for (int nb : links[level]) {
+                if (visited.get(nb)) continue;
+                visited.set(nb);
+                float s = q.similarity(nodes.get(nb).vector);
+                if (results.size() < ef || s > results.peek().similarity()) {
+                    Scored sc = new Scored(nb, s);
+                    candidates.add(sc);
+                    results.add(sc);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+        List<Scored> out = new ArrayList<>(results);
+        out.sort(BEST_FIRST);
+        return out;
+    }
+}
@@ -0,0 +1,381 @@
+package org.example.ainote.embedding;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ainote.entity.JournalEntry;
+import org.example.ainote.event.JournalEntryChangedEvent;
+import org.example.ainote.repository.JournalEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Семантический индекс записей журнала: «похожие записи» и контекст для /journal/ai/chat.
+ *
+ * Пайплайн:
+ *  1. JournalEntryChangedEvent (после коммита create / PUT / flush auto-save / delete)
+ *     → id записи в очередь (дубли схлопываются) → фоновый поток;
+ *  2. поток читает запись, считает хэш title + tags + content — неизменённый текст не
+ *     пересчитывается (auto-save флашит часто, а эмбеддинг дорогой);
+ *  3. TextEmbedder → L2-нормировка + int8 (QuantizedVector) → HNSW-индекс пользователя.
+ *
+ * Все индексы лежат в памяти и периодически пишутся снимком в memory-mapped файл
+ * (EmbeddingIndexStore). На старте снимок читается, затем догоняются записи с
+ * updated_at новее watermark снимка — то, что не успело попасть в снимок перед остановкой.
+ * Удаления между снимком и рестартом отсекаются при чтении записей из БД.
+ *
+ * Метрики: journal.embedding.queue, journal.embedding.vectors (Gauge),
+ * journal.embedding.indexed / skipped / failures (Counter), journal.embedding.search (Timer).
+ */
+@Service
+@Slf4j
+public class JournalEmbeddingService {
+
+    private static final int CATCH_UP_PAGE = 500;
+    private static final int MAX_TEXT_CHARS = 8_000;
+    /** Запас на расхождение часов приложения и БД при выборе watermark */
+    private static final long WATERMARK_MARGIN_MILLIS = 60_000;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    public record Similar(Long entryId, float similarity) {}
+
+    private record Task(Long entryId, Long userId, long enqueuedAtMillis) {}
+
+    private final JournalEntryRepository repo;
+    private final TextEmbedder embedder;
+    private final MeterRegistry meterRegistry;
+    private final Timer searchTimer;
+
+    private final boolean enabled;
+    private final Path snapshotPath;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    /** Один lock на все индексы: запись — только поток индексации и удаления, поиск — под read lock */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, HnswIndex> indexes = new HashMap<>();
+    private volatile boolean dirty;
+
+    private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+    private final Map<Long, Task> queued = new ConcurrentHashMap<>();
+    private volatile long inProgressSince = Long.MAX_VALUE;
+    private volatile long loadedWatermark;
+    private volatile boolean caughtUp;
+    private final Thread worker;
+
+    public JournalEmbeddingService(JournalEntryRepository repo,
+                                   TextEmbedder embedder,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${journal.embedding.enabled:true}") boolean enabled,
+                                   @Value("${journal.embedding.snapshot-path:./data/embeddings/journal-hnsw.idx}") String snapshotPath,
+                                   @Value("${journal.embedding.hnsw.m:16}") int m,
+                                   @Value("${journal.embedding.hnsw.ef-construction:100}") int efConstruction,
+                                   @Value("${journal.embedding.hnsw.ef-search:64}") int efSearch) {
+        this.repo = repo;
+        this.embedder = embedder;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.snapshotPath = Path.of(snapshotPath);
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.searchTimer = Timer.builder("journal.embedding.search")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.worker = new Thread(this::workLoop, "journal-embedding-indexer");
+        this.worker.setDaemon(true);
+
+        meterRegistry.gaugeMapSize("journal.embedding.queue", List.of(), queued);
+        meterRegistry.gauge("journal.embedding.vectors", this, JournalEmbeddingService::vectorCount);
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  LIFECYCLE
+    // ═══════════════════════════════════════════════════════════
+
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        loadSnapshot();
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!enabled) return;
+        worker.interrupt();
+        try {
+            worker.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    private void loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            log.info("No embedding index snapshot at {} — full backfill from journal_entries", snapshotPath);
+            return;
+        }
+        long t0 = System.nanoTime();
+        try {
+            EmbeddingIndexStore.Snapshot s = EmbeddingIndexStore.read(snapshotPath);
+            if (!s.modelId().equals(embedder.modelId()) || s.dimensions() != embedder.dimensions()) {
+                log.info("Embedding model changed ({} → {}) — rebuilding index", s.modelId(), embedder.modelId());
+                return;
+            }
+            indexes = s.indexes();
+            loadedWatermark = s.watermarkEpochMillis();
+            log.info("Embedding index loaded: {} users, {} vectors in {} ms",
+                    indexes.size(), vectorCount(), (System.nanoTime() - t0) / 1_000_000);
+        } catch (IOException e) {
+            log.warn("Embedding index snapshot unreadable, rebuilding: {}", e.getMessage());
+        }
+    }
+
+    /** Пишет снимок, если индекс менялся; watermark — момент, до которого все изменения уже в индексе */
+    @Scheduled(fixedDelayString = "${journal.embedding.snapshot-interval:PT5M}")
+    public void snapshot() {
+        if (!enabled || !dirty) return;
+        long watermark = caughtUp
+                ? Math.min(System.currentTimeMillis(), oldestUnindexedMillis()) - WATERMARK_MARGIN_MILLIS
+                : loadedWatermark;
+        lock.readLock().lock();
+        try {
+            dirty = false;
+            long t0 = System.nanoTime();
+            EmbeddingIndexStore.write(snapshotPath, new EmbeddingIndexStore.Snapshot(
+                    embedder.modelId(), embedder.dimensions(), Math.max(0, watermark), indexes));
+            log.debug("Embedding index snapshot written in {} ms", (System.nanoTime() - t0) / 1_000_000);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Embedding index snapshot failed: {}", e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  EVENTS → QUEUE
+    // ═══════════════════════════════════════════════════════════
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntryChanged(JournalEntryChangedEvent event) {
+        if (!enabled) return;
+        if (event.type() == JournalEntryChangedEvent.Type.DELETED) {
+            remove(event.userId(), event.entryId());
+            return;
+        }
+        Task task = new Task(event.entryId(), event.userId(), System.currentTimeMillis());
+        if (queued.putIfAbsent(event.entryId(), task) == null) {
+            queue.add(task);
+        }
+    }
+
+    private void workLoop() {
+        catchUp();
+        while (!Thread.currentThread().isInterrupted()) {
+            Task task;
+            try {
+                task = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) continue;
+            // Снимаем до обработки: изменение во время эмбеддинга снова попадёт в очередь
+            queued.remove(task.entryId());
+            inProgressSince = task.enqueuedAtMillis();
+            try {
+                JournalEntry entry = repo.findById(task.entryId()).orElse(null);
+                if (entry == null) remove(task.userId(), task.entryId());
+                else index(entry);
+            } catch (RuntimeException e) {
+                meterRegistry.counter("journal.embedding.failures").increment();
+                log.warn("Embedding of journal entry {} failed: {}", task.entryId(), e.getMessage());
+            } finally {
+                inProgressSince = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /** Дозаливка записей, изменённых после watermark снимка (или всех — если снимка нет) */
+    private void catchUp() {
+        LocalDateTime after = LocalDateTime.ofInstant(Instant.ofEpochMilli(loadedWatermark), ZONE);
+        long afterId = 0;
+        int total = 0;
+        long t0 = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<JournalEntry> page = repo.findUpdatedSince(after, afterId, PageRequest.of(0, CATCH_UP_PAGE));
+                if (page.isEmpty()) break;
+                for (JournalEntry e : page) {
+                    index(e);
+                }
+                JournalEntry last = page.get(page.size() - 1);
+                after = last.getUpdatedAt();
+                afterId = last.getId();
+                total += page.size();
+            }
+            caughtUp = true;
+            if (total > 0) {
+                log.info("Embedding catch-up: {} entries checked in {} ms", total, (System.nanoTime() - t0) / 1_000_000);
+            }
+        } catch (RuntimeException e) {
+            // Снимок сохранит старый watermark — догон повторится после рестарта
+            log.warn("Embedding catch-up stopped after {} entries: {}", total, e.getMessage());
+        }
+    }
+
+    private long oldestUnindexedMillis() {
+        Task head = queue.peek();
+        return Math.min(inProgressSince, head == null ? Long.MAX_VALUE : head.enqueuedAtMillis());
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  INDEXING
+    // ═══════════════════════════════════════════════════════════
+
+    void index(JournalEntry entry) {
+        String text = textOf(entry);
+        long hash = contentHash(text);
+        lock.readLock().lock();
+        try {
+            HnswIndex index = indexes.get(entry.getUserId());
+            Long current = index == null ? null : index.contentHash(entry.getId());
+            if (current != null && current == hash) {
+                meterRegistry.counter("journal.embedding.skipped").increment();
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        QuantizedVector vector = QuantizedVector.quantize(embedder.embed(text));
+
+        lock.writeLock().lock();
+        try {
+            HnswIndex index = indexes.computeIfAbsent(entry.getUserId(),
+                    userId -> new HnswIndex(m, efConstruction, userId));
+            if (index.upsert(entry.getId(), hash, vector)) {
+                indexes.put(entry.getUserId(), index.compactIfNeeded(entry.getUserId()));
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        meterRegistry.counter("journal.embedding.indexed").increment();
+    }
+
+    private void remove(Long userId, Long entryId) {
+        lock.writeLock().lock();
+        try {
+            HnswIndex index = indexes.get(userId);
+            if (index != null && index.remove(entryId)) {
+                HnswIndex compacted = index.compactIfNeeded(userId);
+                if (compacted.size() == 0) indexes.remove(userId);
+                else indexes.put(userId, compacted);
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  QUERIES
+    // ═══════════════════════════════════════════════════════════
+
+    /**
+     * Записи пользователя, похожие на entry (сама entry исключена), лучшие первыми.
+     * Если запись ещё не проиндексирована, её вектор считается на лету.
+     */
+    public List<Similar> similarTo(JournalEntry entry, int limit) {
+        QuantizedVector query;
+        lock.readLock().lock();
+        try {
+            HnswIndex index = indexes.get(entry.getUserId());
+            query = index == null ? null : index.vector(entry.getId());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (query == null) {
+            query = QuantizedVector.quantize(embedder.embed(textOf(entry)));
+        }
+        return search(entry.getUserId(), query, entry.getId(), limit);
+    }
+
+    /** Записи пользователя, похожие на произвольный текст (вопрос в чате) */
+    public List<Similar> similarToText(Long userId, String text, Long excludeEntryId, int limit) {
+        return search(userId, QuantizedVector.quantize(embedder.embed(text)), excludeEntryId, limit);
+    }
+
+    private List<Similar> search(Long userId, QuantizedVector query, Long excludeEntryId, int limit) {
+        if (!enabled || limit <= 0) return List.of();
+        return searchTimer.record(() -> {
+            lock.readLock().lock();
+            try {
+                HnswIndex index = indexes.get(userId);
+                if (index == null) return List.<Similar>of();
+                List<Similar> out = new ArrayList<>(limit);
+                for (HnswIndex.Hit hit : index.search(query, limit + 1, efSearch)) {
+                    if (excludeEntryId != null && hit.entryId() == excludeEntryId) continue;
+                    if (out.size() == limit) break;
+                    out.add(new Similar(hit.entryId(), hit.similarity()));
+                }
+                return out;
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private double vectorCount() {
+        lock.readLock().lock();
+        try {
+            return indexes.values().stream().mapToInt(HnswIndex::size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String textOf(JournalEntry e) {
+        StringBuilder sb = new StringBuilder();
+        if (e.getTitle() != null) sb.append(e.getTitle()).append('\n');
+        if (e.getTags() != null) sb.append(e.getTags().replace(',', ' ')).append('\n');
+        if (e.getContent() != null) sb.append(e.getContent());
+        return sb.length() > MAX_TEXT_CHARS ? sb.substring(0, MAX_TEXT_CHARS) : sb.toString();
+    }
+
+    /** FNV-1a 64 по UTF-8 */
+    static long contentHash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
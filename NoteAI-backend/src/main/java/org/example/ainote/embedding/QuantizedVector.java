@@ -0,0 +1,39 @@
+package org.example.ainote.embedding;
+
+/**
+ * L2-нормированный вектор в int8: v[i] ≈ codes[i] * scale (симметричная квантизация по max |v|).
+ * 256 измерений — 260 байт вместо 1 КБ float32; косинус = скалярное произведение.
+ */
+public record QuantizedVector(byte[] codes, float scale) {
+
+    public static QuantizedVector quantize(float[] v) {
+        double norm = 0;
+        for (float x : v) norm += (double) x * x;
+        norm = Math.sqrt(norm);
+        byte[] codes = new byte[v.length];
+        if (norm == 0) return new QuantizedVector(codes, 0f);
+
+        double maxAbs = 0;
+        for (float x : v) maxAbs = Math.max(maxAbs, Math.abs(x / norm));
+        double step = maxAbs / 127.0;
+        for (int i = 0; i < v.length; i++) {
+            codes[i] = (byte) Math.round(v[i] / norm / step);
+        }
+        return new QuantizedVector(codes, (float) step);
+    }
+
+    /** Косинусное сходство (оба вектора нормированы при квантизации) */
+    public float similarity(QuantizedVector other) {
+        byte[] a = codes;
+        byte[] b = other.codes;
+        int acc = 0;
+        for (int i = 0; i < a.length; i++) {
+            acc += a[i] * b[i];
+        }
+        return acc * scale * other.scale;
+    }
+
+    public int dimensions() {
+        return codes.length;
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.ainote.embedding;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Эмбеддинги через Spring AI EmbeddingModel (провайдер с /embeddings, например OpenAI).
+ * Включается journal.embedding.provider=spring-ai.
+ */
+@Component
+@ConditionalOnProperty(name = "journal.embedding.provider", havingValue = "spring-ai")
+public class SpringAiTextEmbedder implements TextEmbedder {
+
+    private final EmbeddingModel embeddingModel;
+    private final String modelName;
+
+    public SpringAiTextEmbedder(EmbeddingModel embeddingModel,
+                                @Value("${spring.ai.openai.embedding.options.model:text-embedding-3-small}") String modelName) {
+        this.embeddingModel = embeddingModel;
+        this.modelName = modelName;
+    }
+
+    @Override
+    public String modelId() {
+        return "spring-ai-" + modelName;
+    }
+
+    @Override
+    public int dimensions() {
+        return embeddingModel.dimensions();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return embeddingModel.embed(text == null ? "" : text);
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.ainote.embedding;
+
+/**
+ * Модель эмбеддингов для индекса похожих записей.
+ * Реализация выбирается свойством journal.embedding.provider:
+ *   local     — HashingTextEmbedder (по умолчанию; детерминированная, без сети)
+ *   spring-ai — SpringAiTextEmbedder поверх настроенной Spring AI EmbeddingModel
+ */
+public interface TextEmbedder {
+
+    /** Идентификатор модели — хранится в снимке индекса; при смене модели индекс строится заново */
+    String modelId();
+
+    int dimensions();
+
+    /** Вектор длины dimensions(); нормировка не требуется — индекс нормирует сам */
+    float[] embed(String text);
+}
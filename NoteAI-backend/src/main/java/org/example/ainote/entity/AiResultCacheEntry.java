@@ -0,0 +1,47 @@
+package org.example.ainote.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сохранённый результат LLM-операции (summary / analysis) для конкретного текста.
+ * Ключ — (operation, promptVersion, contentHash), см. AiResultCache.
+ */
+@Entity
+@Table(name = "ai_result_cache",
+        uniqueConstraints = @UniqueConstraint(name = "uq_ai_result_cache_key",
+                columnNames = {"operation", "prompt_version", "content_hash"}))
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiResultCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "operation", nullable = false, length = 32)
+    private String operation;
+
+    @Column(name = "prompt_version", nullable = false)
+    private Integer promptVersion;
+
+    @Column(name = "content_hash", nullable = false, length = 64, columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    @Column(name = "source_type", nullable = false, length = 16)
+    private String sourceType;
+
+    @Column(name = "source_id", nullable = false)
+    private Long sourceId;
+
+    @Column(name = "result", nullable = false, columnDefinition = "TEXT")
+    private String result;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
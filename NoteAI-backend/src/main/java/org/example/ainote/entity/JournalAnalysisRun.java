@@ -0,0 +1,51 @@
+package org.example.ainote.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Прогресс ночного пакетного анализа журнала за один день.
+ * Строка меняется только через JournalAnalysisRunRepository (атомарные UPDATE),
+ * сущность нужна для чтения курсора.
+ */
+@Entity
+@Table(name = "journal_analysis_runs")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalAnalysisRun {
+
+    @Id
+    @Column(name = "run_date")
+    private LocalDate runDate;
+
+    /** PENDING | RUNNING | PAUSED | COMPLETED */
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "last_user_id", nullable = false)
+    private Long lastUserId;
+
+    @Column(name = "entries_analyzed", nullable = false)
+    private Integer entriesAnalyzed;
+
+    @Column(name = "batches", nullable = false)
+    private Integer batches;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
@@ -73,7 +73,7 @@ public class JournalEntry {
         this.wordCount = countWords(this.content);
     }
 
-    private static int countWords(String text) {
+    public static int countWords(String text) {
         if (text == null || text.isBlank()) return 0;
         return text.trim().split("\\s+").length;
     }
@@ -8,6 +8,7 @@ import java.time.LocalDateTime;
 /**
  * Note Entity
  * ✅ FIXED: Added @GeneratedValue for auto-increment ID
+ * userId — прямой владелец (V5), вместо junction-таблицы note_users_notes
  */
 @Entity
 @Data
@@ -19,6 +20,9 @@ public class Note {
     @Column(name = "id")
     private Long id;
 
+    @Column(name = "user_id")
+    private Long userId;
+
     @Column(name = "title")
     private String title;
 
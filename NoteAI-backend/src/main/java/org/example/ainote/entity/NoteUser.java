@@ -3,12 +3,10 @@ package org.example.ainote.entity;
 import jakarta.persistence.*;
 import lombok.Data;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * NoteUser entity
- * Stores local user data for note ownership tracking
+ * Stores local user data for note ownership tracking.
+ * Заметки ссылаются на пользователя через notes.user_id — коллекции здесь нет.
  */
 @Entity
 @Data
@@ -27,12 +25,4 @@ public class NoteUser {
 
     @Column(name = "name")
     private String name;
-
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL)
-    @JoinTable(
-            name = "note_users_notes",
-            joinColumns = @JoinColumn(name = "user_id"),
-            inverseJoinColumns = @JoinColumn(name = "note_id")
-    )
-    private List<Note> notes = new ArrayList<>();
 }
\ No newline at end of file
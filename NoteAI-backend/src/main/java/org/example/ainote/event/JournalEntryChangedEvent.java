@@ -0,0 +1,22 @@
+package org.example.ainote.event;
+
+/**
+ * Запись журнала создана / изменена / удалена. Публикуется внутри транзакции записи,
+ * слушатели (@TransactionalEventListener) получают её после коммита.
+ */
+public record JournalEntryChangedEvent(Long entryId, Long userId, Type type) {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    public static JournalEntryChangedEvent created(Long entryId, Long userId) {
+        return new JournalEntryChangedEvent(entryId, userId, Type.CREATED);
+    }
+
+    public static JournalEntryChangedEvent updated(Long entryId, Long userId) {
+        return new JournalEntryChangedEvent(entryId, userId, Type.UPDATED);
+    }
+
+    public static JournalEntryChangedEvent deleted(Long entryId, Long userId) {
+        return new JournalEntryChangedEvent(entryId, userId, Type.DELETED);
+    }
+}
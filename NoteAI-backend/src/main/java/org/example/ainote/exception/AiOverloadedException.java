@@ -0,0 +1,14 @@
+package org.example.ainote.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Очередь LLM gateway переполнена (глобально или для пользователя) — клиенту 429.
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class AiOverloadedException extends RuntimeException {
+    public AiOverloadedException(String message) {
+        super(message);
+    }
+}
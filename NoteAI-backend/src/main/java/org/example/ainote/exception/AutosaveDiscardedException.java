@@ -0,0 +1,15 @@
+package org.example.ainote.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Буфер auto-save не смог записать несохранённые правки записи и отбросил их — клиенту 409,
+ * чтобы редактор перечитал запись, а не продолжал писать поверх потерянного состояния.
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class AutosaveDiscardedException extends RuntimeException {
+    public AutosaveDiscardedException(String message) {
+        super(message);
+    }
+}
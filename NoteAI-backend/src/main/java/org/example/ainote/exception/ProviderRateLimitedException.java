@@ -0,0 +1,13 @@
+package org.example.ainote.exception;
+
+import org.springframework.ai.retry.TransientAiException;
+
+/**
+ * LLM-провайдер ответил 429 — LlmGateway приостанавливает выдачу слотов до reset-окна.
+ * Бросается LlmProviderErrorConfig вместо TransientAiException с кодом только в тексте.
+ */
+public class ProviderRateLimitedException extends TransientAiException {
+    public ProviderRateLimitedException(String message) {
+        super(message);
+    }
+}
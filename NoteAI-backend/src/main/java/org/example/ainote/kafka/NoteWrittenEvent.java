@@ -0,0 +1,27 @@
+package org.example.ainote.kafka;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Kafka event note.written (__TypeId__ = noteWritten) → NBCheckinService
+ * отмечает задачу WRITE_NOTE выполненной.
+ *
+ * date — день задачи (Asia/Almaty) на момент записи: поздняя доставка не переносит
+ * выполнение на следующий день. eventId — ключ идемпотентности для consumer-а.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NoteWrittenEvent {
+
+    public static final String TYPE = "noteWritten";
+
+    private String eventId;
+    private Long userId;
+    private String source;      // note | journal
+    private Long sourceId;
+    private String date;        // ISO-8601 date string
+    private long occurredAt;    // epoch millis
+}
@@ -0,0 +1,86 @@
+package org.example.ainote.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ainote.entity.EventOutbox;
+import org.example.ainote.repository.EventOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * Постановка note.written в event_outbox. Вызывается внутри транзакции создания
+ * заметки / записи журнала — событие коммитится вместе с ней (или не появляется вовсе),
+ * после коммита OutboxRelay будится сразу, не дожидаясь следующего poll.
+ */
+@Component
+@Slf4j
+public class NoteWrittenPublisher {
+
+    public static final String SOURCE_NOTE = "note";
+    public static final String SOURCE_JOURNAL = "journal";
+
+    private static final ZoneId ALMATY = ZoneId.of("Asia/Almaty");
+
+    private final EventOutboxRepository outboxRepository;
+    private final OutboxRelay relay;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final String topic;
+
+    public NoteWrittenPublisher(EventOutboxRepository outboxRepository,
+                                OutboxRelay relay,
+                                @Value("${checkin.note-written.kafka.enabled:true}") boolean enabled,
+                                @Value("${kafka.topics.note-written:note.written}") String topic) {
+        this.outboxRepository = outboxRepository;
+        this.relay = relay;
+        this.enabled = enabled;
+        this.topic = topic;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(Long userId, String source, Long sourceId) {
+        if (!enabled) return;
+
+        NoteWrittenEvent event = new NoteWrittenEvent(
+                UUID.randomUUID().toString(),
+                userId,
+                source,
+                sourceId,
+                LocalDate.now(ALMATY).toString(),
+                System.currentTimeMillis());
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + NoteWrittenEvent.TYPE, e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.save(EventOutbox.builder()
+                .topic(topic)
+                .messageKey(String.valueOf(userId))
+                .eventType(NoteWrittenEvent.TYPE)
+                .payload(payload)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+        log.debug("Queued {} for user {} ({} {})", topic, userId, source, sourceId);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.wakeUp();
+            }
+        });
+    }
+}
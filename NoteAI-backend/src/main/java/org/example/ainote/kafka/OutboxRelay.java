@@ -0,0 +1,200 @@
+package org.example.ainote.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.example.ainote.entity.EventOutbox;
+import org.example.ainote.repository.EventOutboxRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.mapping.AbstractJavaTypeMapper;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Публикация event_outbox в Kafka.
+ *
+ * Одна транзакция на пачку: строки берутся FOR UPDATE SKIP LOCKED, отправляются
+ * (value — готовый JSON, __TypeId__ — event_type строки), после подтверждения брокера
+ * помечаются published_at; неудачные получают backoff. Падение между send и коммитом
+ * даст повтор — доставка at-least-once, consumer обязан быть идемпотентным.
+ *
+ * Будится после коммита новой строки (wakeUp) и страхуется периодическим poll —
+ * события, записанные при недоступной Kafka, уходят, когда брокер вернётся.
+ *
+ * Метрики: outbox.relay.published / failed (Counter), outbox.relay.lag (Timer: created_at → publish).
+ */
+@Component
+@Slf4j
+public class OutboxRelay {
+
+    private final EventOutboxRepository outboxRepository;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration publishedRetention;
+
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "outbox-relay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public OutboxRelay(EventOutboxRepository outboxRepository,
+                       KafkaTemplate<String, String> kafkaTemplate,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:100}") int batchSize,
+                       @Value("${outbox.relay.send-timeout:PT10S}") Duration sendTimeout,
+                       @Value("${outbox.relay.base-backoff:PT5S}") Duration baseBackoff,
+                       @Value("${outbox.relay.max-backoff:PT10M}") Duration maxBackoff,
+                       @Value("${outbox.published-retention:P3D}") Duration publishedRetention) {
+        this.outboxRepository = outboxRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        this.publishedRetention = publishedRetention;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.poll-interval:PT5S}")
+    public void poll() {
+        wakeUp();
+    }
+
+    /** Запустить слив outbox, если он ещё не идёт на этом инстансе */
+    public void wakeUp() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            worker.submit(() -> {
+                try {
+                    drain();
+                } catch (Exception e) {
+                    log.error("Outbox drain failed: {}", e.getMessage(), e);
+                } finally {
+                    draining.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            draining.set(false);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  DRAIN
+    // ═══════════════════════════════════════════════════════════
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Integer published = tx.execute(status -> publishBatch());
+            if (published == null || published < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /** @return размер пачки (полная пачка — в outbox может быть ещё) */
+    private int publishBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<EventOutbox> batch = outboxRepository.lockDueBatch(now, batchSize);
+        if (batch.isEmpty()) return 0;
+
+        // Сначала отправляем всю пачку (producer батчит сам), потом ждём подтверждений
+        List<CompletableFuture<SendResult<String, String>>> sends = new ArrayList<>(batch.size());
+        for (EventOutbox e : batch) {
+            ProducerRecord<String, String> record = new ProducerRecord<>(e.getTopic(), e.getMessageKey(), e.getPayload());
+            record.headers().add(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME,
+                    e.getEventType().getBytes(StandardCharsets.UTF_8));
+            try {
+                sends.add(kafkaTemplate.send(record));
+            } catch (RuntimeException ex) {
+                // Нет метаданных топика за max.block.ms — ошибка приходит синхронно
+                sends.add(CompletableFuture.failedFuture(ex));
+            }
+        }
+
+        long deadline = System.nanoTime() + sendTimeout.toNanos();
+        int failed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            EventOutbox e = batch.get(i);
+            try {
+                sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                e.setPublishedAt(LocalDateTime.now());
+                e.setLastError(null);
+                meterRegistry.counter("outbox.relay.published", "topic", e.getTopic()).increment();
+                meterRegistry.timer("outbox.relay.lag", "topic", e.getTopic())
+                        .record(Duration.between(e.getCreatedAt(), e.getPublishedAt()));
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                retryLater(e, now, "interrupted");
+                failed++;
+            } catch (Exception ex) {
+                retryLater(e, now, ex.getMessage());
+                failed++;
+            }
+        }
+        outboxRepository.saveAll(batch);
+
+        if (failed > 0) {
+            meterRegistry.counter("outbox.relay.failed").increment(failed);
+            log.warn("Outbox: {} of {} events not published, will retry", failed, batch.size());
+            return 0;   // брокер недоступен — не крутим слив, ждём backoff / poll
+        }
+        return batch.size();
+    }
+
+    private void retryLater(EventOutbox e, LocalDateTime now, String error) {
+        e.setAttempts(e.getAttempts() + 1);
+        e.setNextAttemptAt(now.plus(backoff(e.getAttempts())));
+        e.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+    }
+
+    /** base * 2^(attempt-1), не больше maxBackoff. Событие не бросается — WRITE_NOTE не должен теряться */
+    private Duration backoff(int attempt) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(attempt - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  CLEANUP
+    // ═══════════════════════════════════════════════════════════
+
+    @Scheduled(cron = "${outbox.cleanup-cron:0 45 3 * * *}")
+    public void purgePublished() {
+        Integer removed = tx.execute(status ->
+                outboxRepository.deletePublishedBefore(LocalDateTime.now().minus(publishedRetention)));
+        log.info("Purged {} published outbox events older than {}", removed, publishedRetention);
+    }
+}
@@ -3,6 +3,7 @@ package org.example.ainote.mapper;
 import org.example.ainote.dto.NoteDTO;
 import org.example.ainote.entity.Note;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 import java.util.List;
 
@@ -11,6 +12,8 @@ public interface NoteMapper {
 
     NoteDTO toDto(Note note);
 
+    /** Владелец проставляется сервисом из токена, не из тела запроса */
+    @Mapping(target = "userId", ignore = true)
     Note toEntity(NoteDTO noteDTO);
 
     List<NoteDTO> toDto(List<Note> notes);
@@ -10,7 +10,6 @@ public interface UserMapper {
 
     UserDTO toDto(NoteUser user);
 
-    @Mapping(target = "notes", expression = "java(new java.util.ArrayList<>())")
     @Mapping(target = "userId", source = "id")
     NoteUser toEntity(UserDTO userDTO);
 }
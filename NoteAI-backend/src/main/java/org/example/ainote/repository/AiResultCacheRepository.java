@@ -0,0 +1,40 @@
+package org.example.ainote.repository;
+
+import org.example.ainote.entity.AiResultCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AiResultCacheRepository extends JpaRepository<AiResultCacheEntry, Long> {
+
+    Optional<AiResultCacheEntry> findByOperationAndPromptVersionAndContentHash(
+            String operation, Integer promptVersion, String contentHash);
+
+    /** Upsert: параллельные промахи по одному ключу не падают на unique constraint */
+    @Modifying
+    @Query(value = """
+            INSERT INTO ai_result_cache (operation, prompt_version, content_hash, source_type, source_id, result, created_at)
+            VALUES (:operation, :promptVersion, :contentHash, :sourceType, :sourceId, :result, CURRENT_TIMESTAMP)
+            ON CONFLICT (operation, prompt_version, content_hash)
+            DO UPDATE SET result = EXCLUDED.result,
+                          source_type = EXCLUDED.source_type,
+                          source_id = EXCLUDED.source_id,
+                          created_at = EXCLUDED.created_at
+            """, nativeQuery = true)
+    void upsert(@Param("operation") String operation,
+                @Param("promptVersion") int promptVersion,
+                @Param("contentHash") String contentHash,
+                @Param("sourceType") String sourceType,
+                @Param("sourceId") Long sourceId,
+                @Param("result") String result);
+
+    /** Инвалидация при изменении / удалении заметки или записи журнала */
+    @Modifying
+    @Query("DELETE FROM AiResultCacheEntry e WHERE e.sourceType = :sourceType AND e.sourceId = :sourceId")
+    int deleteBySource(@Param("sourceType") String sourceType, @Param("sourceId") Long sourceId);
+}
@@ -0,0 +1,31 @@
+package org.example.ainote.repository;
+
+import org.example.ainote.entity.EventOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EventOutboxRepository extends JpaRepository<EventOutbox, Long> {
+
+    /**
+     * Пачка неопубликованных событий, готовых к (повторной) отправке, в порядке записи.
+     * SKIP LOCKED — реплики NoteAI разбирают разные строки без ожидания друг друга.
+     */
+    @Query(value = """
+            SELECT * FROM event_outbox
+            WHERE published_at IS NULL
+              AND next_attempt_at <= :now
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<EventOutbox> lockDueBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM EventOutbox e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,90 @@
+package org.example.ainote.repository;
+
+import org.example.ainote.entity.JournalAnalysisRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Repository
+public interface JournalAnalysisRunRepository extends JpaRepository<JournalAnalysisRun, LocalDate> {
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO journal_analysis_runs (run_date, status, last_user_id, entries_analyzed, batches, started_at)
+            VALUES (:runDate, 'PENDING', 0, 0, 0, CURRENT_TIMESTAMP)
+            ON CONFLICT (run_date) DO NOTHING
+            """, nativeQuery = true)
+    int createIfAbsent(@Param("runDate") LocalDate runDate);
+
+    /** Захват дня одной репликой: 1 — lease получен, 0 — день завершён или занят */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE journal_analysis_runs
+               SET status = 'RUNNING', lease_until = :leaseUntil
+             WHERE run_date = :runDate
+               AND status <> 'COMPLETED'
+               AND (lease_until IS NULL OR lease_until < :now)
+            """, nativeQuery = true)
+    int tryClaim(@Param("runDate") LocalDate runDate,
+                 @Param("now") LocalDateTime now,
+                 @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /** Пользователь обработан целиком — сдвигаем курсор и продлеваем lease */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE journal_analysis_runs
+               SET last_user_id = :userId,
+                   entries_analyzed = entries_analyzed + :entries,
+                   batches = batches + :batches,
+                   lease_until = :leaseUntil
+             WHERE run_date = :runDate
+            """, nativeQuery = true)
+    int advance(@Param("runDate") LocalDate runDate,
+                @Param("userId") Long userId,
+                @Param("entries") int entries,
+                @Param("batches") int batches,
+                @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE journal_analysis_runs
+               SET status = 'COMPLETED', finished_at = :now, lease_until = NULL, last_error = NULL
+             WHERE run_date = :runDate
+            """, nativeQuery = true)
+    int complete(@Param("runDate") LocalDate runDate, @Param("now") LocalDateTime now);
+
+    /** Пользователь пропущен после max-user-attempts отказов провайдера — курсор сдвигается отдельно (advance) */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO journal_analysis_skipped_users (run_date, user_id, attempts, last_error, skipped_at)
+            VALUES (:runDate, :userId, :attempts, :error, :now)
+            ON CONFLICT (run_date, user_id) DO UPDATE
+               SET attempts = EXCLUDED.attempts, last_error = EXCLUDED.last_error, skipped_at = EXCLUDED.skipped_at
+            """, nativeQuery = true)
+    int recordSkippedUser(@Param("runDate") LocalDate runDate,
+                          @Param("userId") Long userId,
+                          @Param("attempts") int attempts,
+                          @Param("error") String error,
+                          @Param("now") LocalDateTime now);
+
+    /** Остановка с сохранением курсора — следующий тик продолжит с last_user_id */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            UPDATE journal_analysis_runs
+               SET status = 'PAUSED', lease_until = NULL, last_error = :error
+             WHERE run_date = :runDate
+            """, nativeQuery = true)
+    int pause(@Param("runDate") LocalDate runDate, @Param("error") String error);
+}
@@ -1,7 +1,10 @@
 package org.example.ainote.repository;
 
 import org.example.ainote.entity.JournalEntry;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -26,4 +29,103 @@ public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long
 
     /** Ownership check */
     boolean existsByIdAndUserId(Long id, Long userId);
+
+    /** Пользователи с записями за [from, to) после курсора — страница для ночного пакетного анализа */
+    @Query("""
+            SELECT DISTINCT e.userId FROM JournalEntry e
+             WHERE e.createdAt >= :from AND e.createdAt < :to AND e.userId > :afterUserId
+             ORDER BY e.userId
+            """)
+    List<Long> findUserIdsWithEntries(@Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to,
+                                      @Param("afterUserId") Long afterUserId,
+                                      Pageable page);
+
+    /** Записи пользователя за [from, to) в порядке создания */
+    @Query("""
+            SELECT e FROM JournalEntry e
+             WHERE e.userId = :userId AND e.createdAt >= :from AND e.createdAt < :to
+             ORDER BY e.id
+            """)
+    List<JournalEntry> findForBatchAnalysis(@Param("userId") Long userId,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to);
+
+    /** Записи, изменённые после (after, afterId) — keyset-страница для догона семантического индекса */
+    @Query("""
+            SELECT e FROM JournalEntry e
+             WHERE e.updatedAt > :after OR (e.updatedAt = :after AND e.id > :afterId)
+             ORDER BY e.updatedAt, e.id
+            """)
+    List<JournalEntry> findUpdatedSince(@Param("after") LocalDateTime after,
+                                        @Param("afterId") Long afterId,
+                                        Pageable page);
+
+    // ─── Tags (V7: journal_entry_tags / journal_tag_counts, поддерживаются триггерами) ───
+
+    /** Записи пользователя с тегом (тег нормализуется той же функцией, что и в триггере), новые сверху */
+    @Query(value = """
+            SELECT e.* FROM journal_entry_tags t
+              JOIN journal_entries e ON e.id = t.entry_id
+             WHERE t.user_id = :userId AND t.tag = journal_normalize_tag(:tag)
+             ORDER BY e.created_at DESC, e.id DESC
+            """, nativeQuery = true)
+    List<JournalEntry> findByUserIdAndTag(@Param("userId") Long userId, @Param("tag") String tag);
+
+    /** Фасеты: тег → число записей, самые частые сверху */
+    @Query(value = """
+            SELECT tag, entry_count AS count FROM journal_tag_counts
+             WHERE user_id = :userId
+             ORDER BY entry_count DESC, tag
+             LIMIT :limit
+            """, nativeQuery = true)
+    List<JournalTagCount> findTagCounts(@Param("userId") Long userId, @Param("limit") int limit);
+
+    // ─── Full-text search (V6: search_vector + idx_je_user_search) ───
+
+    /**
+     * Страница совпадений, упорядоченная по (rank DESC, id DESC).
+     * Keyset: следующая страница начинается строго после (:afterRank, :afterId);
+     * для первой страницы afterRank = +Infinity.
+     * ts_headline считается во внешнем запросе — только для строк страницы, а не для всех совпадений.
+     * Подсветка размечается управляющими символами STX / ETX: в HTML их превращает сервис
+     * уже после экранирования пользовательского текста.
+     */
+    String SEARCH_QUERY = """
+            WITH q AS (
+                SELECT websearch_to_tsquery('russian', :query) || websearch_to_tsquery('simple', :query) AS tsq
+            ),
+            ranked AS (
+                SELECT e.id, e.title, e.content, e.tags, e.mood_score, e.created_at,
+                       CAST(ts_rank_cd(e.search_vector, q.tsq, 1) AS real) AS rank
+                  FROM journal_entries e, q
+                 WHERE e.user_id = :userId
+                   AND e.search_vector @@ q.tsq
+            ),
+            page AS (
+                SELECT * FROM ranked
+                 WHERE rank < :afterRank OR (rank = :afterRank AND id < :afterId)
+                 ORDER BY rank DESC, id DESC
+                 LIMIT :limit
+            )
+            SELECT p.id         AS id,
+                   p.title      AS title,
+                   p.tags       AS tags,
+                   p.mood_score AS moodScore,
+                   p.created_at AS createdAt,
+                   p.rank       AS rank,
+                   ts_headline('russian', coalesce(p.title, ''), q.tsq,
+                               'StartSel=\u0002, StopSel=\u0003, HighlightAll=true') AS titleHighlight,
+                   ts_headline('russian', coalesce(p.content, ''), q.tsq,
+                               'StartSel=\u0002, StopSel=\u0003, MaxFragments=2, MaxWords=25, MinWords=10, FragmentDelimiter=" … "') AS snippet
+              FROM page p, q
+             ORDER BY p.rank DESC, p.id DESC
+            """;
+
+    @Query(value = SEARCH_QUERY, nativeQuery = true)
+    List<JournalSearchRow> search(@Param("userId") Long userId,
+                                  @Param("query") String query,
+                                  @Param("afterRank") float afterRank,
+                                  @Param("afterId") long afterId,
+                                  @Param("limit") int limit);
 }
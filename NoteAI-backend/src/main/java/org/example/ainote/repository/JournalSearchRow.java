@@ -0,0 +1,26 @@
+package org.example.ainote.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка результата {@link JournalEntryRepository#search}: без полного content,
+ * вместо него — snippet из ts_headline с маркерами подсветки STX / ETX.
+ */
+public interface JournalSearchRow {
+
+    Long getId();
+
+    String getTitle();
+
+    String getTags();
+
+    Integer getMoodScore();
+
+    LocalDateTime getCreatedAt();
+
+    Float getRank();
+
+    String getTitleHighlight();
+
+    String getSnippet();
+}
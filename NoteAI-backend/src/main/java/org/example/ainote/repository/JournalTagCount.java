@@ -0,0 +1,11 @@
+package org.example.ainote.repository;
+
+/**
+ * Строка journal_tag_counts: нормализованный тег и число записей пользователя с ним.
+ */
+public interface JournalTagCount {
+
+    String getTag();
+
+    Integer getCount();
+}
@@ -1,12 +1,14 @@
 package org.example.ainote.repository;
 
 import org.example.ainote.entity.Note;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,11 +17,15 @@ public interface NoteRepository extends JpaRepository<Note, Long> {
     Optional<Note> findByTitle(String title);
 
     /**
-     * Find all notes by user ID
+     * Notes of a user, page by page (index idx_notes_user_created).
+     * Slice — без COUNT(*) по всем заметкам пользователя.
      */
-    @Query(value = "SELECT n.* FROM notes n " +
-            "JOIN note_users_notes un ON n.id = un.note_id " +
-            "WHERE un.user_id = :userId",
-            nativeQuery = true)
-    Optional<List<Note>> findAllByUserId(@Param("userId") Long userId);
+    Slice<Note> findByUserId(Long userId, Pageable pageable);
+
+    /** Note with ownership check in one query */
+    Optional<Note> findByIdAndUserId(Long id, Long userId);
+
+    @Modifying
+    @Query("DELETE FROM Note n WHERE n.id = :id AND n.userId = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
 }
\ No newline at end of file
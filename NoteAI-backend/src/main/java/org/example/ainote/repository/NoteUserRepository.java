@@ -14,10 +14,10 @@ public interface NoteUserRepository extends JpaRepository<NoteUser, Long> {
     Optional<NoteUser> findByUsername(String username);
 
     /**
-     * Check if user owns a note
+     * Check if user owns a note — один probe по PK notes
      */
-    @Query(value = "SELECT COUNT(*) > 0 FROM note_users_notes " +
-            "WHERE note_id = :noteId AND user_id = :userId",
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM notes " +
+            "WHERE id = :noteId AND user_id = :userId)",
             nativeQuery = true)
     boolean isNoteOwner(@Param("noteId") Long noteId, @Param("userId") Long userId);
 }
\ No newline at end of file
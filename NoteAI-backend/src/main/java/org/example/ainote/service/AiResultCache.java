@@ -0,0 +1,128 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ainote.repository.AiResultCacheRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Двухуровневый кэш результатов LLM (summary / analysis).
+ *
+ *  - Ключ — (operation, promptVersion, SHA-256(title + '\0' + content)): неизменённый текст
+ *    всегда попадает в кэш, изменённый — никогда, даже без явной инвалидации.
+ *  - L1 — ограниченный LRU в памяти инстанса, L2 — таблица ai_result_cache (общая для реплик).
+ *  - evictSource удаляет записи заметки / записи журнала при PATCH / PUT / DELETE,
+ *    чтобы старые версии текста не копились.
+ *  - Метрика ai.cache.requests (Counter) с тегами operation и result = memory_hit | db_hit | miss.
+ */
+@Service
+@Slf4j
+public class AiResultCache {
+
+    public static final String SOURCE_NOTE = "note";
+    public static final String SOURCE_JOURNAL = "journal";
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /** Ключ кэша; contentHash — hex SHA-256 заголовка и текста */
+    public record Key(String operation, int promptVersion, String contentHash) {
+
+        public static Key of(String operation, int promptVersion, String title, String content) {
+            MessageDigest digest = SHA256.get();
+            digest.reset();
+            digest.update((title != null ? title : "").getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((content != null ? content : "").getBytes(StandardCharsets.UTF_8));
+            return new Key(operation, promptVersion, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        String id() {
+            return operation + ":" + promptVersion + ":" + contentHash;
+        }
+    }
+
+    private record MemoryEntry(String result, String sourceType, Long sourceId) {
+    }
+
+    private final AiResultCacheRepository repository;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MemoryEntry> memory;
+
+    public AiResultCache(AiResultCacheRepository repository,
+                         MeterRegistry meterRegistry,
+                         @Value("${ai.cache.memory.max-size:2000}") int maxMemoryEntries) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+        this.memory = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MemoryEntry> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        });
+        meterRegistry.gaugeMapSize("ai.cache.memory.size", Tags.empty(), memory);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<String> get(Key key) {
+        MemoryEntry hit = memory.get(key.id());
+        if (hit != null) {
+            record(key, "memory_hit");
+            return Optional.of(hit.result());
+        }
+
+        return repository.findByOperationAndPromptVersionAndContentHash(
+                        key.operation(), key.promptVersion(), key.contentHash())
+                .map(entry -> {
+                    memory.put(key.id(), new MemoryEntry(entry.getResult(), entry.getSourceType(), entry.getSourceId()));
+                    record(key, "db_hit");
+                    return entry.getResult();
+                })
+                .or(() -> {
+                    record(key, "miss");
+                    return Optional.empty();
+                });
+    }
+
+    @Transactional
+    public void put(Key key, String sourceType, Long sourceId, String result) {
+        repository.upsert(key.operation(), key.promptVersion(), key.contentHash(), sourceType, sourceId, result);
+        memory.put(key.id(), new MemoryEntry(result, sourceType, sourceId));
+    }
+
+    /**
+     * Удаляет результаты, посчитанные для заметки / записи журнала.
+     * Вызывается из транзакции изменения — удаление в БД откатится вместе с ней.
+     */
+    @Transactional
+    public void evictSource(String sourceType, Long sourceId) {
+        int deleted = repository.deleteBySource(sourceType, sourceId);
+        synchronized (memory) {
+            memory.values().removeIf(e -> e.sourceType().equals(sourceType) && e.sourceId().equals(sourceId));
+        }
+        if (deleted > 0) {
+            log.debug("AI cache: evicted {} entries of {} {}", deleted, sourceType, sourceId);
+        }
+    }
+
+    private void record(Key key, String result) {
+        meterRegistry.counter("ai.cache.requests", "operation", key.operation(), "result", result).increment();
+    }
+}
@@ -0,0 +1,149 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Отдаёт поток токенов модели клиенту как Server-Sent Events.
+ *
+ * Протокол:
+ *   event: token  data: <фрагмент текста>          — по мере генерации
+ *   event: done   data: <NoteAiResponse JSON>       — полный результат (тот же, что у blocking-эндпойнта)
+ *   event: error  data: {"error": "..."}            — ошибка модели; поток закрывается
+ *
+ * Backpressure: токены записываются на boundedElastic (не на event loop HTTP-клиента),
+ * следующий запрашивается у upstream только после того, как предыдущий записан в сокет, —
+ * медленный клиент тормозит чтение ответа Groq, а не копит буфер в памяти.
+ * Отключение клиента (ошибка записи, timeout, completion) отменяет подписку → upstream-запрос.
+ *
+ * Метрики: ai.stream.ttft (Timer, время до первого токена) и
+ * ai.stream.duration (Timer, outcome = completed | cached | cancelled | error), тег operation.
+ */
+@Service
+@Slf4j
+public class AiStreamService {
+
+    private final MeterRegistry meterRegistry;
+    private final Duration timeout;
+
+    public AiStreamService(MeterRegistry meterRegistry,
+                           @Value("${ai.stream.timeout:PT2M}") Duration timeout) {
+        this.meterRegistry = meterRegistry;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @param tokens     поток фрагментов от ChatClient.stream().content()
+     * @param onComplete полный текст → payload события done (вызывается только при успешном завершении)
+     */
+    public SseEmitter stream(String operation, Flux<String> tokens, Function<String, Object> onComplete) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        long start = System.nanoTime();
+
+        BaseSubscriber<String> subscriber = new BaseSubscriber<>() {
+            private final StringBuilder full = new StringBuilder();
+            private boolean firstToken = true;
+            private String outcome = "cancelled";
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(String token) {
+                if (firstToken) {
+                    firstToken = false;
+                    meterRegistry.timer("ai.stream.ttft", "operation", operation)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                full.append(token);
+                try {
+                    emitter.send(SseEmitter.event().name("token").data(token, MediaType.TEXT_PLAIN));
+                    request(1);
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("SSE client gone during {}: {}", operation, e.getMessage());
+                    cancel();
+                }
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                try {
+                    emitter.send(SseEmitter.event().name("done").data(onComplete.apply(full.toString()),
+                            MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                    outcome = "completed";
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("SSE client gone before done of {}: {}", operation, e.getMessage());
+                }
+            }
+
+            @Override
+            protected void hookOnError(Throwable error) {
+                outcome = "error";
+                log.error("AI stream {} failed: {}", operation, error.getMessage());
+                try {
+                    emitter.send(SseEmitter.event().name("error")
+                            .data(Map.of("error", "AI service temporarily unavailable. Please try again."),
+                                    MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    log.debug("SSE client gone before error of {}: {}", operation, e.getMessage());
+                }
+            }
+
+            @Override
+            protected void hookFinally(SignalType type) {
+                meterRegistry.timer("ai.stream.duration", "operation", operation, "outcome", outcome)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+
+        // Клиент ушёл / timeout / сервер закрыл соединение — отменяем запрос к модели
+        emitter.onCompletion(subscriber::dispose);
+        emitter.onTimeout(subscriber::dispose);
+        emitter.onError(e -> subscriber.dispose());
+
+        tokens.filter(token -> token != null && !token.isEmpty())
+                .publishOn(Schedulers.boundedElastic(), 1)
+                .subscribe(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Готовый результат (например, из AiResultCache) в том же SSE-протоколе:
+     * один token с полным текстом и сразу done.
+     */
+    public SseEmitter replay(String operation, String text, Object donePayload) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        long start = System.nanoTime();
+        try {
+            emitter.send(SseEmitter.event().name("token").data(text, MediaType.TEXT_PLAIN));
+            emitter.send(SseEmitter.event().name("done").data(donePayload, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        meterRegistry.timer("ai.stream.ttft", "operation", operation)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meterRegistry.timer("ai.stream.duration", "operation", operation, "outcome", "cached")
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return emitter;
+    }
+}
@@ -0,0 +1,759 @@
+package org.example.ainote.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ainote.dto.JournalEntryRequest;
+import org.example.ainote.entity.JournalEntry;
+import org.example.ainote.event.JournalEntryChangedEvent;
+import org.example.ainote.exception.AutosaveDiscardedException;
+import org.example.ainote.exception.BadRequestException;
+import org.example.ainote.repository.JournalEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Буфер auto-save для PATCH /journal/{id}: фронтенд шлёт PATCH каждые 2–3 секунды набора,
+ * а в БД уходит только последнее состояние записи.
+ *
+ * Путь PATCH:
+ *  0. переданные поля проверяются по ограничениям таблицы (длина title / tags, mood 1–5) —
+ *     патч, который flush не сможет записать, не подтверждается, а отклоняется с 400;
+ *  1. первый PATCH серии читает запись (проверка владельца + снимок), следующие — только память;
+ *  2. поля мержатся в снимок, запись получает новый version (монотонный, переживает рестарт);
+ *  3. патч дописывается в локальный append-only WAL и fsync-ается (group commit:
+ *     один force() покрывает все патчи, записанные к этому моменту) — только после этого ack.
+ *
+ * Flush (один SELECT + один UPDATE на запись, а не на каждый PATCH):
+ *  - idle — с последнего PATCH прошло idle-flush;
+ *  - interval — самый старый несохранённый PATCH старше max-delay;
+ *  - explicit / read — POST /journal/{id}/save, любое чтение или изменение записи
+ *    (GET, PUT, DELETE, AI) сначала сбрасывает её буфер — read-your-writes;
+ *  - overflow — буфер больше max-pending, запись сбрасывается сразу;
+ *  - shutdown — @PreDestroy.
+ * После коммита в WAL пишется маркер flush(version). На старте WAL проигрывается:
+ * патчи новее последнего маркера применяются к БД, затем WAL обнуляется. Запись, на которой
+ * replay падает, откладывается в journal-autosave.quarantine рядом с WAL — старт не прерывается.
+ * Упавший flush повторяется следующим тиком; после max-flush-attempts неудач подряд
+ * запись выбрасывается из буфера, в WAL пишется маркер discard(version) (replay её
+ * пропускает), а ошибка отдаётся 409 на следующий PATCH / POST .../save этой записи.
+ * WAL компактится, когда буфер пуст (truncate) или файл больше wal-max-bytes
+ * (перезапись текущими состояниями буфера) — и только если нет патча, получившего version,
+ * но ещё не дописанного в WAL: иначе его строка легла бы в свежий файл после flush-маркера,
+ * который компактизация уже стёрла, и replay откатил бы запись к этому патчу.
+ *
+ * PUT / DELETE начинаются с flushForWrite: буфер записи сбрасывается, и до конца их транзакции
+ * PATCH этой записи ждут на writeLock — иначе PATCH, пришедший между flush и коммитом PUT,
+ * построил бы снимок из строки до PUT и затёр бы PUT ближайшим flush.
+ *
+ * Буфер локален для инстанса: при нескольких репликах PATCH одной записи должны попадать
+ * на одну реплику (sticky routing по id записи).
+ *
+ * Метрики: journal.autosave.patches, journal.autosave.db.writes (Counter),
+ * journal.autosave.flushes (Counter, reason), journal.autosave.db.writes.per.patch (Gauge —
+ * сколько UPDATE в БД приходится на один auto-save PATCH, т.е. на одну «порцию» нажатий клавиш;
+ * без буфера это 1.0), journal.autosave.pending, journal.autosave.wal.bytes (Gauge),
+ * journal.autosave.flush.failures, journal.autosave.flush.dropped,
+ * journal.autosave.replay.quarantined (Counter).
+ */
+@Service
+@Slf4j
+public class JournalAutosaveBuffer {
+
+    private static final String WAL_FILE = "journal-autosave.wal";
+    private static final String QUARANTINE_FILE = "journal-autosave.quarantine";
+    private static final int WRITE_LOCK_STRIPES = 64;
+
+    /** Снимок записи после применения патча + его version — ответ на PATCH */
+    public record Ack(JournalEntry entry, long version) {}
+
+    /** Несохранённые правки, выброшенные после max-flush-attempts неудач flush */
+    private record Discarded(Long userId, long version, String error) {}
+
+    private final JournalEntryRepository repo;
+    private final AiResultCache aiResultCache;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final Duration idleFlush;
+    private final Duration maxDelay;
+    private final int maxPending;
+    private final int maxFlushAttempts;
+    private final Path walPath;
+    private final boolean walFsync;
+    private final long walMaxBytes;
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Discarded> discarded = new ConcurrentHashMap<>();
+    /** PATCH ↔ PUT / DELETE одной записи; полосы по id, чтобы не держать замок на каждую запись */
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCK_STRIPES];
+    /** Версии монотонны и между рестартами: база — текущее время в микросекундах */
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Counter patches;
+    private final Counter writes;
+
+    // WAL: append под walLock, fsync под syncLock (group commit)
+    private final Object walLock = new Object();
+    private final Object syncLock = new Object();
+    private FileChannel wal;
+    private long walWritten;
+    private long walSynced;
+    /** Патчи между выдачей version и записью своей строки в WAL */
+    private final AtomicInteger walPatchesInFlight = new AtomicInteger();
+
+    public JournalAutosaveBuffer(JournalEntryRepository repo,
+                                 AiResultCache aiResultCache,
+                                 PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${journal.autosave.enabled:true}") boolean enabled,
+                                 @Value("${journal.autosave.idle-flush:PT5S}") Duration idleFlush,
+                                 @Value("${journal.autosave.max-delay:PT15S}") Duration maxDelay,
+                                 @Value("${journal.autosave.max-pending:10000}") int maxPending,
+                                 @Value("${journal.autosave.max-flush-attempts:5}") int maxFlushAttempts,
+                                 @Value("${journal.autosave.wal-dir:./data/autosave}") String walDir,
+                                 @Value("${journal.autosave.wal-fsync:true}") boolean walFsync,
+                                 @Value("${journal.autosave.wal-max-bytes:16777216}") long walMaxBytes) {
+        this.repo = repo;
+        this.aiResultCache = aiResultCache;
+        // Собственная транзакция: flush из findOwned не должен откатываться вместе с вызывающим методом
+        this.tx = new TransactionTemplate(transactionManager);
+        this.tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.idleFlush = idleFlush;
+        this.maxDelay = maxDelay;
+        this.maxPending = maxPending;
+        this.maxFlushAttempts = Math.max(1, maxFlushAttempts);
+        this.walPath = Path.of(walDir).resolve(WAL_FILE);
+        this.walFsync = walFsync;
+        this.walMaxBytes = walMaxBytes;
+
+        for (int i = 0; i < writeLocks.length; i++) writeLocks[i] = new ReentrantLock();
+
+        this.patches = meterRegistry.counter("journal.autosave.patches");
+        this.writes = Counter.builder("journal.autosave.db.writes").register(meterRegistry);
+        meterRegistry.gauge("journal.autosave.db.writes.per.patch", this,
+                b -> b.patches.count() == 0 ? 0.0 : b.writes.count() / b.patches.count());
+        meterRegistry.gaugeMapSize("journal.autosave.pending", List.of(), pending);
+        meterRegistry.gauge("journal.autosave.wal.bytes", this, b -> b.walWritten);
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  LIFECYCLE
+    // ═══════════════════════════════════════════════════════════
+
+    /** Проигрывает WAL предыдущего запуска до приёма первых PATCH */
+    @PostConstruct
+    void start() {
+        if (!enabled) return;
+        try {
+            Files.createDirectories(walPath.getParent());
+            if (Files.exists(walPath)) {
+                replay(readWal(walPath));
+            }
+            wal = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            walWritten = 0;
+            walSynced = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open autosave WAL " + walPath, e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!enabled) return;
+        for (Pending p : List.copyOf(pending.values())) {
+            flush(p, "shutdown");
+        }
+        synchronized (walLock) {
+            try {
+                if (pending.isEmpty()) {
+                    wal.truncate(0);
+                }
+                wal.force(true);
+                wal.close();
+            } catch (IOException e) {
+                log.warn("Autosave WAL close failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  PATCH / FLUSH API
+    // ═══════════════════════════════════════════════════════════
+
+    /**
+     * Принимает auto-save PATCH. Возвращает снимок записи с применённым патчем;
+     * в БД он попадёт при ближайшем flush, но уже переживает падение процесса (WAL).
+     *
+     * @throws BadRequestException      поле нарушает ограничения таблицы — патч не принят
+     * @throws IllegalArgumentException запись не найдена или принадлежит другому пользователю
+     * @throws AutosaveDiscardedException прошлые правки записи не удалось сохранить и они выброшены
+     */
+    public Ack patch(Long userId, Long id, JournalEntryRequest req) {
+        checkConstraints(req);
+        patches.increment();
+        Pending p;
+        Ack ack;
+        WalRecord record;
+        ReentrantLock writeLock = writeLock(id);
+        writeLock.lock();
+        try {
+            while (true) {
+                p = pending.get(id);
+                if (p == null) {
+                    checkDiscarded(userId, id);
+                    JournalEntry loaded = repo.findByIdAndUserId(id, userId)
+                            .orElseThrow(() -> new IllegalArgumentException(
+                                    "Journal entry " + id + " not found or access denied"));
+                    Pending fresh = new Pending(id, userId, loaded);
+                    p = pending.putIfAbsent(id, fresh);
+                    if (p == null) p = fresh;
+                }
+                if (!p.userId.equals(userId)) {
+                    throw new IllegalArgumentException("Journal entry " + id + " not found or access denied");
+                }
+
+                synchronized (p) {
+                    if (p.closed) continue;   // запись только что сброшена и удалена из буфера — заново
+                    if (enabled) walPatchesInFlight.incrementAndGet();
+                    long version = versions.incrementAndGet();
+                    p.apply(req, version);
+                    ack = new Ack(copy(p.state), version);
+                    record = WalRecord.patch(id, userId, version, req);
+                }
+                break;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (!enabled) {
+            flush(p, "direct");
+            return ack;
+        }
+        if (!appendDurably(record, true)) {
+            // WAL недоступен — гарантию даёт только синхронная запись в БД
+            flush(p, "wal-failure");
+        } else if (pending.size() > maxPending) {
+            flush(p, "overflow");
+        }
+        return ack;
+    }
+
+    /**
+     * Бросает AutosaveDiscardedException (один раз), если несохранённые правки записи были
+     * выброшены после max-flush-attempts неудач flush — клиент должен перечитать запись.
+     */
+    public void checkDiscarded(Long userId, Long id) {
+        Discarded d = discarded.get(id);
+        if (d == null || !d.userId().equals(userId) || !discarded.remove(id, d)) return;
+        throw new AutosaveDiscardedException("Unsaved changes of journal entry " + id + " up to version "
+                + d.version() + " could not be saved and were discarded: " + d.error());
+    }
+
+    /**
+     * Перед PUT / DELETE: сбрасывает буфер записи и держит её writeLock до завершения
+     * транзакции вызывающего — новые PATCH снимут снимок уже с закоммиченной строки.
+     * Вне транзакции работает как flush(id, "write").
+     */
+    public long flushForWrite(Long id) {
+        ReentrantLock writeLock = writeLock(id);
+        writeLock.lock();
+        boolean held = false;
+        try {
+            // PUT / DELETE перезаписывают запись целиком — о выброшенных правках сообщать уже некому
+            discarded.remove(id);
+            long version = flush(id, "write");
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        writeLock.unlock();
+                    }
+                });
+                held = true;
+            }
+            return version;
+        } finally {
+            if (!held) writeLock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает буфер записи в БД (явное сохранение / перед чтением).
+     *
+     * @return сохранённый version или 0, если в буфере ничего не было
+     */
+    public long flush(Long id, String reason) {
+        Pending p = pending.get(id);
+        return p == null ? 0 : flush(p, reason);
+    }
+
+    /** Сбрасывает все записи пользователя — перед списками / поиском */
+    public void flushUser(Long userId) {
+        if (pending.isEmpty()) return;
+        for (Pending p : pending.values()) {
+            if (p.userId.equals(userId)) flush(p, "read");
+        }
+    }
+
+    /** Тик: idle / max-delay flush и компактизация WAL */
+    @Scheduled(fixedDelayString = "${journal.autosave.tick:PT0.5S}")
+    public void tick() {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        for (Pending p : pending.values()) {
+            String reason = p.dueReason(now, idleFlush.toNanos(), maxDelay.toNanos());
+            if (reason != null) flush(p, reason);
+        }
+        compactWal();
+    }
+
+    /**
+     * Flush сериализован на запись (flushLock), чтобы более старый снимок не перезаписал новый;
+     * PATCH-и в это время продолжают приниматься в память.
+     */
+    private long flush(Pending p, String reason) {
+        p.flushLock.lock();
+        try {
+            Fields fields;
+            synchronized (p) {
+                if (p.closed || p.version == p.flushedVersion) return p.flushedVersion;
+                fields = Fields.of(p.state, p.version);
+            }
+
+            boolean exists;
+            try {
+                exists = Boolean.TRUE.equals(tx.execute(status -> write(p.entryId, fields)));
+            } catch (RuntimeException e) {
+                meterRegistry.counter("journal.autosave.flush.failures").increment();
+                int failures;
+                synchronized (p) {
+                    failures = ++p.failures;
+                }
+                if (failures < maxFlushAttempts) {
+                    // Остаётся в буфере (и в WAL) — следующий тик повторит
+                    log.warn("Autosave flush of journal entry {} failed ({}/{}): {}",
+                            p.entryId, failures, maxFlushAttempts, e.getMessage());
+                    return p.flushedVersion;
+                }
+                discard(p, e);
+                return p.flushedVersion;
+            }
+            writes.increment();
+            meterRegistry.counter("journal.autosave.flushes", "reason", reason).increment();
+            if (enabled) appendDurably(WalRecord.flushed(p.entryId, fields.version()), false);
+
+            synchronized (p) {
+                p.flushedVersion = fields.version();
+                p.failures = 0;
+                if (!exists || p.version == fields.version()) {
+                    p.closed = true;
+                    pending.remove(p.entryId, p);
+                } else {
+                    p.firstUnflushedAt = System.nanoTime();
+                }
+            }
+            return fields.version();
+        } finally {
+            p.flushLock.unlock();
+        }
+    }
+
+    /**
+     * Запись, которую flush раз за разом не может сохранить, убирается из буфера: иначе она
+     * повторялась бы каждый тик, держала WAL от компактизации и после рестарта снова падала бы
+     * в replay. Маркер discard в WAL не даёт replay её поднять; патчи с большей version
+     * (новая серия после ошибки) к нему не относятся.
+     */
+    private void discard(Pending p, RuntimeException cause) {
+        long version;
+        synchronized (p) {
+            p.closed = true;
+            pending.remove(p.entryId, p);
+            version = p.version;
+        }
+        if (enabled) appendDurably(WalRecord.discarded(p.entryId, version), false);
+        discarded.put(p.entryId, new Discarded(p.userId, version, cause.getMessage()));
+        meterRegistry.counter("journal.autosave.flush.dropped").increment();
+        log.error("Autosave flush of journal entry {} failed {} times, unsaved changes up to v{} discarded",
+                p.entryId, maxFlushAttempts, version, cause);
+    }
+
+    /**
+     * Ограничения таблицы journal_entries для переданных полей — то, на чём упал бы flush.
+     * Контроллер проверяет то же через @Validated(Patch); здесь — для остальных вызывающих.
+     */
+    static void checkConstraints(JournalEntryRequest req) {
+        if (req.getTitle() != null && (req.getTitle().isBlank() || req.getTitle().length() > 500)) {
+            throw new BadRequestException("Title must be non-blank and ≤ 500 characters");
+        }
+        if (req.getTags() != null && req.getTags().length() > 500) {
+            throw new BadRequestException("Tags must be ≤ 500 characters");
+        }
+        if (req.getMoodScore() != null && (req.getMoodScore() < 1 || req.getMoodScore() > 5)) {
+            throw new BadRequestException("Mood score must be 1–5");
+        }
+    }
+
+    /** Один SELECT + UPDATE; false — запись уже удалена */
+    private boolean write(Long id, Fields f) {
+        JournalEntry entry = repo.findById(id).orElse(null);
+        if (entry == null) return false;
+        if (!Objects.equals(entry.getTitle(), f.title()) || !Objects.equals(entry.getContent(), f.content())) {
+            aiResultCache.evictSource(AiResultCache.SOURCE_JOURNAL, id);
+        }
+        entry.setTitle(f.title());
+        entry.setContent(f.content());
+        entry.setMoodScore(f.moodScore());
+        entry.setTags(f.tags());
+        entry.setIsFavorite(f.isFavorite());
+        repo.save(entry);
+        eventPublisher.publishEvent(JournalEntryChangedEvent.updated(id, entry.getUserId()));
+        return true;
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  WAL
+    // ═══════════════════════════════════════════════════════════
+
+    /**
+     * Дописывает запись и дожидается fsync; false — WAL недоступен.
+     * inFlight — патч, учтённый в walPatchesInFlight: снимается сразу после write, до fsync.
+     */
+    private boolean appendDurably(WalRecord record, boolean inFlight) {
+        long end;
+        try {
+            byte[] line = (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (walLock) {
+                try {
+                    ByteBuffer buf = ByteBuffer.wrap(line);
+                    while (buf.hasRemaining()) wal.write(buf);
+                    walWritten += line.length;
+                    end = walWritten;
+                } finally {
+                    if (inFlight) {
+                        walPatchesInFlight.decrementAndGet();
+                        inFlight = false;
+                    }
+                }
+            }
+            if (!walFsync) return true;
+            synchronized (syncLock) {
+                if (walSynced < end) {
+                    long target;
+                    synchronized (walLock) {
+                        target = walWritten;
+                    }
+                    wal.force(false);
+                    walSynced = target;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            if (inFlight) walPatchesInFlight.decrementAndGet();   // не дошли до write
+            log.error("Autosave WAL append failed, falling back to synchronous write: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Пустой буфер — WAL обнуляется; иначе при превышении wal-max-bytes
+     * перезаписывается полными состояниями незакоммиченных записей.
+     * Пропускается, пока есть патч с выданной version, но не записанный в WAL: его запись
+     * могла уже уйти в БД flush-ем (и пропасть из pending), а строка P ляжет после
+     * компактизации без маркера F. Проверка под walLock, в котором этот патч и допишется.
+     */
+    private void compactWal() {
+        synchronized (syncLock) {
+            synchronized (walLock) {
+                try {
+                    if (walWritten == 0) return;
+                    if (walPatchesInFlight.get() > 0) return;   // следующий тик
+                    if (pending.isEmpty()) {
+                        wal.truncate(0);
+                        wal.position(0);
+                        walWritten = 0;
+                        walSynced = 0;
+                        return;
+                    }
+                    if (walWritten < walMaxBytes) return;
+
+                    Path tmp = walPath.resolveSibling(WAL_FILE + ".tmp");
+                    StringBuilder out = new StringBuilder();
+                    for (Pending p : pending.values()) {
+                        synchronized (p) {
+                            if (p.closed || p.version == p.flushedVersion) continue;
+                            out.append(objectMapper.writeValueAsString(WalRecord.snapshot(p))).append('\n');
+                        }
+                    }
+                    byte[] bytes = out.toString().getBytes(StandardCharsets.UTF_8);
+                    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        ByteBuffer buf = ByteBuffer.wrap(bytes);
+                        while (buf.hasRemaining()) ch.write(buf);
+                        ch.force(true);
+                    }
+                    wal.close();
+                    Files.move(tmp, walPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    wal = FileChannel.open(walPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    walWritten = bytes.length;
+                    walSynced = bytes.length;
+                    log.debug("Autosave WAL compacted to {} bytes", bytes.length);
+                } catch (IOException e) {
+                    log.warn("Autosave WAL compaction failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    List<WalRecord> readWal(Path path) throws IOException {
+        List<WalRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    records.add(objectMapper.readValue(line, WalRecord.class));
+                } catch (JsonProcessingException e) {
+                    // Оборванная последняя строка (падение посреди write) — её патч не был подтверждён
+                    log.warn("Skipping torn autosave WAL record: {}", e.getOriginalMessage());
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Патчи новее последнего flush-маркера применяются поверх строки в БД по порядку version.
+     * Порядок строк в файле не важен — append идёт вне блокировки записи.
+     * Каждая запись — отдельная транзакция: если она падает (битые данные, нарушение
+     * ограничений), её патчи уходят в карантин, а replay продолжается со следующей.
+     */
+    void replay(List<WalRecord> records) {
+        Map<Long, List<WalRecord>> byEntry = new HashMap<>();
+        Map<Long, Long> flushedVersion = new HashMap<>();
+        long maxVersion = 0;
+        for (WalRecord r : records) {
+            maxVersion = Math.max(maxVersion, r.version());
+            if (WalRecord.FLUSHED.equals(r.type()) || WalRecord.DISCARDED.equals(r.type())) {
+                flushedVersion.merge(r.entryId(), r.version(), Math::max);
+            } else {
+                byEntry.computeIfAbsent(r.entryId(), k -> new ArrayList<>()).add(r);
+            }
+        }
+        versions.accumulateAndGet(maxVersion, Math::max);
+
+        int applied = 0;
+        for (Map.Entry<Long, List<WalRecord>> e : byEntry.entrySet()) {
+            long flushed = flushedVersion.getOrDefault(e.getKey(), 0L);
+            List<WalRecord> unflushed = e.getValue().stream()
+                    .filter(r -> r.version() > flushed)
+                    .sorted(Comparator.comparingLong(WalRecord::version))
+                    .toList();
+            if (unflushed.isEmpty()) continue;
+
+            Boolean ok;
+            try {
+                ok = tx.execute(status -> {
+                    JournalEntry entry = repo.findByIdAndUserId(e.getKey(), unflushed.get(0).userId()).orElse(null);
+                    if (entry == null) return false;
+                    String title = entry.getTitle();
+                    String content = entry.getContent();
+                    unflushed.forEach(r -> r.applyTo(entry));
+                    if (!Objects.equals(title, entry.getTitle()) || !Objects.equals(content, entry.getContent())) {
+                        aiResultCache.evictSource(AiResultCache.SOURCE_JOURNAL, entry.getId());
+                    }
+                    repo.save(entry);
+                    eventPublisher.publishEvent(JournalEntryChangedEvent.updated(entry.getId(), entry.getUserId()));
+                    return true;
+                });
+            } catch (RuntimeException ex) {
+                log.error("Autosave WAL replay of journal entry {} failed, {} record(s) quarantined",
+                        e.getKey(), unflushed.size(), ex);
+                quarantine(unflushed);
+                meterRegistry.counter("journal.autosave.replay.quarantined").increment();
+                continue;
+            }
+            if (Boolean.TRUE.equals(ok)) {
+                applied++;
+                writes.increment();
+                meterRegistry.counter("journal.autosave.flushes", "reason", "replay").increment();
+            }
+        }
+        if (!byEntry.isEmpty()) {
+            log.info("Autosave WAL replay: {} record(s), {} entr(ies) restored", records.size(), applied);
+        }
+    }
+
+    /** Дописывает патчи в файл карантина: WAL после replay обнуляется, а они не должны пропасть молча */
+    private void quarantine(List<WalRecord> records) {
+        Path path = walPath.resolveSibling(QUARANTINE_FILE);
+        try {
+            StringBuilder out = new StringBuilder();
+            for (WalRecord r : records) {
+                out.append(objectMapper.writeValueAsString(r)).append('\n');
+            }
+            Files.writeString(path, out, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            log.error("Cannot write autosave quarantine {}: {}", path, ex.getMessage());
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════
+    //  INTERNALS
+    // ═══════════════════════════════════════════════════════════
+
+    private ReentrantLock writeLock(Long id) {
+        return writeLocks[Long.hashCode(id) & (WRITE_LOCK_STRIPES - 1)];
+    }
+
+    private static JournalEntry copy(JournalEntry e) {
+        return JournalEntry.builder()
+                .id(e.getId())
+                .userId(e.getUserId())
+                .title(e.getTitle())
+                .content(e.getContent())
+                .moodScore(e.getMoodScore())
+                .tags(e.getTags())
+                .isFavorite(e.getIsFavorite())
+                .wordCount(e.getWordCount())
+                .createdAt(e.getCreatedAt())
+                .updatedAt(e.getUpdatedAt())
+                .build();
+    }
+
+    /** Несохранённое состояние записи; поля state / version — под монитором объекта */
+    private static final class Pending {
+        final Long entryId;
+        final Long userId;
+        final JournalEntry state;
+        final ReentrantLock flushLock = new ReentrantLock();
+        long version;
+        long flushedVersion;
+        long firstUnflushedAt;
+        long lastPatchAt;
+        int failures;
+        boolean closed;
+
+        Pending(Long entryId, Long userId, JournalEntry loaded) {
+            this.entryId = entryId;
+            this.userId = userId;
+            this.state = copy(loaded);
+        }
+
+        void apply(JournalEntryRequest req, long newVersion) {
+            if (req.getTitle() != null)      state.setTitle(req.getTitle());
+            if (req.getContent() != null)    state.setContent(req.getContent());
+            if (req.getMoodScore() != null)  state.setMoodScore(req.getMoodScore());
+            if (req.getTags() != null)       state.setTags(req.getTags());
+            if (req.getIsFavorite() != null) state.setIsFavorite(req.getIsFavorite());
+            // Производные поля ack — как их выставит @PreUpdate при flush
+            state.setWordCount(JournalEntry.countWords(state.getContent()));
+            state.setUpdatedAt(LocalDateTime.now());
+            long now = System.nanoTime();
+            if (version == flushedVersion) firstUnflushedAt = now;
+            lastPatchAt = now;
+            version = newVersion;
+        }
+
+        synchronized String dueReason(long now, long idleNanos, long maxDelayNanos) {
+            if (closed || version == flushedVersion) return null;
+            if (now - lastPatchAt >= idleNanos) return "idle";
+            if (now - firstUnflushedAt >= maxDelayNanos) return "interval";
+            return null;
+        }
+    }
+
+    private record Fields(String title, String content, Integer moodScore, String tags,
+                          Boolean isFavorite, long version) {
+        static Fields of(JournalEntry e, long version) {
+            return new Fields(e.getTitle(), e.getContent(), e.getMoodScore(), e.getTags(),
+                    e.getIsFavorite(), version);
+        }
+    }
+
+    /**
+     * Строка WAL (JSON lines): type P — патч (только переданные поля), F — flush до version,
+     * D — патчи до version выброшены после неудачных flush (для replay — как F).
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record WalRecord(String type, Long entryId, Long userId, long version,
+                     String title, String content, Integer moodScore, String tags, Boolean isFavorite) {
+
+        static final String PATCH = "P";
+        static final String FLUSHED = "F";
+        static final String DISCARDED = "D";
+
+        static WalRecord patch(Long entryId, Long userId, long version, JournalEntryRequest req) {
+            return new WalRecord(PATCH, entryId, userId, version, req.getTitle(), req.getContent(),
+                    req.getMoodScore(), req.getTags(), req.getIsFavorite());
+        }
+
+        static WalRecord flushed(Long entryId, long version) {
+            return new WalRecord(FLUSHED, entryId, null, version, null, null, null, null, null);
+        }
+
+        static WalRecord discarded(Long entryId, long version) {
+            return new WalRecord(DISCARDED, entryId, null, version, null, null, null, null, null);
+        }
+
+        /** Полное состояние записи — для компактизации */
+        static WalRecord snapshot(Pending p) {
+            JournalEntry s = p.state;
+            return new WalRecord(PATCH, p.entryId, p.userId, p.version, s.getTitle(), s.getContent(),
+                    s.getMoodScore(), s.getTags(), s.getIsFavorite());
+        }
+
+        void applyTo(JournalEntry entry) {
+            if (title != null)      entry.setTitle(title);
+            if (content != null)    entry.setContent(content);
+            if (moodScore != null)  entry.setMoodScore(moodScore);
+            if (tags != null)       entry.setTags(tags);
+            if (isFavorite != null) entry.setIsFavorite(isFavorite);
+        }
+    }
+}
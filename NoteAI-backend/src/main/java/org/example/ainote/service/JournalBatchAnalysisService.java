@@ -0,0 +1,362 @@
+package org.example.ainote.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ainote.entity.JournalAnalysisRun;
+import org.example.ainote.entity.JournalEntry;
+import org.example.ainote.repository.JournalAnalysisRunRepository;
+import org.example.ainote.repository.JournalEntryRepository;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ночной пакетный wellness-анализ записей журнала.
+ *
+ * Для каждого пользователя с записями за день:
+ *  1. записи без готового анализа (нет в AiResultCache под ключом on-demand анализа)
+ *     жадно упаковываются в батчи — не больше max-entries-per-batch записей
+ *     и max-batch-tokens оценочных токенов (вход + ожидаемый выход);
+ *  2. один структурированный промпт на батч, ответ — {"results": [{"id": …, "tone": …}, …]};
+ *  3. результат каждой записи сохраняется в ai_result_cache — /journal/{id}/ai/analyze
+ *     после этого отдаётся из кэша без вызова модели.
+ *
+ * Возобновляемость: строка journal_analysis_runs на день хранит курсор по user_id
+ * и lease (одна реплика на день). Ошибка провайдера / переполнение очереди ставит
+ * прогон на паузу, следующий тик продолжает с курсора; уже сохранённые записи
+ * пропускаются, поэтому повторная обработка пользователя не тратит токены.
+ * Исключение — отказ провайдера именно на запросе пользователя (4xx →
+ * NonTransientAiException): после max-user-attempts попыток пользователь пишется
+ * в journal_analysis_skipped_users и курсор идёт дальше, иначе один такой пользователь
+ * держал бы день до следующего ночного тика.
+ *
+ * Вызовы идут через LlmGateway с ключом BACKGROUND — лимиты RPM/TPM общие с интерактивным
+ * трафиком, а в round-robin фоновая работа занимает один ход. Батч не идемпотентен для
+ * gateway (без hedge): дублирование многозаписного промпта удвоило бы расход TPM,
+ * а сбой и так покрывается паузой и возобновлением.
+ *
+ * Метрики: ai.batch.journal.entries (Counter, outcome = analyzed | missing | oversized),
+ * ai.batch.journal.batches (Counter), ai.batch.journal.skipped_users (Counter).
+ */
+@Service
+@Slf4j
+public class JournalBatchAnalysisService {
+
+    static final String OPERATION = "journal-analysis-batch";
+    private static final int USERS_PAGE = 100;
+    private static final int CHARS_PER_TOKEN = 3;
+    /** Оценка выхода на одну запись: JSON из пяти коротких полей */
+    private static final int OUTPUT_TOKENS_PER_ENTRY = 250;
+    /** Инструкции батч-промпта без записей */
+    private static final int PROMPT_OVERHEAD_TOKENS = 400;
+    private static final ZoneId ALMATY = ZoneId.of("Asia/Almaty");
+
+    enum Outcome { COMPLETED, SKIPPED, PAUSED }
+
+    private final JournalEntryRepository entryRepository;
+    private final JournalAnalysisRunRepository runRepository;
+    private final AiResultCache aiResultCache;
+    private final LlmGateway llmGateway;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final boolean enabled;
+    private final int maxBatchTokens;
+    private final int maxEntriesPerBatch;
+    private final int lookbackDays;
+    private final Duration lease;
+    private final int maxUserAttempts;
+    /** Сутки журнала — Asia/Almaty, как у /journal/today; в тестах — фиксированные часы */
+    private final Clock clock;
+
+    @Autowired
+    public JournalBatchAnalysisService(JournalEntryRepository entryRepository,
+                                       JournalAnalysisRunRepository runRepository,
+                                       AiResultCache aiResultCache,
+                                       LlmGateway llmGateway,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${ai.batch.journal-analysis.enabled:true}") boolean enabled,
+                                       @Value("${ai.batch.journal-analysis.max-batch-tokens:6000}") int maxBatchTokens,
+                                       @Value("${ai.batch.journal-analysis.max-entries-per-batch:8}") int maxEntriesPerBatch,
+                                       @Value("${ai.batch.journal-analysis.lookback-days:3}") int lookbackDays,
+                                       @Value("${ai.batch.journal-analysis.lease:PT15M}") Duration lease,
+                                       @Value("${ai.batch.journal-analysis.max-user-attempts:2}") int maxUserAttempts) {
+        this(entryRepository, runRepository, aiResultCache, llmGateway, meterRegistry,
+                enabled, maxBatchTokens, maxEntriesPerBatch, lookbackDays, lease, maxUserAttempts,
+                Clock.system(ALMATY));
+    }
+
+    JournalBatchAnalysisService(JournalEntryRepository entryRepository,
+                                JournalAnalysisRunRepository runRepository,
+                                AiResultCache aiResultCache,
+                                LlmGateway llmGateway,
+                                MeterRegistry meterRegistry,
+                                boolean enabled,
+                                int maxBatchTokens,
+                                int maxEntriesPerBatch,
+                                int lookbackDays,
+                                Duration lease,
+                                int maxUserAttempts,
+                                Clock clock) {
+        this.entryRepository = entryRepository;
+        this.runRepository = runRepository;
+        this.aiResultCache = aiResultCache;
+        this.llmGateway = llmGateway;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxBatchTokens = maxBatchTokens;
+        this.maxEntriesPerBatch = maxEntriesPerBatch;
+        this.lookbackDays = lookbackDays;
+        this.lease = lease;
+        this.maxUserAttempts = Math.max(1, maxUserAttempts);
+        this.clock = clock;
+    }
+
+    /**
+     * Вчерашний день плюс незавершённые прогоны за lookback-days — после простоя
+     * или паузы по лимитам пропущенные дни догоняются на следующем тике.
+     */
+    @Scheduled(cron = "${ai.batch.journal-analysis.cron:0 30 2 * * *}", zone = "Asia/Almaty")
+    public void nightly() {
+        if (!enabled) return;
+        LocalDate yesterday = LocalDate.now(clock).minusDays(1);
+        for (int back = lookbackDays - 1; back >= 0; back--) {
+            if (runDay(yesterday.minusDays(back)) == Outcome.PAUSED) {
+                // Провайдер упёрся в лимиты — остальные дни подождут следующего тика
+                return;
+            }
+        }
+    }
+
+    /** Обрабатывает записи, созданные в date; продолжает с курсора, если прогон уже начинался. */
+    Outcome runDay(LocalDate date) {
+        runRepository.createIfAbsent(date);
+        LocalDateTime now = LocalDateTime.now(clock);
+        if (runRepository.tryClaim(date, now, now.plus(lease)) == 0) {
+            return Outcome.SKIPPED;
+        }
+
+        JournalAnalysisRun run = runRepository.findById(date).orElseThrow();
+        long cursor = run.getLastUserId();
+        if (cursor > 0) {
+            log.info("Journal batch analysis {}: resuming after user {}", date, cursor);
+        }
+        LocalDateTime from = date.atStartOfDay();
+        LocalDateTime to = date.plusDays(1).atStartOfDay();
+        int totalEntries = 0;
+        int totalBatches = 0;
+
+        try {
+            while (true) {
+                List<Long> userIds = entryRepository.findUserIdsWithEntries(
+                        from, to, cursor, PageRequest.of(0, USERS_PAGE));
+                if (userIds.isEmpty()) break;
+
+                for (Long userId : userIds) {
+                    int[] done = analyzeUserOrSkip(date, userId, from, to);
+                    cursor = userId;
+                    totalEntries += done[0];
+                    totalBatches += done[1];
+                    runRepository.advance(date, userId, done[0], done[1], LocalDateTime.now(clock).plus(lease));
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Journal batch analysis {} paused after user {}: {}", date, cursor, e.getMessage());
+            runRepository.pause(date, truncate(e.getMessage()));
+            return Outcome.PAUSED;
+        }
+
+        runRepository.complete(date, LocalDateTime.now(clock));
+        log.info("Journal batch analysis {} completed: {} entries in {} batches", date, totalEntries, totalBatches);
+        return Outcome.COMPLETED;
+    }
+
+    // ─── internals ───────────────────────────────────────────────
+
+    /**
+     * analyzeUser с повтором на отказ провайдера (NonTransientAiException): после
+     * maxUserAttempts попыток пользователь записывается как пропущенный, и вызывающий
+     * сдвигает курсор. Остальные ошибки пробрасываются — они ставят прогон на паузу.
+     *
+     * @return {проанализировано записей, отправлено батчей}; у пропущенного — {0, 0}
+     */
+    private int[] analyzeUserOrSkip(LocalDate date, Long userId, LocalDateTime from, LocalDateTime to) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return analyzeUser(userId, from, to);
+            } catch (NonTransientAiException e) {
+                if (attempt < maxUserAttempts) {
+                    log.warn("Journal batch analysis {}: user {} rejected by provider (attempt {}/{}): {}",
+                            date, userId, attempt, maxUserAttempts, e.getMessage());
+                    continue;
+                }
+                log.error("Journal batch analysis {}: skipping user {} after {} rejected attempts: {}",
+                        date, userId, attempt, e.getMessage());
+                runRepository.recordSkippedUser(date, userId, attempt, truncate(e.getMessage()),
+                        LocalDateTime.now(clock));
+                meterRegistry.counter("ai.batch.journal.skipped_users").increment();
+                return new int[]{0, 0};
+            }
+        }
+    }
+
+    /** @return {проанализировано записей, отправлено батчей} */
+    private int[] analyzeUser(Long userId, LocalDateTime from, LocalDateTime to) {
+        List<JournalEntry> pending = new ArrayList<>();
+        for (JournalEntry entry : entryRepository.findForBatchAnalysis(userId, from, to)) {
+            if (entry.getContent() == null || entry.getContent().isBlank()) continue;
+            if (aiResultCache.get(NoteAiService.journalAnalysisKey(entry.getTitle(), entry.getContent())).isPresent()) {
+                continue;
+            }
+            pending.add(entry);
+        }
+
+        int analyzed = 0;
+        List<List<JournalEntry>> batches = pack(pending);
+        for (List<JournalEntry> batch : batches) {
+            String raw = llmGateway.call(LlmGateway.BACKGROUND, OPERATION, buildPrompt(batch), false);
+            meterRegistry.counter("ai.batch.journal.batches").increment();
+
+            Map<Long, String> results = parseResults(raw);
+            for (JournalEntry entry : batch) {
+                String result = results.get(entry.getId());
+                if (result == null) {
+                    // Останется для on-demand анализа
+                    countEntries("missing", 1);
+                    continue;
+                }
+                aiResultCache.put(NoteAiService.journalAnalysisKey(entry.getTitle(), entry.getContent()),
+                        AiResultCache.SOURCE_JOURNAL, entry.getId(), result);
+                analyzed++;
+            }
+        }
+        countEntries("analyzed", analyzed);
+        return new int[]{analyzed, batches.size()};
+    }
+
+    /**
+     * Жадная упаковка в порядке создания. Запись, которая одна не влезает в бюджет,
+     * не отправляется — её проанализирует on-demand вызов.
+     */
+    List<List<JournalEntry>> pack(List<JournalEntry> entries) {
+        List<List<JournalEntry>> batches = new ArrayList<>();
+        List<JournalEntry> current = new ArrayList<>();
+        int currentTokens = PROMPT_OVERHEAD_TOKENS;
+        for (JournalEntry entry : entries) {
+            int tokens = estimateTokens(entry);
+            if (PROMPT_OVERHEAD_TOKENS + tokens > maxBatchTokens) {
+                countEntries("oversized", 1);
+                continue;
+            }
+            if (!current.isEmpty()
+                    && (currentTokens + tokens > maxBatchTokens || current.size() >= maxEntriesPerBatch)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = PROMPT_OVERHEAD_TOKENS;
+            }
+            current.add(entry);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) batches.add(current);
+        return batches;
+    }
+
+    private static int estimateTokens(JournalEntry entry) {
+        int chars = (entry.getTitle() != null ? entry.getTitle().length() : 0) + entry.getContent().length();
+        return chars / CHARS_PER_TOKEN + OUTPUT_TOKENS_PER_ENTRY;
+    }
+
+    private String buildPrompt(List<JournalEntry> batch) {
+        StringBuilder entries = new StringBuilder();
+        for (JournalEntry entry : batch) {
+            entries.append("=== ENTRY id=").append(entry.getId()).append(" ===\n")
+                    .append("Title: ").append(entry.getTitle() != null ? entry.getTitle() : "").append('\n')
+                    .append("Content:\n").append(entry.getContent()).append("\n\n");
+        }
+
+        return """
+                [LANGUAGE — MANDATORY] Each journal entry below may be written in a different language. \
+                ALL JSON field values of a result MUST be in the EXACT language of THAT entry. \
+                Russian entry → Russian values. Kazakh entry → Kazakh values. \
+                English entry → English values. NEVER write English values for non-English entries.
+
+                You are a mental wellness AI integrated in NeuroBalance — a cognitive health \
+                tracking app that measures three daily metrics:
+                  • M-Rest   (sleep & recovery quality, 0-100)
+                  • M-Ready  (cognitive readiness & energy, 0-100)
+                  • M-Balance (emotional balance & stress, 0-100)
+
+                Analyze EACH journal entry below independently and respond with ONLY a valid JSON object \
+                — no markdown, no backticks, no extra text outside the JSON.
+
+                Required JSON structure:
+                {
+                  "results": [
+                    {
+                      "id": <the entry id exactly as given>,
+                      "tone": "<1-2 words describing the emotional tone>",
+                      "themes": ["<theme1>", "<theme2>", "<theme3>"],
+                      "wellnessInsight": "<1 sentence connecting this entry to M-Rest/M-Ready/M-Balance>",
+                      "suggestion": "<1 specific, realistic 10-15 minute wellness action for today>",
+                      "summary": "<1-2 sentence summary of the entry>"
+                    }
+                  ]
+                }
+
+                Additional rules:
+                - Exactly one result per entry, with the same id; never merge entries.
+                - Be empathetic, non-judgmental, and practical.
+                - Keep themes as short keywords (1-4 words each).
+                - Suggestion must be doable in under 15 minutes.
+
+                %s""".formatted(entries);
+    }
+
+    /**
+     * id записи → JSON-объект результата в формате on-demand анализа (без поля id).
+     * Неразборчивый ответ даёт пустую карту — записи батча останутся для on-demand.
+     */
+    Map<Long, String> parseResults(String raw) {
+        Map<Long, String> results = new HashMap<>();
+        try {
+            JsonNode root = objectMapper.readTree(NoteAiService.stripCodeFences(raw));
+            JsonNode items = root.isArray() ? root : root.path("results");
+            for (JsonNode item : items) {
+                if (!item.isObject() || !item.hasNonNull("id") || !item.hasNonNull("summary")) continue;
+                ObjectNode result = ((ObjectNode) item).deepCopy();
+                long id = result.remove("id").asLong();
+                results.put(id, objectMapper.writeValueAsString(result));
+            }
+        } catch (Exception e) {
+            log.warn("Journal batch analysis: unparseable model response ({})", e.getMessage());
+        }
+        return results;
+    }
+
+    private void countEntries(String outcome, int count) {
+        if (count > 0) {
+            meterRegistry.counter("ai.batch.journal.entries", "outcome", outcome).increment(count);
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 500 ? message.substring(0, 500) : message;
+    }
+}
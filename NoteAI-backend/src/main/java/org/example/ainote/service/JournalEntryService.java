@@ -5,15 +5,30 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.ainote.client.CheckinServiceClient;
 import org.example.ainote.dto.JournalEntryRequest;
 import org.example.ainote.dto.JournalEntryResponse;
+import org.example.ainote.dto.JournalSearchResponse;
+import org.example.ainote.dto.JournalTagFacet;
+import org.example.ainote.dto.RelatedJournalEntryResponse;
+import org.example.ainote.embedding.JournalEmbeddingService;
 import org.example.ainote.entity.JournalEntry;
+import org.example.ainote.event.JournalEntryChangedEvent;
+import org.example.ainote.exception.BadRequestException;
+import org.example.ainote.kafka.NoteWrittenPublisher;
 import org.example.ainote.repository.JournalEntryRepository;
+import org.example.ainote.repository.JournalSearchRow;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -23,7 +38,9 @@ import java.util.stream.Collectors;
  *
  * Дебаунс-логика:
  *   - POST  /journal       → создаёт запись + WRITE_NOTE задача (один раз)
- *   - PATCH /journal/{id}  → частичное обновление (auto-save, без повторного тригг. задачи)
+ *   - PATCH /journal/{id}  → частичное обновление (auto-save, без повторного тригг. задачи),
+ *                            копится в JournalAutosaveBuffer и пишется в БД пачкой
+ *   - POST  /journal/{id}/save → явный flush буфера auto-save
  *   - PUT   /journal/{id}  → полное обновление (без тригг. задачи)
  *
  * Фронтенд реализует дебаунс: ждёт 2-3 сек после ввода → вызывает PATCH.
@@ -35,8 +52,23 @@ public class JournalEntryService {
 
     private static final ZoneId ALMATY = ZoneId.of("Asia/Almaty");
 
+    private static final int TAG_FACETS_MAX_LIMIT = 500;
+    private static final int RELATED_MAX_LIMIT = 20;
+    private static final int EXCERPT_CHARS = 200;
+    /** Ниже — запись скорее случайно делит пару слов с вопросом, в промпт её не берём */
+    private static final float CHAT_CONTEXT_MIN_SIMILARITY = 0.2f;
+    private static final int SEARCH_MAX_QUERY_LENGTH = 200;
+    private static final int SEARCH_MAX_LIMIT = 50;
+    private static final String HIGHLIGHT_START = "\u0002";
+    private static final String HIGHLIGHT_STOP = "\u0003";
+
     private final JournalEntryRepository repo;
     private final CheckinServiceClient checkinServiceClient;
+    private final AiResultCache aiResultCache;
+    private final JournalAutosaveBuffer autosave;
+    private final NoteWrittenPublisher noteWrittenPublisher;
+    private final JournalEmbeddingService embeddings;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ─────────────────────────────────────────────────────────────
     // CREATE
@@ -44,8 +76,8 @@ public class JournalEntryService {
 
     /**
      * Создаёт новую запись журнала.
-     * После сохранения асинхронно уведомляет NBCheckinService
-     * → задача WRITE_NOTE помечается выполненной (+45 XP персонажу).
+     * В той же транзакции пишет note.written в outbox → NBCheckinService
+     * помечает задачу WRITE_NOTE выполненной (+45 XP персонажу).
      *
      * @param authHeader полный "Bearer <token>" из оригинального запроса
      */
@@ -64,9 +96,14 @@ public class JournalEntryService {
 
         entry = repo.save(entry);
         log.info("Journal entry created: id={}, wordCount={}", entry.getId(), entry.getWordCount());
+        eventPublisher.publishEvent(JournalEntryChangedEvent.created(entry.getId(), userId));
 
-        // Async — fire & forget, не влияет на ответ если checkin-сервис недоступен
-        checkinServiceClient.notifyNoteWritten(authHeader);
+        // WRITE_NOTE: событие в outbox коммитится вместе с записью, доставка — OutboxRelay
+        noteWrittenPublisher.publish(userId, NoteWrittenPublisher.SOURCE_JOURNAL, entry.getId());
+        if (checkinServiceClient.isNoteWrittenHttpEnabled()) {
+            // Legacy HTTP-путь на время миграции; async — не влияет на ответ
+            checkinServiceClient.notifyNoteWritten(authHeader);
+        }
 
         return toResponse(entry);
     }
@@ -82,6 +119,7 @@ public class JournalEntryService {
 
     @Transactional(readOnly = true)
     public List<JournalEntryResponse> getAll(Long userId) {
+        autosave.flushUser(userId);
         return repo.findByUserIdOrderByCreatedAtDesc(userId)
                 .stream().map(this::toResponse).collect(Collectors.toList());
     }
@@ -100,6 +138,7 @@ public class JournalEntryService {
      */
     @Transactional(readOnly = true)
     public List<JournalEntryResponse> getByDate(Long userId, LocalDate date) {
+        autosave.flushUser(userId);
         LocalDateTime from = date.atStartOfDay();
         LocalDateTime to   = date.plusDays(1).atStartOfDay();
         return repo.findByUserIdAndCreatedAtBetweenOrderByCreatedAtDesc(userId, from, to)
@@ -111,6 +150,7 @@ public class JournalEntryService {
      */
     @Transactional(readOnly = true)
     public List<JournalEntryResponse> getByDateRange(Long userId, LocalDate startDate, LocalDate endDate) {
+        autosave.flushUser(userId);
         LocalDateTime from = startDate.atStartOfDay();
         LocalDateTime to   = endDate.plusDays(1).atStartOfDay();
         return repo.findByUserIdAndCreatedAtBetweenOrderByCreatedAtDesc(userId, from, to)
@@ -122,17 +162,201 @@ public class JournalEntryService {
      */
     @Transactional(readOnly = true)
     public List<JournalEntryResponse> getFavorites(Long userId) {
+        autosave.flushUser(userId);
         return repo.findByUserIdAndIsFavoriteTrueOrderByCreatedAtDesc(userId)
                 .stream().map(this::toResponse).collect(Collectors.toList());
     }
 
+    /**
+     * Записи с тегом — через индекс journal_entry_tags, без разбора строк tags в памяти.
+     * Сравнение регистронезависимое: "Работа" и " работа " — один тег.
+     */
+    @Transactional(readOnly = true)
+    public List<JournalEntryResponse> getByTag(Long userId, String tag) {
+        if (tag == null || tag.isBlank()) {
+            throw new BadRequestException("Tag must not be blank");
+        }
+        autosave.flushUser(userId);
+        return repo.findByUserIdAndTag(userId, tag)
+                .stream().map(this::toResponse).collect(Collectors.toList());
+    }
+
+    /**
+     * Фасеты тегов пользователя (тег → число записей) из journal_tag_counts,
+     * который триггеры поддерживают инкрементально — записи не сканируются.
+     */
+    @Transactional(readOnly = true)
+    public List<JournalTagFacet> getTagFacets(Long userId, int limit) {
+        autosave.flushUser(userId);
+        return repo.findTagCounts(userId, Math.max(1, Math.min(limit, TAG_FACETS_MAX_LIMIT)))
+                .stream()
+                .map(c -> new JournalTagFacet(c.getTag(), c.getCount()))
+                .collect(Collectors.toList());
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // RELATED — семантически похожие записи (JournalEmbeddingService)
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Похожие записи пользователя по эмбеддингам (HNSW-индекс в памяти), лучшие первыми.
+     * Из БД читаются только найденные id — записи, удалённые после построения индекса, отсекаются.
+     */
+    @Transactional(readOnly = true)
+    public List<RelatedJournalEntryResponse> getRelated(Long userId, Long id, int limit) {
+        JournalEntry entry = findOwned(userId, id);
+        List<JournalEmbeddingService.Similar> similar =
+                embeddings.similarTo(entry, Math.max(1, Math.min(limit, RELATED_MAX_LIMIT)));
+        Map<Long, JournalEntry> found = loadOwned(userId, similar);
+        return similar.stream()
+                .filter(s -> found.containsKey(s.entryId()))
+                .map(s -> {
+                    JournalEntry e = found.get(s.entryId());
+                    return RelatedJournalEntryResponse.builder()
+                            .id(e.getId())
+                            .title(e.getTitle())
+                            .excerpt(excerpt(e.getContent()))
+                            .moodScore(e.getMoodScore())
+                            .moodEmoji(JournalEntry.moodEmoji(e.getMoodScore()))
+                            .tags(e.getTags())
+                            .similarity(s.similarity())
+                            .createdAt(e.getCreatedAt())
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Контекст для /journal/ai/chat: до limit прошлых записей, близких к сообщению пользователя
+     * (текущая запись исключается — она уходит в промпт отдельно).
+     */
+    @Transactional(readOnly = true)
+    public List<JournalEntry> findChatContext(Long userId, String message, Long excludeId, int limit) {
+        List<JournalEmbeddingService.Similar> similar = embeddings.similarToText(userId, message, excludeId, limit)
+                .stream()
+                .filter(s -> s.similarity() >= CHAT_CONTEXT_MIN_SIMILARITY)
+                .toList();
+        Map<Long, JournalEntry> found = loadOwned(userId, similar);
+        return similar.stream()
+                .map(s -> found.get(s.entryId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, JournalEntry> loadOwned(Long userId, List<JournalEmbeddingService.Similar> similar) {
+        if (similar.isEmpty()) return Map.of();
+        return repo.findAllById(similar.stream().map(JournalEmbeddingService.Similar::entryId).toList())
+                .stream()
+                .filter(e -> userId.equals(e.getUserId()))
+                .collect(Collectors.toMap(JournalEntry::getId, Function.identity()));
+    }
+
+    private static String excerpt(String content) {
+        if (content == null || content.length() <= EXCERPT_CHARS) return content;
+        return content.substring(0, EXCERPT_CHARS).stripTrailing() + "…";
+    }
+
+    // ─────────────────────────────────────────────────────────────
+    // SEARCH — full-text (V6 search_vector)
+    // ─────────────────────────────────────────────────────────────
+
+    /**
+     * Полнотекстовый поиск по title / tags / content пользователя.
+     * Синтаксис запроса — websearch_to_tsquery: "точная фраза", OR, -исключить.
+     * Порядок — ts_rank_cd, затем id; пагинация keyset-курсором (rank, id),
+     * без OFFSET — глубокие страницы стоят столько же, сколько первая.
+     *
+     * @param cursor nextCursor из предыдущей страницы или null для первой
+     */
+    @Transactional(readOnly = true)
+    public JournalSearchResponse search(Long userId, String query, String cursor, int limit) {
+        autosave.flushUser(userId);
+        String q = query == null ? "" : query.strip();
+        if (q.isEmpty()) {
+            throw new BadRequestException("Search query must not be blank");
+        }
+        if (q.length() > SEARCH_MAX_QUERY_LENGTH) {
+            throw new BadRequestException("Search query is longer than " + SEARCH_MAX_QUERY_LENGTH + " characters");
+        }
+        int pageSize = Math.max(1, Math.min(limit, SEARCH_MAX_LIMIT));
+
+        float afterRank = Float.POSITIVE_INFINITY;
+        long afterId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            long[] decoded = decodeSearchCursor(cursor, q);
+            afterRank = Float.intBitsToFloat((int) decoded[0]);
+            afterId = decoded[1];
+        }
+
+        // +1 строка — признак следующей страницы без отдельного COUNT
+        List<JournalSearchRow> rows = repo.search(userId, q, afterRank, afterId, pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        List<JournalSearchRow> page = hasNext ? rows.subList(0, pageSize) : rows;
+
+        List<JournalSearchResponse.Hit> items = page.stream()
+                .map(row -> JournalSearchResponse.Hit.builder()
+                        .id(row.getId())
+                        .title(row.getTitle())
+                        .titleHighlight(row.getTitle() == null ? null : highlightToHtml(row.getTitleHighlight()))
+                        .snippet(highlightToHtml(row.getSnippet()))
+                        .moodScore(row.getMoodScore())
+                        .moodEmoji(JournalEntry.moodEmoji(row.getMoodScore()))
+                        .tags(row.getTags())
+                        .rank(row.getRank())
+                        .createdAt(row.getCreatedAt())
+                        .build())
+                .collect(Collectors.toList());
+
+        JournalSearchRow last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return JournalSearchResponse.builder()
+                .items(items)
+                .nextCursor(hasNext ? encodeSearchCursor(last.getRank(), last.getId(), q) : null)
+                .build();
+    }
+
+    /**
+     * ts_headline размечает совпадения STX / ETX, но сам текст не экранирует —
+     * сначала экранируем пользовательский текст, потом превращаем маркеры в &lt;mark&gt;.
+     */
+    static String highlightToHtml(String marked) {
+        if (marked == null || marked.isEmpty()) return marked;
+        return HtmlUtils.htmlEscape(marked)
+                .replace(HIGHLIGHT_START, "<mark>")
+                .replace(HIGHLIGHT_STOP, "</mark>");
+    }
+
+    /**
+     * Курсор = base64url("rankBits:id:queryHash"). rank хранится битами float,
+     * чтобы сравнение в SQL (real = real) было точным; хэш запроса не даёт
+     * продолжить чужой курсор с другим запросом.
+     */
+    static String encodeSearchCursor(float rank, long id, String query) {
+        String raw = Float.floatToIntBits(rank) + ":" + id + ":" + query.hashCode();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long[] decodeSearchCursor(String cursor, String query) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length == 3 && Integer.parseInt(parts[2]) == query.hashCode()) {
+                return new long[]{Integer.parseInt(parts[0]), Long.parseLong(parts[1])};
+            }
+        } catch (IllegalArgumentException ignored) {
+            // NumberFormatException — тоже IllegalArgumentException
+        }
+        throw new BadRequestException("Invalid search cursor");
+    }
+
     // ─────────────────────────────────────────────────────────────
     // UPDATE — полное (PUT)
     // ─────────────────────────────────────────────────────────────
 
     @Transactional
     public JournalEntryResponse update(Long userId, Long id, JournalEntryRequest req) {
+        autosave.flushForWrite(id);
         JournalEntry entry = findOwned(userId, id);
+        evictAiResultsIfTextChanges(entry, req.getTitle(), req.getContent());
 
         entry.setTitle(req.getTitle());
         entry.setContent(req.getContent());
@@ -142,6 +366,7 @@ public class JournalEntryService {
 
         entry = repo.save(entry);
         log.info("Journal entry {} fully updated for user {}", id, userId);
+        eventPublisher.publishEvent(JournalEntryChangedEvent.updated(id, userId));
         return toResponse(entry);
     }
 
@@ -152,19 +377,30 @@ public class JournalEntryService {
     // Задача WRITE_NOTE НЕ триггерится повторно.
     // ─────────────────────────────────────────────────────────────
 
-    @Transactional
+    /**
+     * Патч принимается буфером auto-save (JournalAutosaveBuffer): в ответе — запись
+     * с применённым патчем и его version; в БД она попадёт при ближайшем flush.
+     * Без @Transactional — повторные PATCH серии вообще не ходят в БД.
+     */
     public JournalEntryResponse patch(Long userId, Long id, JournalEntryRequest req) {
-        JournalEntry entry = findOwned(userId, id);
-
-        if (req.getTitle() != null)      entry.setTitle(req.getTitle());
-        if (req.getContent() != null)    entry.setContent(req.getContent());
-        if (req.getMoodScore() != null)  entry.setMoodScore(req.getMoodScore());
-        if (req.getTags() != null)       entry.setTags(req.getTags());
-        if (req.getIsFavorite() != null) entry.setIsFavorite(req.getIsFavorite());
+        JournalAutosaveBuffer.Ack ack = autosave.patch(userId, id, req);
+        log.debug("Journal entry {} auto-save v{} buffered for user {}", id, ack.version(), userId);
+        JournalEntryResponse resp = toResponse(ack.entry());
+        resp.setVersion(ack.version());
+        return resp;
+    }
 
-        entry = repo.save(entry);
-        log.debug("Journal entry {} auto-saved for user {}", id, userId);
-        return toResponse(entry);
+    /**
+     * Явное сохранение (уход со страницы, Ctrl+S): сбрасывает буфер auto-save записи в БД.
+     * version — последний сохранённый патч; null, если несохранённых патчей не было.
+     * Если буфер выбросил правки после неудачных flush — 409 (AutosaveDiscardedException).
+     */
+    public JournalEntryResponse save(Long userId, Long id) {
+        autosave.checkDiscarded(userId, id);
+        long version = autosave.flush(id, "explicit");
+        JournalEntryResponse resp = toResponse(findOwned(userId, id));
+        resp.setVersion(version == 0 ? null : version);
+        return resp;
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -173,8 +409,11 @@ public class JournalEntryService {
 
     @Transactional
     public void delete(Long userId, Long id) {
+        autosave.flushForWrite(id);
         JournalEntry entry = findOwned(userId, id);
         repo.delete(entry);
+        aiResultCache.evictSource(AiResultCache.SOURCE_JOURNAL, id);
+        eventPublisher.publishEvent(JournalEntryChangedEvent.deleted(id, userId));
         log.info("Journal entry {} deleted for user {}", id, userId);
     }
 
@@ -182,7 +421,22 @@ public class JournalEntryService {
     // INTERNAL HELPERS
     // ─────────────────────────────────────────────────────────────
 
+    /**
+     * Summary / analysis записи больше не актуальны, если меняется заголовок или текст
+     * (настроение, теги, избранное на AI-результат не влияют).
+     */
+    private void evictAiResultsIfTextChanges(JournalEntry entry, String newTitle, String newContent) {
+        if (!Objects.equals(entry.getTitle(), newTitle) || !Objects.equals(entry.getContent(), newContent)) {
+            aiResultCache.evictSource(AiResultCache.SOURCE_JOURNAL, entry.getId());
+        }
+    }
+
+    /**
+     * Перед любым чтением / изменением записи её буфер auto-save сбрасывается в БД —
+     * GET, PUT, DELETE и AI видят последний принятый PATCH.
+     */
     public JournalEntry findOwned(Long userId, Long id) {
+        autosave.flush(id, "read");
         return repo.findByIdAndUserId(id, userId)
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Journal entry " + id + " not found or access denied"));
@@ -0,0 +1,542 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.ainote.exception.AiOverloadedException;
+import org.example.ainote.exception.ProviderRateLimitedException;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.RateLimit;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Единая точка выхода к LLM-провайдеру (Groq через spring-ai openai).
+ *
+ *  - Один ChatClient на приложение вместо нового на каждый вызов.
+ *  - Лимиты провайдера: token bucket по RPM и TPM (ProviderRateLimiter), синхронизируется
+ *    с заголовками x-ratelimit-*, после 429 выдача приостанавливается до reset-окна.
+ *  - Очередь честная по пользователям: round-robin между очередями userId, поэтому
+ *    один пользователь с пачкой запросов не задерживает остальных. Переполнение → 429.
+ *  - Одинаковые идемпотентные запросы (operation + SHA-256 промпта), которые уже
+ *    выполняются, не отправляются повторно — ждут общий результат.
+ *  - Только идемпотентные операции (summary / analysis) получают timeout и hedged retry:
+ *    вторая попытка стартует после hedge-delay, если есть свободная ёмкость и очередь пуста,
+ *    или сразу после транзиентной ошибки первой. Чат выполняется ровно один раз.
+ *
+ * Встроенный retry Spring AI выключен (spring.ai.retry.max-attempts=1) — повторы решает gateway.
+ *
+ * Метрики: ai.gateway.queue.wait (Timer, operation), ai.gateway.provider.latency
+ * (Timer, operation + outcome), ai.gateway.queue.depth, ai.gateway.concurrency.available,
+ * ai.gateway.tokens.available (Gauge), ai.gateway.coalesced / hedged / retried / rejected (Counter).
+ */
+@Service
+@Slf4j
+public class LlmGateway {
+
+    /** Ключ очереди для вызовов без пользователя (/api/chat/**) */
+    private static final long ANONYMOUS = -1L;
+    /** Ключ очереди фоновых задач: вся фоновая работа получает один ход round-robin наравне с пользователем */
+    public static final long BACKGROUND = -2L;
+    /** Грубая оценка: ~3 символа на токен для смеси кириллицы и латиницы */
+    private static final int CHARS_PER_TOKEN = 3;
+    private static final int MAX_ATTEMPTS = 2;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final ChatClient chatClient;
+    private final MeterRegistry meterRegistry;
+    private final ProviderRateLimiter rateLimiter;
+    private final Semaphore concurrency;
+    private final int maxQueued;
+    private final int maxQueuedPerUser;
+    private final int expectedOutputTokens;
+    private final Duration timeout;
+    private final Duration hedgeDelay;
+
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final Condition notEmpty = queueLock.newCondition();
+    /** Порядок вставки = порядок обхода round-robin; пустые очереди удаляются */
+    private final LinkedHashMap<Long, ArrayDeque<Ticket>> queues = new LinkedHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+
+    public LlmGateway(ChatModel chatModel,
+                      MeterRegistry meterRegistry,
+                      @Value("${ai.gateway.requests-per-minute:30}") int requestsPerMinute,
+                      @Value("${ai.gateway.tokens-per-minute:12000}") int tokensPerMinute,
+                      @Value("${ai.gateway.max-concurrency:4}") int maxConcurrency,
+                      @Value("${ai.gateway.max-queued:200}") int maxQueued,
+                      @Value("${ai.gateway.max-queued-per-user:5}") int maxQueuedPerUser,
+                      @Value("${ai.gateway.expected-output-tokens:400}") int expectedOutputTokens,
+                      @Value("${ai.gateway.timeout:PT45S}") Duration timeout,
+                      @Value("${ai.gateway.hedge-delay:PT8S}") Duration hedgeDelay) {
+        this.chatClient = ChatClient.builder(chatModel).build();
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = new ProviderRateLimiter(requestsPerMinute, tokensPerMinute);
+        this.concurrency = new Semaphore(maxConcurrency);
+        this.maxQueued = maxQueued;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.expectedOutputTokens = expectedOutputTokens;
+        this.timeout = timeout;
+        this.hedgeDelay = hedgeDelay;
+
+        AtomicInteger workerSeq = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "llm-gateway-" + workerSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "llm-gateway-dispatcher");
+        this.dispatcher.setDaemon(true);
+
+        meterRegistry.gauge("ai.gateway.queue.depth", queued);
+        meterRegistry.gauge("ai.gateway.concurrency.available", concurrency, Semaphore::availablePermits);
+        meterRegistry.gauge("ai.gateway.tokens.available", rateLimiter, ProviderRateLimiter::availableTokens);
+    }
+
+    @PostConstruct
+    void start() {
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        dispatcher.interrupt();
+        workers.shutdownNow();
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // PUBLIC API
+    // ═══════════════════════════════════════════════════════════════
+
+    /**
+     * Блокирующий вызов модели.
+     *
+     * @param userId     владелец запроса (очередь fairness); null — анонимный
+     * @param idempotent true — повтор с тем же промптом даёт эквивалентный результат:
+     *                   включает coalescing, timeout и hedged retry
+     * @throws AiOverloadedException очередь переполнена
+     */
+    public String call(Long userId, String operation, String prompt, boolean idempotent) {
+        long userKey = userId != null ? userId : ANONYMOUS;
+        if (!idempotent) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            int estimate = estimateTokens(prompt);
+            enqueue(userKey, operation, estimate)
+                    .thenAcceptAsync(permit -> {
+                        try {
+                            result.complete(invoke(operation, prompt, permit));
+                        } catch (RuntimeException e) {
+                            result.completeExceptionally(e);
+                        }
+                    }, workers)
+                    .exceptionally(e -> {
+                        result.completeExceptionally(e);
+                        return null;
+                    });
+            return await(result);
+        }
+
+        String key = operation + ":" + sha256(prompt);
+        CompletableFuture<String> fresh = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, fresh);
+        if (existing != null) {
+            meterRegistry.counter("ai.gateway.coalesced", "operation", operation).increment();
+            return await(existing);
+        }
+        fresh.whenComplete((r, e) -> inFlight.remove(key, fresh));
+        try {
+            new HedgedCall(userKey, operation, prompt, fresh).start();
+        } catch (RuntimeException e) {
+            fresh.completeExceptionally(e);
+        }
+        return await(fresh);
+    }
+
+    /**
+     * Потоковый вызов: слот и бюджет берутся из той же очереди, отмена подписки
+     * (клиент ушёл) до старта снимает запрос из очереди, после старта — обрывает вызов.
+     * Стрим не хеджируется и не повторяется — токены уже ушли клиенту.
+     *
+     * Постановка в очередь происходит сразу при вызове, а не при подписке: переполнение
+     * бросается отсюда, до того как контроллер откроет SSE, и клиент получает 429.
+     * Поэтому возвращённый Flux нужно подписать ровно один раз (AiStreamService.stream).
+     *
+     * @throws AiOverloadedException очередь переполнена
+     */
+    public Flux<String> stream(Long userId, String operation, String prompt) {
+        long userKey = userId != null ? userId : ANONYMOUS;
+        int estimate = estimateTokens(prompt);
+        CompletableFuture<Permit> admitted = enqueue(userKey, operation, estimate);
+        return Mono.fromFuture(admitted)
+                .flatMapMany(permit -> {
+                    long start = System.nanoTime();
+                    AtomicLong outputChars = new AtomicLong();
+                    AtomicBoolean failed = new AtomicBoolean();
+                    return chatClient.prompt().user(prompt).stream().content()
+                            .doOnNext(token -> outputChars.addAndGet(token != null ? token.length() : 0))
+                            .doOnError(e -> {
+                                failed.set(true);
+                                if (isRateLimited(e)) rateLimiter.penalize();
+                            })
+                            .doFinally(signal -> {
+                                long used = estimate - expectedOutputTokens + outputChars.get() / CHARS_PER_TOKEN;
+                                permit.settle(used);
+                                permit.release();
+                                recordLatency(operation, failed.get() ? "error" : "success", start);
+                            });
+                });
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // QUEUE + DISPATCHER
+    // ═══════════════════════════════════════════════════════════════
+
+    private CompletableFuture<Permit> enqueue(long userKey, String operation, int estimate) {
+        Ticket ticket = new Ticket(userKey, operation, estimate);
+        queueLock.lock();
+        try {
+            if (queued.get() >= maxQueued) {
+                throw reject("global");
+            }
+            ArrayDeque<Ticket> userQueue = queues.get(userKey);
+            if (userQueue != null && userQueue.size() >= maxQueuedPerUser) {
+                throw reject("per_user");
+            }
+            if (userQueue == null) {
+                userQueue = new ArrayDeque<>();
+                queues.put(userKey, userQueue);
+            }
+            userQueue.add(ticket);
+            queued.incrementAndGet();
+            notEmpty.signal();
+        } finally {
+            queueLock.unlock();
+        }
+        return ticket.admitted;
+    }
+
+    private AiOverloadedException reject(String reason) {
+        meterRegistry.counter("ai.gateway.rejected", "reason", reason).increment();
+        return new AiOverloadedException("AI service is busy. Please try again in a minute.");
+    }
+
+    /**
+     * Единственный поток, выдающий слоты: следующий пользователь по кругу →
+     * свободный слот concurrency → бюджет RPM/TPM → ticket.admitted.
+     */
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Ticket ticket = nextTicket();
+                concurrency.acquire();
+                if (!awaitBudget(ticket)) {
+                    concurrency.release();
+                    continue;
+                }
+                meterRegistry.timer("ai.gateway.queue.wait", "operation", ticket.operation)
+                        .record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+                Permit permit = new Permit(ticket.estimate);
+                if (!ticket.admitted.complete(permit)) {
+                    // Клиент ушёл ровно в момент выдачи
+                    permit.abandon();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("LLM gateway dispatcher error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /** Round-robin: голова кольца отдаёт один ticket и, если у пользователя есть ещё, уходит в хвост. */
+    private Ticket nextTicket() throws InterruptedException {
+        queueLock.lockInterruptibly();
+        try {
+            while (true) {
+                while (queues.isEmpty()) {
+                    notEmpty.await();
+                }
+                Iterator<Map.Entry<Long, ArrayDeque<Ticket>>> it = queues.entrySet().iterator();
+                Map.Entry<Long, ArrayDeque<Ticket>> head = it.next();
+                it.remove();
+                Ticket ticket = head.getValue().poll();
+                if (!head.getValue().isEmpty()) {
+                    queues.put(head.getKey(), head.getValue());
+                }
+                queued.decrementAndGet();
+                if (ticket != null && !ticket.admitted.isDone()) {
+                    return ticket;
+                }
+            }
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    /** @return false — ticket отменён, пока ждал бюджет */
+    private boolean awaitBudget(Ticket ticket) throws InterruptedException {
+        while (true) {
+            if (ticket.admitted.isDone()) return false;
+            long waitNanos = rateLimiter.tryReserve(ticket.estimate);
+            if (waitNanos == 0) return true;
+            LockSupport.parkNanos(Math.min(waitNanos, MAX_PARK_NANOS));
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /** Слот мимо очереди — только из простаивающей ёмкости (для hedge). */
+    private Permit tryAdmitNow(int estimate) {
+        if (queued.get() > 0 || !concurrency.tryAcquire()) return null;
+        if (rateLimiter.tryReserve(estimate) != 0) {
+            concurrency.release();
+            return null;
+        }
+        return new Permit(estimate);
+    }
+
+    // ═══════════════════════════════════════════════════════════════
+    // PROVIDER CALL
+    // ═══════════════════════════════════════════════════════════════
+
+    private String invoke(String operation, String prompt, Permit permit) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            ChatResponse response = chatClient.prompt().user(prompt).call().chatResponse();
+            syncRateLimit(response);
+            permit.settle(usedTokens(response, permit.estimate));
+            outcome = "success";
+            return response.getResult().getOutput().getText();
+        } catch (RuntimeException e) {
+            if (isRateLimited(e)) rateLimiter.penalize();
+            permit.settle(0);
+            throw e;
+        } finally {
+            permit.release();
+            recordLatency(operation, outcome, start);
+        }
+    }
+
+    private void syncRateLimit(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) return;
+        RateLimit limit = response.getMetadata().getRateLimit();
+        if (limit == null) return;
+        Number requestsLimit = limit.getRequestsLimit();
+        // EmptyRateLimit (заголовков не было) отдаёт нули
+        if (requestsLimit == null || requestsLimit.longValue() <= 0) return;
+        rateLimiter.sync(limit.getRequestsRemaining(), limit.getRequestsReset(),
+                limit.getTokensRemaining(), limit.getTokensReset());
+    }
+
+    private static long usedTokens(ChatResponse response, int estimate) {
+        Usage usage = response != null && response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+        Number total = usage != null ? usage.getTotalTokens() : null;
+        return total != null && total.longValue() > 0 ? total.longValue() : estimate;
+    }
+
+    private void recordLatency(String operation, String outcome, long startNanos) {
+        meterRegistry.timer("ai.gateway.provider.latency", "operation", operation, "outcome", outcome)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private int estimateTokens(String prompt) {
+        return prompt.length() / CHARS_PER_TOKEN + expectedOutputTokens;
+    }
+
+    /**
+     * 429 провайдера: ProviderRateLimitedException у blocking-вызова (LlmProviderErrorConfig),
+     * WebClientResponseException у стрима; ищется по цепочке причин.
+     */
+    static boolean isRateLimited(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof ProviderRateLimitedException) return true;
+            if (t instanceof WebClientResponseException w
+                    && w.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) return true;
+            if (t instanceof RestClientResponseException r
+                    && r.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()) return true;
+        }
+        return false;
+    }
+
+    private static boolean isTransient(Throwable e) {
+        return e instanceof TransientAiException || e instanceof ResourceAccessException;
+    }
+
+    private static String sha256(String value) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+        }
+    }
+
+    // ─── internals ───────────────────────────────────────────────
+
+    private static final class Ticket {
+        final long userKey;
+        final String operation;
+        final int estimate;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Permit> admitted = new CompletableFuture<>();
+
+        Ticket(long userKey, String operation, int estimate) {
+            this.userKey = userKey;
+            this.operation = operation;
+            this.estimate = estimate;
+        }
+    }
+
+    /** Слот concurrency + списанный бюджет; release / abandon идемпотентны. */
+    private final class Permit {
+        final int estimate;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(int estimate) {
+            this.estimate = estimate;
+        }
+
+        void settle(long actualTokens) {
+            rateLimiter.settle(estimate, actualTokens);
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) concurrency.release();
+        }
+
+        /** Вызов так и не стартовал — возвращаем и слот, и бюджет. */
+        void abandon() {
+            if (released.compareAndSet(false, true)) {
+                concurrency.release();
+                rateLimiter.refund(estimate);
+            }
+        }
+    }
+
+    /**
+     * Идемпотентный вызов с общим timeout и не более чем MAX_ATTEMPTS попытками:
+     * вторая — hedge (после hedgeDelay при свободной ёмкости) или retry после транзиентной ошибки.
+     */
+    private final class HedgedCall {
+        private final long userKey;
+        private final String operation;
+        private final String prompt;
+        private final int estimate;
+        private final CompletableFuture<String> result;
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        HedgedCall(long userKey, String operation, String prompt, CompletableFuture<String> result) {
+            this.userKey = userKey;
+            this.operation = operation;
+            this.prompt = prompt;
+            this.estimate = estimateTokens(prompt);
+            this.result = result;
+        }
+
+        void start() {
+            result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            started.set(1);
+            submitQueued();
+            CompletableFuture.delayedExecutor(hedgeDelay.toMillis(), TimeUnit.MILLISECONDS, workers)
+                    .execute(this::hedge);
+        }
+
+        private void submitQueued() {
+            CompletableFuture<Permit> admitted = enqueue(userKey, operation, estimate);
+            // timeout / успех другой попытки — снимаем ожидающий ticket из очереди
+            result.whenComplete((r, e) -> admitted.cancel(false));
+            admitted.thenAcceptAsync(this::run, workers);
+        }
+
+        private void hedge() {
+            if (result.isDone() || started.get() >= MAX_ATTEMPTS) return;
+            Permit permit = tryAdmitNow(estimate);
+            if (permit == null) return;
+            if (!started.compareAndSet(1, 2)) {
+                permit.abandon();
+                return;
+            }
+            meterRegistry.counter("ai.gateway.hedged", "operation", operation).increment();
+            run(permit);
+        }
+
+        private void run(Permit permit) {
+            if (result.isDone()) {
+                permit.abandon();
+                return;
+            }
+            try {
+                result.complete(invoke(operation, prompt, permit));
+            } catch (RuntimeException e) {
+                int failures = failed.incrementAndGet();
+                if (failures < started.get()) return;  // другая попытка ещё идёт
+                if (isTransient(e) && started.compareAndSet(1, 2)) {
+                    meterRegistry.counter("ai.gateway.retried", "operation", operation).increment();
+                    try {
+                        submitQueued();
+                    } catch (RuntimeException rejected) {
+                        result.completeExceptionally(rejected);
+                    }
+                    return;
+                }
+                if (failed.get() < started.get()) return;  // hedge успел стартовать
+                log.warn("LLM call {} failed after {} attempt(s): {}", operation, failures, e.getMessage());
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
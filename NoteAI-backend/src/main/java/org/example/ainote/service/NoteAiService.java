@@ -5,14 +5,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ainote.dto.NoteAiResponse;
+import org.example.ainote.entity.JournalEntry;
 import org.example.ainote.entity.Note;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.model.ChatModel;
+import org.example.ainote.exception.AiOverloadedException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * AI service for note analysis using Groq (llama3-8b-8192 via Spring AI).
@@ -24,14 +28,38 @@ import java.util.List;
  *
  * All operations respond in the same language as the note/question.
  * Existing note CRUD is NOT touched here.
+ *
+ * summary / analysis results are cached by (operation, prompt version, hash of title+content)
+ * in AiResultCache — an unchanged note is answered without calling Groq.
+ * Bump the *_PROMPT_VERSION constant whenever the corresponding prompt text changes.
+ * chat is never cached (the question is free-form).
+ *
+ * Every operation also has a stream* variant (SSE via AiStreamService) built from the same
+ * PreparedAiCall, so prompts, caching and the final response are identical in both modes.
+ * All model traffic goes through LlmGateway (rate limits, per-user fair queue, coalescing).
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class NoteAiService {
 
+    private static final String OP_NOTE_SUMMARY = "note-summary";
+    private static final String OP_NOTE_ANALYSIS = "note-analysis";
+    private static final String OP_JOURNAL_SUMMARY = "journal-summary";
+    private static final String OP_JOURNAL_ANALYSIS = "journal-analysis";
+    private static final String OP_CHAT = "chat";
+
+    private static final int NOTE_SUMMARY_PROMPT_VERSION = 1;
+    private static final int NOTE_ANALYSIS_PROMPT_VERSION = 1;
+    private static final int JOURNAL_SUMMARY_PROMPT_VERSION = 1;
+    private static final int JOURNAL_ANALYSIS_PROMPT_VERSION = 1;
+
+    private static final int RELATED_CONTENT_CHARS = 600;
+
     private final NoteService noteService;
-    private final ChatModel chatModel;
+    private final LlmGateway llmGateway;
+    private final AiResultCache aiResultCache;
+    private final AiStreamService aiStreamService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // ─────────────────────────────────────────────────────────────
@@ -43,6 +71,15 @@ public class NoteAiService {
      * Responds in the same language as the note.
      */
     public NoteAiResponse summarize(Long userId, Long noteId) {
+        return complete(prepareSummary(userId, noteId));
+    }
+
+    /** SSE-версия summarize: токены по мере генерации, в конце — done с NoteAiResponse. */
+    public SseEmitter streamSummary(Long userId, Long noteId) {
+        return stream(prepareSummary(userId, noteId));
+    }
+
+    private PreparedAiCall prepareSummary(Long userId, Long noteId) {
         Note note = noteService.getNote(userId, noteId);
 
         String prompt = """
@@ -66,16 +103,20 @@ public class NoteAiService {
                 blankIfNull(note.getContent())
         );
 
-        String summary = callAi(prompt);
-        log.info("Summarized note {} for user {}", noteId, userId);
-
-        return NoteAiResponse.builder()
-                .noteId(noteId)
-                .noteTitle(note.getTitle())
-                .type("summary")
-                .summary(summary)
-                .generatedAt(LocalDateTime.now())
-                .build();
+        return new PreparedAiCall(userId, OP_NOTE_SUMMARY, prompt,
+                AiResultCache.Key.of(OP_NOTE_SUMMARY, NOTE_SUMMARY_PROMPT_VERSION, note.getTitle(), note.getContent()),
+                AiResultCache.SOURCE_NOTE, noteId, false,
+                summary -> {
+                    log.info("Summarized note {} for user {} (cached={})", noteId, userId, summary.cached());
+                    return NoteAiResponse.builder()
+                            .noteId(noteId)
+                            .noteTitle(note.getTitle())
+                            .type("summary")
+                            .summary(summary.text())
+                            .cached(summary.cached())
+                            .generatedAt(LocalDateTime.now())
+                            .build();
+                });
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -88,6 +129,15 @@ public class NoteAiService {
      * Tries to parse the AI's JSON reply; falls back gracefully if parsing fails.
      */
     public NoteAiResponse analyzeWellness(Long userId, Long noteId) {
+        return complete(prepareAnalysis(userId, noteId));
+    }
+
+    /** SSE-версия analyzeWellness: токены сырого JSON, в конце — done с разобранным NoteAiResponse. */
+    public SseEmitter streamAnalysis(Long userId, Long noteId) {
+        return stream(prepareAnalysis(userId, noteId));
+    }
+
+    private PreparedAiCall prepareAnalysis(Long userId, Long noteId) {
         Note note = noteService.getNote(userId, noteId);
 
         String prompt = """
@@ -129,11 +179,18 @@ public class NoteAiService {
                 blankIfNull(note.getContent())
         );
 
-        String rawResponse = callAi(prompt);
-        log.info("Wellness analysis raw AI response for note {}: {}", noteId,
-                rawResponse.length() > 120 ? rawResponse.substring(0, 120) + "…" : rawResponse);
-
-        return parseAnalysisResponse(rawResponse, noteId, note.getTitle());
+        return new PreparedAiCall(userId, OP_NOTE_ANALYSIS, prompt,
+                AiResultCache.Key.of(OP_NOTE_ANALYSIS, NOTE_ANALYSIS_PROMPT_VERSION, note.getTitle(), note.getContent()),
+                AiResultCache.SOURCE_NOTE, noteId, true,
+                rawResponse -> {
+                    String raw = rawResponse.text();
+                    log.info("Wellness analysis raw AI response for note {} (cached={}): {}", noteId, rawResponse.cached(),
+                            raw.length() > 120 ? raw.substring(0, 120) + "…" : raw);
+
+                    NoteAiResponse response = parseAnalysisResponse(raw, noteId, note.getTitle());
+                    response.setCached(rawResponse.cached());
+                    return response;
+                });
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -146,6 +203,15 @@ public class NoteAiService {
      * answers from the message alone.
      */
     public NoteAiResponse chat(Long userId, String message, Long noteId) {
+        return complete(prepareChat(userId, message, noteId));
+    }
+
+    /** SSE-версия chat. */
+    public SseEmitter streamChat(Long userId, String message, Long noteId) {
+        return stream(prepareChat(userId, message, noteId));
+    }
+
+    private PreparedAiCall prepareChat(Long userId, String message, Long noteId) {
         String noteContext = "";
         String noteTitleForResponse = null;
 
@@ -183,16 +249,18 @@ public class NoteAiService {
                 - Only output the answer — no preamble, no labels, no meta-commentary.
                 """.formatted(noteContext, message);
 
-        String answer = callAi(prompt);
-        log.info("Chat response generated for user {} (noteId={})", userId, noteId);
-
-        return NoteAiResponse.builder()
-                .noteId(noteId)
-                .noteTitle(noteTitleForResponse)
-                .type("chat")
-                .answer(answer)
-                .generatedAt(LocalDateTime.now())
-                .build();
+        String noteTitle = noteTitleForResponse;
+        return new PreparedAiCall(userId, OP_CHAT, prompt, null, null, null, false,
+                answer -> {
+                    log.info("Chat response generated for user {} (noteId={})", userId, noteId);
+                    return NoteAiResponse.builder()
+                            .noteId(noteId)
+                            .noteTitle(noteTitle)
+                            .type("chat")
+                            .answer(answer.text())
+                            .generatedAt(LocalDateTime.now())
+                            .build();
+                });
     }
 
     // ─────────────────────────────────────────────────────────────
@@ -208,6 +276,15 @@ public class NoteAiService {
      * referenceId = journalEntry.id for the response DTO.
      */
     public NoteAiResponse summarizeRaw(Long userId, Long referenceId, String title, String content) {
+        return complete(prepareSummaryRaw(userId, referenceId, title, content));
+    }
+
+    /** SSE-версия summarizeRaw. */
+    public SseEmitter streamSummaryRaw(Long userId, Long referenceId, String title, String content) {
+        return stream(prepareSummaryRaw(userId, referenceId, title, content));
+    }
+
+    private PreparedAiCall prepareSummaryRaw(Long userId, Long referenceId, String title, String content) {
         String prompt = """
                 [LANGUAGE — MANDATORY] Detect the language of the note below. \
                 Your ENTIRE response MUST be in that EXACT language. \
@@ -226,21 +303,35 @@ public class NoteAiService {
                 %s
                 """.formatted(blankIfNull(title), blankIfNull(content));
 
-        String summary = callAi(prompt);
-        log.info("Summarized journal entry {} for user {}", referenceId, userId);
-        return NoteAiResponse.builder()
-                .noteId(referenceId)
-                .noteTitle(title)
-                .type("summary")
-                .summary(summary)
-                .generatedAt(java.time.LocalDateTime.now())
-                .build();
+        return new PreparedAiCall(userId, OP_JOURNAL_SUMMARY, prompt,
+                AiResultCache.Key.of(OP_JOURNAL_SUMMARY, JOURNAL_SUMMARY_PROMPT_VERSION, title, content),
+                AiResultCache.SOURCE_JOURNAL, referenceId, false,
+                summary -> {
+                    log.info("Summarized journal entry {} for user {} (cached={})", referenceId, userId, summary.cached());
+                    return NoteAiResponse.builder()
+                            .noteId(referenceId)
+                            .noteTitle(title)
+                            .type("summary")
+                            .summary(summary.text())
+                            .cached(summary.cached())
+                            .generatedAt(java.time.LocalDateTime.now())
+                            .build();
+                });
     }
 
     /**
      * Full wellness analysis by raw title+content (used by JournalEntryController).
      */
     public NoteAiResponse analyzeWellnessRaw(Long userId, Long referenceId, String title, String content) {
+        return complete(prepareAnalysisRaw(userId, referenceId, title, content));
+    }
+
+    /** SSE-версия analyzeWellnessRaw. */
+    public SseEmitter streamAnalysisRaw(Long userId, Long referenceId, String title, String content) {
+        return stream(prepareAnalysisRaw(userId, referenceId, title, content));
+    }
+
+    private PreparedAiCall prepareAnalysisRaw(Long userId, Long referenceId, String title, String content) {
         String prompt = """
                 [LANGUAGE — MANDATORY] Detect the language of the note below. \
                 ALL JSON field values MUST be in that EXACT language. \
@@ -275,9 +366,15 @@ public class NoteAiService {
                 %s
                 """.formatted(blankIfNull(title), blankIfNull(content));
 
-        String raw = callAi(prompt);
-        log.info("Wellness analysis for journal entry {} completed", referenceId);
-        return parseAnalysisResponse(raw, referenceId, title);
+        return new PreparedAiCall(userId, OP_JOURNAL_ANALYSIS, prompt,
+                journalAnalysisKey(title, content),
+                AiResultCache.SOURCE_JOURNAL, referenceId, true,
+                raw -> {
+                    log.info("Wellness analysis for journal entry {} completed (cached={})", referenceId, raw.cached());
+                    NoteAiResponse response = parseAnalysisResponse(raw.text(), referenceId, title);
+                    response.setCached(raw.cached());
+                    return response;
+                });
     }
 
     /**
@@ -285,7 +382,21 @@ public class NoteAiService {
      * If title+content are null, answers from message alone.
      */
     public NoteAiResponse chatRaw(Long userId, Long referenceId,
-                                   String title, String content, String message) {
+                                   String title, String content, String message,
+                                   List<JournalEntry> related) {
+        return complete(prepareChatRaw(userId, referenceId, title, content, message, related));
+    }
+
+    /** SSE-версия chatRaw. */
+    public SseEmitter streamChatRaw(Long userId, Long referenceId,
+                                    String title, String content, String message,
+                                    List<JournalEntry> related) {
+        return stream(prepareChatRaw(userId, referenceId, title, content, message, related));
+    }
+
+    private PreparedAiCall prepareChatRaw(Long userId, Long referenceId,
+                                          String title, String content, String message,
+                                          List<JournalEntry> related) {
         String noteContext = (title != null || content != null)
                 ? """
 
@@ -295,6 +406,7 @@ public class NoteAiService {
                     %s
                     """.formatted(blankIfNull(title), blankIfNull(content))
                 : "";
+        noteContext += relatedEntriesContext(related);
 
         String prompt = """
                 [LANGUAGE — MANDATORY] Detect the language of the user's message below. \
@@ -315,23 +427,127 @@ public class NoteAiService {
                 - Only output the answer — no preamble, no labels, no meta-commentary.
                 """.formatted(noteContext, message);
 
-        String answer = callAi(prompt);
-        log.info("Chat response for journal {} generated for user {}", referenceId, userId);
-        return NoteAiResponse.builder()
-                .noteId(referenceId)
-                .noteTitle(title)
-                .type("chat")
-                .answer(answer)
-                .generatedAt(java.time.LocalDateTime.now())
-                .build();
+        return new PreparedAiCall(userId, OP_CHAT, prompt, null, null, null, false,
+                answer -> {
+                    log.info("Chat response for journal {} generated for user {}", referenceId, userId);
+                    return NoteAiResponse.builder()
+                            .noteId(referenceId)
+                            .noteTitle(title)
+                            .type("chat")
+                            .answer(answer.text())
+                            .generatedAt(java.time.LocalDateTime.now())
+                            .build();
+                });
+    }
+
+    /**
+     * Блок «похожие прошлые записи» для промпта чата; каждая обрезана до
+     * RELATED_CONTENT_CHARS, чтобы контекст не вытеснял сам вопрос.
+     */
+    private String relatedEntriesContext(List<JournalEntry> related) {
+        if (related == null || related.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder("\nRelated past journal entries (use only if relevant):\n");
+        for (JournalEntry e : related) {
+            String text = blankIfNull(e.getContent());
+            if (text.length() > RELATED_CONTENT_CHARS) {
+                text = text.substring(0, RELATED_CONTENT_CHARS) + "…";
+            }
+            sb.append("- [").append(e.getCreatedAt() != null ? e.getCreatedAt().toLocalDate() : "")
+              .append("] ").append(blankIfNull(e.getTitle())).append(": ").append(text).append('\n');
+        }
+        return sb.toString();
     }
 
     // ─────────────────────────────────────────────────────────────
 
-    private String callAi(String prompt) {
+    /**
+     * Ключ кэша wellness-анализа записи журнала. JournalBatchAnalysisService пишет ночные
+     * результаты под тем же ключом — /journal/{id}/ai/analyze для них становится чтением.
+     */
+    static AiResultCache.Key journalAnalysisKey(String title, String content) {
+        return AiResultCache.Key.of(OP_JOURNAL_ANALYSIS, JOURNAL_ANALYSIS_PROMPT_VERSION, title, content);
+    }
+
+    private record AiResult(String text, boolean cached) {
+    }
+
+    /**
+     * Подготовленный вызов модели: промпт, ключ кэша (null — не кэшируется) и сборка
+     * NoteAiResponse из полного текста. Один и тот же для blocking- и SSE-эндпойнтов.
+     */
+    private record PreparedAiCall(Long userId, String operation, String prompt,
+                                  AiResultCache.Key cacheKey, String sourceType, Long sourceId,
+                                  boolean expectJson, Function<AiResult, NoteAiResponse> responder) {
+    }
+
+    private NoteAiResponse complete(PreparedAiCall call) {
+        AiResult result = call.cacheKey() != null
+                ? cachedOrCall(call)
+                : new AiResult(callAi(call), false);
+        return call.responder().apply(result);
+    }
+
+    /**
+     * Стриминг через LlmGateway.stream(). Попадание в AiResultCache отдаётся сразу
+     * одним событием; полный текст после стрима сохраняется в кэш по тем же правилам,
+     * что и в blocking-режиме. Переполненная очередь gateway бросает AiOverloadedException
+     * до создания SseEmitter — клиент получает 429, как и на blocking-эндпойнтах.
+     */
+    private SseEmitter stream(PreparedAiCall call) {
+        if (call.cacheKey() != null) {
+            Optional<String> cached = aiResultCache.get(call.cacheKey());
+            if (cached.isPresent()) {
+                return aiStreamService.replay(call.operation(), cached.get(),
+                        call.responder().apply(new AiResult(cached.get(), true)));
+            }
+        }
+
+        Flux<String> tokens = llmGateway.stream(call.userId(), call.operation(), call.prompt());
+
+        return aiStreamService.stream(call.operation(), tokens, full -> {
+            if (call.cacheKey() != null) {
+                cacheQuietly(call.cacheKey(), call.sourceType(), call.sourceId(), full, call.expectJson());
+            }
+            return call.responder().apply(new AiResult(full, false));
+        });
+    }
+
+    /**
+     * Ответ из AiResultCache или вызов модели с сохранением результата.
+     * Для analysis (expectJson=true) кэшируется только ответ, который парсится как JSON, —
+     * fallback на сырой текст не закрепляется в кэше.
+     */
+    private AiResult cachedOrCall(PreparedAiCall call) {
+        Optional<String> cached = aiResultCache.get(call.cacheKey());
+        if (cached.isPresent()) {
+            return new AiResult(cached.get(), true);
+        }
+
+        String result = callAi(call);
+        cacheQuietly(call.cacheKey(), call.sourceType(), call.sourceId(), result, call.expectJson());
+        return new AiResult(result, false);
+    }
+
+    private void cacheQuietly(AiResultCache.Key key, String sourceType, Long sourceId,
+                              String result, boolean expectJson) {
+        if (expectJson && !isJson(result)) return;
+        try {
+            aiResultCache.put(key, sourceType, sourceId, result);
+        } catch (RuntimeException e) {
+            // Кэш — оптимизация: ошибка записи не должна ломать ответ пользователю
+            log.warn("AI cache write failed for {}: {}", key.operation(), e.getMessage());
+        }
+    }
+
+    /**
+     * Через LlmGateway; кэшируемые операции (summary / analysis) идемпотентны —
+     * для них включены coalescing, timeout и hedged retry, chat выполняется один раз.
+     */
+    private String callAi(PreparedAiCall call) {
         try {
-            ChatClient client = ChatClient.builder(chatModel).build();
-            return client.prompt().user(prompt).call().content();
+            return llmGateway.call(call.userId(), call.operation(), call.prompt(), call.cacheKey() != null);
+        } catch (AiOverloadedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("AI call failed: {}", e.getMessage());
             throw new RuntimeException("AI service temporarily unavailable. Please try again.");
@@ -344,13 +560,7 @@ public class NoteAiService {
      */
     private NoteAiResponse parseAnalysisResponse(String raw, Long noteId, String noteTitle) {
         try {
-            // Strip possible markdown code fences the model might accidentally add
-            String cleaned = raw.trim();
-            if (cleaned.startsWith("```")) {
-                cleaned = cleaned.replaceAll("^```[a-zA-Z]*\\n?", "").replaceAll("```$", "").trim();
-            }
-
-            JsonNode root = objectMapper.readTree(cleaned);
+            JsonNode root = objectMapper.readTree(stripCodeFences(raw));
 
             String tone = textOrEmpty(root, "tone");
             List<String> themes = parseThemes(root.get("themes"));
@@ -385,6 +595,23 @@ public class NoteAiService {
         }
     }
 
+    /** Strip possible markdown code fences the model might accidentally add */
+    static String stripCodeFences(String raw) {
+        String cleaned = raw.trim();
+        if (cleaned.startsWith("```")) {
+            cleaned = cleaned.replaceAll("^```[a-zA-Z]*\\n?", "").replaceAll("```$", "").trim();
+        }
+        return cleaned;
+    }
+
+    private boolean isJson(String raw) {
+        try {
+            return objectMapper.readTree(stripCodeFences(raw)).isObject();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     private String textOrEmpty(JsonNode root, String field) {
         JsonNode node = root.get(field);
         return (node != null && !node.isNull()) ? node.asText() : "";
@@ -4,16 +4,21 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.ainote.client.CheckinServiceClient;
 import org.example.ainote.entity.Note;
-import org.example.ainote.entity.NoteUser;
 import org.example.ainote.exception.EntityNotFoundException;
+import org.example.ainote.kafka.NoteWrittenPublisher;
 import org.example.ainote.repository.NoteRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.Objects;
 
 /**
- * Service for managing notes
+ * Service for managing notes.
+ * Владелец хранится в notes.user_id: создание, удаление и проверка владения
+ * не зависят от числа заметок пользователя.
  */
 @Service
 @RequiredArgsConstructor
@@ -23,6 +28,8 @@ public class NoteService {
     private final NoteRepository noteRepository;
     private final NoteUserService noteUserService;
     private final CheckinServiceClient checkinServiceClient;
+    private final NoteWrittenPublisher noteWrittenPublisher;
+    private final AiResultCache aiResultCache;
 
     @Transactional(readOnly = true)
     public Note getById(Long id) {
@@ -36,65 +43,62 @@ public class NoteService {
     }
 
     /**
-     * Creates a note and asynchronously notifies NBCheckinService to mark
-     * the WRITE_NOTE daily task as completed (fire-and-forget via HTTP).
+     * Creates a note and, in the same transaction, queues a note.written event
+     * so NBCheckinService marks the WRITE_NOTE daily task as completed.
      *
-     * @param authorizationHeader full "Bearer <token>" header forwarded from the request
+     * @param authorizationHeader full "Bearer <token>" header, used only by the legacy HTTP path
      */
     @Transactional
     public Note createNoteForUser(Long userId, String title, String content, String authorizationHeader) {
         log.info("Creating note for user {}", userId);
 
-        NoteUser user = noteUserService.getOrCreate(userId);
+        // FK notes.user_id → note_users: пользователь должен существовать (PK lookup)
+        noteUserService.getOrCreate(userId);
 
         Note note = new Note();
+        note.setUserId(userId);
         note.setTitle(title);
         note.setContent(content);
         noteRepository.save(note);
 
-        user.getNotes().add(note);
-        noteUserService.update(user);
-
         log.info("Note created with ID: {}", note.getId());
 
-        // Notify NBCheckinService → auto-complete WRITE_NOTE daily task
-        checkinServiceClient.notifyNoteWritten(authorizationHeader);
+        // note.written via outbox → NBCheckinService auto-completes WRITE_NOTE daily task
+        noteWrittenPublisher.publish(userId, NoteWrittenPublisher.SOURCE_NOTE, note.getId());
+        if (checkinServiceClient.isNoteWrittenHttpEnabled()) {
+            checkinServiceClient.notifyNoteWritten(authorizationHeader);
+        }
 
         return note;
     }
 
+    /**
+     * Page of the user's notes, newest first.
+     */
     @Transactional(readOnly = true)
-    public List<Note> getAllByUserId(Long userId) {
-        log.debug("Fetching all notes for user {}", userId);
+    public Slice<Note> getPageByUserId(Long userId, int page, int size) {
+        log.debug("Fetching notes for user {} (page={}, size={})", userId, page, size);
 
-        return noteRepository.findAllByUserId(userId)
-                .orElseThrow(() -> new EntityNotFoundException("Notes not found."));
+        return noteRepository.findByUserId(userId,
+                PageRequest.of(page, size, Sort.by(Sort.Order.desc("created"), Sort.Order.desc("id"))));
     }
 
     @Transactional(readOnly = true)
     public Note getNote(Long userId, Long noteId) {
         log.debug("Fetching note {} for user {}", noteId, userId);
 
-        if (!noteUserService.isNoteOwner(noteId, userId)) {
-            throw new EntityNotFoundException("Note not found or access denied!");
-        }
-        return getById(noteId);
+        return noteRepository.findByIdAndUserId(noteId, userId)
+                .orElseThrow(() -> new EntityNotFoundException("Note not found or access denied!"));
     }
 
     @Transactional
     public void deleteNote(Long userId, Long noteId) {
         log.info("Deleting note {} for user {}", noteId, userId);
 
-        if (!noteUserService.isNoteOwner(noteId, userId)) {
+        if (noteRepository.deleteByIdAndUserId(noteId, userId) == 0) {
             throw new EntityNotFoundException("You do not have permission to delete this note");
         }
-
-        NoteUser user = noteUserService.getById(userId);
-        Note note = getById(noteId);
-
-        user.getNotes().remove(note);
-        noteUserService.update(user);
-        noteRepository.delete(note);
+        aiResultCache.evictSource(AiResultCache.SOURCE_NOTE, noteId);
 
         log.info("Note {} deleted successfully", noteId);
     }
@@ -103,12 +107,13 @@ public class NoteService {
     public Note updateNote(Long userId, Note updatedNote) {
         log.info("Updating note {} for user {}", updatedNote.getId(), userId);
 
-        if (!noteUserService.isNoteOwner(updatedNote.getId(), userId)) {
-            throw new EntityNotFoundException("Access denied to update note");
-        }
+        Note existingNote = noteRepository.findByIdAndUserId(updatedNote.getId(), userId)
+                .orElseThrow(() -> new EntityNotFoundException("Access denied to update note"));
 
-        Note existingNote = noteRepository.findById(updatedNote.getId())
-                .orElseThrow(() -> new EntityNotFoundException("Note does not exist!"));
+        if (!Objects.equals(existingNote.getTitle(), updatedNote.getTitle())
+                || !Objects.equals(existingNote.getContent(), updatedNote.getContent())) {
+            aiResultCache.evictSource(AiResultCache.SOURCE_NOTE, existingNote.getId());
+        }
 
         existingNote.setTitle(updatedNote.getTitle());
         existingNote.setContent(updatedNote.getContent());
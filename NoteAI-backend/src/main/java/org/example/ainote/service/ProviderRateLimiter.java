@@ -0,0 +1,113 @@
+package org.example.ainote.service;
+
+import java.time.Duration;
+
+/**
+ * Два token bucket'а провайдера — запросы в минуту (RPM) и токены в минуту (TPM).
+ *
+ * Локальная модель лимита дополняется реальным состоянием из заголовков x-ratelimit-*
+ * (sync) — квота Groq общая для всех инстансов, поэтому остаток только уменьшается
+ * до присланного провайдером, но не увеличивается. После 429 (penalize) выдача
+ * останавливается до истечения reset-окна.
+ *
+ * Потокобезопасно (synchronized); используется только LlmGateway.
+ */
+final class ProviderRateLimiter {
+
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private final double requestsPerNano;
+    private final double tokensPerNano;
+
+    private double requests;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long blockedUntil = lastRefill;
+    private Duration lastReset = Duration.ofSeconds(5);
+
+    ProviderRateLimiter(int requestsPerMinute, int tokensPerMinute) {
+        this.requestCapacity = requestsPerMinute;
+        this.tokenCapacity = tokensPerMinute;
+        this.requestsPerNano = requestsPerMinute / 60e9;
+        this.tokensPerNano = tokensPerMinute / 60e9;
+        this.requests = requestCapacity;
+        this.tokens = tokenCapacity;
+    }
+
+    /**
+     * Списывает 1 запрос и estimatedTokens токенов, если бюджета хватает.
+     *
+     * @return 0 — бюджет выдан; иначе наносекунды до момента, когда его стоит запросить снова
+     */
+    synchronized long tryReserve(int estimatedTokens) {
+        long now = System.nanoTime();
+        refill(now);
+        if (now < blockedUntil) return blockedUntil - now;
+
+        // Запрос больше всей минутной квоты всё равно должен когда-то пройти
+        double need = Math.min(estimatedTokens, tokenCapacity);
+        if (requests >= 1 && tokens >= need) {
+            requests -= 1;
+            tokens -= estimatedTokens;
+            return 0;
+        }
+        double waitRequests = requests >= 1 ? 0 : (1 - requests) / requestsPerNano;
+        double waitTokens = tokens >= need ? 0 : (need - tokens) / tokensPerNano;
+        return Math.max(1, (long) Math.ceil(Math.max(waitRequests, waitTokens)));
+    }
+
+    /** Коррекция после ответа: estimate − actual возвращается в bucket (или списывается, если отрицательно). */
+    synchronized void settle(int estimatedTokens, long actualTokens) {
+        refill(System.nanoTime());
+        tokens = Math.min(tokenCapacity, tokens + (estimatedTokens - actualTokens));
+    }
+
+    /** Бюджет выдан, но вызов не состоялся (клиент ушёл до старта). */
+    synchronized void refund(int estimatedTokens) {
+        refill(System.nanoTime());
+        requests = Math.min(requestCapacity, requests + 1);
+        tokens = Math.min(tokenCapacity, tokens + estimatedTokens);
+    }
+
+    /** Остатки из x-ratelimit-* заголовков; null / отрицательные значения игнорируются. */
+    synchronized void sync(Number requestsRemaining, Duration requestsReset,
+                           Number tokensRemaining, Duration tokensReset) {
+        long now = System.nanoTime();
+        refill(now);
+        if (requestsRemaining != null && requestsRemaining.longValue() >= 0) {
+            requests = Math.min(requests, requestsRemaining.doubleValue());
+            if (requestsRemaining.longValue() == 0) blockUntil(now, requestsReset);
+        }
+        if (tokensRemaining != null && tokensRemaining.longValue() >= 0) {
+            tokens = Math.min(tokens, tokensRemaining.doubleValue());
+            if (tokensRemaining.longValue() == 0) blockUntil(now, tokensReset);
+        }
+        if (requestsReset != null && !requestsReset.isZero()) lastReset = requestsReset;
+    }
+
+    /** Провайдер ответил 429 — пауза на последнее известное reset-окно. */
+    synchronized void penalize() {
+        long now = System.nanoTime();
+        refill(now);
+        requests = Math.min(requests, 0);
+        blockUntil(now, lastReset);
+    }
+
+    synchronized double availableTokens() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    private void blockUntil(long now, Duration reset) {
+        if (reset == null || reset.isNegative() || reset.isZero()) return;
+        blockedUntil = Math.max(blockedUntil, now + reset.toNanos());
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) return;
+        requests = Math.min(requestCapacity, requests + elapsed * requestsPerNano);
+        tokens = Math.min(tokenCapacity, tokens + elapsed * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,15 @@
+-- ===============================================================
+-- NOTE-AI v10: пользователи, пропущенные ночным пакетным анализом
+-- Провайдер отверг запрос пользователя (4xx) max-user-attempts раз подряд —
+-- курсор дня идёт дальше, а пользователь записывается сюда; его записи
+-- остаются для on-demand анализа.
+-- ===============================================================
+
+CREATE TABLE IF NOT EXISTS journal_analysis_skipped_users (
+    run_date     DATE          NOT NULL REFERENCES journal_analysis_runs (run_date) ON DELETE CASCADE,
+    user_id      BIGINT        NOT NULL,
+    attempts     INTEGER       NOT NULL,
+    last_error   VARCHAR(500),
+    skipped_at   TIMESTAMP     NOT NULL,
+    PRIMARY KEY (run_date, user_id)
+);
@@ -0,0 +1,21 @@
+-- ===============================================================
+-- NOTE-AI v3: persisted cache of LLM results
+-- Ключ — (operation, prompt_version, content_hash): повторный summary/analyze
+-- неизменённой заметки не ходит в Groq.
+-- source_type/source_id — последняя запись-источник, для инвалидации при PATCH/PUT/DELETE.
+-- ===============================================================
+
+CREATE TABLE IF NOT EXISTS ai_result_cache (
+    id              BIGSERIAL PRIMARY KEY,
+    operation       VARCHAR(32)  NOT NULL,   -- summary | analysis
+    prompt_version  INTEGER      NOT NULL,
+    content_hash    CHAR(64)     NOT NULL,   -- SHA-256(title + '\0' + content), hex
+    source_type     VARCHAR(16)  NOT NULL,   -- note | journal
+    source_id       BIGINT       NOT NULL,
+    result          TEXT         NOT NULL,   -- сырой ответ модели
+    created_at      TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT uq_ai_result_cache_key UNIQUE (operation, prompt_version, content_hash)
+);
+
+CREATE INDEX idx_ai_result_cache_source ON ai_result_cache (source_type, source_id);
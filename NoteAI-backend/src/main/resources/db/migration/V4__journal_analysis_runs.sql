@@ -0,0 +1,19 @@
+-- ===============================================================
+-- NOTE-AI v4: nightly batched journal analysis
+-- Одна строка на календарный день: курсор по user_id делает прогон
+-- возобновляемым после рестарта / 429, lease_until не даёт двум репликам
+-- обрабатывать один день одновременно.
+-- Сами результаты пишутся в ai_result_cache под ключом on-demand анализа.
+-- ===============================================================
+
+CREATE TABLE IF NOT EXISTS journal_analysis_runs (
+    run_date          DATE         PRIMARY KEY,
+    status            VARCHAR(16)  NOT NULL,            -- PENDING | RUNNING | PAUSED | COMPLETED
+    last_user_id      BIGINT       NOT NULL DEFAULT 0,  -- все пользователи <= курсора обработаны
+    entries_analyzed  INTEGER      NOT NULL DEFAULT 0,
+    batches           INTEGER      NOT NULL DEFAULT 0,
+    lease_until       TIMESTAMP,
+    last_error        VARCHAR(500),
+    started_at        TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at       TIMESTAMP
+);
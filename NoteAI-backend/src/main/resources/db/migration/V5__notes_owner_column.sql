@@ -0,0 +1,25 @@
+-- ===============================================================
+-- NOTE-AI v5: прямой владелец заметки (notes.user_id)
+-- Раньше владение шло через note_users_notes и EAGER-коллекцию NoteUser.notes:
+-- создание / удаление заметки загружало все заметки пользователя.
+-- Теперь вставка — одна строка в notes, проверка владения — один probe по PK,
+-- список — индексный range scan по (user_id, created).
+--
+-- note_users_notes больше не пишется; оставлена для отката и удаляется
+-- отдельной миграцией. Заметки без строки в junction-таблице не были доступны
+-- ни одному пользователю и остаются с user_id = NULL.
+-- ===============================================================
+
+ALTER TABLE notes ADD COLUMN IF NOT EXISTS user_id BIGINT;
+
+UPDATE notes n
+   SET user_id = un.user_id
+  FROM note_users_notes un
+ WHERE un.note_id = n.id
+   AND n.user_id IS NULL;
+
+ALTER TABLE notes
+    ADD CONSTRAINT fk_notes_user FOREIGN KEY (user_id) REFERENCES note_users(user_id) ON DELETE CASCADE;
+
+-- Список заметок пользователя, новые первыми (ORDER BY created DESC, id DESC)
+CREATE INDEX IF NOT EXISTS idx_notes_user_created ON notes (user_id, created DESC, id DESC);
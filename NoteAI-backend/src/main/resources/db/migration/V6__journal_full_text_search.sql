@@ -0,0 +1,30 @@
+-- ===============================================================
+-- NOTE-AI v6: Full-text search по journal_entries
+--
+-- search_vector — генерируемая колонка (title → A, tags → B, content → C):
+--   * 'russian' — стемминг русских слов; ASCII-слова в этой конфигурации
+--     уходят в english_stem, так что английский покрыт тем же проходом;
+--   * 'simple'  — слова как есть (lowercase): казахский (стеммера нет),
+--     имена, сленг, точное совпадение формы.
+-- Запрос строится так же: websearch_to_tsquery('russian') || websearch_to_tsquery('simple').
+--
+-- ADD COLUMN ... STORED переписывает таблицу — на больших инсталляциях
+-- прогонять в окно обслуживания.
+-- ===============================================================
+
+ALTER TABLE journal_entries
+    ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('simple',  coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('russian', replace(coalesce(tags, ''), ',', ' ')), 'B') ||
+        setweight(to_tsvector('simple',  replace(coalesce(tags, ''), ',', ' ')), 'B') ||
+        setweight(to_tsvector('russian', coalesce(content, '')), 'C') ||
+        setweight(to_tsvector('simple',  coalesce(content, '')), 'C')
+    ) STORED;
+
+-- Поиск всегда в пределах одного пользователя: составной GIN (user_id, search_vector)
+-- отсекает чужие записи прямо в индексе, а не через BitmapAnd с idx_je_user_created.
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX IF NOT EXISTS idx_je_user_search
+    ON journal_entries USING GIN (user_id, search_vector);
@@ -0,0 +1,105 @@
+-- ===============================================================
+-- NOTE-AI v7: Нормализованные теги журнала + счётчики для фасетов
+--
+-- journal_entries.tags (через запятую) остаётся источником правды для API;
+-- journal_entry_tags и journal_tag_counts поддерживаются триггерами,
+-- поэтому синхронны при любом пути записи (create / PUT / PATCH / delete).
+-- Нормализация тега: trim + lower + не длиннее 50 символов, пустые и дубли отбрасываются.
+-- ===============================================================
+
+CREATE OR REPLACE FUNCTION journal_normalize_tag(raw TEXT)
+RETURNS TEXT AS $$
+    SELECT left(lower(btrim(raw)), 50);
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION journal_normalize_tags(raw TEXT)
+RETURNS TEXT[] AS $$
+    SELECT coalesce(array_agg(DISTINCT t ORDER BY t), '{}')
+      FROM (SELECT journal_normalize_tag(x) AS t
+              FROM unnest(string_to_array(coalesce(raw, ''), ',')) AS x) s
+     WHERE t <> '';
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE TABLE IF NOT EXISTS journal_entry_tags (
+    entry_id BIGINT      NOT NULL REFERENCES journal_entries (id) ON DELETE CASCADE,
+    user_id  BIGINT      NOT NULL,
+    tag      VARCHAR(50) NOT NULL,
+    PRIMARY KEY (entry_id, tag)
+);
+
+-- Фильтр "записи пользователя с тегом X"
+CREATE INDEX IF NOT EXISTS idx_jet_user_tag ON journal_entry_tags (user_id, tag, entry_id);
+
+CREATE TABLE IF NOT EXISTS journal_tag_counts (
+    user_id     BIGINT      NOT NULL,
+    tag         VARCHAR(50) NOT NULL,
+    entry_count INTEGER     NOT NULL,
+    PRIMARY KEY (user_id, tag)
+);
+
+-- Backfill существующих записей
+INSERT INTO journal_entry_tags (entry_id, user_id, tag)
+SELECT e.id, e.user_id, t
+  FROM journal_entries e, unnest(journal_normalize_tags(e.tags)) AS t
+ON CONFLICT DO NOTHING;
+
+INSERT INTO journal_tag_counts (user_id, tag, entry_count)
+SELECT user_id, tag, count(*)
+  FROM journal_entry_tags
+ GROUP BY user_id, tag
+ON CONFLICT (user_id, tag) DO UPDATE SET entry_count = EXCLUDED.entry_count;
+
+-- Инкрементальная синхронизация: применяется только разница старого и нового набора тегов.
+-- Массивы отсортированы, поэтому конкурентные записи одного пользователя
+-- берут блокировки строк journal_tag_counts в одном порядке.
+CREATE OR REPLACE FUNCTION sync_journal_entry_tags()
+RETURNS TRIGGER AS $$
+DECLARE
+    old_tags TEXT[] := '{}';
+    new_tags TEXT[] := '{}';
+    removed  TEXT[];
+    added    TEXT[];
+BEGIN
+    IF TG_OP <> 'INSERT' THEN
+        old_tags := journal_normalize_tags(OLD.tags);
+    END IF;
+    IF TG_OP <> 'DELETE' THEN
+        new_tags := journal_normalize_tags(NEW.tags);
+    END IF;
+
+    removed := ARRAY(SELECT t FROM unnest(old_tags) AS t WHERE NOT (t = ANY (new_tags)) ORDER BY t);
+    added   := ARRAY(SELECT t FROM unnest(new_tags) AS t WHERE NOT (t = ANY (old_tags)) ORDER BY t);
+
+    IF cardinality(removed) > 0 THEN
+        DELETE FROM journal_entry_tags
+         WHERE entry_id = OLD.id AND tag = ANY (removed);
+        UPDATE journal_tag_counts
+           SET entry_count = entry_count - 1
+         WHERE user_id = OLD.user_id AND tag = ANY (removed);
+        DELETE FROM journal_tag_counts
+         WHERE user_id = OLD.user_id AND tag = ANY (removed) AND entry_count <= 0;
+    END IF;
+
+    IF cardinality(added) > 0 THEN
+        INSERT INTO journal_entry_tags (entry_id, user_id, tag)
+        SELECT NEW.id, NEW.user_id, t FROM unnest(added) AS t
+        ON CONFLICT DO NOTHING;
+        INSERT INTO journal_tag_counts (user_id, tag, entry_count)
+        SELECT NEW.user_id, t, 1 FROM unnest(added) AS t
+        ON CONFLICT (user_id, tag) DO UPDATE SET entry_count = journal_tag_counts.entry_count + 1;
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_journal_tags_insert_delete
+AFTER INSERT OR DELETE ON journal_entries
+FOR EACH ROW EXECUTE FUNCTION sync_journal_entry_tags();
+
+-- Hibernate пишет все колонки при каждом save — триггер срабатывает только если теги реально изменились
+CREATE TRIGGER trg_journal_tags_update
+AFTER UPDATE OF tags ON journal_entries
+FOR EACH ROW
+WHEN (OLD.tags IS DISTINCT FROM NEW.tags)
+EXECUTE FUNCTION sync_journal_entry_tags();
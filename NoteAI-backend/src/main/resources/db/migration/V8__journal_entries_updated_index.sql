@@ -0,0 +1,7 @@
+-- ===============================================================
+-- NOTE-AI v8: индекс для догона семантического индекса после рестарта
+-- JournalEmbeddingService читает записи с updated_at новее watermark снимка
+-- keyset-пагинацией по (updated_at, id) — по всем пользователям сразу.
+-- ===============================================================
+
+CREATE INDEX IF NOT EXISTS idx_je_updated_id ON journal_entries (updated_at, id);
@@ -0,0 +1,23 @@
+-- ===============================================================
+-- NOTE-AI v9: transactional outbox для Kafka-событий
+-- Строка пишется в той же транзакции, что и заметка / запись журнала;
+-- OutboxRelay публикует её после коммита (at-least-once, consumer идемпотентен).
+-- Первое событие — note.written (задача WRITE_NOTE в NBCheckinService).
+-- ===============================================================
+
+CREATE TABLE IF NOT EXISTS event_outbox (
+    id               BIGSERIAL PRIMARY KEY,
+    topic            VARCHAR(128)  NOT NULL,
+    message_key      VARCHAR(128)  NOT NULL,            -- user_id: события пользователя в одной партиции
+    event_type       VARCHAR(64)   NOT NULL,            -- логический __TypeId__ (noteWritten)
+    payload          TEXT          NOT NULL,            -- JSON
+    attempts         INTEGER       NOT NULL DEFAULT 0,
+    next_attempt_at  TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error       VARCHAR(1000),
+    created_at       TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    published_at     TIMESTAMP
+);
+
+-- Relay выбирает только неопубликованные — частичный индекс остаётся маленьким
+CREATE INDEX idx_event_outbox_due ON event_outbox (next_attempt_at) WHERE published_at IS NULL;
+CREATE INDEX idx_event_outbox_published ON event_outbox (published_at) WHERE published_at IS NOT NULL;
@@ -0,0 +1,111 @@
+package org.example.ainote.embedding;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HnswIndex: recall графового поиска против полного перебора, tombstone-ы,
+ * round-trip через EmbeddingIndexStore.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class HnswIndexTests {
+
+    private static final int DIMS = 64;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void graphSearchRecallAgainstBruteForce() {
+        Random rnd = new Random(1);
+        HnswIndex index = new HnswIndex(HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION, 1);
+        List<QuantizedVector> vectors = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            QuantizedVector v = QuantizedVector.quantize(random(rnd));
+            vectors.add(v);
+            index.upsert(i, i, v);
+        }
+
+        int k = 10, hits = 0, queries = 50;
+        for (int q = 0; q < queries; q++) {
+            QuantizedVector query = QuantizedVector.quantize(random(rnd));
+            Set<Long> exact = new HashSet<>();
+            List<Integer> ids = new ArrayList<>();
+            for (int i = 0; i < vectors.size(); i++) ids.add(i);
+            ids.sort(Comparator.comparingDouble(i -> -query.similarity(vectors.get(i))));
+            for (int i = 0; i < k; i++) exact.add((long) ids.get(i));
+
+            for (HnswIndex.Hit h : index.search(query, k, 64)) {
+                if (exact.contains(h.entryId())) hits++;
+            }
+        }
+        double recall = hits / (double) (k * queries);
+        assertTrue(recall >= 0.9, "recall@10 = " + recall);
+    }
+
+    @Test
+    void updatedAndRemovedEntriesAreNotReturned() {
+        Random rnd = new Random(2);
+        HnswIndex index = new HnswIndex(8, 50, 2);
+        float[] target = random(rnd);
+        index.upsert(1, 100, QuantizedVector.quantize(target));
+        index.upsert(2, 200, QuantizedVector.quantize(random(rnd)));
+
+        assertFalse(index.upsert(1, 100, QuantizedVector.quantize(target)), "same hash — no reindex");
+        assertTrue(index.upsert(1, 101, QuantizedVector.quantize(random(rnd))));
+        assertEquals(101L, index.contentHash(1));
+        assertEquals(2, index.size());
+
+        assertTrue(index.remove(2));
+        assertNull(index.vector(2));
+        List<HnswIndex.Hit> hits = index.search(QuantizedVector.quantize(target), 5, 16);
+        assertEquals(1, hits.size());
+        assertEquals(1L, hits.get(0).entryId());
+    }
+
+    @Test
+    void snapshotRoundTripPreservesSearchResults() throws Exception {
+        Random rnd = new Random(3);
+        HnswIndex index = new HnswIndex(HnswIndex.DEFAULT_M, HnswIndex.DEFAULT_EF_CONSTRUCTION, 3);
+        for (int i = 0; i < 700; i++) {
+            index.upsert(i, i * 31L, QuantizedVector.quantize(random(rnd)));
+        }
+        index.remove(5);
+        Path file = dir.resolve("index.idx");
+
+        EmbeddingIndexStore.write(file, new EmbeddingIndexStore.Snapshot("test-model", DIMS, 12345L, Map.of(7L, index)));
+        EmbeddingIndexStore.Snapshot read = EmbeddingIndexStore.read(file);
+
+        assertEquals("test-model", read.modelId());
+        assertEquals(DIMS, read.dimensions());
+        assertEquals(12345L, read.watermarkEpochMillis());
+        HnswIndex restored = read.indexes().get(7L);
+        assertEquals(index.size(), restored.size());
+        assertNull(restored.contentHash(5));
+
+        QuantizedVector query = QuantizedVector.quantize(random(rnd));
+        assertEquals(index.search(query, 10, 64), restored.search(query, 10, 64));
+    }
+
+    private static float[] random(Random rnd) {
+        float[] v = new float[DIMS];
+        for (int i = 0; i < DIMS; i++) v[i] = (float) rnd.nextGaussian();
+        return v;
+    }
+}
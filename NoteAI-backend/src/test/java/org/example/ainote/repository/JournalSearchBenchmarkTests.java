@@ -0,0 +1,208 @@
+package org.example.ainote.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Латентность JournalEntryRepository.SEARCH_QUERY на 1M записей журнала.
+ * Нужен реальный PostgreSQL (14+) — ОТДЕЛЬНАЯ база: V1 пересоздаёт таблицы.
+ *
+ * Запуск:
+ *   JOURNAL_SEARCH_BENCH_URL=jdbc:postgresql://localhost:5432/noteai_bench \
+ *   JOURNAL_SEARCH_BENCH_USER=postgres JOURNAL_SEARCH_BENCH_PASSWORD=postgres \
+ *   mvn -Pbenchmark test
+ *
+ * Без JOURNAL_SEARCH_BENCH_URL тест пропускается. Данные засеиваются один раз
+ * (повторные прогоны переиспользуют таблицу, если в ней уже ≥ 1M строк).
+ */
+@Tag("benchmark")
+class JournalSearchBenchmarkTests {
+
+    private static final int ENTRIES = 1_000_000;
+    private static final int SEED_CHUNK = 100_000;
+    private static final int USERS = 5_000;
+    private static final long HEAVY_USER = 1L;          // каждая 50-я запись — 20k записей у одного пользователя
+    private static final int QUERIES = 2_000;
+    private static final int WARMUP = 200;
+    private static final int PAGE = 20;
+    private static final long P99_LIMIT_NANOS = 50_000_000L;   // 50 ms
+
+    private static final String[] WORDS = {
+            // ru
+            "работа", "работе", "работы", "сон", "спал", "устал", "усталость", "тревога", "тревожно",
+            "прогулка", "гулял", "семья", "друзья", "дедлайн", "спорт", "бег", "медитация", "радость",
+            "грусть", "вечером", "утром", "кофе", "книга", "читал", "проект", "встреча", "голова",
+            // en
+            "work", "working", "sleep", "slept", "tired", "anxiety", "walk", "walking", "family",
+            "friends", "deadline", "running", "meditation", "happy", "coffee", "reading", "meeting",
+            // kk
+            "жұмыс", "ұйқы", "шаршадым", "серуен", "отбасы", "достар", "қуаныш", "кітап", "кездесу",
+            // filler
+            "и", "но", "потом", "очень", "немного", "сегодня", "the", "and", "today", "really"
+    };
+    private static final String[] TITLES = {
+            "Тяжёлый день", "Хорошее утро", "Мысли перед сном", "Good morning", "Busy week",
+            "Жақсы күн", "Ауыр күн", "Вечерняя прогулка", "Project notes", "Без названия"
+    };
+    private static final String[] TAGS = {
+            "работа,стресс", "сон", "спорт,здоровье", "семья", "work,focus", "жұмыс", "", "идеи"
+    };
+    private static final String[] QUERY_POOL = {
+            "работой", "спать", "тревожность", "прогулки", "walked", "meetings", "deadlines",
+            "жұмыс", "ұйқы", "\"очень устал\"", "кофе книга", "sleep -work", "бег OR running",
+            "медитация утром", "қуаныш", "tired coffee"
+    };
+
+    private static NamedParameterJdbcTemplate jdbc;
+    private static final Random random = new Random(42);
+
+    @BeforeAll
+    static void prepareDatabase() {
+        String url = System.getenv("JOURNAL_SEARCH_BENCH_URL");
+        assumeTrue(url != null && !url.isBlank(), "JOURNAL_SEARCH_BENCH_URL is not set — skipping");
+
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url,
+                System.getenv().getOrDefault("JOURNAL_SEARCH_BENCH_USER", "postgres"),
+                System.getenv().getOrDefault("JOURNAL_SEARCH_BENCH_PASSWORD", "postgres"));
+        jdbc = new NamedParameterJdbcTemplate(dataSource);
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+        Long rows = jdbc.getJdbcTemplate().queryForObject("SELECT count(*) FROM journal_entries", Long.class);
+        if (rows != null && rows >= ENTRIES) {
+            System.out.printf("journal_entries: reusing %d existing rows%n", rows);
+            return;
+        }
+        jdbc.getJdbcTemplate().execute("TRUNCATE journal_entries RESTART IDENTITY");
+
+        long start = System.currentTimeMillis();
+        for (int from = 1; from <= ENTRIES; from += SEED_CHUNK) {
+            jdbc.update(seedSql(), new MapSqlParameterSource()
+                    .addValue("from", from)
+                    .addValue("to", Math.min(from + SEED_CHUNK - 1, ENTRIES)));
+        }
+        jdbc.getJdbcTemplate().execute("VACUUM ANALYZE journal_entries");
+        System.out.printf("journal_entries: %d rows seeded in %d ms%n", ENTRIES, System.currentTimeMillis() - start);
+    }
+
+    @Test
+    void planUsesUserSearchIndex() {
+        String plan = jdbc.queryForList("EXPLAIN " + JournalEntryRepository.SEARCH_QUERY,
+                        params(42L, "работа", Float.POSITIVE_INFINITY, Long.MAX_VALUE), String.class)
+                .stream().collect(Collectors.joining("\n"));
+        System.out.println(plan);
+        assertTrue(plan.contains("idx_je_user_search"), "search must use idx_je_user_search:\n" + plan);
+    }
+
+    @Test
+    void firstPageP99UnderLimit() {
+        report("first page (typical user)", measure(() -> 2L + random.nextInt(USERS), 1));
+    }
+
+    @Test
+    void heavyUserDeepPagesP99UnderLimit() {
+        // keyset: 5-я страница не должна быть заметно дороже первой
+        report("5th page (heavy user, 20k entries)", measure(() -> HEAVY_USER, 5));
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private interface UserPicker {
+        long next();
+    }
+
+    private static long[] measure(UserPicker users, int pageNo) {
+        for (int i = 0; i < WARMUP; i++) {
+            fetchPage(users.next(), randomQuery(), pageNo);
+        }
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            latencies[i] = fetchPage(users.next(), randomQuery(), pageNo);
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /** Проходит страницы через курсор (rank, id); возвращает время последней страницы */
+    private static long fetchPage(long userId, String query, int pageNo) {
+        float afterRank = Float.POSITIVE_INFINITY;
+        long afterId = Long.MAX_VALUE;
+        long elapsed = 0;
+        for (int page = 1; page <= pageNo; page++) {
+            long t0 = System.nanoTime();
+            List<Map<String, Object>> rows = jdbc.queryForList(JournalEntryRepository.SEARCH_QUERY,
+                    params(userId, query, afterRank, afterId));
+            elapsed = System.nanoTime() - t0;
+            assertTrue(rows.size() <= PAGE);
+            if (rows.size() < PAGE) break;
+            Map<String, Object> last = rows.get(rows.size() - 1);
+            afterRank = ((Number) last.get("rank")).floatValue();
+            afterId = ((Number) last.get("id")).longValue();
+        }
+        return elapsed;
+    }
+
+    private static MapSqlParameterSource params(long userId, String query, float afterRank, long afterId) {
+        return new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("query", query)
+                .addValue("afterRank", afterRank)
+                .addValue("afterId", afterId)
+                .addValue("limit", PAGE);
+    }
+
+    private static void report(String label, long[] latencies) {
+        long p50 = latencies[latencies.length / 2];
+        long p99 = latencies[(int) (latencies.length * 0.99)];
+        System.out.printf("journal search, %s: p50=%.2f ms, p99=%.2f ms, max=%.2f ms%n",
+                label, p50 / 1e6, p99 / 1e6, latencies[latencies.length - 1] / 1e6);
+        assertTrue(p99 < P99_LIMIT_NANOS, label + ": p99 " + p99 / 1e6 + " ms exceeds " + P99_LIMIT_NANOS / 1e6 + " ms");
+    }
+
+    private static String randomQuery() {
+        return QUERY_POOL[random.nextInt(QUERY_POOL.length)];
+    }
+
+    /** Синтетические записи [:from, :to]: 30–80 случайных слов из смешанного ru / en / kk словаря */
+    private static String seedSql() {
+        return """
+                WITH vocab AS (SELECT ARRAY[%s] AS w, ARRAY[%s] AS titles, ARRAY[%s] AS tags)
+                INSERT INTO journal_entries (user_id, title, content, tags, mood_score, word_count, created_at, updated_at)
+                SELECT CASE WHEN g %% 50 = 0 THEN %d ELSE 2 + g %% %d END,
+                       v.titles[1 + g %% array_length(v.titles, 1)],
+                       array_to_string(ARRAY(
+                           SELECT v.w[1 + floor(random() * array_length(v.w, 1))::int]
+                             FROM generate_series(1, 30 + g %% 50)), ' '),
+                       NULLIF(v.tags[1 + g %% array_length(v.tags, 1)], ''),
+                       1 + g %% 5,
+                       30 + g %% 50,
+                       now() - make_interval(mins => g),
+                       now() - make_interval(mins => g)
+                  FROM generate_series(:from, :to) g, vocab v
+                """.formatted(sqlArray(WORDS), sqlArray(TITLES), sqlArray(TAGS), HEAVY_USER, USERS);
+    }
+
+    private static String sqlArray(String[] values) {
+        return Arrays.stream(values)
+                .map(v -> "'" + v.replace("'", "''") + "'")
+                .collect(Collectors.joining(", "));
+    }
+}
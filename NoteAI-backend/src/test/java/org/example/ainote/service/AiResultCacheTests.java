@@ -0,0 +1,154 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ainote.entity.AiResultCacheEntry;
+import org.example.ainote.repository.AiResultCacheRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * AiResultCache: ключ по содержимому, уровни L1 (память) → L2 (ai_result_cache) → miss,
+ * вытеснение LRU и evictSource при изменении заметки / записи журнала.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class AiResultCacheTests {
+
+    private static final String SUMMARY = "summary";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AiResultCacheRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AiResultCacheRepository.class);
+        when(repository.findByOperationAndPromptVersionAndContentHash(anyString(), anyInt(), anyString()))
+                .thenReturn(Optional.empty());
+    }
+
+    @Test
+    void keyDependsOnContentOperationAndPromptVersionOnly() {
+        AiResultCache.Key key = AiResultCache.Key.of(SUMMARY, 1, "Заголовок", "Текст заметки");
+
+        assertEquals(key, AiResultCache.Key.of(SUMMARY, 1, "Заголовок", "Текст заметки"));
+        assertEquals(64, key.contentHash().length());
+        assertNotEquals(key, AiResultCache.Key.of(SUMMARY, 1, "Заголовок", "Текст заметки!"));
+        assertNotEquals(key, AiResultCache.Key.of(SUMMARY, 2, "Заголовок", "Текст заметки"));
+        assertNotEquals(key, AiResultCache.Key.of("analysis", 1, "Заголовок", "Текст заметки"));
+        // Разделитель \0: граница заголовка и текста входит в хеш
+        assertNotEquals(AiResultCache.Key.of(SUMMARY, 1, "ab", "c"), AiResultCache.Key.of(SUMMARY, 1, "a", "bc"));
+        assertEquals(AiResultCache.Key.of(SUMMARY, 1, null, "x"), AiResultCache.Key.of(SUMMARY, 1, "", "x"));
+    }
+
+    @Test
+    void putServesFromMemoryWithoutDatabase() {
+        AiResultCache cache = cache(10);
+        AiResultCache.Key key = AiResultCache.Key.of(SUMMARY, 1, "t", "c");
+
+        cache.put(key, AiResultCache.SOURCE_NOTE, 5L, "result");
+
+        assertEquals(Optional.of("result"), cache.get(key));
+        verify(repository).upsert(SUMMARY, 1, key.contentHash(), AiResultCache.SOURCE_NOTE, 5L, "result");
+        verify(repository, never()).findByOperationAndPromptVersionAndContentHash(anyString(), anyInt(), anyString());
+        assertEquals(1.0, requests("memory_hit"));
+    }
+
+    @Test
+    void databaseHitIsPromotedToMemory() {
+        AiResultCache cache = cache(10);
+        AiResultCache.Key key = AiResultCache.Key.of(SUMMARY, 1, "t", "c");
+        when(repository.findByOperationAndPromptVersionAndContentHash(SUMMARY, 1, key.contentHash()))
+                .thenReturn(Optional.of(entry(key, AiResultCache.SOURCE_JOURNAL, 9L, "from db")));
+
+        assertEquals(Optional.of("from db"), cache.get(key));
+        assertEquals(Optional.of("from db"), cache.get(key));
+
+        verify(repository, times(1)).findByOperationAndPromptVersionAndContentHash(SUMMARY, 1, key.contentHash());
+        assertEquals(1.0, requests("db_hit"));
+        assertEquals(1.0, requests("memory_hit"));
+    }
+
+    @Test
+    void missIsCountedAndReturnsEmpty() {
+        AiResultCache cache = cache(10);
+
+        assertTrue(cache.get(AiResultCache.Key.of(SUMMARY, 1, "t", "c")).isEmpty());
+        assertEquals(1.0, requests("miss"));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryFallsBackToDatabase() {
+        AiResultCache cache = cache(2);
+        AiResultCache.Key a = AiResultCache.Key.of(SUMMARY, 1, "a", "a");
+        AiResultCache.Key b = AiResultCache.Key.of(SUMMARY, 1, "b", "b");
+        AiResultCache.Key c = AiResultCache.Key.of(SUMMARY, 1, "c", "c");
+
+        cache.put(a, AiResultCache.SOURCE_NOTE, 1L, "A");
+        cache.put(b, AiResultCache.SOURCE_NOTE, 2L, "B");
+        cache.get(a);                                  // a свежее b
+        cache.put(c, AiResultCache.SOURCE_NOTE, 3L, "C");
+
+        assertEquals(Optional.of("A"), cache.get(a));
+        assertTrue(cache.get(b).isEmpty(), "b evicted from memory, repository mock has nothing");
+        assertEquals(2.0, meterRegistry.get("ai.cache.memory.size").gauge().value());
+    }
+
+    @Test
+    void evictSourceDropsOnlyThatSource() {
+        AiResultCache cache = cache(10);
+        AiResultCache.Key summary = AiResultCache.Key.of(SUMMARY, 1, "t", "v1");
+        AiResultCache.Key analysis = AiResultCache.Key.of("analysis", 1, "t", "v1");
+        AiResultCache.Key other = AiResultCache.Key.of(SUMMARY, 1, "t", "other");
+        AiResultCache.Key journal = AiResultCache.Key.of(SUMMARY, 1, "t", "journal");
+        cache.put(summary, AiResultCache.SOURCE_NOTE, 5L, "S");
+        cache.put(analysis, AiResultCache.SOURCE_NOTE, 5L, "A");
+        cache.put(other, AiResultCache.SOURCE_NOTE, 6L, "O");
+        cache.put(journal, AiResultCache.SOURCE_JOURNAL, 5L, "J");
+
+        cache.evictSource(AiResultCache.SOURCE_NOTE, 5L);
+
+        verify(repository).deleteBySource(AiResultCache.SOURCE_NOTE, 5L);
+        assertTrue(cache.get(summary).isEmpty());
+        assertTrue(cache.get(analysis).isEmpty());
+        assertEquals(Optional.of("O"), cache.get(other));
+        assertEquals(Optional.of("J"), cache.get(journal));
+        verify(repository, times(2)).findByOperationAndPromptVersionAndContentHash(anyString(), anyInt(), any());
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private AiResultCache cache(int maxMemoryEntries) {
+        return new AiResultCache(repository, meterRegistry, maxMemoryEntries);
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("ai.cache.requests").tag("result", result).counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+    }
+
+    private static AiResultCacheEntry entry(AiResultCache.Key key, String sourceType, Long sourceId, String result) {
+        return AiResultCacheEntry.builder()
+                .operation(key.operation())
+                .promptVersion(key.promptVersion())
+                .contentHash(key.contentHash())
+                .sourceType(sourceType)
+                .sourceId(sourceId)
+                .result(result)
+                .build();
+    }
+}
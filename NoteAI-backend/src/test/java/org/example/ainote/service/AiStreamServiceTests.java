@@ -0,0 +1,235 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AiStreamService: токен запрашивается у upstream только после записи предыдущего
+ * (медленный клиент не копит буфер), отключение клиента отменяет upstream.
+ * SseEmitter подключается к записывающему Handler'у без MVC (см. RecordingHandler).
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class AiStreamServiceTests {
+
+    private static final int TOKENS = 50;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AiStreamService service = new AiStreamService(meterRegistry, Duration.ofMinutes(1));
+
+    @Test
+    void slowClientBoundsUpstreamDemand() throws Exception {
+        AtomicInteger emitted = new AtomicInteger();
+        Sinks.Empty<Void> go = Sinks.empty();
+        Flux<String> tokens = Flux.range(1, TOKENS)
+                .map(i -> "t" + i + " ")
+                .doOnNext(t -> emitted.incrementAndGet())
+                .delaySubscription(go.asMono());
+
+        SseEmitter emitter = service.stream("chat", tokens, full -> Map.of("length", full.length()));
+        RecordingHandler client = RecordingHandler.attach(emitter);
+        client.blockWrites();
+        go.tryEmitEmpty();
+
+        assertTrue(client.writeStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        // Один токен пишется, не больше одного ждёт в очереди publishOn
+        assertTrue(emitted.get() <= 2, "emitted while client is stuck: " + emitted.get());
+
+        client.unblockWrites();
+        await(() -> client.completed);
+
+        List<String> events = client.events();
+        assertEquals(TOKENS + 1, events.size());
+        assertTrue(events.get(0).startsWith("event:token\ndata:t1 "));
+        assertTrue(events.get(TOKENS).startsWith("event:done\n"));
+        // payload done приходит в Handler объектом — в JSON его пишет MessageConverter
+        assertTrue(events.get(TOKENS).contains("length=" + tokenText().length()));
+        assertEquals(TOKENS, emitted.get());
+        await(() -> meterRegistry.find("ai.stream.duration").tag("outcome", "completed").timer() != null);
+    }
+
+    @Test
+    void writeFailureCancelsUpstream() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicInteger emitted = new AtomicInteger();
+        Sinks.Empty<Void> go = Sinks.empty();
+        Flux<String> tokens = Flux.interval(Duration.ofMillis(5))
+                .map(i -> "t" + i)
+                .doOnNext(t -> emitted.incrementAndGet())
+                .doOnCancel(cancelled::countDown)
+                .delaySubscription(go.asMono());
+
+        SseEmitter emitter = service.stream("summary", tokens, full -> Map.of());
+        RecordingHandler client = RecordingHandler.attach(emitter);
+        client.failAfter(3);
+        go.tryEmitEmpty();
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "upstream must be cancelled after write failure");
+        Thread.sleep(50);
+        int afterCancel = emitted.get();
+        Thread.sleep(100);
+        assertEquals(afterCancel, emitted.get());
+        assertEquals(3, client.events().size());
+        assertFalse(client.events().stream().anyMatch(e -> e.startsWith("event:done")));
+        await(() -> meterRegistry.find("ai.stream.duration").tag("outcome", "cancelled").timer() != null);
+    }
+
+    @Test
+    void clientDisconnectCancelsUpstream() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Flux<String> tokens = Flux.<String>never().doOnCancel(cancelled::countDown);
+
+        SseEmitter emitter = service.stream("analysis", tokens, full -> Map.of());
+        RecordingHandler client = RecordingHandler.attach(emitter);
+
+        client.disconnect();
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS), "upstream must be cancelled when the client is gone");
+        assertTrue(client.events().isEmpty());
+    }
+
+    @Test
+    void upstreamErrorIsSentAsErrorEvent() throws Exception {
+        Sinks.Empty<Void> go = Sinks.empty();
+        Flux<String> tokens = Flux.concat(Flux.just("partial"),
+                        Flux.<String>error(new IllegalStateException("HTTP 503")))
+                .delaySubscription(go.asMono());
+
+        SseEmitter emitter = service.stream("chat", tokens, full -> Map.of());
+        RecordingHandler client = RecordingHandler.attach(emitter);
+        go.tryEmitEmpty();
+
+        await(() -> client.completed);
+        List<String> events = client.events();
+        assertEquals(2, events.size());
+        assertTrue(events.get(1).startsWith("event:error\n"));
+        await(() -> meterRegistry.find("ai.stream.duration").tag("outcome", "error").timer() != null);
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private static String tokenText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= TOKENS; i++) text.append("t").append(i).append(' ');
+        return text.toString();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not reached in 5s");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Клиентское соединение вместо servlet-ответа. ResponseBodyEmitter.Handler и initialize —
+     * package-private, поэтому Handler собирается через Proxy, а initialize вызывается рефлексией.
+     */
+    private static final class RecordingHandler implements InvocationHandler {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final List<Runnable> completionCallbacks = new CopyOnWriteArrayList<>();
+        final CountDownLatch writeStarted = new CountDownLatch(1);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile int failAfter = Integer.MAX_VALUE;
+        volatile boolean completed;
+
+        static RecordingHandler attach(ResponseBodyEmitter emitter) throws Exception {
+            Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+            RecordingHandler recorder = new RecordingHandler();
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[]{handlerType}, recorder);
+            Method initialize = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+            initialize.setAccessible(true);
+            initialize.invoke(emitter, handler);
+            return recorder;
+        }
+
+        void blockWrites() {
+            gate = new CountDownLatch(1);
+        }
+
+        void unblockWrites() {
+            gate.countDown();
+        }
+
+        void failAfter(int events) {
+            failAfter = events;
+        }
+
+        /** Контейнер закрыл async-запрос (клиент ушёл) — как onCompletion в servlet */
+        void disconnect() {
+            completionCallbacks.forEach(Runnable::run);
+        }
+
+        List<String> events() {
+            return List.copyOf(events);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "send" -> {
+                    if (args[0] instanceof Set<?> items && items.isEmpty()) return null;
+                    if (events.size() >= failAfter) throw new IOException("Broken pipe");
+                    writeStarted.countDown();
+                    gate.await();
+                    StringBuilder event = new StringBuilder();
+                    if (args[0] instanceof Set<?> items) {
+                        for (ResponseBodyEmitter.DataWithMediaType item : (Set<ResponseBodyEmitter.DataWithMediaType>) items) {
+                            event.append(item.getData());
+                        }
+                    } else {
+                        event.append(args[0]);
+                    }
+                    events.add(event.toString());
+                }
+                case "complete", "completeWithError" -> completed = true;
+                case "onCompletion" -> completionCallbacks.add((Runnable) args[0]);
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "toString" -> {
+                    return "RecordingHandler";
+                }
+                default -> {
+                    // onTimeout / onError: в тестах не срабатывают
+                }
+            }
+            return null;
+        }
+    }
+}
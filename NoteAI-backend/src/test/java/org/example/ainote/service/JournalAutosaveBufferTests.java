@@ -0,0 +1,286 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ainote.dto.JournalEntryRequest;
+import org.example.ainote.entity.JournalEntry;
+import org.example.ainote.exception.AutosaveDiscardedException;
+import org.example.ainote.exception.BadRequestException;
+import org.example.ainote.repository.JournalEntryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * JournalAutosaveBuffer: склейка PATCH в одну запись в БД, version в ack,
+ * восстановление неподтверждённых в БД патчей из WAL после падения (падающая запись —
+ * в карантин, остальные восстанавливаются),
+ * PATCH во время PUT не затирает его, невалидный патч не подтверждается,
+ * запись с постоянно падающим flush выбрасывается из буфера.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class JournalAutosaveBufferTests {
+
+    private static final long USER = 7L;
+    private static final long ENTRY = 42L;
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    @TempDir
+    Path walDir;
+
+    private JournalEntryRepository repo;
+    private SimpleMeterRegistry meterRegistry;
+    private JournalEntry stored;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(JournalEntryRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        stored = entry("Черновик", "начало");
+        when(repo.findByIdAndUserId(ENTRY, USER)).thenAnswer(inv -> Optional.of(copy(stored)));
+        when(repo.findById(ENTRY)).thenAnswer(inv -> Optional.of(copy(stored)));
+        when(repo.save(any(JournalEntry.class))).thenAnswer(inv -> {
+            stored = copy(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+    }
+
+    @Test
+    void invalidPatchIsRejectedBeforeAck() {
+        JournalAutosaveBuffer buffer = buffer(Duration.ofMinutes(1));
+        JournalEntryRequest mood = new JournalEntryRequest();
+        mood.setMoodScore(9);
+        JournalEntryRequest title = new JournalEntryRequest();
+        title.setTitle("x".repeat(501));
+
+        assertThrows(BadRequestException.class, () -> buffer.patch(USER, ENTRY, mood));
+        assertThrows(BadRequestException.class, () -> buffer.patch(USER, ENTRY, title));
+
+        verify(repo, never()).findByIdAndUserId(anyLong(), anyLong());
+        assertEquals(0, buffer.flush(ENTRY, "explicit"));
+    }
+
+    @Test
+    void entryThatKeepsFailingToFlushIsDroppedAndReportedOnce() {
+        JournalAutosaveBuffer crashed = buffer(Duration.ofMinutes(1));
+        crashed.patch(USER, ENTRY, content("не сохранится"));
+        doThrow(new IllegalStateException("constraint violation")).when(repo).save(any(JournalEntry.class));
+
+        for (int i = 0; i < MAX_FLUSH_ATTEMPTS; i++) crashed.flush(ENTRY, "explicit");
+
+        assertEquals(MAX_FLUSH_ATTEMPTS, meterRegistry.get("journal.autosave.flush.failures").counter().count());
+        assertEquals(1.0, meterRegistry.get("journal.autosave.flush.dropped").counter().count());
+        assertEquals(0, crashed.flush(ENTRY, "explicit"), "dropped entry must leave the buffer");
+
+        doAnswer(inv -> {
+            stored = copy(inv.getArgument(0));
+            return inv.getArgument(0);
+        }).when(repo).save(any(JournalEntry.class));
+        assertThrows(AutosaveDiscardedException.class, () -> crashed.patch(USER, ENTRY, content("дальше")));
+
+        // Маркер discard в WAL: replay не поднимает выброшенный патч снова
+        buffer(Duration.ofMinutes(1));
+        assertEquals("начало", stored.getContent());
+
+        // Ошибка отдаётся один раз — следующий PATCH начинает новую серию
+        assertEquals("дальше", crashed.patch(USER, ENTRY, content("дальше")).entry().getContent());
+    }
+
+    @Test
+    void coalescesPatchSeriesIntoSingleDatabaseWrite() {
+        JournalAutosaveBuffer buffer = buffer(Duration.ofMinutes(1));
+
+        long lastVersion = 0;
+        for (int i = 1; i <= 10; i++) {
+            JournalAutosaveBuffer.Ack ack = buffer.patch(USER, ENTRY, content("текст " + i));
+            assertTrue(ack.version() > lastVersion, "versions must increase");
+            assertEquals("текст " + i, ack.entry().getContent());
+            // Производные поля пересчитаны по снимку, а не взяты из строки до патча
+            assertEquals(2, ack.entry().getWordCount());
+            assertNotNull(ack.entry().getUpdatedAt());
+            lastVersion = ack.version();
+        }
+        verify(repo, times(1)).findByIdAndUserId(ENTRY, USER);
+        verify(repo, never()).save(any());
+
+        assertEquals(lastVersion, buffer.flush(ENTRY, "explicit"));
+        verify(repo, times(1)).save(any());
+        assertEquals("текст 10", stored.getContent());
+        assertEquals("Черновик", stored.getTitle());
+        assertEquals(0.1, meterRegistry.get("journal.autosave.db.writes.per.patch").gauge().value(), 1e-9);
+
+        // Буфер пуст — повторный flush ничего не пишет
+        assertEquals(0, buffer.flush(ENTRY, "explicit"));
+        verify(repo, times(1)).save(any());
+    }
+
+    @Test
+    void idleEntriesAreFlushedByTick() {
+        JournalAutosaveBuffer buffer = buffer(Duration.ZERO);
+        buffer.patch(USER, ENTRY, content("сразу после паузы"));
+
+        buffer.tick();
+
+        assertEquals("сразу после паузы", stored.getContent());
+        assertEquals(1.0, meterRegistry.get("journal.autosave.flushes").tag("reason", "idle").counter().count());
+    }
+
+    @Test
+    void walReplayRestoresAcknowledgedPatchesAfterCrash() {
+        JournalAutosaveBuffer crashed = buffer(Duration.ofMinutes(1));
+        crashed.patch(USER, ENTRY, content("первая версия"));
+        JournalEntryRequest mood = new JournalEntryRequest();
+        mood.setMoodScore(4);
+        crashed.patch(USER, ENTRY, mood);
+        crashed.patch(USER, ENTRY, content("последняя версия"));
+        // stop() не вызывается — процесс «упал», в БД ничего не записано
+        verify(repo, never()).save(any());
+
+        buffer(Duration.ofMinutes(1));
+
+        ArgumentCaptor<JournalEntry> saved = ArgumentCaptor.forClass(JournalEntry.class);
+        verify(repo, times(1)).save(saved.capture());
+        assertEquals("последняя версия", saved.getValue().getContent());
+        assertEquals(4, saved.getValue().getMoodScore());
+    }
+
+    @Test
+    void replaySkipsPatchesAlreadyFlushed() {
+        JournalAutosaveBuffer crashed = buffer(Duration.ofMinutes(1));
+        JournalEntryRequest title = new JournalEntryRequest();
+        title.setTitle("Старый заголовок");
+        crashed.patch(USER, ENTRY, title);
+        crashed.flush(ENTRY, "explicit");
+        crashed.patch(USER, ENTRY, content("после flush"));
+
+        // После flush заголовок поменяли через PUT — replay не должен его откатить
+        stored.setTitle("Заголовок из PUT");
+
+        buffer(Duration.ofMinutes(1));
+
+        assertEquals("Заголовок из PUT", stored.getTitle());
+        assertEquals("после flush", stored.getContent());
+    }
+
+    @Test
+    void replayQuarantinesFailingEntryAndRestoresTheRest() throws Exception {
+        JournalEntry other = JournalEntry.builder().id(43L).userId(USER).title("Другая").content("x").build();
+        when(repo.findByIdAndUserId(43L, USER)).thenAnswer(inv -> Optional.of(copy(other)));
+        JournalAutosaveBuffer crashed = buffer(Duration.ofMinutes(1));
+        crashed.patch(USER, ENTRY, content("восстановится"));
+        crashed.patch(USER, 43L, content("отравленная"));
+
+        when(repo.findByIdAndUserId(43L, USER)).thenThrow(new IllegalStateException("corrupted row"));
+        buffer(Duration.ofMinutes(1));
+
+        assertEquals("восстановится", stored.getContent());
+        assertEquals(1.0, meterRegistry.get("journal.autosave.replay.quarantined").counter().count());
+        List<String> quarantined = Files.readAllLines(walDir.resolve("journal-autosave.quarantine"));
+        assertEquals(1, quarantined.size());
+        assertTrue(quarantined.get(0).contains("отравленная"));
+    }
+
+    @Test
+    void patchDuringPutWaitsForCommitAndDoesNotOverwriteIt() throws Exception {
+        JournalAutosaveBuffer buffer = buffer(Duration.ofMinutes(1));
+        buffer.patch(USER, ENTRY, content("до PUT"));
+
+        // Транзакция PUT на этом потоке: flushForWrite держит запись до afterCompletion
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<JournalAutosaveBuffer.Ack> racingPatch;
+        try {
+            buffer.flushForWrite(ENTRY);
+            assertEquals("до PUT", stored.getContent());
+
+            racingPatch = CompletableFuture.supplyAsync(() -> buffer.patch(USER, ENTRY, content("после PUT")));
+            Thread.sleep(100);
+            assertFalse(racingPatch.isDone(), "PATCH must wait for the PUT transaction");
+
+            // PUT пишет строку и коммитится
+            stored = entry("Заголовок из PUT", "текст PUT");
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        JournalAutosaveBuffer.Ack ack = racingPatch.get(5, TimeUnit.SECONDS);
+        assertEquals("Заголовок из PUT", ack.entry().getTitle());
+        assertEquals("после PUT", ack.entry().getContent());
+
+        buffer.flush(ENTRY, "explicit");
+        assertEquals("Заголовок из PUT", stored.getTitle());
+        assertEquals("после PUT", stored.getContent());
+    }
+
+    @Test
+    void rejectsPatchFromAnotherUser() {
+        JournalAutosaveBuffer buffer = buffer(Duration.ofMinutes(1));
+        buffer.patch(USER, ENTRY, content("моё"));
+        when(repo.findByIdAndUserId(anyLong(), anyLong())).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> buffer.patch(99L, ENTRY, content("чужое")));
+        assertThrows(IllegalArgumentException.class, () -> buffer.patch(USER, 43L, content("нет записи")));
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private JournalAutosaveBuffer buffer(Duration idleFlush) {
+        JournalAutosaveBuffer buffer = new JournalAutosaveBuffer(repo, mock(AiResultCache.class),
+                mock(PlatformTransactionManager.class), mock(ApplicationEventPublisher.class), meterRegistry,
+                true, idleFlush, Duration.ofMinutes(5), 1_000, MAX_FLUSH_ATTEMPTS, walDir.toString(), true, 1 << 20);
+        buffer.start();
+        return buffer;
+    }
+
+    private static JournalEntryRequest content(String text) {
+        JournalEntryRequest req = new JournalEntryRequest();
+        req.setContent(text);
+        return req;
+    }
+
+    private static JournalEntry entry(String title, String content) {
+        return JournalEntry.builder()
+                .id(ENTRY).userId(USER)
+                .title(title).content(content)
+                .build();
+    }
+
+    private static JournalEntry copy(JournalEntry e) {
+        return JournalEntry.builder()
+                .id(e.getId()).userId(e.getUserId())
+                .title(e.getTitle()).content(e.getContent())
+                .moodScore(e.getMoodScore()).tags(e.getTags())
+                .isFavorite(e.getIsFavorite())
+                .build();
+    }
+}
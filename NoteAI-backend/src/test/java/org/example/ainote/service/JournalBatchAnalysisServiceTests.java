@@ -0,0 +1,264 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ainote.entity.JournalAnalysisRun;
+import org.example.ainote.entity.JournalEntry;
+import org.example.ainote.repository.JournalAnalysisRunRepository;
+import org.example.ainote.repository.JournalEntryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * JournalBatchAnalysisService с настоящим LlmGateway поверх stub ChatModel:
+ * упаковка в батчи, разбор ответа по id, курсор / возобновление и пауза при сбое провайдера.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class JournalBatchAnalysisServiceTests {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 18);
+    private static final LocalDateTime FROM = DAY.atStartOfDay();
+    private static final LocalDateTime TO = DAY.plusDays(1).atStartOfDay();
+    /** Ночь после DAY в Алматы — в UTC это ещё DAY */
+    private static final Instant NIGHTLY_TICK = Instant.parse("2026-10-18T21:30:00Z");
+
+    private final StubChatModel chatModel = new StubChatModel();
+    private final JournalEntryRepository entryRepository = mock(JournalEntryRepository.class);
+    private final JournalAnalysisRunRepository runRepository = mock(JournalAnalysisRunRepository.class);
+    private final AiResultCache aiResultCache = mock(AiResultCache.class);
+    private final Map<Long, List<JournalEntry>> entriesByUser = new ConcurrentHashMap<>();
+
+    private LlmGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new LlmGateway(chatModel, new SimpleMeterRegistry(),
+                1_000, 1_000_000, 2, 100, 10, 400, Duration.ofSeconds(5), Duration.ofSeconds(5));
+        gateway.start();
+
+        when(runRepository.tryClaim(eq(DAY), any(), any())).thenReturn(1);
+        when(runRepository.findById(DAY)).thenReturn(Optional.of(run(0L)));
+        when(entryRepository.findUserIdsWithEntries(eq(FROM), eq(TO), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    long after = inv.getArgument(2);
+                    return entriesByUser.keySet().stream().filter(id -> id > after).sorted().toList();
+                });
+        when(entryRepository.findForBatchAnalysis(anyLong(), eq(FROM), eq(TO)))
+                .thenAnswer(inv -> entriesByUser.getOrDefault(inv.<Long>getArgument(0), List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.stop();
+    }
+
+    @Test
+    void packsEntriesPerUserAndStoresEachResultUnderOnDemandKey() {
+        entriesByUser.put(1L, List.of(entry(11, 1), entry(12, 1), entry(13, 1)));
+        entriesByUser.put(2L, List.of(entry(21, 2)));
+
+        assertEquals(JournalBatchAnalysisService.Outcome.COMPLETED, service(6_000, 2).runDay(DAY));
+
+        // user 1: [11, 12] + [13], user 2: [21]
+        assertEquals(3, chatModel.prompts.size());
+        for (JournalEntry entry : List.of(entry(11, 1), entry(12, 1), entry(13, 1), entry(21, 2))) {
+            verify(aiResultCache).put(
+                    eq(NoteAiService.journalAnalysisKey(entry.getTitle(), entry.getContent())),
+                    eq(AiResultCache.SOURCE_JOURNAL), eq(entry.getId()),
+                    argThat(json -> json.contains("\"summary\"") && !json.contains("\"id\"")));
+        }
+        verify(runRepository).advance(eq(DAY), eq(1L), eq(3), eq(2), any());
+        verify(runRepository).advance(eq(DAY), eq(2L), eq(1), eq(1), any());
+        verify(runRepository).complete(eq(DAY), any());
+    }
+
+    @Test
+    void resumesAfterCursorAndSkipsAlreadyAnalyzedEntries() {
+        entriesByUser.put(1L, List.of(entry(11, 1)));
+        entriesByUser.put(2L, List.of(entry(21, 2), entry(22, 2)));
+        when(runRepository.findById(DAY)).thenReturn(Optional.of(run(1L)));
+        JournalEntry cached = entry(22, 2);
+        when(aiResultCache.get(NoteAiService.journalAnalysisKey(cached.getTitle(), cached.getContent())))
+                .thenReturn(Optional.of("{\"summary\":\"done\"}"));
+
+        assertEquals(JournalBatchAnalysisService.Outcome.COMPLETED, service(6_000, 8).runDay(DAY));
+
+        assertEquals(1, chatModel.prompts.size());
+        assertTrue(chatModel.prompts.get(0).contains("id=21"));
+        assertFalse(chatModel.prompts.get(0).contains("id=22"));
+        verify(entryRepository, never()).findForBatchAnalysis(eq(1L), any(), any());
+        verify(runRepository).advance(eq(DAY), eq(2L), eq(1), eq(1), any());
+    }
+
+    @Test
+    void entriesMissingFromModelOutputAreLeftForOnDemand() {
+        entriesByUser.put(1L, List.of(entry(11, 1), entry(12, 1)));
+        chatModel.omitIds.add(12L);
+
+        service(6_000, 8).runDay(DAY);
+
+        verify(aiResultCache).put(any(), eq(AiResultCache.SOURCE_JOURNAL), eq(11L), anyString());
+        verify(aiResultCache, never()).put(any(), any(), eq(12L), any());
+        verify(runRepository).advance(eq(DAY), eq(1L), eq(1), eq(1), any());
+    }
+
+    @Test
+    void providerFailurePausesRunWithoutAdvancingCursor() {
+        entriesByUser.put(1L, List.of(entry(11, 1)));
+        chatModel.failure = new IllegalStateException("HTTP 503 - upstream unavailable");
+
+        assertEquals(JournalBatchAnalysisService.Outcome.PAUSED, service(6_000, 8).runDay(DAY));
+
+        verify(runRepository).pause(eq(DAY), argThat(error -> error != null && !error.isBlank()));
+        verify(runRepository, never()).advance(any(), anyLong(), anyInt(), anyInt(), any());
+        verify(runRepository, never()).complete(any(), any());
+    }
+
+    @Test
+    void userRejectedByProviderIsSkippedAfterMaxAttemptsAndCursorMovesOn() {
+        entriesByUser.put(1L, List.of(entry(11, 1)));
+        entriesByUser.put(2L, List.of(entry(21, 2)));
+        chatModel.rejectIds.add(11L);
+
+        assertEquals(JournalBatchAnalysisService.Outcome.COMPLETED, service(6_000, 8).runDay(DAY));
+
+        // Две попытки user 1, затем user 2
+        assertEquals(3, chatModel.prompts.size());
+        verify(runRepository).recordSkippedUser(eq(DAY), eq(1L), eq(2),
+                argThat(error -> error.contains("400")), any());
+        verify(runRepository).advance(eq(DAY), eq(1L), eq(0), eq(0), any());
+        verify(runRepository).advance(eq(DAY), eq(2L), eq(1), eq(1), any());
+        verify(runRepository, never()).pause(any(), any());
+        verify(runRepository).complete(eq(DAY), any());
+    }
+
+    @Test
+    void nightlyTakesYesterdayInAlmatyRegardlessOfServerZone() {
+        JournalBatchAnalysisService service = new JournalBatchAnalysisService(entryRepository, runRepository,
+                aiResultCache, gateway, new SimpleMeterRegistry(), true, 6_000, 8, 1, Duration.ofMinutes(15), 2,
+                Clock.fixed(NIGHTLY_TICK, ZoneId.of("Asia/Almaty")));
+
+        service.nightly();
+
+        verify(runRepository).createIfAbsent(DAY);
+        verify(runRepository).complete(eq(DAY), any());
+        verify(runRepository, never()).createIfAbsent(DAY.minusDays(1));
+    }
+
+    @Test
+    void packingRespectsTokenBudgetAndSkipsOversizedEntries() {
+        // 300 символов ≈ 100 токенов входа + 250 на выход; накладные расходы промпта 400
+        List<JournalEntry> entries = List.of(
+                entry(1, 1, 300), entry(2, 1, 300), entry(3, 1, 6_000), entry(4, 1, 300), entry(5, 1, 300));
+
+        List<List<JournalEntry>> batches = service(1_500, 10).pack(entries);
+
+        assertEquals(List.of(List.of(1L, 2L, 4L), List.of(5L)),
+                batches.stream().map(b -> b.stream().map(JournalEntry::getId).toList()).toList());
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private JournalBatchAnalysisService service(int maxBatchTokens, int maxEntriesPerBatch) {
+        return new JournalBatchAnalysisService(entryRepository, runRepository, aiResultCache, gateway,
+                new SimpleMeterRegistry(), true, maxBatchTokens, maxEntriesPerBatch, 3, Duration.ofMinutes(15), 2,
+                Clock.fixed(NIGHTLY_TICK, ZoneId.of("Asia/Almaty")));
+    }
+
+    private static JournalAnalysisRun run(long lastUserId) {
+        return JournalAnalysisRun.builder()
+                .runDate(DAY).status("RUNNING").lastUserId(lastUserId)
+                .entriesAnalyzed(0).batches(0).startedAt(FROM)
+                .build();
+    }
+
+    private static JournalEntry entry(long id, long userId) {
+        return JournalEntry.builder()
+                .id(id).userId(userId)
+                .title("Запись " + id)
+                .content("Плохо спал, много работы, вечером прогулка #" + id)
+                .createdAt(FROM.plusHours(id % 20))
+                .build();
+    }
+
+    private static JournalEntry entry(long id, long userId, int contentLength) {
+        return JournalEntry.builder()
+                .id(id).userId(userId)
+                .content("x".repeat(contentLength))
+                .build();
+    }
+
+    /** Отвечает JSON-результатом на каждую запись из батч-промпта */
+    private static final class StubChatModel implements ChatModel {
+
+        private static final Pattern ENTRY_ID = Pattern.compile("=== ENTRY id=(\\d+) ===");
+
+        final List<String> prompts = new CopyOnWriteArrayList<>();
+        final Set<Long> omitIds = ConcurrentHashMap.newKeySet();
+        /** Батч с такой записью провайдер отвергает как 4xx */
+        final Set<Long> rejectIds = ConcurrentHashMap.newKeySet();
+        volatile RuntimeException failure;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            String text = prompt.getContents();
+            prompts.add(text);
+            if (failure != null) throw failure;
+
+            StringBuilder json = new StringBuilder("{\"results\":[");
+            Matcher m = ENTRY_ID.matcher(text);
+            boolean first = true;
+            while (m.find()) {
+                long id = Long.parseLong(m.group(1));
+                if (rejectIds.contains(id)) throw new NonTransientAiException("HTTP 400 - content rejected");
+                if (omitIds.contains(id)) continue;
+                if (!first) json.append(',');
+                first = false;
+                json.append("{\"id\":").append(id)
+                        .append(",\"tone\":\"усталый\",\"themes\":[\"сон\",\"работа\"]")
+                        .append(",\"wellnessInsight\":\"Недосып снижает M-Rest.\"")
+                        .append(",\"suggestion\":\"10 минут прогулки.\"")
+                        .append(",\"summary\":\"Краткое резюме ").append(id).append(".\"}");
+            }
+            json.append("]}");
+            return new ChatResponse(List.of(new Generation(new AssistantMessage(json.toString()))));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example.ainote.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.ainote.exception.AiOverloadedException;
+import org.example.ainote.exception.ProviderRateLimitedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LlmGateway поверх stub ChatModel: round-robin между пользователями и лимит очереди
+ * на пользователя, coalescing одинаковых идемпотентных вызовов, hedge и retry,
+ * распознавание 429 по типу исключения / HTTP-статусу.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class LlmGatewayTests {
+
+    private static final long USER_A = 1L;
+    private static final long USER_B = 2L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StubChatModel chatModel = new StubChatModel();
+    private final List<Thread> callers = new ArrayList<>();
+
+    private LlmGateway gateway;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        chatModel.releaseFirst.countDown();
+        for (Thread caller : callers) caller.join(TimeUnit.SECONDS.toMillis(5));
+        if (gateway != null) gateway.stop();
+    }
+
+    @Test
+    void usersAreServedRoundRobinAndPerUserQueueIsBounded() throws Exception {
+        gateway = gateway(1, 2, Duration.ofSeconds(30));
+        chatModel.blockFirst = true;
+
+        List<String> results = new CopyOnWriteArrayList<>();
+        submitChat(USER_A, "A1", results);
+        assertTrue(chatModel.firstStarted.await(5, TimeUnit.SECONDS));
+        // A2 забирает диспетчер и ждёт слот — дальше очередь стоит
+        Thread a2 = submitChat(USER_A, "A2", results);
+        await(() -> a2.getState() == Thread.State.WAITING && queueDepth() == 0);
+        submitChat(USER_A, "A3", results);
+        await(() -> queueDepth() == 1);
+        submitChat(USER_A, "A4", results);
+        await(() -> queueDepth() == 2);
+        submitChat(USER_B, "B1", results);
+        await(() -> queueDepth() == 3);
+
+        assertThrows(AiOverloadedException.class, () -> gateway.call(USER_A, "chat", "A5", false));
+        assertEquals(1.0, meterRegistry.get("ai.gateway.rejected").tag("reason", "per_user").counter().count());
+        // Стрим отклоняется при вызове, до подписки — контроллер ещё не открыл SSE
+        assertThrows(AiOverloadedException.class, () -> gateway.stream(USER_A, "chat", "A6"));
+
+        chatModel.releaseFirst.countDown();
+        await(() -> results.size() == 5);
+
+        // FIFO отдал бы B1 последним
+        assertEquals(List.of("A1", "A2", "A3", "B1", "A4"), chatModel.prompts);
+    }
+
+    @Test
+    void identicalIdempotentCallsShareOneProviderCall() throws Exception {
+        gateway = gateway(2, 5, Duration.ofSeconds(30));
+        chatModel.blockFirst = true;
+
+        CompletableFuture<String> first = callAsync(USER_A, "summary", "same text");
+        assertTrue(chatModel.firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = callAsync(USER_B, "summary", "same text");
+        await(() -> meterRegistry.find("ai.gateway.coalesced").counter() != null);
+
+        chatModel.releaseFirst.countDown();
+
+        assertEquals("answer:same text", first.get(5, TimeUnit.SECONDS));
+        assertEquals("answer:same text", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, chatModel.prompts.size());
+        assertEquals("answer:other", gateway.call(USER_A, "summary", "other", true));
+    }
+
+    @Test
+    void slowIdempotentCallIsHedgedOnIdleCapacity() {
+        gateway = gateway(2, 5, Duration.ofMillis(50));
+        chatModel.blockFirst = true;
+
+        assertEquals("answer:p", gateway.call(USER_A, "summary", "p", true));
+
+        assertEquals(2, chatModel.prompts.size());
+        assertEquals(1.0, meterRegistry.get("ai.gateway.hedged").counter().count());
+    }
+
+    @Test
+    void chatIsNeverHedged() throws Exception {
+        gateway = gateway(2, 5, Duration.ofMillis(50));
+        chatModel.blockFirst = true;
+
+        CompletableFuture<String> chat = CompletableFuture.supplyAsync(() -> gateway.call(USER_A, "chat", "hi", false));
+        assertTrue(chatModel.firstStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(1, chatModel.prompts.size());
+
+        chatModel.releaseFirst.countDown();
+        assertEquals("answer:hi", chat.get(5, TimeUnit.SECONDS));
+        assertNull(meterRegistry.find("ai.gateway.hedged").counter());
+    }
+
+    @Test
+    void transientFailureIsRetriedOnce() {
+        gateway = gateway(2, 5, Duration.ofSeconds(30));
+        chatModel.failures.set(1);
+
+        assertEquals("answer:p", gateway.call(USER_A, "analysis", "p", true));
+
+        assertEquals(2, chatModel.prompts.size());
+        assertEquals(1.0, meterRegistry.get("ai.gateway.retried").counter().count());
+    }
+
+    @Test
+    void rateLimitIsRecognizedByTypeAndStatusNotMessage() {
+        assertTrue(LlmGateway.isRateLimited(new ProviderRateLimitedException("429 - slow down")));
+        assertTrue(LlmGateway.isRateLimited(new CompletionException(new ProviderRateLimitedException("x"))));
+        assertTrue(LlmGateway.isRateLimited(WebClientResponseException.create(
+                429, "Too Many Requests", HttpHeaders.EMPTY, new byte[0], null)));
+        assertTrue(LlmGateway.isRateLimited(HttpClientErrorException.create(
+                HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", HttpHeaders.EMPTY, new byte[0], null)));
+
+        assertFalse(LlmGateway.isRateLimited(new TransientAiException("429 - rate limit exceeded")));
+        assertFalse(LlmGateway.isRateLimited(new IllegalStateException("Rate limit reached")));
+        assertFalse(LlmGateway.isRateLimited(WebClientResponseException.create(
+                503, "Service Unavailable", HttpHeaders.EMPTY, new byte[0], null)));
+    }
+
+    // ─── helpers ─────────────────────────────────────────────────
+
+    private LlmGateway gateway(int maxConcurrency, int maxQueuedPerUser, Duration hedgeDelay) {
+        LlmGateway created = new LlmGateway(chatModel, meterRegistry,
+                1_000, 1_000_000, maxConcurrency, 100, maxQueuedPerUser, 400, Duration.ofSeconds(5), hedgeDelay);
+        created.start();
+        return created;
+    }
+
+    private Thread submitChat(long userId, String prompt, List<String> results) {
+        Thread caller = new Thread(() -> results.add(gateway.call(userId, "chat", prompt, false)));
+        caller.setDaemon(true);
+        callers.add(caller);
+        caller.start();
+        return caller;
+    }
+
+    private CompletableFuture<String> callAsync(long userId, String operation, String prompt) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Thread caller = new Thread(() -> {
+            try {
+                result.complete(gateway.call(userId, operation, prompt, true));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        caller.setDaemon(true);
+        callers.add(caller);
+        caller.start();
+        return result;
+    }
+
+    private double queueDepth() {
+        return meterRegistry.get("ai.gateway.queue.depth").gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) throw new AssertionError("condition not reached in 5s");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /** Отвечает "answer:<промпт>"; первый вызов может ждать releaseFirst, первые failures падают */
+    private static final class StubChatModel implements ChatModel {
+
+        final List<String> prompts = new CopyOnWriteArrayList<>();
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirst = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger calls = new AtomicInteger();
+        volatile boolean blockFirst;
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            String text = prompt.getContents();
+            prompts.add(text);
+            if (calls.incrementAndGet() == 1 && blockFirst) {
+                firstStarted.countDown();
+                try {
+                    releaseFirst.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(e);
+                }
+            }
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new TransientAiException("503 - upstream unavailable");
+            }
+            return new ChatResponse(List.of(new Generation(new AssistantMessage("answer:" + text))));
+        }
+    }
+}
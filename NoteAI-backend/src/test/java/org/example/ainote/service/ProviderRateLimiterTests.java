@@ -0,0 +1,85 @@
+package org.example.ainote.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ProviderRateLimiter: бюджеты RPM / TPM, коррекция по фактическому расходу,
+ * синхронизация с x-ratelimit-* и пауза после 429.
+ * Запуск: mvn -Punit test
+ */
+@Tag("unit")
+class ProviderRateLimiterTests {
+
+    @Test
+    void requestBudgetIsSpentAndRefilledOverTheMinute() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(2, 1_000);
+
+        assertEquals(0, limiter.tryReserve(10));
+        assertEquals(0, limiter.tryReserve(10));
+        long wait = limiter.tryReserve(10);
+        // 2 RPM: следующий запрос примерно через 30 с
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(25) && wait <= TimeUnit.SECONDS.toNanos(30), "wait=" + wait);
+    }
+
+    @Test
+    void settleReturnsUnusedTokensAndRefundReturnsTheRequest() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(1, 1_000);
+
+        assertEquals(0, limiter.tryReserve(600));
+        assertTrue(limiter.tryReserve(600) > 0);
+
+        limiter.settle(600, 100);
+        limiter.refund(0);
+        assertEquals(0, limiter.tryReserve(600));
+    }
+
+    @Test
+    void requestLargerThanTheWholeQuotaPassesOnAFullBucket() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(10, 1_000);
+
+        assertEquals(0, limiter.tryReserve(5_000));
+        assertTrue(limiter.tryReserve(10) > 0, "bucket is in debt after an oversized request");
+    }
+
+    @Test
+    void headersOnlyLowerTheLocalBudget() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(100, 10_000);
+
+        limiter.sync(1, Duration.ofSeconds(10), 5_000, Duration.ofSeconds(10));
+        limiter.sync(500, Duration.ofSeconds(10), 50_000, Duration.ofSeconds(10));
+
+        assertEquals(0, limiter.tryReserve(10));
+        assertTrue(limiter.tryReserve(10) > 0);
+        assertTrue(limiter.availableTokens() <= 5_000);
+    }
+
+    @Test
+    void exhaustedHeaderBlocksUntilReset() {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(100, 10_000);
+
+        limiter.sync(50, Duration.ofSeconds(2), 0, Duration.ofSeconds(20));
+
+        long wait = limiter.tryReserve(1);
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(15) && wait <= TimeUnit.SECONDS.toNanos(20), "wait=" + wait);
+    }
+
+    @Test
+    void penaltyAfter429LastsForTheLastKnownResetWindow() throws InterruptedException {
+        ProviderRateLimiter limiter = new ProviderRateLimiter(6_000, 100_000);
+        limiter.sync(50, Duration.ofMillis(200), 50_000, Duration.ofSeconds(1));
+
+        limiter.penalize();
+
+        long wait = limiter.tryReserve(1);
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(200), "wait=" + wait);
+        Thread.sleep(250);
+        assertEquals(0, limiter.tryReserve(1));
+    }
+}